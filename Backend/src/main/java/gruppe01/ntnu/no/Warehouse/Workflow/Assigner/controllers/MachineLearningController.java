@@ -1,6 +1,8 @@
 package gruppe01.ntnu.no.warehouse.workflow.assigner.controllers;
 
 import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelEvaluator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelPruner;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -12,7 +14,10 @@ import java.util.Map;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
@@ -27,12 +32,19 @@ public class MachineLearningController {
 
   private final MachineLearningModelPicking machineLearningModelPicking;
 
+  private final ModelEvaluator modelEvaluator;
+
+  private final ModelPruner modelPruner;
+
   /**
    * Constructor for MachineLearningController.
    */
   public MachineLearningController(
-      MachineLearningModelPicking machineLearningModelPicking) {
+      MachineLearningModelPicking machineLearningModelPicking, ModelEvaluator modelEvaluator,
+      ModelPruner modelPruner) {
     this.machineLearningModelPicking = machineLearningModelPicking;
+    this.modelEvaluator = modelEvaluator;
+    this.modelPruner = modelPruner;
   }
 
   /**
@@ -128,5 +140,107 @@ public class MachineLearningController {
     return ResponseEntity.ok(machineLearningModelPicking.getMcWorkerEfficiency(department));
   }
 
+  /**
+   * Starts evaluating the picking model of a department with k-fold cross-validation in the
+   * background.
+   *
+   * @param department the department whose data set is evaluated
+   * @return a response entity containing the running evaluation, with the ID to poll it by
+   */
+  @Operation(
+      summary = "Start evaluating the picking model of a department",
+      description = "Starts k-fold cross-validation on the data set of a department in the "
+          + "background and returns its ID right away. A department that is already being "
+          + "evaluated returns the running evaluation."
+  )
+  @ApiResponses(value = {
+      @ApiResponse(responseCode = "202", description = "Successfully started the evaluation"),
+      @ApiResponse(responseCode = "500", description = "Internal server error")
+  })
+  @PostMapping("/evaluate/{department}")
+  public ResponseEntity<ModelEvaluator.Evaluation> evaluate(
+      @Parameter(description = "Department whose model to evaluate")
+      @PathVariable String department) {
+    return ResponseEntity.accepted().body(modelEvaluator.submit(department));
+  }
 
+  /**
+   * Gets an evaluation of a picking model started in the background.
+   *
+   * @param evaluationId the ID of the evaluation
+   * @return a response entity containing the state of the evaluation, and once it is done the
+   *     error and prediction time of every candidate
+   */
+  @Operation(
+      summary = "Get a picking model evaluation",
+      description = "Retrieves the state of an evaluation and, once it is done, the error and "
+          + "prediction time of the full, pruned and compiled models. The chosen candidate is "
+          + "only reported, set the pruning of the zone to use fewer trees."
+  )
+  @ApiResponses(value = {
+      @ApiResponse(responseCode = "200", description = "Successfully retrieved the evaluation"),
+      @ApiResponse(responseCode = "404", description = "Evaluation not found")
+  })
+  @GetMapping("/evaluate/jobs/{evaluationId}")
+  public ResponseEntity<ModelEvaluator.Evaluation> getEvaluation(
+      @Parameter(description = "ID of the evaluation")
+      @PathVariable String evaluationId) {
+    ModelEvaluator.Evaluation evaluation = modelEvaluator.getEvaluation(evaluationId);
+    if (evaluation == null) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(evaluation);
+  }
+
+  /**
+   * Sets how the model of a zone is pruned for the Monte Carlo simulations.
+   *
+   * @param department the department of the zone
+   * @param trees      the number of trees, "auto", or empty to simulate with the full model
+   * @return a response entity containing the pruning of every pruned zone
+   */
+  @Operation(
+      summary = "Set the pruning of a zone model",
+      description = "Sets the number of trees the model of a zone is pruned to in the Monte "
+          + "Carlo simulations, or auto to use the fewest trees within the allowed loss of "
+          + "accuracy. The loss is measured on the tasks held out of training, or on the "
+          + "training data set until tasks have been held out, where it is in-sample and "
+          + "understates the loss."
+  )
+  @ApiResponses(value = {
+      @ApiResponse(responseCode = "200", description = "Successfully set the pruning"),
+      @ApiResponse(responseCode = "400", description = "Invalid number of trees")
+  })
+  @PutMapping("/pruning/{department}")
+  public ResponseEntity<Map<String, String>> setPruning(
+      @Parameter(description = "Department of the zone to prune")
+      @PathVariable String department,
+      @Parameter(description = "Number of trees, auto, or empty for the full model")
+      @RequestParam(required = false) String trees) {
+    try {
+      modelPruner.setPruning(department, trees);
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().build();
+    }
+    return ResponseEntity.ok(modelPruner.getPrunings());
+  }
+
+  /**
+   * Fetches the measured accuracy of the pruned models.
+   *
+   * @return a response entity containing the report of every pruned model
+   */
+  @Operation(
+      summary = "Fetch the accuracy of the pruned models",
+      description = "Fetches the number of trees and the error of every pruned model "
+          + "compared to its full model. heldOut is false when the errors were measured on "
+          + "the training data set, then they are in-sample and understate the loss."
+  )
+  @ApiResponses(value = {
+      @ApiResponse(responseCode = "200", description = "Successfully fetched the reports")
+  })
+  @GetMapping("/pruning")
+  public ResponseEntity<Map<String, ModelPruner.PruningReport>> getPruningReports() {
+    return ResponseEntity.ok(modelPruner.getReports());
+  }
 }
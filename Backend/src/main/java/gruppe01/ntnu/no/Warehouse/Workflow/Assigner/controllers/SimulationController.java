@@ -4,8 +4,14 @@ import gruppe01.ntnu.no.warehouse.workflow.assigner.dummydata.ActiveTaskGenerato
 import gruppe01.ntnu.no.warehouse.workflow.assigner.dummydata.PickerTaskGenerator;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.dummydata.TimeTableGenerator;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.services.SimulationService;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.AdaptiveStopping;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.MonteCarloJob;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.MonteCarloJobStatus;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ScenarioResult;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSimResult;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.scenarios.Scenario;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.worldsimulation.WorldSimulation;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -14,19 +20,21 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import smile.regression.RandomForest;
 
 /**
  * SimulationController handles HTTP requests related to simulation operations.
@@ -119,7 +127,7 @@ public class SimulationController {
     if (time == null) {
       throw new IllegalArgumentException("Current date and time is not available");
     }
-    Map<String, RandomForest> models = worldSimulationController.getModels();
+    Map<String, PickingModel> models = worldSimulationController.getModels();
     if (models == null || models.isEmpty()) {
       throw new IllegalArgumentException("Models are not available or empty");
     }
@@ -127,6 +135,153 @@ public class SimulationController {
     return ResponseEntity.ok(simulationService.runCompleteSimulation(models, time));
   }
 
+  /**
+   * Endpoint to start a Monte Carlo simulation in the background.
+   *
+   * @param startOfDay True to simulate from the start of the current day instead of the current
+   *                   time of the world simulation.
+   * @return The status of the new job, with the ID to poll it by.
+   */
+  @Operation(
+      summary = "Start Monte Carlo job",
+      description = "Starts a Monte Carlo simulation in the background and returns its job ID "
+          + "right away."
+  )
+  @ApiResponses(value = {
+      @ApiResponse(responseCode = "202", description = "Successfully started the job"),
+      @ApiResponse(responseCode = "500", description = "Internal server error")
+  })
+  @PostMapping("/monte-carlo/jobs")
+  public ResponseEntity<MonteCarloJobStatus> startMonteCarloJob(
+      @Parameter(description = "True to simulate from the start of the current day")
+      @RequestParam(defaultValue = "false") boolean startOfDay) {
+    MonteCarloJob job;
+    if (startOfDay) {
+      job = simulationService.submitJob(null, LocalDate.now().atStartOfDay());
+    } else {
+      LocalDateTime time = worldSimulationController.getCurrentDateTime().getBody();
+      if (time == null) {
+        throw new IllegalArgumentException("Current date and time is not available");
+      }
+      Map<String, PickingModel> models = worldSimulationController.getModels();
+      if (models == null || models.isEmpty()) {
+        throw new IllegalArgumentException("Models are not available or empty");
+      }
+      job = simulationService.submitJob(models, time);
+    }
+    return ResponseEntity.accepted().body(MonteCarloJobStatus.of(job));
+  }
+
+  /**
+   * Endpoint to get the progress of a Monte Carlo job.
+   *
+   * @param jobId The ID of the job.
+   * @return The state of the job and the number of completed simulations of every zone.
+   */
+  @Operation(
+      summary = "Get Monte Carlo job status",
+      description = "Retrieves the state of a job, the completed simulations of every zone and "
+          + "the results once the job is done."
+  )
+  @ApiResponses(value = {
+      @ApiResponse(responseCode = "200", description = "Successfully retrieved the job status"),
+      @ApiResponse(responseCode = "404", description = "Job not found")
+  })
+  @GetMapping("/monte-carlo/jobs/{jobId}")
+  public ResponseEntity<MonteCarloJobStatus> getMonteCarloJob(
+      @Parameter(description = "ID of the job")
+      @PathVariable String jobId) {
+    MonteCarloJob job = simulationService.getJob(jobId);
+    if (job == null) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(MonteCarloJobStatus.of(job));
+  }
+
+  /**
+   * Endpoint to get the early estimates of a Monte Carlo job.
+   *
+   * @param jobId The ID of the job.
+   * @return The completion time distribution of every zone from the simulations so far.
+   */
+  @Operation(
+      summary = "Get Monte Carlo job estimates",
+      description = "Retrieves the completion time distribution of every zone from the "
+          + "simulations that have completed so far."
+  )
+  @ApiResponses(value = {
+      @ApiResponse(responseCode = "200", description = "Successfully retrieved the estimates"),
+      @ApiResponse(responseCode = "404", description = "Job not found")
+  })
+  @GetMapping("/monte-carlo/jobs/{jobId}/partial")
+  public ResponseEntity<Map<Long, ScenarioResult.ZoneDistribution>> getMonteCarloJobPartial(
+      @Parameter(description = "ID of the job")
+      @PathVariable String jobId) {
+    MonteCarloJob job = simulationService.getJob(jobId);
+    if (job == null) {
+      return ResponseEntity.notFound().build();
+    }
+    if (job.getAggregator() == null) {
+      return ResponseEntity.ok(Map.of());
+    }
+    return ResponseEntity.ok(new ScenarioResult(null, job.getAggregator()).getZones());
+  }
+
+  /**
+   * Endpoint to cancel a Monte Carlo job.
+   *
+   * @param jobId The ID of the job.
+   * @return The status of the job, a job that is saving its results is not cancelled.
+   */
+  @Operation(
+      summary = "Cancel Monte Carlo job",
+      description = "Cancels a job that is still simulating. Nothing is saved for a cancelled job."
+  )
+  @ApiResponses(value = {
+      @ApiResponse(responseCode = "200", description = "Successfully handled the cancel"),
+      @ApiResponse(responseCode = "404", description = "Job not found")
+  })
+  @DeleteMapping("/monte-carlo/jobs/{jobId}")
+  public ResponseEntity<MonteCarloJobStatus> cancelMonteCarloJob(
+      @Parameter(description = "ID of the job")
+      @PathVariable String jobId) {
+    MonteCarloJob job = simulationService.cancelJob(jobId);
+    if (job == null) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(MonteCarloJobStatus.of(job));
+  }
+
+  /**
+   * Endpoint to compare what-if scenarios with Monte Carlo simulation.
+   *
+   * @param scenarios The scenarios, each a list of changes to workers and tasks.
+   * @return The completion time distribution of every zone, for the base scenario first.
+   * @throws Exception If an error occurs during the simulation.
+   */
+  @Operation(
+      summary = "Run Monte Carlo what-if scenarios",
+      description = "Applies each scenario to one snapshot of the warehouse and simulates them in "
+          + "parallel. Nothing is written to the database."
+  )
+  @ApiResponses(value = {
+      @ApiResponse(responseCode = "200", description = "Successfully ran the scenarios"),
+      @ApiResponse(responseCode = "500", description = "Internal server error")
+  })
+  @PostMapping("/monte-carlo/scenarios")
+  public ResponseEntity<List<ScenarioResult>> monteCarloScenarios(
+      @RequestBody List<Scenario> scenarios) throws Exception {
+    LocalDateTime time = worldSimulationController.getCurrentDateTime().getBody();
+    if (time == null) {
+      throw new IllegalArgumentException("Current date and time is not available");
+    }
+    Map<String, PickingModel> models = worldSimulationController.getModels();
+    if (models == null || models.isEmpty()) {
+      throw new IllegalArgumentException("Models are not available or empty");
+    }
+    return ResponseEntity.ok(simulationService.runScenarios(scenarios, models, time));
+  }
+
   /**
    * Endpoint to run Monte Carlo simulation at the start of the day.
    *
@@ -173,7 +328,7 @@ public class SimulationController {
       throw new IllegalArgumentException("Current date and time is not available");
     }
     System.out.println("Current date and time: " + time);
-    Map<String, RandomForest> models = worldSimulationController.getModels();
+    Map<String, PickingModel> models = worldSimulationController.getModels();
     return ResponseEntity.ok(simulationService.runZoneSimulation(id, time, models));
   }
 
@@ -330,6 +485,111 @@ public class SimulationController {
     return ResponseEntity.ok(simulationService.isPrediction());
   }
 
+  /**
+   * Endpoint to turn adaptive stopping of the Monte Carlo simulation on or off.
+   *
+   * @param adaptive          True to run simulations until the zones have converged.
+   * @param toleranceMinutes  The largest allowed half width of the confidence interval.
+   * @param batchSize         The number of simulations between each convergence check.
+   * @param minReplications   The number of simulations every zone gets.
+   * @param maxReplications   The maximum number of simulations of a zone.
+   * @param timeBudgetSeconds The maximum time to spend on the simulations.
+   */
+  @Operation(
+      summary = "Set adaptive stopping",
+      description = "Runs simulations in batches until the end time of each zone has converged."
+  )
+  @PostMapping("/setAdaptive")
+  public void setAdaptive(
+      @Parameter(description = "True to use adaptive stopping")
+      @RequestParam boolean adaptive,
+      @Parameter(description = "Confidence interval half width in minutes")
+      @RequestParam(defaultValue = "5") double toleranceMinutes,
+      @Parameter(description = "Simulations between each convergence check")
+      @RequestParam(defaultValue = "5") int batchSize,
+      @Parameter(description = "Minimum number of simulations per zone")
+      @RequestParam(defaultValue = "5") int minReplications,
+      @Parameter(description = "Maximum number of simulations per zone")
+      @RequestParam(defaultValue = "200") int maxReplications,
+      @Parameter(description = "Time budget in seconds")
+      @RequestParam(defaultValue = "30") long timeBudgetSeconds) {
+    simulationService.setAdaptiveStopping(new AdaptiveStopping(batchSize, minReplications,
+        maxReplications, toleranceMinutes, Duration.ofSeconds(timeBudgetSeconds)));
+    simulationService.setAdaptive(adaptive);
+  }
+
+  /**
+   * Endpoint to set the master seed of the Monte Carlo simulation.
+   *
+   * @param seed                The master seed, leave out to use a new seed for every run.
+   * @param commonRandomNumbers True to reuse the same random draws when comparing scenarios.
+   */
+  @Operation(
+      summary = "Set Monte Carlo seed",
+      description = "Makes Monte Carlo runs reproducible by deriving all random draws from one seed."
+  )
+  @PostMapping("/setSeed")
+  public void setSeed(
+      @Parameter(description = "Master seed, leave out for a new seed every run")
+      @RequestParam(required = false) Long seed,
+      @Parameter(description = "True to use common random numbers for scenario comparisons")
+      @RequestParam(defaultValue = "false") boolean commonRandomNumbers) {
+    simulationService.setMasterSeed(seed);
+    simulationService.setCommonRandomNumbers(commonRandomNumbers);
+  }
+
+  /**
+   * Endpoint to turn reuse of unchanged zones between Monte Carlo runs on or off.
+   *
+   * @param memoization True to reuse the results of zones that have not changed.
+   * @param ttlMinutes  How long in simulated minutes the results of a zone can be reused.
+   */
+  @Operation(
+      summary = "Set zone memoization",
+      description = "Reuses the results of zones whose workers, shifts and tasks have not changed "
+          + "since an earlier run, instead of simulating them again."
+  )
+  @PostMapping("/setMemoization")
+  public void setMemoization(
+      @Parameter(description = "True to reuse the results of unchanged zones")
+      @RequestParam boolean memoization,
+      @Parameter(description = "Time to live in simulated minutes")
+      @RequestParam(defaultValue = "30") long ttlMinutes) {
+    simulationService.setMemoization(memoization, Duration.ofMinutes(ttlMinutes));
+  }
+
+  /**
+   * Endpoint to set the number of worker processes the Monte Carlo simulations are spread over.
+   *
+   * @param workerProcesses The number of worker processes, 0 to run every simulation in this
+   *                        process.
+   */
+  @Operation(
+      summary = "Set Monte Carlo worker processes",
+      description = "Spreads the simulations of a Monte Carlo run over worker processes on this "
+          + "machine. Runs with the same seed give the same results as in a single process."
+  )
+  @PostMapping("/setWorkerProcesses")
+  public void setWorkerProcesses(
+      @Parameter(description = "Number of worker processes, 0 to run in a single process")
+      @RequestParam int workerProcesses) {
+    simulationService.setWorkerProcesses(workerProcesses);
+  }
+
+  /**
+   * Endpoint to get the state of the shared simulation scheduler.
+   *
+   * @return The pool size, thread mode, queue depth and active count of the scheduler.
+   */
+  @Operation(
+      summary = "Get simulation scheduler stats",
+      description = "Retrieves the queue depth and active count of the simulation scheduler."
+  )
+  @GetMapping("/simulation-scheduler")
+  public ResponseEntity<Map<String, Object>> getSchedulerStats() {
+    return ResponseEntity.ok(simulationService.getSchedulerStats());
+  }
+
   /**
    * Endpoint to reset the simulation date.
    */
@@ -1,5 +1,6 @@
 package gruppe01.ntnu.no.warehouse.workflow.assigner.controllers;
 
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.services.SimulationService;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.worldsimulation.WorldSimulation;
 import io.swagger.v3.oas.annotations.Operation;
@@ -215,12 +216,12 @@ public class WorldSimulationController {
   }
 
   /**
-   * Retrieves the RandomForest models for all zones.
+   * Retrieves the picking models for all zones.
    *
-   * @return a map of zone IDs to RandomForest models
+   * @return a map of zone IDs to picking models
    */
   @GetMapping("/getModels")
-  public Map<String, RandomForest> getModels() {
+  public Map<String, PickingModel> getModels() {
     return worldSimulation.getModels();
   }
 
@@ -232,11 +233,12 @@ public class WorldSimulationController {
    */
   @GetMapping("/getModel/{zoneId}")
   public RandomForest getModel(@PathVariable Long zoneId) {
-    Map<String, RandomForest> models = worldSimulation.getModels();
+    Map<String, PickingModel> models = worldSimulation.getModels();
     if (models == null) {
       return null;
     }
-    return models.get(zoneId.toString());
+    PickingModel model = models.get(zoneId.toString());
+    return model != null ? model.forest() : null;
   }
 
   /**
@@ -10,6 +10,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.random.RandomGenerator;
 
 /**
  * Service for generating active tasks for simulation purposes.
@@ -37,6 +38,19 @@ public class ActiveTaskGenerator {
    * @throws IllegalArgumentException if numDays is less than 1 or if no tasks are available.
    */
   public void generateActiveTasks(LocalDate startDate, int numDays) {
+    generateActiveTasks(startDate, numDays, new Random());
+  }
+
+  /**
+   * Generates active tasks for a given date range, drawing from the given random number generator.
+   * With a seeded generator the same tasks are generated every time.
+   *
+   * @param startDate The start date for generating active tasks. If null, the current date is used.
+   * @param numDays   The number of days to generate active tasks for. Must be greater than 0.
+   * @param random    The random number generator.
+   * @throws IllegalArgumentException if numDays is less than 1 or if no tasks are available.
+   */
+  public void generateActiveTasks(LocalDate startDate, int numDays, RandomGenerator random) {
     if (numDays < 1) {
       throw new IllegalArgumentException("Number of days must be at least 1.");
     }
@@ -49,7 +63,6 @@ public class ActiveTaskGenerator {
     startDate = Objects.requireNonNullElse(startDate, LocalDate.now());
     LocalDate endDate = startDate.plusDays(numDays - 1);
 
-    Random random = new Random();
     int minNumTasks = 50;
     int maxNumTasks = 90;
     int[] dueHours = {7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23};
@@ -74,7 +87,7 @@ public class ActiveTaskGenerator {
    */
   private void generateTasksForDay(LocalDate date, List<Task> tasks, int numTasks, int[] dueHours,
                                    int[] dueMinutes,
-                                   Random random) {
+                                   RandomGenerator random) {
     for (int i = 0; i < numTasks; i++) {
       Task task = tasks.get(random.nextInt(tasks.size()));
       LocalDateTime dueDate = generateDueDate(date, dueHours, dueMinutes, random);
@@ -98,7 +111,7 @@ public class ActiveTaskGenerator {
    * @return The generated due date, or null if no due date is assigned.
    */
   private LocalDateTime generateDueDate(LocalDate date, int[] dueHours, int[] dueMinutes,
-                                        Random random) {
+                                        RandomGenerator random) {
     int hour = dueHours[random.nextInt(dueHours.length)];
     int minute = dueMinutes[random.nextInt(dueMinutes.length)];
     return LocalDateTime.of(date, LocalTime.of(hour, minute));
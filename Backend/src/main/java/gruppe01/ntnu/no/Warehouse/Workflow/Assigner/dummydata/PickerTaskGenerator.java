@@ -12,6 +12,7 @@ import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.random.RandomGenerator;
 
 /**
  * This class generates fake PickerTask data for testing purposes.
@@ -46,6 +47,26 @@ public class PickerTaskGenerator {
   public List<PickerTask> generatePickerTasks(LocalDate startDate, int numDays, int numTasksPerDay,
                                               MachineLearningModelPicking machineLearningModelPicking,
                                               boolean testData) throws IOException {
+    return generatePickerTasks(startDate, numDays, numTasksPerDay, machineLearningModelPicking,
+        testData, new Random());
+  }
+
+  /**
+   * Generates PickerTasks for the given date range and zones,
+   * drawing from the given random number generator.
+   * With a seeded generator the same tasks are generated every time.
+   *
+   * @param startDate                   The start date for generating tasks.
+   * @param numDays                     The number of days to generate tasks for.
+   * @param numTasksPerDay              The number of tasks to generate per day.
+   * @param machineLearningModelPicking The machine learning model for picking data.
+   * @param random                      The random number generator.
+   * @throws IOException If an error occurs while fetching machine learning data.
+   */
+  public List<PickerTask> generatePickerTasks(LocalDate startDate, int numDays, int numTasksPerDay,
+                                              MachineLearningModelPicking machineLearningModelPicking,
+                                              boolean testData, RandomGenerator random)
+      throws IOException {
 
     List<Map<List<Double>, List<List<Double>>>> mcValuesList = List.of(
         machineLearningModelPicking.getMcValues("dry"),
@@ -53,7 +74,6 @@ public class PickerTaskGenerator {
         machineLearningModelPicking.getMcValues("fruit")
     );
 
-    Random random = new Random();
     List<PickerTask> allPickerTasks = new ArrayList<>();
     int[] dueHours = {7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23};
     int[] dueMinutes = {0, 15, 30, 45};
@@ -91,7 +111,7 @@ public class PickerTaskGenerator {
   }
 
   private PickerTask createPickerTask(Zone zone, LocalDate date, List<List<Double>> valueList,
-                                      Random random,
+                                      RandomGenerator random,
                                       boolean testData, int[] dueHours, int[] dueMinutes) {
     PickerTask pickerTask = new PickerTask();
     pickerTask.setZone(zone);
@@ -113,7 +133,7 @@ public class PickerTaskGenerator {
     return pickerTask;
   }
 
-  private double generateRandomValue(List<Double> range, Random random) {
+  private double generateRandomValue(List<Double> range, RandomGenerator random) {
     double min = range.get(0);
     double max = range.get(1);
     double variation = 1 + (random.nextDouble() * 0.1 - 0.05); // ±5% variation
@@ -125,7 +145,7 @@ public class PickerTaskGenerator {
   }
 
   private LocalDateTime generateDueDate(LocalDate date, int[] dueHours, int[] dueMinutes,
-                                        Random random) {
+                                        RandomGenerator random) {
     int hour = dueHours[random.nextInt(dueHours.length)];
     int minute = dueMinutes[random.nextInt(dueMinutes.length)];
     return date.atTime(hour, minute);
@@ -0,0 +1,93 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.entities;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * An immutable set of licenses as bits, using the bit indexes of the LicenseRegistry.
+ * The first 64 licenses are kept in a long, so checking if a worker has the licenses of a task
+ * is a single AND and compare. Licenses beyond the first 64 are kept in a BitSet.
+ */
+public final class LicenseMask implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final LicenseMask EMPTY = new LicenseMask(0L, null);
+
+  private final long bits;
+
+  // Licenses with a bit index of 64 or more, offset by 64, or null if there are none
+  private final BitSet overflow;
+
+  private final int count;
+
+  LicenseMask(long bits, BitSet overflow) {
+    this.bits = bits;
+    this.overflow = overflow == null || overflow.isEmpty() ? null : (BitSet) overflow.clone();
+    this.count = Long.bitCount(bits) + (this.overflow == null ? 0 : this.overflow.cardinality());
+  }
+
+  /**
+   * Checks if this mask has all the licenses of another mask.
+   *
+   * @param required the licenses that are required
+   * @return true if every required license is in this mask
+   */
+  public boolean containsAll(LicenseMask required) {
+    if ((bits & required.bits) != required.bits) {
+      return false;
+    }
+    if (required.overflow == null) {
+      return true;
+    }
+    if (overflow == null) {
+      return false;
+    }
+    for (int i = required.overflow.nextSetBit(0); i >= 0;
+         i = required.overflow.nextSetBit(i + 1)) {
+      if (!overflow.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets the licenses with a bit index below 64.
+   *
+   * @return the licenses as bits in a long
+   */
+  public long getBits() {
+    return bits;
+  }
+
+  /**
+   * Gets the number of licenses in the mask.
+   *
+   * @return the number of licenses
+   */
+  public int getCount() {
+    return count;
+  }
+
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof LicenseMask that)) {
+      return false;
+    }
+    return bits == that.bits && Objects.equals(overflow, that.overflow);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(bits, overflow);
+  }
+}
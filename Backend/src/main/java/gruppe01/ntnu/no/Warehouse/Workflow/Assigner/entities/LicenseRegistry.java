@@ -0,0 +1,76 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.entities;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gives every license a dense bit index, so that sets of licenses can be kept as a LicenseMask.
+ * Licenses are matched by ID and get the next free index the first time they are seen.
+ * Indexes are never reused, a deleted license keeps its index.
+ * Licenses that have not been saved yet have no ID, and are matched by identity instead.
+ */
+public final class LicenseRegistry {
+
+  private static final Map<Long, Integer> indexes = new ConcurrentHashMap<>();
+
+  private static final Map<License, Integer> unsavedIndexes =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  private static final AtomicInteger nextIndex = new AtomicInteger();
+
+  private LicenseRegistry() {
+  }
+
+  /**
+   * Gets the bit index of a license.
+   *
+   * @param license the license
+   * @return the bit index of the license
+   */
+  public static int indexOf(License license) {
+    if (license.getId() == null) {
+      return unsavedIndexes.computeIfAbsent(license, _ -> nextIndex.getAndIncrement());
+    }
+    return indexes.computeIfAbsent(license.getId(), _ -> nextIndex.getAndIncrement());
+  }
+
+  /**
+   * Creates the mask of a set of licenses.
+   *
+   * @param licenses the licenses, may be null
+   * @return the mask of the licenses
+   */
+  public static LicenseMask maskOf(Collection<License> licenses) {
+    if (licenses == null || licenses.isEmpty()) {
+      return LicenseMask.EMPTY;
+    }
+    long bits = 0;
+    BitSet overflow = null;
+    for (License license : licenses) {
+      int index = indexOf(license);
+      if (index < Long.SIZE) {
+        bits |= 1L << index;
+      } else {
+        if (overflow == null) {
+          overflow = new BitSet();
+        }
+        overflow.set(index - Long.SIZE);
+      }
+    }
+    return new LicenseMask(bits, overflow);
+  }
+
+  /**
+   * Gets the number of licenses that have been given an index.
+   *
+   * @return the number of indexes in use
+   */
+  public static int size() {
+    return nextIndex.get();
+  }
+}
@@ -1,5 +1,6 @@
 package gruppe01.ntnu.no.warehouse.workflow.assigner.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 
@@ -61,6 +62,10 @@ public class Task {
   @Schema(description = "The licenses required to perform the task.")
   private Set<License> requiredLicense;
 
+  // The required licenses as a mask, computed when first needed
+  @Transient
+  private LicenseMask requiredLicenseMask;
+
   public Task() {
   }
 
@@ -100,6 +105,7 @@ public class Task {
 
   public void setRequiredLicense(Set<License> requiredLicense) {
     this.requiredLicense = requiredLicense;
+    this.requiredLicenseMask = null;
   }
 
   public void setId(Long id) {
@@ -138,6 +144,23 @@ public class Task {
     return requiredLicense;
   }
 
+  /**
+   * Gets the required licenses of the task as a mask.
+   * The mask is computed again if licenses have been added or removed since it was made.
+   *
+   * @return the mask of the required licenses
+   */
+  @JsonIgnore
+  public LicenseMask getRequiredLicenseMask() {
+    LicenseMask mask = requiredLicenseMask;
+    if (mask == null
+        || mask.getCount() != (requiredLicense == null ? 0 : requiredLicense.size())) {
+      mask = LicenseRegistry.maskOf(requiredLicense);
+      requiredLicenseMask = mask;
+    }
+    return mask;
+  }
+
   public Long getId() {
     return id;
   }
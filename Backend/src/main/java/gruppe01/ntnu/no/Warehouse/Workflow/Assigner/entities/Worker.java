@@ -78,6 +78,11 @@ public class Worker {
   @Schema(description = "The licenses held by the worker.")
   private Set<License> licenses = new HashSet<>();
 
+  // The licenses as a mask, computed when first needed
+  @Transient
+  @JsonIgnore
+  private LicenseMask licenseMask;
+
   public Worker() {
 
   }
@@ -89,6 +94,7 @@ public class Worker {
     this.workTitle = worker.workTitle;
     this.efficiency = worker.efficiency;
     this.licenses = worker.licenses;
+    this.licenseMask = worker.licenseMask;
     this.availability = worker.availability;
     this.currentActiveTask = worker.currentActiveTask;
     this.currentPickerTask = worker.currentPickerTask;
@@ -124,6 +130,7 @@ public class Worker {
 
   public void setLicenses(Set<License> licenses) {
     this.licenses = licenses;
+    this.licenseMask = null;
   }
 
   public void setCurrentTask(ActiveTask currentTask) {
@@ -162,6 +169,31 @@ public class Worker {
     return licenses;
   }
 
+  /**
+   * Gets the licenses of the worker as a mask.
+   * The mask is computed again if licenses have been added or removed since it was made.
+   *
+   * @return the mask of the licenses
+   */
+  public LicenseMask getLicenseMask() {
+    LicenseMask mask = licenseMask;
+    if (mask == null || mask.getCount() != (licenses == null ? 0 : licenses.size())) {
+      mask = LicenseRegistry.maskOf(licenses);
+      licenseMask = mask;
+    }
+    return mask;
+  }
+
+  /**
+   * Checks if the worker has all the licenses required by a task.
+   *
+   * @param task the task to check
+   * @return true if the worker is qualified for the task
+   */
+  public boolean isQualifiedFor(Task task) {
+    return getLicenseMask().containsAll(task.getRequiredLicenseMask());
+  }
+
   @JsonProperty("currentTaskId")
   public Long getCurrentTaskId() {
     if (currentActiveTask != null) {
@@ -0,0 +1,367 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning;
+
+import smile.base.cart.InternalNode;
+import smile.base.cart.Node;
+import smile.base.cart.NominalNode;
+import smile.base.cart.OrdinalNode;
+import smile.base.cart.RegressionNode;
+import smile.data.type.StructType;
+import smile.regression.RandomForest;
+import smile.regression.RegressionTree;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * A Random Forest model flattened into primitive arrays, so a prediction walks the trees
+ * without going through Tuples and DataFrames and allocates nothing.
+ * Every node of every tree is a position in the arrays. An internal node has the index of the
+ * feature it splits on, the split value and the positions of its two children next to each
+ * other, a leaf has the output of the tree. Ordinal splits keep the index of the feature as it
+ * is and nominal splits its complement, so the kind of a node is read from its feature.
+ * The mean of the outputs is computed in the same order as smile does, so the predictions are
+ * the same as those of the model it was compiled from.
+ * Immutable and safe to use from several threads, and serializable as its arrays, so it can be
+ * sent to worker processes without the model it was compiled from.
+ * <p>
+ * A compiled model can be written to a binary file and read back with {@link #read(Path, List)}.
+ * The file is a header followed by the arrays, so reading it is one memory mapped copy per array
+ * instead of rebuilding an object graph with Java deserialization. The header is the magic
+ * number, the version of the format, the number of features, trees and nodes, all big-endian,
+ * followed by the name of each feature as its length and UTF-8 bytes. A file is only read for
+ * rows with the same features in the same order, so a model is never fed the wrong columns.
+ */
+public final class CompiledRandomForest implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  // Feature of a leaf
+  private static final int LEAF = Integer.MIN_VALUE;
+
+  // "WWRF", starts every model file
+  private static final int MAGIC = 0x57575246;
+
+  // Version of the file format, files of another version are not read
+  public static final int FORMAT_VERSION = 2;
+
+  // Magic, version, features, trees and nodes, before the feature names
+  private static final int HEADER_BYTES = 5 * Integer.BYTES;
+
+  private final int[] roots;
+
+  // Index of the feature in the row the node splits on, its complement for nominal splits
+  private final int[] feature;
+
+  // Split value of internal nodes, output of leaves
+  private final double[] value;
+
+  // The child taken when the split holds, followed by the child taken when it does not
+  private final int[] children;
+
+  private final List<String> featureNames;
+
+  private final int featureCount;
+
+  private CompiledRandomForest(int[] roots, int[] feature, double[] value, int[] children,
+                               List<String> featureNames) {
+    this.roots = roots;
+    this.feature = feature;
+    this.value = value;
+    this.children = children;
+    this.featureNames = List.copyOf(featureNames);
+    this.featureCount = featureNames.size();
+  }
+
+  /**
+   * Compiles a Random Forest model for rows with the given features.
+   * The predictors of the model are looked up by name, so the row does not need to be in the
+   * order the model was trained with.
+   *
+   * @param model        The model to compile
+   * @param featureNames The name of each feature of a row, in order
+   * @return The compiled model
+   * @throws IllegalArgumentException if a predictor of the model is not a feature, or a tree
+   *                                  has a node that can not be compiled
+   */
+  public static CompiledRandomForest compile(RandomForest model, List<String> featureNames) {
+    // Trees split on the index of a predictor in the schema of the model
+    StructType schema = model.schema();
+    int[] rowIndex = new int[schema.length()];
+    for (int i = 0; i < rowIndex.length; i++) {
+      rowIndex[i] = featureNames.indexOf(schema.fieldName(i));
+      if (rowIndex[i] < 0) {
+        throw new IllegalArgumentException("Predictor " + schema.fieldName(i)
+            + " is not a feature");
+      }
+    }
+
+    RegressionTree[] trees = model.trees();
+    Builder builder = new Builder();
+    int[] roots = new int[trees.length];
+    for (int t = 0; t < trees.length; t++) {
+      roots[t] = builder.add(trees[t].root(), rowIndex);
+    }
+    return new CompiledRandomForest(roots, Arrays.copyOf(builder.feature, builder.size),
+        Arrays.copyOf(builder.value, builder.size),
+        Arrays.copyOf(builder.children, 2 * builder.size), featureNames);
+  }
+
+  /**
+   * Predicts the output for one row of features.
+   *
+   * @param row The features, in the order the model was compiled with
+   * @return The mean output of the trees
+   */
+  public double predict(double[] row) {
+    if (row.length < featureCount) {
+      throw new IllegalArgumentException("Expected " + featureCount + " features, got "
+          + row.length);
+    }
+    double sum = 0;
+    for (int root : roots) {
+      int node = root;
+      int f;
+      while ((f = feature[node]) != LEAF) {
+        boolean split = f >= 0 ? row[f] <= value[node] : (int) row[~f] == (int) value[node];
+        node = children[2 * node + (split ? 0 : 1)];
+      }
+      sum += value[node];
+    }
+    return sum / roots.length;
+  }
+
+  /**
+   * Predicts the output of a single tree for one row of features.
+   *
+   * @param tree The index of the tree, in the order of the trees of the model
+   * @param row  The features, in the order the model was compiled with
+   * @return The output of the tree
+   */
+  public double predictTree(int tree, double[] row) {
+    if (row.length < featureCount) {
+      throw new IllegalArgumentException("Expected " + featureCount + " features, got "
+          + row.length);
+    }
+    int node = roots[tree];
+    int f;
+    while ((f = feature[node]) != LEAF) {
+      boolean split = f >= 0 ? row[f] <= value[node] : (int) row[~f] == (int) value[node];
+      node = children[2 * node + (split ? 0 : 1)];
+    }
+    return value[node];
+  }
+
+  /**
+   * Draws the output of one randomly chosen tree for one row of features. The outputs of the
+   * trees spread around the mean as far as the forest is unsure about the row, so repeated draws
+   * give durations that vary like the data the trees were trained on, at the cost of a single
+   * tree per draw.
+   *
+   * @param row    The features, in the order the model was compiled with
+   * @param random The random generator that chooses the tree
+   * @return The output of the chosen tree
+   */
+  public double sample(double[] row, RandomGenerator random) {
+    return predictTree(random.nextInt(roots.length), row);
+  }
+
+  /**
+   * Gets a forest of the first trees of this forest, in the order of the trees of the model,
+   * like {@link RandomForest#trim(int)}. The nodes are shared with this forest.
+   *
+   * @param trees The number of trees to keep
+   * @return The forest of the first trees, or this forest if it has no more trees
+   * @throws IllegalArgumentException if the number of trees is not positive
+   */
+  public CompiledRandomForest trim(int trees) {
+    if (trees <= 0) {
+      throw new IllegalArgumentException("A forest needs at least one tree");
+    }
+    if (trees >= roots.length) {
+      return this;
+    }
+    return new CompiledRandomForest(Arrays.copyOf(roots, trees), feature, value, children,
+        featureNames);
+  }
+
+  /**
+   * Writes the compiled model to a binary file. The file is written next to the path and moved
+   * over it, so a reader never sees half a model.
+   *
+   * @param path The path of the file
+   * @throws IOException If the file could not be written
+   */
+  public void write(Path path) throws IOException {
+    int nodes = feature.length;
+    List<byte[]> names = new ArrayList<>();
+    int nameBytes = 0;
+    for (String name : featureNames) {
+      byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+      names.add(bytes);
+      nameBytes += Integer.BYTES + bytes.length;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + nameBytes
+        + roots.length * Integer.BYTES + nodes * (3 * Integer.BYTES + Double.BYTES));
+    buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(featureCount).putInt(roots.length)
+        .putInt(nodes);
+    for (byte[] name : names) {
+      buffer.putInt(name.length).put(name);
+    }
+    buffer.asIntBuffer().put(roots).put(feature).put(children);
+    buffer.position(buffer.position() + (roots.length + 3 * nodes) * Integer.BYTES);
+    buffer.asDoubleBuffer().put(value);
+    buffer.rewind();
+
+    Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Reads a compiled model from a binary file written by {@link #write(Path)}.
+   * The file is memory mapped and the arrays are copied out of it in bulk.
+   *
+   * @param path         The path of the file
+   * @param featureNames The name of each feature of the rows the model will predict, in order
+   * @return The compiled model
+   * @throws IOException              If the file could not be read
+   * @throws IllegalArgumentException If the file is not a model file of this version, is cut
+   *                                  off, or was compiled for other features
+   */
+  public static CompiledRandomForest read(Path path, List<String> featureNames)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_BYTES) {
+        throw new IllegalArgumentException("Not a model file: " + path);
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      if (buffer.getInt() != MAGIC) {
+        throw new IllegalArgumentException("Not a model file: " + path);
+      }
+      int version = buffer.getInt();
+      if (version != FORMAT_VERSION) {
+        throw new IllegalArgumentException("Model file " + path + " has format version "
+            + version + ", expected " + FORMAT_VERSION);
+      }
+      int featureCount = buffer.getInt();
+      int trees = buffer.getInt();
+      int nodes = buffer.getInt();
+      if (featureCount < 0 || trees <= 0 || nodes <= 0) {
+        throw new IllegalArgumentException("Model file " + path + " is damaged");
+      }
+      List<String> names = new ArrayList<>();
+      for (int i = 0; i < featureCount; i++) {
+        int length = buffer.remaining() >= Integer.BYTES ? buffer.getInt() : -1;
+        if (length < 0 || length > buffer.remaining()) {
+          throw new IllegalArgumentException("Model file " + path + " is damaged");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        names.add(new String(bytes, StandardCharsets.UTF_8));
+      }
+      if (!names.equals(featureNames)) {
+        throw new IllegalArgumentException("Model file " + path + " was compiled for features "
+            + names + ", expected " + featureNames);
+      }
+      if (buffer.remaining() != (long) trees * Integer.BYTES
+          + (long) nodes * (3 * Integer.BYTES + Double.BYTES)) {
+        throw new IllegalArgumentException("Model file " + path + " is damaged");
+      }
+      int[] roots = new int[trees];
+      int[] feature = new int[nodes];
+      int[] children = new int[2 * nodes];
+      double[] value = new double[nodes];
+      buffer.asIntBuffer().get(roots).get(feature).get(children);
+      buffer.position(buffer.position() + (trees + 3 * nodes) * Integer.BYTES);
+      buffer.asDoubleBuffer().get(value);
+      return new CompiledRandomForest(roots, feature, value, children, names);
+    }
+  }
+
+  public List<String> getFeatureNames() {
+    return featureNames;
+  }
+
+  public int getTreeCount() {
+    return roots.length;
+  }
+
+  public int getNodeCount() {
+    return feature.length;
+  }
+
+  /**
+   * Appends the nodes of trees to growing arrays.
+   * Each tree is laid out level by level, the children of a node are appended when the node
+   * is reached, so deep trees do not overflow the call stack.
+   */
+  private static final class Builder {
+    private final List<Node> nodes = new ArrayList<>();
+    private int[] feature = new int[64];
+    private double[] value = new double[64];
+    private int[] children = new int[128];
+    private int size = 0;
+
+    // Adds a tree and returns the position of its root
+    int add(Node root, int[] rowIndex) {
+      int rootPosition = append(root, rowIndex);
+      for (int position = rootPosition; position < size; position++) {
+        if (nodes.get(position) instanceof InternalNode internal) {
+          // Appending may grow the arrays, so the children are stored afterwards
+          int trueChildPosition = append(internal.trueChild(), rowIndex);
+          int falseChildPosition = append(internal.falseChild(), rowIndex);
+          children[2 * position] = trueChildPosition;
+          children[2 * position + 1] = falseChildPosition;
+        }
+      }
+      return rootPosition;
+    }
+
+    private int append(Node node, int[] rowIndex) {
+      if (size == feature.length) {
+        int capacity = size * 2;
+        feature = Arrays.copyOf(feature, capacity);
+        value = Arrays.copyOf(value, capacity);
+        children = Arrays.copyOf(children, 2 * capacity);
+      }
+      int position = size++;
+      nodes.add(node);
+      switch (node) {
+        case RegressionNode leaf -> {
+          feature[position] = LEAF;
+          value[position] = leaf.output();
+        }
+        case OrdinalNode ordinal -> {
+          feature[position] = rowIndex[ordinal.feature()];
+          value[position] = ordinal.value();
+        }
+        case NominalNode nominal -> {
+          feature[position] = ~rowIndex[nominal.feature()];
+          value[position] = nominal.value();
+        }
+        default -> throw new IllegalArgumentException("Can not compile a "
+            + node.getClass().getSimpleName());
+      }
+      return position;
+    }
+  }
+}
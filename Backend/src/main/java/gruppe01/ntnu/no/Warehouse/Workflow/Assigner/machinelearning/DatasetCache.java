@@ -0,0 +1,258 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import smile.data.DataFrame;
+import smile.data.vector.DoubleVector;
+
+/**
+ * Keeps the numeric CSV data sets the models are trained on as columns of primitive doubles.
+ * A CSV file is parsed once into a binary file in the cache directory, one array per column, and
+ * later reads memory map the binary file instead of parsing the CSV again. The binary file keeps
+ * the size and modification time of the CSV file it was made from, and is made again when the
+ * CSV file changes. Data sets that were read are also kept in memory until their file changes.
+ * <p>
+ * The binary file is a header of the magic number, the version of the format, the number of
+ * rows and columns, and the size and modification time of the CSV file, followed by the name of
+ * each column and then the values of each column, all big-endian.
+ */
+public final class DatasetCache {
+
+  // "WWDS", starts every cached data set
+  private static final int MAGIC = 0x57574453;
+
+  // Version of the file format, files of another version are made again
+  private static final int FORMAT_VERSION = 1;
+
+  private static final Path CACHE_DIRECTORY = Path.of("dataset_cache");
+
+  // Data sets that were read, by the path of their cached file
+  private static final Map<Path, Dataset> datasets = new ConcurrentHashMap<>();
+
+  private DatasetCache() {
+  }
+
+  /**
+   * A data set with named columns of doubles. The arrays are shared and must not be changed.
+   *
+   * @param names          The name of each column
+   * @param columns        The values of each column
+   * @param sourceSize     The size of the CSV file the data set was read from
+   * @param sourceModified The modification time in milliseconds of the CSV file
+   */
+  public record Dataset(String[] names, double[][] columns, long sourceSize,
+                        long sourceModified) {
+
+    /**
+     * Gets the values of a column.
+     *
+     * @param name The name of the column
+     * @return The values of the column
+     * @throws IllegalArgumentException if there is no column with the name
+     */
+    public double[] column(String name) {
+      for (int i = 0; i < names.length; i++) {
+        if (names[i].equals(name)) {
+          return columns[i];
+        }
+      }
+      throw new IllegalArgumentException("Column '" + name + "' not found in data set. "
+          + "Detected columns: " + Arrays.toString(names));
+    }
+
+    public int rowCount() {
+      return columns.length == 0 ? 0 : columns[0].length;
+    }
+
+    /**
+     * Creates a DataFrame with all columns of the data set.
+     *
+     * @return The DataFrame
+     */
+    public DataFrame toDataFrame() {
+      DoubleVector[] vectors = new DoubleVector[names.length];
+      for (int i = 0; i < names.length; i++) {
+        vectors[i] = DoubleVector.of(names[i], columns[i]);
+      }
+      return DataFrame.of(vectors);
+    }
+  }
+
+  /**
+   * Gets a data set from a CSV file with a header and only numeric values.
+   *
+   * @param csvPath The path of the CSV file
+   * @return The data set
+   * @throws IOException If the CSV file could not be read
+   */
+  public static Dataset load(Path csvPath) throws IOException {
+    return load(csvPath, CACHE_DIRECTORY);
+  }
+
+  /**
+   * Gets a data set from a CSV file with a header and only numeric values, cached in the given
+   * directory.
+   *
+   * @param csvPath        The path of the CSV file
+   * @param cacheDirectory The directory of the cached files
+   * @return The data set
+   * @throws IOException If the CSV file could not be read
+   */
+  public static Dataset load(Path csvPath, Path cacheDirectory) throws IOException {
+    Path source = csvPath.toAbsolutePath().normalize();
+    long size = Files.size(source);
+    long modified = Files.getLastModifiedTime(source).toMillis();
+    Path cachePath = getCachePath(source, cacheDirectory).toAbsolutePath();
+    Dataset dataset = datasets.get(cachePath);
+    if (dataset != null && dataset.sourceSize() == size && dataset.sourceModified() == modified) {
+      return dataset;
+    }
+    dataset = read(cachePath, size, modified);
+    if (dataset == null) {
+      dataset = parseCsv(source, size, modified);
+      try {
+        write(dataset, cachePath);
+      } catch (IOException e) {
+        System.err.println("Error caching data set " + source + ": " + e.getMessage());
+      }
+    }
+    datasets.put(cachePath, dataset);
+    return dataset;
+  }
+
+  /**
+   * Gets the path of the binary file a CSV file is cached in.
+   *
+   * @param csvPath        The path of the CSV file
+   * @param cacheDirectory The directory of the cached files
+   * @return The path of the binary file
+   */
+  public static Path getCachePath(Path csvPath, Path cacheDirectory) {
+    Path absolute = csvPath.toAbsolutePath().normalize();
+    // The hash keeps files with the same name in different directories apart
+    return cacheDirectory.resolve(absolute.getFileName() + "."
+        + Integer.toHexString(absolute.toString().hashCode()) + ".col");
+  }
+
+  // Parses each value straight into a growing array of its column
+  private static Dataset parseCsv(Path csvPath, long size, long modified) throws IOException {
+    try (FileReader reader = new FileReader(csvPath.toFile());
+         CSVParser parser = new CSVParser(reader, CSVFormat.DEFAULT.withFirstRecordAsHeader())) {
+      String[] names = parser.getHeaderNames().toArray(new String[0]);
+      if (names.length == 0) {
+        throw new IOException("No header in " + csvPath);
+      }
+      double[][] columns = new double[names.length][1024];
+      int rows = 0;
+      for (CSVRecord record : parser) {
+        if (record.size() != names.length) {
+          throw new IOException("Line " + parser.getCurrentLineNumber() + " of " + csvPath
+              + " has " + record.size() + " values, expected " + names.length);
+        }
+        if (rows == columns[0].length) {
+          for (int i = 0; i < names.length; i++) {
+            columns[i] = Arrays.copyOf(columns[i], 2 * rows);
+          }
+        }
+        for (int i = 0; i < names.length; i++) {
+          columns[i][rows] = Double.parseDouble(record.get(i));
+        }
+        rows++;
+      }
+      for (int i = 0; i < names.length; i++) {
+        columns[i] = Arrays.copyOf(columns[i], rows);
+      }
+      return new Dataset(names, columns, size, modified);
+    } catch (NumberFormatException e) {
+      throw new IOException("Not a numeric data set: " + csvPath, e);
+    }
+  }
+
+  private static void write(Dataset dataset, Path cachePath) throws IOException {
+    List<byte[]> names = new ArrayList<>();
+    int nameBytes = 0;
+    for (String name : dataset.names()) {
+      byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+      names.add(bytes);
+      nameBytes += Integer.BYTES + bytes.length;
+    }
+    int rows = dataset.rowCount();
+    ByteBuffer buffer = ByteBuffer.allocate(4 * Integer.BYTES + 2 * Long.BYTES + nameBytes
+        + dataset.names().length * rows * Double.BYTES);
+    buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(rows).putInt(dataset.names().length)
+        .putLong(dataset.sourceSize()).putLong(dataset.sourceModified());
+    for (byte[] name : names) {
+      buffer.putInt(name.length).put(name);
+    }
+    for (double[] column : dataset.columns()) {
+      buffer.asDoubleBuffer().put(column);
+      buffer.position(buffer.position() + rows * Double.BYTES);
+    }
+    buffer.rewind();
+
+    Files.createDirectories(cachePath.getParent());
+    Path tempPath = cachePath.resolveSibling(cachePath.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    Files.move(tempPath, cachePath, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // Returns null if there is no cached file, or it is of another version or another CSV file
+  private static Dataset read(Path cachePath, long size, long modified) {
+    if (!Files.exists(cachePath)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(cachePath, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+        return null;
+      }
+      int rows = buffer.getInt();
+      int columnCount = buffer.getInt();
+      if (buffer.getLong() != size || buffer.getLong() != modified) {
+        return null;
+      }
+      String[] names = new String[columnCount];
+      for (int i = 0; i < columnCount; i++) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        names[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+      if (buffer.remaining() != (long) columnCount * rows * Double.BYTES) {
+        return null;
+      }
+      double[][] columns = new double[columnCount][rows];
+      for (double[] column : columns) {
+        buffer.asDoubleBuffer().get(column);
+        buffer.position(buffer.position() + rows * Double.BYTES);
+      }
+      return new Dataset(names, columns, size, modified);
+    } catch (IOException | RuntimeException e) {
+      System.out.println("Could not read cached data set " + cachePath + ", parsing it again: "
+          + e.getMessage());
+      return null;
+    }
+  }
+}
@@ -11,11 +11,10 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.random.RandomGenerator;
 import java.util.stream.Stream;
 
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
@@ -42,10 +41,20 @@ public class MachineLearningModelPicking {
   @Lazy
   private PickerTaskGenerator pickerTaskGenerator;
 
-  Map<String, DataFrame> dataFrames = new HashMap<>();
-  Map<String, RandomForest> randomForests = new HashMap<>();
+  Map<String, RandomForest> randomForests = new ConcurrentHashMap<>();
   private static final String METRICS_FILE = "model_performance_metrics.csv";
 
+  // The departments that have a picking model
+  public static final List<String> DEPARTMENTS = List.of("DRY", "FREEZE", "FRUIT");
+
+  // The columns the models predict from, in the order of the features of a picker task
+  static final String[] FEATURE_COLUMNS = {"distance_m", "dpack_equivalent_amount",
+      "lines", "weight_g", "volume_ml", "avg_height", "picker"};
+
+  // Compiled models, empty if a model can not be compiled, dropped with their model
+  private static final Map<RandomForest, Optional<CompiledRandomForest>> compiledModels =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
   public MachineLearningModelPicking() {
   }
 
@@ -221,10 +230,10 @@ public class MachineLearningModelPicking {
   }
 
   public void compareModels(String department, List<PickerTask> testData) throws IOException {
-    // Load the models
-    RandomForest model1 = loadModel(department, "pickroute_" + department.toUpperCase() + ".ser");
+    // Both files are read, the cached model of the department would be the same for both
+    RandomForest model1 = readModelFile("pickroute_" + department.toUpperCase() + ".ser");
     RandomForest model2 =
-        loadModel(department, "pickroute_database_" + department.toUpperCase() + ".ser");
+        readModelFile("pickroute_database_" + department.toUpperCase() + ".ser");
 
     if (model1 == null || model2 == null) {
       throw new IllegalStateException("One or both models not found for department: " + department);
@@ -235,16 +244,14 @@ public class MachineLearningModelPicking {
 
     double totalErrorModel2 = 0.0;
 
-    for (PickerTask pickerTask : testData) {
-      double predictedByModel1 =
-          estimateTimeUsingModel(model1, pickerTask, pickerTask.getWorker().getId());
-      double predictedByModel2 =
-          estimateTimeUsingModel(model2, pickerTask, pickerTask.getWorker().getId());
-
-      System.out.println("Model 1 Prediction: " + predictedByModel1);
-      System.out.println("Model 2 Prediction: " + predictedByModel2);
-
-      totalErrorModel2 += Math.abs(predictedByModel1 - predictedByModel2);
+    // Both models estimate all tasks in one batch
+    long[] workerIds = testData.stream().mapToLong(task -> task.getWorker().getId()).toArray();
+    long[] predictedByModel1 =
+        estimateTimesUsingModel(PickingModel.of(model1), testData, workerIds);
+    long[] predictedByModel2 =
+        estimateTimesUsingModel(PickingModel.of(model2), testData, workerIds);
+    for (int i = 0; i < predictedByModel1.length; i++) {
+      totalErrorModel2 += Math.abs(predictedByModel1[i] - predictedByModel2[i]);
     }
 
     System.out.println("Total error model2: " + totalErrorModel2);
@@ -256,6 +263,16 @@ public class MachineLearningModelPicking {
     saveMetrics(department, maeModel2);
   }
 
+  // Reads a model file without the cache of the department, null if it can not be read
+  private static RandomForest readModelFile(String filePath) {
+    try {
+      return ModelLoader.loadModel(filePath);
+    } catch (IOException | ClassNotFoundException e) {
+      System.out.println("Failed to read model file " + filePath + ": " + e.getMessage());
+      return null;
+    }
+  }
+
   private List<Double> getWeights(RandomForest model) {
 
     // Get feature importance (weights)
@@ -273,6 +290,8 @@ public class MachineLearningModelPicking {
 
   /**
    * Parses a CSV file to create a DataFrame, excluding the first header (e.g., an ID column).
+   * The columns come from the {@link DatasetCache}, so the file is only parsed again when it
+   * changes.
    * The CSV file should contain the following columns:
    * distance_m (distance in meters),
    * dpack_equivalent_amount (equivalent amount of packages),
@@ -288,62 +307,12 @@ public class MachineLearningModelPicking {
    * @throws IOException If there is an error reading the CSV file.
    */
   private DataFrame parseCsvToDataFrame(String department, String csvFilePath) {
-    if (dataFrames.containsKey(department)) {
-      return dataFrames.get(department);
-    }
-
-    FileReader reader = null;
-    CSVParser parser = null;
-
     try {
-      reader = new FileReader(csvFilePath);
-      parser = new CSVParser(reader, CSVFormat.DEFAULT.withFirstRecordAsHeader());
-
-      // Get headers from the CSV file (convert to a modifiable list)
-      List<String> headers = new ArrayList<>(parser.getHeaderNames());  // Convert to ArrayList
-      List<List<Double>> columnData = new ArrayList<>();
-
-      // Initialize lists for each column
-      for (String header : headers) {
-        columnData.add(new ArrayList<>());
-      }
-
-      // Parse each record and populate the columns
-      for (CSVRecord record : parser) {
-        for (int i = 0; i < record.size(); i++) {
-          String value = record.get(i);
-          columnData.get(i).add(Double.parseDouble(value));
-        }
-      }
-
-      // Convert lists to arrays and build the DataFrame
-      smile.data.vector.DoubleVector[] vectors = new smile.data.vector.DoubleVector[headers.size()];
-      for (int i = 0; i < headers.size(); i++) {
-        double[] columnArray =
-            columnData.get(i).stream().mapToDouble(Double::doubleValue).toArray();
-        vectors[i] = smile.data.vector.DoubleVector.of(headers.get(i), columnArray);
-      }
-
-      DataFrame dataFrame = DataFrame.of(vectors);
-
-      dataFrames.put(department, dataFrame);
-      return dataFrame;
-
-    } catch (IOException | NumberFormatException e) {
+      return DatasetCache.load(Path.of(csvFilePath)).toDataFrame();
+    } catch (IOException e) {
       System.err.println("Error parsing CSV file: " + e.getMessage());
       e.printStackTrace();
       return null;
-    } finally {
-      try {
-        if (parser != null) {
-          parser.close();
-        }
-        if (reader != null) {
-          reader.close();
-        }
-      } catch (IOException e) {
-        System.err.println("Error closing resources: " + e.getMessage());
-      }
     }
   }
 
@@ -421,6 +390,7 @@ public class MachineLearningModelPicking {
     try {
       RandomForest model = ModelLoader.loadModel(filePath);
       if (model != null) {
+        loadCompiledModel(model, filePath);
         randomForests.put(department.toUpperCase(), model);
       } else {
         copyDefaultModelIfMissing(department.toUpperCase(), filePath);
@@ -433,6 +403,69 @@ public class MachineLearningModelPicking {
   }
 
 
+  /**
+   * Gets the picking model of a department for estimating picker tasks, see
+   * {@link #loadPickingModel(String, String)}. A model that does not exist yet is created.
+   *
+   * @param department The department of the model
+   * @return The picking model, or null if there is no model for the department
+   * @throws IOException If there is an error creating the model
+   */
+  public PickingModel getPickingModel(String department) throws IOException {
+    String filePath = "pickroute_" + department.toUpperCase() + ".ser";
+    PickingModel model = loadPickingModel(department, filePath);
+    if (model != null) {
+      return model;
+    }
+    return PickingModel.of(getModel(department, false));
+  }
+
+  /**
+   * Loads the picking model of a department from the binary file of its compiled forest, when
+   * that file is at least as new as the model file. The Random Forest is only read from the
+   * model file when it is needed, see {@link PickingModel#forest()}. A model that is already
+   * loaded is used as it is.
+   *
+   * @param department The department of the model
+   * @param filePath   The path of the model file
+   * @return The picking model, or null if the model is not loaded and has no usable binary file
+   */
+  public PickingModel loadPickingModel(String department, String filePath) {
+    String key = department.toUpperCase();
+    RandomForest loaded = randomForests.get(key);
+    if (loaded != null) {
+      return PickingModel.of(loaded);
+    }
+    CompiledRandomForest compiled = readCompiledModel(filePath);
+    if (compiled == null) {
+      return null;
+    }
+    return PickingModel.of(compiled, () -> {
+      RandomForest model = randomForests.get(key);
+      if (model == null) {
+        model = ModelLoader.loadModel(filePath);
+        compiledModels.put(model, Optional.of(compiled));
+        randomForests.putIfAbsent(key, model);
+      }
+      return model;
+    });
+  }
+
+  // The compiled model of a model file, null if its binary file is missing, older or unreadable
+  private static CompiledRandomForest readCompiledModel(String filePath) {
+    Path binaryPath = getBinaryPath(filePath);
+    try {
+      if (Files.exists(binaryPath) && Files.exists(Path.of(filePath))
+          && Files.getLastModifiedTime(binaryPath)
+          .compareTo(Files.getLastModifiedTime(Path.of(filePath))) >= 0) {
+        return CompiledRandomForest.read(binaryPath, List.of(FEATURE_COLUMNS));
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      System.out.println("Could not read compiled model " + binaryPath + ": " + e.getMessage());
+    }
+    return null;
+  }
+
   private void copyDefaultModelIfMissing(String department, String filePath) {
     Path modelPath = Path.of(filePath);
     if (!Files.exists(modelPath)) {
@@ -453,13 +486,65 @@ public class MachineLearningModelPicking {
    * @param filePath The path to save the model file.
    */
   public void saveModel(RandomForest model, String filePath) {
-    try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filePath))) {
+    // Written next to the file and moved over it, so the file is never read half written
+    Path tempPath = Path.of(filePath + ".tmp");
+    try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(tempPath.toFile()))) {
       oos.writeObject(model);
+    } catch (IOException e) {
+      System.err.println("Error saving model: " + e.getMessage());
+      e.printStackTrace();
+      return;
+    }
+    try {
+      Files.move(tempPath, Path.of(filePath), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
       System.out.println("Model saved successfully to " + filePath);
     } catch (IOException e) {
       System.err.println("Error saving model: " + e.getMessage());
       e.printStackTrace();
+      return;
     }
+    writeCompiledModel(model, filePath);
+  }
+
+  /**
+   * Gets the path of the binary file of the compiled model that belongs to a model file.
+   *
+   * @param filePath The path of the model file
+   * @return The path of the binary file, the model file with the .rfm extension
+   */
+  public static Path getBinaryPath(String filePath) {
+    String base = filePath.endsWith(".ser") ? filePath.substring(0, filePath.length() - 4)
+        : filePath;
+    return Path.of(base + ".rfm");
+  }
+
+  // Writes the compiled model next to the model file, models that can not be compiled are skipped
+  private static void writeCompiledModel(RandomForest model, String filePath) {
+    CompiledRandomForest compiled = getCompiledModel(model);
+    if (compiled == null) {
+      return;
+    }
+    try {
+      compiled.write(getBinaryPath(filePath));
+    } catch (IOException e) {
+      System.err.println("Error saving compiled model: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Attaches the compiled model of a model that was loaded from a file, reading it from its
+   * binary file when that file is at least as new as the model file, instead of compiling the
+   * model again. The binary file is written when it is missing or older, so files saved before
+   * the binary format existed get one the first time they are loaded.
+   */
+  private static void loadCompiledModel(RandomForest model, String filePath) {
+    CompiledRandomForest compiled = readCompiledModel(filePath);
+    if (compiled != null) {
+      compiledModels.put(model, Optional.of(compiled));
+      return;
+    }
+    writeCompiledModel(model, filePath);
   }
 
   /**
@@ -475,19 +560,40 @@ public class MachineLearningModelPicking {
 
     // Iterate through each column in the DataFrame
     for (String columnName : data.names()) {
-      double[] columnData = data.column(columnName).toDoubleArray();
+      minMaxValues.add(getMinMax(data.column(columnName).toDoubleArray()));
+    }
 
-      // Calculate the minimum and maximum values for the column
-      double min = Arrays.stream(columnData).min().orElse(Double.NaN);
-      double max = Arrays.stream(columnData).max().orElse(Double.NaN);
+    return minMaxValues;
+  }
 
-      // Add the min and max values as a list to the result
-      minMaxValues.add(Arrays.asList(min, max));
+  /**
+   * Returns the lowest and highest value of each column of a cached data set.
+   *
+   * @param dataset The data set
+   * @return A list with the minimum and maximum of each column, in the order of the columns
+   */
+  public List<List<Double>> getMinMaxValues(DatasetCache.Dataset dataset) {
+    List<List<Double>> minMaxValues = new ArrayList<>();
+    for (double[] column : dataset.columns()) {
+      minMaxValues.add(getMinMax(column));
     }
-
     return minMaxValues;
   }
 
+  // Both in one pass over the column, NaN for an empty column
+  private static List<Double> getMinMax(double[] column) {
+    if (column.length == 0) {
+      return Arrays.asList(Double.NaN, Double.NaN);
+    }
+    double min = column[0];
+    double max = column[0];
+    for (double value : column) {
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+    }
+    return Arrays.asList(min, max);
+  }
+
   /**
    * Returns a map of weights and min-max values for the specified department.
    *
@@ -504,11 +610,7 @@ public class MachineLearningModelPicking {
     if (model != null) {
 
       List<Double> weights = getWeights(model);
-      String csvFilePath =
-          "Backend/src/main/java/gruppe01/ntnu/no/Warehouse/Workflow/Assigner/machinelearning/datasets/synthetic_pickroutes_" +
-              department.toUpperCase() + "_time.csv";
-      DataFrame data = parseCsvToDataFrame(department, csvFilePath);
-      List<List<Double>> minMaxValues = getMinMaxValues(data);
+      List<List<Double>> minMaxValues = getMinMaxValues(DatasetCache.load(getDatasetPath(department)));
 
       mcValues.put(weights, minMaxValues);
     } else {
@@ -580,14 +682,172 @@ public class MachineLearningModelPicking {
   }
 
   public long estimateTimeUsingModel(
-      RandomForest model, PickerTask pickerTask, long workerId
+      PickingModel model, PickerTask pickerTask, long workerId
   ) throws IOException {
+    return estimateTimeUsingFeatures(model, getFeatures(pickerTask, workerId));
+  }
+
+  /**
+   * Estimates the time of a picker task from its features.
+   * The features are distance, pack amount, lines, weight, volume, average height and worker ID,
+   * in the same order as the columns the models are trained on.
+   *
+   * @param model    The model to use
+   * @param features The features of the picker task
+   * @return The estimated time in seconds
+   */
+  public long estimateTimeUsingFeatures(PickingModel model, double[] features) {
+    CompiledRandomForest compiled = model != null ? model.compiled() : null;
+    if (compiled != null && features.length == FEATURE_COLUMNS.length) {
+      return (long) compiled.predict(features);
+    }
+    return estimateTimesUsingFeatures(model, new double[][] {features})[0];
+  }
+
+  /**
+   * Draws the time of a picker task done by a worker from the output of a random tree of the
+   * model, see {@link CompiledRandomForest#sample(double[], RandomGenerator)}.
+   *
+   * @param model      The model to use
+   * @param pickerTask The picker task
+   * @param workerId   The ID of the worker doing the task
+   * @param random     The random generator that chooses the tree
+   * @return The drawn time in seconds
+   */
+  public long sampleTimeUsingModel(PickingModel model, PickerTask pickerTask, long workerId,
+                                   RandomGenerator random) {
+    return sampleTimeUsingFeatures(model, getFeatures(pickerTask, workerId), random);
+  }
+
+  /**
+   * Draws the time of a picker task from the output of a random tree of the model.
+   * A model that can not be compiled gives its mean estimate instead.
+   *
+   * @param model    The model to use
+   * @param features The features of the picker task, in the order of
+   *                 {@link #estimateTimeUsingFeatures(PickingModel, double[])}
+   * @param random   The random generator that chooses the tree
+   * @return The drawn time in seconds
+   */
+  public long sampleTimeUsingFeatures(PickingModel model, double[] features,
+                                      RandomGenerator random) {
+    CompiledRandomForest compiled = model != null ? model.compiled() : null;
+    if (compiled != null) {
+      checkFeatureCount(features);
+      return (long) compiled.sample(features, random);
+    }
+    return estimateTimeUsingFeatures(model, features);
+  }
+
+  /**
+   * Estimates the times of many picker tasks, each done by a given worker, in one prediction.
+   *
+   * @param model       The model to use
+   * @param pickerTasks The picker tasks
+   * @param workerIds   The ID of the worker doing each picker task
+   * @return The estimated time in seconds of each picker task, in the same order
+   */
+  public long[] estimateTimesUsingModel(PickingModel model, List<PickerTask> pickerTasks,
+                                        long[] workerIds) {
+    if (pickerTasks.size() != workerIds.length) {
+      throw new IllegalArgumentException("Every picker task needs a worker ID");
+    }
+    double[][] features = new double[pickerTasks.size()][];
+    for (int i = 0; i < features.length; i++) {
+      features[i] = getFeatures(pickerTasks.get(i), workerIds[i]);
+    }
+    return estimateTimesUsingFeatures(model, features);
+  }
+
+  /**
+   * Estimates the times of many picker tasks from their features in one prediction.
+   * The compiled model is used when the model can be compiled, otherwise the features of all
+   * tasks are put in the columns of a single DataFrame, so the model is called once instead of
+   * once per task.
+   *
+   * @param model    The model to use
+   * @param features The features of each picker task, one row per task in the order of
+   *                 {@link #estimateTimeUsingFeatures(PickingModel, double[])}
+   * @return The estimated time in seconds of each picker task, in the order of the rows
+   */
+  public long[] estimateTimesUsingFeatures(PickingModel model, double[][] features) {
     if (model == null) {
       throw new IllegalStateException("Model not provided for department");
     }
+    if (features.length == 0) {
+      return new long[0];
+    }
+    CompiledRandomForest compiled = model.compiled();
+    if (compiled != null) {
+      long[] times = new long[features.length];
+      for (int row = 0; row < features.length; row++) {
+        checkFeatureCount(features[row]);
+        times[row] = (long) compiled.predict(features[row]);
+      }
+      return times;
+    }
+
+    // One column per feature, the time_s column is not used by the model and is left at zero
+    double[][] columns = new double[FEATURE_COLUMNS.length][features.length];
+    for (int row = 0; row < features.length; row++) {
+      checkFeatureCount(features[row]);
+      for (int column = 0; column < FEATURE_COLUMNS.length; column++) {
+        columns[column][row] = features[row][column];
+      }
+    }
+    DoubleVector[] vectors = new DoubleVector[FEATURE_COLUMNS.length + 1];
+    for (int column = 0; column < FEATURE_COLUMNS.length; column++) {
+      vectors[column] = DoubleVector.of(FEATURE_COLUMNS[column], columns[column]);
+    }
+    vectors[FEATURE_COLUMNS.length] = DoubleVector.of("time_s", new double[features.length]);
+    // Predict the time of every task using the model
+    double[] predictions = model.forest().predict(DataFrame.of(vectors));
+
+    // Convert to long and return the predicted times
+    long[] times = new long[predictions.length];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = (long) predictions[i];
+    }
+    return times;
+  }
+
+  private static void checkFeatureCount(double[] features) {
+    if (features.length != FEATURE_COLUMNS.length) {
+      throw new IllegalArgumentException("A picker task has " + FEATURE_COLUMNS.length
+          + " features, got " + features.length);
+    }
+  }
+
+  /**
+   * Gets the model compiled into flat arrays, compiling it the first time.
+   * The compiled model gives the same predictions without a DataFrame per call.
+   *
+   * @param model The model to compile
+   * @return The compiled model, or null if the model can not be compiled
+   */
+  public static CompiledRandomForest getCompiledModel(RandomForest model) {
+    if (model == null) {
+      return null;
+    }
+    return compiledModels.computeIfAbsent(model, m -> {
+      try {
+        return Optional.of(CompiledRandomForest.compile(m, List.of(FEATURE_COLUMNS)));
+      } catch (RuntimeException e) {
+        System.out.println("Could not compile the model, using it as it is: " + e.getMessage());
+        return Optional.empty();
+      }
+    }).orElse(null);
+  }
 
-    // Extract features from the PickerTask object
-    double[] features = new double[] {
+  /**
+   * Gets the features of a picker task done by a worker, in the order the models use.
+   *
+   * @param pickerTask The picker task
+   * @param workerId   The ID of the worker doing the task
+   * @return The features of the task
+   */
+  public static double[] getFeatures(PickerTask pickerTask, long workerId) {
+    return new double[] {
         pickerTask.getDistance(),
         pickerTask.getPackAmount(),
         pickerTask.getLinesAmount(),
@@ -596,23 +856,6 @@ public class MachineLearningModelPicking {
         pickerTask.getAvgHeight(),
         workerId
     };
-
-    // Create a DataFrame with only the feature columns (exclude time_s)
-    DataFrame featureDataFrame = DataFrame.of(
-        DoubleVector.of("distance_m", new double[] {features[0]}),
-        DoubleVector.of("dpack_equivalent_amount", new double[] {features[1]}),
-        DoubleVector.of("lines", new double[] {features[2]}),
-        DoubleVector.of("weight_g", new double[] {features[3]}),
-        DoubleVector.of("volume_ml", new double[] {features[4]}),
-        DoubleVector.of("avg_height", new double[] {features[5]}),
-        DoubleVector.of("picker", new double[] {features[6]}),
-        DoubleVector.of("time_s", new double[] {0.0})
-    );
-    // Predict the time using the model
-    double[] predictions = model.predict(featureDataFrame);
-
-    // Convert to long and return the predicted time
-    return (long) predictions[0];
   }
 
 
@@ -646,8 +889,7 @@ public class MachineLearningModelPicking {
 
   public Map<String, RandomForest> getAllModels() throws IOException {
     Map<String, RandomForest> models = new HashMap<>();
-    String[] departments = {"DRY", "FREEZE", "FRUIT"};
-    for (String department : departments) {
+    for (String department : DEPARTMENTS) {
       RandomForest model = getModel(department, false);
       models.put(department, model);
     }
@@ -663,59 +905,123 @@ public class MachineLearningModelPicking {
    */
   public void updateMachineLearningModel(List<PickerTask> pickerTasks, String department)
       throws IOException {
-    List<double[]> rows = new ArrayList<>();
+    RandomForest model = trainModel(department, toTrainingRows(pickerTasks));
+    if (model != null) {
+      saveModel(model, "pickroute_" + department.toUpperCase() + ".ser");
+    }
+  }
 
-    if (!pickerTasks.isEmpty()) {
-      for (PickerTask pickerTask : pickerTasks) {
-        rows.add(new double[] {
-            pickerTask.getDistance(),
-            pickerTask.getPackAmount(),
-            pickerTask.getLinesAmount(),
-            pickerTask.getWeight(),
-            pickerTask.getVolume(),
-            pickerTask.getAvgHeight(),
-            (double) pickerTask.getWorker().getId(),
-            pickerTask.getTime()
-        });
-      }
+  /**
+   * Turns finished picker tasks into rows of training data, in the order of the columns of the
+   * data set with the time last. Must be called while the workers of the tasks can be loaded.
+   *
+   * @param pickerTasks The finished picker tasks
+   * @return The rows of training data
+   */
+  public static List<double[]> toTrainingRows(List<PickerTask> pickerTasks) {
+    List<double[]> rows = new ArrayList<>();
+    for (PickerTask pickerTask : pickerTasks) {
+      rows.add(new double[] {
+          pickerTask.getDistance(),
+          pickerTask.getPackAmount(),
+          pickerTask.getLinesAmount(),
+          pickerTask.getWeight(),
+          pickerTask.getVolume(),
+          pickerTask.getAvgHeight(),
+          (double) pickerTask.getWorker().getId(),
+          pickerTask.getTime()
+      });
+    }
+    return rows;
+  }
 
-      try (FileReader reader = new FileReader(
-          "Backend/src/main/java/gruppe01/ntnu/no/Warehouse/Workflow/Assigner/machinelearning/datasets/synthetic_pickroutes_" +
-              department.toUpperCase() + "_time.csv");
-           CSVParser parser = new CSVParser(reader, CSVFormat.DEFAULT.withFirstRecordAsHeader())) {
-        for (CSVRecord record : parser) {
-          rows.add(new double[] {
-              Double.parseDouble(record.get("distance_m")),
-              Double.parseDouble(record.get("dpack_equivalent_amount")),
-              Double.parseDouble(record.get("lines")),
-              Double.parseDouble(record.get("weight_g")),
-              Double.parseDouble(record.get("volume_ml")),
-              Double.parseDouble(record.get("avg_height")),
-              Double.parseDouble(record.get("picker")),
-              Double.parseDouble(record.get("time_s"))
-          });
-        }
-      }
+  /**
+   * Trains a new model for a department on new rows together with the data set of the
+   * department. Nothing is trained when there are no new rows.
+   *
+   * @param department The department for which the model is trained.
+   * @param newRows    The new rows, in the order of {@link #toTrainingRows(List)}
+   * @return The trained model, or null if there were no new rows
+   * @throws IOException If the data set could not be read
+   */
+  public RandomForest trainModel(String department, List<double[]> newRows) throws IOException {
+    if (newRows.isEmpty()) {
+      return null;
     }
+    DatasetCache.Dataset dataset = DatasetCache.load(getDatasetPath(department));
+    return RandomForest.fit(Formula.of("time_s", FEATURE_COLUMNS),
+        toDataFrame(dataset, newRows));
+  }
 
-    if (!rows.isEmpty()) {
-      double[][] data = rows.toArray(new double[0][]);
+  /**
+   * Updates a model with new rows without training it again on all data. A small forest is
+   * trained on the new rows only, its trees are put in front of the trees of the model and the
+   * oldest trees are retired, so the model keeps its size and the cost depends only on the
+   * number of new rows.
+   *
+   * @param model    The current model
+   * @param newRows  The new rows, in the order of {@link #toTrainingRows(List)}
+   * @param newTrees The number of trees to train on the new rows
+   * @return The updated model, or null if there were no new rows
+   */
+  public RandomForest updateModel(RandomForest model, List<double[]> newRows, int newTrees) {
+    if (newTrees <= 0 || newTrees > model.size()) {
+      throw new IllegalArgumentException(
+          "The number of new trees must be between 1 and " + model.size() + ", got " + newTrees);
+    }
+    if (newRows.isEmpty()) {
+      return null;
+    }
+    Properties params = new Properties();
+    params.setProperty("smile.random_forest.trees", String.valueOf(newTrees));
+    RandomForest recent =
+        RandomForest.fit(Formula.of("time_s", FEATURE_COLUMNS), toDataFrame(newRows), params);
+    // The trees of the model are kept newest first, so trimming drops the oldest
+    return recent.merge(model).trim(model.size());
+  }
 
-      String[] columnNames = {
-          "distance_m", "dpack_equivalent_amount", "lines",
-          "weight_g", "volume_ml", "avg_height", "picker", "time_s"
-      };
+  private static DataFrame toDataFrame(List<double[]> rows) {
+    String[] columnNames = Arrays.copyOf(FEATURE_COLUMNS, FEATURE_COLUMNS.length + 1);
+    columnNames[FEATURE_COLUMNS.length] = "time_s";
+    return DataFrame.of(rows.toArray(new double[0][]), columnNames);
+  }
 
-      DataFrame dataFrame = DataFrame.of(data, columnNames);
+  // The columns of the model from the data set, followed by the new rows
+  private static DataFrame toDataFrame(DatasetCache.Dataset dataset, List<double[]> newRows) {
+    DoubleVector[] vectors = new DoubleVector[FEATURE_COLUMNS.length + 1];
+    for (int column = 0; column < vectors.length; column++) {
+      String name = column < FEATURE_COLUMNS.length ? FEATURE_COLUMNS[column] : "time_s";
+      double[] values = dataset.column(name);
+      double[] joined = Arrays.copyOf(values, values.length + newRows.size());
+      for (int row = 0; row < newRows.size(); row++) {
+        joined[values.length + row] = newRows.get(row)[column];
+      }
+      vectors[column] = DoubleVector.of(name, joined);
+    }
+    return DataFrame.of(vectors);
+  }
 
-      Formula formula = Formula.of("time_s", new String[] {
-          "distance_m", "dpack_equivalent_amount", "lines", "weight_g",
-          "volume_ml", "avg_height", "picker"
-      });
-      RandomForest model = RandomForest.fit(formula, dataFrame);
+  /**
+   * Gets the path of the data set the model of a department is trained on.
+   *
+   * @param department The department
+   * @return The path of the CSV file of the data set
+   */
+  public static Path getDatasetPath(String department) {
+    return Path.of(
+        "Backend/src/main/java/gruppe01/ntnu/no/Warehouse/Workflow/Assigner/machinelearning/datasets/synthetic_pickroutes_" +
+            department.toUpperCase() + "_time.csv");
+  }
 
-      saveModel(model, "pickroute_" + department.toUpperCase() + ".ser");
-    }
+  /**
+   * Replaces the cached model of a department, so the next call to getModel returns it
+   * without reading the file again.
+   *
+   * @param department The department of the model
+   * @param model      The new model
+   */
+  public void replaceModel(String department, RandomForest model) {
+    randomForests.put(department.toUpperCase(), model);
   }
 
   public void saveMetrics(String department, double mae) throws IOException {
@@ -0,0 +1,463 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import smile.data.DataFrame;
+import smile.data.formula.Formula;
+import smile.data.vector.DoubleVector;
+import smile.regression.RandomForest;
+
+/**
+ * Evaluates the ways a picking model can be used with k-fold cross-validation on the data set of
+ * a department. For every fold a forest is trained on the other folds, and every candidate
+ * predicts the rows of the fold one at a time, as the simulations do, so both the error and the
+ * time of a single prediction are measured. The candidates are the full forest, the forest
+ * pruned to fewer trees, and both compiled into flat arrays.
+ * The forests of the folds are trained in parallel on a bounded pool. The candidates are timed
+ * after all training is done, one at a time on the calling thread, so no training competes with
+ * the timing. Every candidate predicts the rows of a fold once before it is timed, and the order
+ * of the candidates is reversed every other fold, so no candidate is always timed first on a cold
+ * JIT. The chosen candidate is the most accurate one whose 99th percentile latency is within the
+ * latency budget, or the fastest one if none is.
+ * The evaluation only reports, it changes nothing: the simulations always predict with the
+ * compiled model when there is one, and how far a zone is pruned is set in the
+ * {@link ModelPruner}.
+ * An evaluation trains a forest for every fold, so the API submits it to run in the background
+ * and polls it by its ID.
+ */
+@Component
+public class ModelEvaluator {
+
+  private static final String CSV_HEADER = "department,evaluated_at,folds,rows,candidate,trees,"
+      + "mae,rmse,p50_ns,p90_ns,p99_ns,chosen";
+
+  private final int folds;
+
+  private final int prunedTrees;
+
+  private final long latencyBudgetNanos;
+
+  private final Path metricsFile;
+
+  private final ForkJoinPool pool;
+
+  // The evaluations submitted in the background, by ID, in the order they were submitted
+  private final Map<String, Evaluation> evaluations = new LinkedHashMap<>();
+
+  // The number of finished evaluations kept for polling
+  private static final int FINISHED_EVALUATIONS_KEPT = 20;
+
+  /**
+   * The error and prediction time of one way of using the model.
+   *
+   * @param name      The name of the candidate
+   * @param trees     The number of trees the candidate predicts with
+   * @param mae       The mean absolute error in seconds
+   * @param rmse      The root mean squared error in seconds
+   * @param p50Nanos  The median time of one prediction in nanoseconds
+   * @param p90Nanos  The 90th percentile time of one prediction in nanoseconds
+   * @param p99Nanos  The 99th percentile time of one prediction in nanoseconds
+   */
+  public record CandidateMetrics(String name, int trees, double mae, double rmse,
+                                 long p50Nanos, long p90Nanos, long p99Nanos) {
+  }
+
+  /**
+   * The result of evaluating the candidates of a department.
+   *
+   * @param department  The department
+   * @param evaluatedAt When the evaluation finished
+   * @param folds       The number of folds
+   * @param rows        The number of rows of the data set
+   * @param candidates  The metrics of every candidate
+   * @param chosen      The name of the chosen candidate, a recommendation that is not applied
+   */
+  public record EvaluationReport(String department, LocalDateTime evaluatedAt, int folds,
+                                 int rows, List<CandidateMetrics> candidates, String chosen) {
+  }
+
+  /**
+   * An evaluation submitted in the background.
+   *
+   * @param id           The ID to poll the evaluation by
+   * @param department   The department
+   * @param state        The state of the evaluation
+   * @param report       The report once the evaluation is done, otherwise null
+   * @param errorMessage Why the evaluation failed, otherwise null
+   */
+  public record Evaluation(String id, String department, State state, EvaluationReport report,
+                           String errorMessage) {
+
+    /**
+     * The states of an evaluation.
+     */
+    public enum State { RUNNING, DONE, FAILED }
+
+    /**
+     * Whether the evaluation has ended.
+     *
+     * @return True if the evaluation is done or failed
+     */
+    public boolean isFinished() {
+      return state != State.RUNNING;
+    }
+  }
+
+  // Predicts the time of a row of the fold, given by its index and its features
+  private interface Predictor {
+    double predict(int row, double[] features);
+  }
+
+  // The candidates of one fold, the features of its rows and their real times
+  private record Fold(List<String> names, List<Integer> trees, List<Predictor> predictors,
+                      double[][] rows, double[] times) {
+  }
+
+  // The errors and prediction times of the candidates on the rows of one fold
+  private record FoldResult(List<String> names, List<Integer> trees, double[][] errors,
+                            long[][] nanos) {
+  }
+
+  /**
+   * Constructor for ModelEvaluator.
+   *
+   * @param folds              The number of folds of the cross-validation
+   * @param prunedTrees        The number of trees of the pruned candidates
+   * @param latencyBudgetNanos The most time one prediction may take at the 99th percentile
+   * @param parallelism        The number of threads, 0 or less uses the number of processors
+   * @param metricsFile        The file the metrics of every evaluation are appended to
+   */
+  public ModelEvaluator(@Value("${evaluation.folds:5}") int folds,
+                        @Value("${evaluation.pruned-trees:50}") int prunedTrees,
+                        @Value("${evaluation.latency-budget-ns:20000}") long latencyBudgetNanos,
+                        @Value("${training.parallelism:0}") int parallelism,
+                        @Value("${evaluation.metrics-file:model_evaluation_metrics.csv}")
+                        String metricsFile) {
+    if (folds < 2) {
+      throw new IllegalArgumentException("Cross-validation needs at least 2 folds");
+    }
+    if (prunedTrees <= 0) {
+      throw new IllegalArgumentException("The pruned forest needs at least one tree");
+    }
+    this.folds = folds;
+    this.prunedTrees = prunedTrees;
+    this.latencyBudgetNanos = latencyBudgetNanos;
+    this.metricsFile = Path.of(metricsFile);
+    this.pool = new ForkJoinPool(
+        parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Evaluates the candidates on the data set of a department and appends the metrics to the
+   * metrics file.
+   *
+   * @param department The department
+   * @return The report of the evaluation
+   * @throws IOException If the data set could not be read
+   */
+  public EvaluationReport evaluate(String department) throws IOException {
+    EvaluationReport report = evaluate(department.toUpperCase(),
+        DatasetCache.load(MachineLearningModelPicking.getDatasetPath(department)), 42L);
+    writeMetrics(report);
+    return report;
+  }
+
+  /**
+   * Starts evaluating the candidates of a department in the background and returns right away.
+   * The metrics are appended to the metrics file when the evaluation is done. A department is
+   * only evaluated once at a time, so submitting it again while it runs returns the running
+   * evaluation.
+   *
+   * @param department The department
+   * @return The running evaluation, with the ID to poll it by
+   */
+  public Evaluation submit(String department) {
+    String dept = department.toUpperCase();
+    Evaluation evaluation;
+    synchronized (evaluations) {
+      for (Evaluation running : evaluations.values()) {
+        if (!running.isFinished() && running.department().equals(dept)) {
+          return running;
+        }
+      }
+      evaluation = new Evaluation(UUID.randomUUID().toString(), dept, Evaluation.State.RUNNING,
+          null, null);
+      evaluations.put(evaluation.id(), evaluation);
+      // Forget the oldest finished evaluations, running ones are always kept
+      long finished = evaluations.values().stream().filter(Evaluation::isFinished).count();
+      Iterator<Evaluation> iterator = evaluations.values().iterator();
+      while (finished > FINISHED_EVALUATIONS_KEPT && iterator.hasNext()) {
+        if (iterator.next().isFinished()) {
+          iterator.remove();
+          finished--;
+        }
+      }
+    }
+    // The run only waits on the pool, so it gets a virtual thread
+    Thread.ofVirtual().name("model-evaluation").start(() -> {
+      Evaluation result;
+      try {
+        result = new Evaluation(evaluation.id(), dept, Evaluation.State.DONE,
+            evaluate(dept), null);
+      } catch (Exception e) {
+        System.err.println("Error evaluating the model of " + dept + ": " + e.getMessage());
+        result = new Evaluation(evaluation.id(), dept, Evaluation.State.FAILED, null,
+            e.getMessage() != null ? e.getMessage() : e.toString());
+      }
+      synchronized (evaluations) {
+        evaluations.put(evaluation.id(), result);
+      }
+    });
+    return evaluation;
+  }
+
+  /**
+   * Gets an evaluation that was submitted in the background.
+   *
+   * @param id The ID of the evaluation
+   * @return The evaluation, or null if there is no evaluation with the ID
+   */
+  public Evaluation getEvaluation(String id) {
+    synchronized (evaluations) {
+      return evaluations.get(id);
+    }
+  }
+
+  /**
+   * Evaluates the candidates on a data set.
+   *
+   * @param department The department of the data set
+   * @param dataset    The data set, with the feature columns and time_s
+   * @param seed       The seed of the shuffle that splits the rows into folds
+   * @return The report of the evaluation
+   * @throws IllegalArgumentException if the data set has fewer rows than folds
+   */
+  public EvaluationReport evaluate(String department, DatasetCache.Dataset dataset, long seed) {
+    String[] names = Arrays.copyOf(MachineLearningModelPicking.FEATURE_COLUMNS,
+        MachineLearningModelPicking.FEATURE_COLUMNS.length + 1);
+    names[names.length - 1] = "time_s";
+    double[][] columns = new double[names.length][];
+    for (int i = 0; i < names.length; i++) {
+      columns[i] = dataset.column(names[i]);
+    }
+    int rows = dataset.rowCount();
+    if (rows < folds) {
+      throw new IllegalArgumentException("The data set of " + department + " has " + rows
+          + " rows, fewer than the " + folds + " folds");
+    }
+
+    // Row i of the shuffle is in fold i % folds
+    int[] order = shuffle(rows, seed);
+    List<Future<Fold>> futures = new ArrayList<>();
+    for (int fold = 0; fold < folds; fold++) {
+      int testFold = fold;
+      futures.add(pool.submit(() -> trainFold(names, columns, order, testFold)));
+    }
+    List<Fold> trained = new ArrayList<>();
+    try {
+      for (Future<Fold> future : futures) {
+        trained.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Evaluation of " + department + " was interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Evaluation of " + department + " failed", e.getCause());
+    }
+    List<FoldResult> results = new ArrayList<>();
+    for (int fold = 0; fold < trained.size(); fold++) {
+      results.add(timeFold(trained.get(fold), fold % 2 == 1));
+    }
+
+    List<CandidateMetrics> candidates = new ArrayList<>();
+    FoldResult first = results.getFirst();
+    for (int c = 0; c < first.names().size(); c++) {
+      int candidate = c;
+      double[] errors = results.stream().flatMapToDouble(r -> Arrays.stream(r.errors()[candidate]))
+          .toArray();
+      long[] nanos = results.stream().flatMapToLong(r -> Arrays.stream(r.nanos()[candidate]))
+          .sorted().toArray();
+      double absolute = 0;
+      double squared = 0;
+      for (double error : errors) {
+        absolute += Math.abs(error);
+        squared += error * error;
+      }
+      candidates.add(new CandidateMetrics(first.names().get(c), first.trees().get(c),
+          absolute / errors.length, Math.sqrt(squared / errors.length),
+          percentile(nanos, 0.50), percentile(nanos, 0.90), percentile(nanos, 0.99)));
+    }
+    return new EvaluationReport(department, LocalDateTime.now(), folds, rows, candidates,
+        choose(candidates).name());
+  }
+
+  /**
+   * Chooses the most accurate candidate within the latency budget, or the fastest candidate if
+   * none is within it.
+   *
+   * @param candidates The metrics of the candidates
+   * @return The chosen candidate
+   */
+  public CandidateMetrics choose(List<CandidateMetrics> candidates) {
+    return candidates.stream()
+        .filter(candidate -> candidate.p99Nanos() <= latencyBudgetNanos)
+        .min(Comparator.comparingDouble(CandidateMetrics::mae))
+        .orElseGet(() -> candidates.stream()
+            .min(Comparator.comparingLong(CandidateMetrics::p99Nanos)).orElseThrow());
+  }
+
+  private Fold trainFold(String[] names, double[][] columns, int[] order, int testFold) {
+    int[] test = selectRows(order, testFold, true);
+    int[] train = selectRows(order, testFold, false);
+    RandomForest model = RandomForest.fit(
+        Formula.of("time_s", MachineLearningModelPicking.FEATURE_COLUMNS),
+        toDataFrame(names, columns, train));
+
+    List<String> candidateNames = new ArrayList<>();
+    List<Integer> trees = new ArrayList<>();
+    List<Predictor> predictors = new ArrayList<>();
+    DataFrame testFrame = toDataFrame(names, columns, test);
+    // The forests predict the rows of the test frame, the compiled models the features
+    candidateNames.add("full");
+    trees.add(model.size());
+    predictors.add((row, _) -> model.predict(testFrame.get(row)));
+    RandomForest pruned = prunedTrees < model.size() ? model.trim(prunedTrees) : null;
+    if (pruned != null) {
+      candidateNames.add("pruned");
+      trees.add(pruned.size());
+      predictors.add((row, _) -> pruned.predict(testFrame.get(row)));
+    }
+    CompiledRandomForest compiled = MachineLearningModelPicking.getCompiledModel(model);
+    if (compiled != null) {
+      candidateNames.add("compiled");
+      trees.add(compiled.getTreeCount());
+      predictors.add((_, features) -> compiled.predict(features));
+    }
+    CompiledRandomForest compiledPruned = MachineLearningModelPicking.getCompiledModel(pruned);
+    if (compiledPruned != null) {
+      candidateNames.add("compiled-pruned");
+      trees.add(compiledPruned.getTreeCount());
+      predictors.add((_, features) -> compiledPruned.predict(features));
+    }
+
+    // The features of each row, copied before the clock starts
+    int featureCount = MachineLearningModelPicking.FEATURE_COLUMNS.length;
+    double[][] rows = new double[test.length][featureCount];
+    double[] times = new double[test.length];
+    for (int i = 0; i < test.length; i++) {
+      for (int f = 0; f < featureCount; f++) {
+        rows[i][f] = columns[f][test[i]];
+      }
+      times[i] = columns[featureCount][test[i]];
+    }
+    return new Fold(candidateNames, trees, predictors, rows, times);
+  }
+
+  // Times the candidates of a fold one after another, each after a warm-up pass over the rows
+  private static FoldResult timeFold(Fold fold, boolean reversed) {
+    int candidates = fold.predictors().size();
+    double[][] errors = new double[candidates][fold.rows().length];
+    long[][] nanos = new long[candidates][fold.rows().length];
+    for (int k = 0; k < candidates; k++) {
+      int c = reversed ? candidates - 1 - k : k;
+      Predictor predictor = fold.predictors().get(c);
+      for (int i = 0; i < fold.rows().length; i++) {
+        errors[c][i] = predictor.predict(i, fold.rows()[i]) - fold.times()[i];
+      }
+      for (int i = 0; i < fold.rows().length; i++) {
+        long start = System.nanoTime();
+        double predicted = predictor.predict(i, fold.rows()[i]);
+        nanos[c][i] = System.nanoTime() - start;
+        errors[c][i] = predicted - fold.times()[i];
+      }
+    }
+    return new FoldResult(fold.names(), fold.trees(), errors, nanos);
+  }
+
+  private int[] selectRows(int[] order, int testFold, boolean inFold) {
+    return IntStream.range(0, order.length)
+        .filter(i -> (i % folds == testFold) == inFold)
+        .map(i -> order[i])
+        .toArray();
+  }
+
+  private static DataFrame toDataFrame(String[] names, double[][] columns, int[] rows) {
+    DoubleVector[] vectors = new DoubleVector[names.length];
+    for (int c = 0; c < names.length; c++) {
+      double[] values = new double[rows.length];
+      for (int i = 0; i < rows.length; i++) {
+        values[i] = columns[c][rows[i]];
+      }
+      vectors[c] = DoubleVector.of(names[c], values);
+    }
+    return DataFrame.of(vectors);
+  }
+
+  private static int[] shuffle(int rows, long seed) {
+    int[] order = new int[rows];
+    for (int i = 0; i < rows; i++) {
+      order[i] = i;
+    }
+    SplittableRandom random = new SplittableRandom(seed);
+    for (int i = rows - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int swap = order[i];
+      order[i] = order[j];
+      order[j] = swap;
+    }
+    return order;
+  }
+
+  // Nearest-rank percentile of sorted values
+  private static long percentile(long[] sorted, double fraction) {
+    int rank = (int) Math.ceil(fraction * sorted.length);
+    return sorted[Math.max(0, rank - 1)];
+  }
+
+  private synchronized void writeMetrics(EvaluationReport report) {
+    boolean isNew = !Files.exists(metricsFile);
+    try (FileWriter writer = new FileWriter(metricsFile.toFile(), true)) {
+      if (isNew) {
+        writer.write(CSV_HEADER + "\n");
+      }
+      for (CandidateMetrics candidate : report.candidates()) {
+        writer.write(report.department() + "," + report.evaluatedAt() + "," + report.folds()
+            + "," + report.rows() + "," + candidate.name() + "," + candidate.trees() + ","
+            + candidate.mae() + "," + candidate.rmse() + "," + candidate.p50Nanos() + ","
+            + candidate.p90Nanos() + "," + candidate.p99Nanos() + ","
+            + candidate.name().equals(report.chosen()) + "\n");
+      }
+    } catch (IOException e) {
+      System.err.println("Error saving evaluation metrics: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Stops the evaluation threads.
+   */
+  @PreDestroy
+  public void shutdown() {
+    pool.shutdownNow();
+  }
+}
@@ -0,0 +1,342 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import smile.regression.RandomForest;
+
+/**
+ * Derives smaller forests of the picking models for the Monte Carlo simulations.
+ * The noise a simulation adds to every picker task is far larger than what the last trees of a
+ * forest add to its accuracy, so a forest with fewer trees gives nearly the same results in a
+ * fraction of the time.
+ * The pruning is chosen per zone: a fixed number of trees, or "auto", the fewest trees whose
+ * mean absolute error on the data set of the zone is at most the allowed loss above that of the
+ * full forest. A pruned forest keeps the first trees of the full forest, see
+ * {@link RandomForest#trim(int)}. The error of every pruned forest is measured and reported,
+ * and the pruned forest is kept until the full forest changes.
+ * The errors are measured on the tasks the training store holds out of every training. Until it
+ * has held out any, they are measured on the data set the forest was trained on. Those errors are
+ * in-sample: they understate the error of every forest and the loss pruning causes, so the
+ * report says which rows were used.
+ */
+@Component
+public class ModelPruner {
+
+  private static final String AUTO = "auto";
+
+  private final double maxMaeLoss;
+
+  private final int sampleRows;
+
+  private final TrainingStore trainingStore;
+
+  // The pruning of each zone, a number of trees or "auto"
+  private final Map<String, String> prunings = new ConcurrentHashMap<>();
+
+  private final Map<String, Pruned> pruned = new ConcurrentHashMap<>();
+
+  /**
+   * The measured accuracy of a pruned forest.
+   *
+   * @param department  The department of the model
+   * @param pruning     The pruning of the zone, a number of trees or "auto"
+   * @param trees       The number of trees of the pruned forest
+   * @param fullTrees   The number of trees of the full forest
+   * @param rows        The number of rows the errors were measured on, 0 without a data set
+   * @param heldOut     Whether the rows were held out of training, false if they are the data
+   *                    set the forest was trained on and the errors are in-sample
+   * @param fullMae     The mean absolute error in seconds of the full forest
+   * @param prunedMae   The mean absolute error in seconds of the pruned forest
+   * @param maeLoss     How much larger the error of the pruned forest is, in seconds
+   * @param fidelityMae The mean absolute difference in seconds from the full forest
+   * @param prunedAt    When the forest was pruned
+   */
+  public record PruningReport(String department, String pruning, int trees, int fullTrees,
+                              int rows, boolean heldOut, double fullMae, double prunedMae,
+                              double maeLoss, double fidelityMae, LocalDateTime prunedAt) {
+  }
+
+  // A pruned forest and the full forest and pruning it was made from
+  private record Pruned(PickingModel full, String pruning, PickingModel model,
+                        PruningReport report) {
+  }
+
+  /**
+   * Constructor for ModelPruner.
+   *
+   * @param trainingStore The store of finished tasks, whose held out tasks the errors are
+   *                      measured on
+   * @param pruning       The pruning of each zone, as ZONE:TREES or ZONE:auto separated by commas
+   * @param maxMaeLoss    The most the mean absolute error may grow in seconds in auto pruning
+   * @param sampleRows    The most rows the errors are measured on
+   */
+  public ModelPruner(TrainingStore trainingStore,
+                     @Value("${simulation.pruning:}") String pruning,
+                     @Value("${simulation.pruning.max-mae-loss:5}") double maxMaeLoss,
+                     @Value("${simulation.pruning.sample-rows:2000}") int sampleRows) {
+    if (maxMaeLoss < 0) {
+      throw new IllegalArgumentException("The allowed loss of accuracy can not be negative");
+    }
+    if (sampleRows <= 0) {
+      throw new IllegalArgumentException("The errors must be measured on at least one row");
+    }
+    this.trainingStore = trainingStore;
+    this.maxMaeLoss = maxMaeLoss;
+    this.sampleRows = sampleRows;
+    for (String entry : pruning.split(",")) {
+      if (entry.isBlank()) {
+        continue;
+      }
+      String[] parts = entry.split(":");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Pruning '" + entry + "' is not ZONE:TREES or "
+            + "ZONE:auto");
+      }
+      setPruning(parts[0].trim(), parts[1].trim());
+    }
+  }
+
+  /**
+   * Sets the pruning of a zone.
+   *
+   * @param department The department of the zone
+   * @param pruning    A number of trees, "auto", or null or blank to use the full forest
+   * @throws IllegalArgumentException if the pruning is not a positive number or "auto"
+   */
+  public void setPruning(String department, String pruning) {
+    String key = department.toUpperCase();
+    if (pruning == null || pruning.isBlank()) {
+      prunings.remove(key);
+      pruned.remove(key);
+      return;
+    }
+    String value = pruning.trim().toLowerCase();
+    if (!value.equals(AUTO)) {
+      int trees;
+      try {
+        trees = Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Pruning must be a number of trees or 'auto', got '"
+            + pruning + "'");
+      }
+      if (trees <= 0) {
+        throw new IllegalArgumentException("A pruned forest needs at least one tree");
+      }
+    }
+    prunings.put(key, value);
+  }
+
+  /**
+   * Gets the pruning of every zone that is pruned.
+   *
+   * @return The pruning by department
+   */
+  public Map<String, String> getPrunings() {
+    return new TreeMap<>(prunings);
+  }
+
+  /**
+   * Gets the reports of the forests that have been pruned.
+   *
+   * @return The report of the last pruned forest of each department
+   */
+  public Map<String, PruningReport> getReports() {
+    Map<String, PruningReport> reports = new TreeMap<>();
+    pruned.forEach((department, entry) -> reports.put(department, entry.report()));
+    return reports;
+  }
+
+  /**
+   * Gets the models to simulate with, each pruned as set for its zone.
+   *
+   * @param models The full models by department
+   * @return The models by department, pruned where a pruning is set
+   */
+  public Map<String, PickingModel> pruneAll(Map<String, PickingModel> models) {
+    if (prunings.isEmpty()) {
+      return models;
+    }
+    Map<String, PickingModel> result = new HashMap<>(models);
+    models.forEach((department, model) -> result.put(department, prune(department, model)));
+    return result;
+  }
+
+  /**
+   * Gets the model of a department pruned as set for its zone, pruning it the first time.
+   *
+   * @param department The department of the model
+   * @param full       The full model
+   * @return The pruned model, or the full model if the zone is not pruned
+   */
+  public PickingModel prune(String department, PickingModel full) {
+    String key = department.toUpperCase();
+    String pruning = prunings.get(key);
+    if (full == null || pruning == null) {
+      return full;
+    }
+    Pruned current = pruned.get(key);
+    if (current != null && current.full() == full && current.pruning().equals(pruning)) {
+      return current.model();
+    }
+    double[][] rows = heldOutRows(key);
+    if (rows.length > 0) {
+      return pruneWith(key, full, pruning, rows, true).model();
+    }
+    DatasetCache.Dataset dataset = null;
+    try {
+      dataset = DatasetCache.load(MachineLearningModelPicking.getDatasetPath(key));
+    } catch (IOException e) {
+      System.out.println("Could not read the data set of " + key + ", the pruned model is not "
+          + "measured: " + e.getMessage());
+    }
+    return pruneWith(key, full, pruning, datasetRows(key, dataset), false).model();
+  }
+
+  /**
+   * Sets the pruning of a department and prunes its model. The errors are measured on the held
+   * out tasks of the department, or on the data set if none have been held out yet.
+   *
+   * @param department The department of the model
+   * @param full       The full model
+   * @param pruning    A number of trees or "auto"
+   * @param dataset    The data set the model was trained on, with the feature columns and time_s
+   * @return The report of the pruned model
+   */
+  public PruningReport prune(String department, PickingModel full, String pruning,
+                             DatasetCache.Dataset dataset) {
+    setPruning(department, pruning);
+    String key = department.toUpperCase();
+    double[][] rows = heldOutRows(key);
+    boolean heldOut = rows.length > 0;
+    return pruneWith(key, full, prunings.get(key), heldOut ? rows : datasetRows(key, dataset),
+        heldOut).report();
+  }
+
+  private synchronized Pruned pruneWith(String department, PickingModel full, String pruning,
+                                        double[][] rows, boolean heldOut) {
+    Pruned current = pruned.get(department);
+    if (current != null && current.full() == full && current.pruning().equals(pruning)) {
+      return current;
+    }
+    int trees;
+    if (pruning.equals(AUTO)) {
+      trees = chooseTrees(full, rows);
+    } else {
+      trees = Math.min(Integer.parseInt(pruning), full.size());
+    }
+    PickingModel model = full.trim(trees);
+    PruningReport report = measure(department, pruning, full, model, rows, heldOut);
+    System.out.println("Pruned the " + department + " model from " + report.fullTrees()
+        + " to " + report.trees() + " trees, mean absolute error " + report.fullMae() + " -> "
+        + report.prunedMae() + " s on " + report.rows() + (heldOut ? " held out" : " training")
+        + " rows");
+    Pruned entry = new Pruned(full, pruning, model, report);
+    pruned.put(department, entry);
+    return entry;
+  }
+
+  // Fewest leading trees whose error is within the allowed loss, the full size without rows
+  private int chooseTrees(PickingModel full, double[][] rows) {
+    CompiledRandomForest compiled = full.compiled();
+    if (compiled == null || rows.length == 0) {
+      System.out.println("Can not measure the model, keeping all " + full.size() + " trees");
+      return full.size();
+    }
+    int treeCount = compiled.getTreeCount();
+    int featureCount = MachineLearningModelPicking.FEATURE_COLUMNS.length;
+    // Sum of the absolute errors of the mean of the first k + 1 trees over all rows
+    double[] errors = new double[treeCount];
+    for (double[] row : rows) {
+      double sum = 0;
+      for (int t = 0; t < treeCount; t++) {
+        sum += compiled.predictTree(t, row);
+        errors[t] += Math.abs(sum / (t + 1) - row[featureCount]);
+      }
+    }
+    double limit = errors[treeCount - 1] + maxMaeLoss * rows.length;
+    for (int t = 0; t < treeCount; t++) {
+      if (errors[t] <= limit) {
+        return t + 1;
+      }
+    }
+    return treeCount;
+  }
+
+  private PruningReport measure(String department, String pruning, PickingModel full,
+                                PickingModel model, double[][] rows, boolean heldOut) {
+    CompiledRandomForest compiledFull = full.compiled();
+    CompiledRandomForest compiledModel = model.compiled();
+    if (compiledFull == null || compiledModel == null || rows.length == 0) {
+      return new PruningReport(department, pruning, model.size(), full.size(), 0, false,
+          Double.NaN, Double.NaN, Double.NaN, Double.NaN, LocalDateTime.now());
+    }
+    int featureCount = MachineLearningModelPicking.FEATURE_COLUMNS.length;
+    double fullError = 0;
+    double prunedError = 0;
+    double difference = 0;
+    for (double[] row : rows) {
+      double fullPrediction = compiledFull.predict(row);
+      double prunedPrediction = compiledModel.predict(row);
+      fullError += Math.abs(fullPrediction - row[featureCount]);
+      prunedError += Math.abs(prunedPrediction - row[featureCount]);
+      difference += Math.abs(prunedPrediction - fullPrediction);
+    }
+    double fullMae = fullError / rows.length;
+    double prunedMae = prunedError / rows.length;
+    return new PruningReport(department, pruning, model.size(), full.size(), rows.length,
+        heldOut, fullMae, prunedMae, prunedMae - fullMae, difference / rows.length,
+        LocalDateTime.now());
+  }
+
+  // Evenly spaced rows of the tasks held out of training in the training window
+  private double[][] heldOutRows(String department) {
+    List<double[]> holdout = trainingStore.getWindow(department, LocalDateTime.now()).holdout();
+    int count = Math.min(sampleRows, holdout.size());
+    double[][] rows = new double[count][];
+    for (int i = 0; i < count; i++) {
+      rows[i] = holdout.get((int) ((long) i * holdout.size() / count));
+    }
+    return rows;
+  }
+
+  // The sampled rows of the data set, none if there is no data set or it can not be used
+  private double[][] datasetRows(String department, DatasetCache.Dataset dataset) {
+    if (dataset == null) {
+      return new double[0][];
+    }
+    try {
+      return sample(dataset);
+    } catch (IllegalArgumentException e) {
+      System.out.println("The data set of " + department + " can not be used to measure the "
+          + "pruned model: " + e.getMessage());
+      return new double[0][];
+    }
+  }
+
+  // Evenly spaced rows of the data set, the features followed by time_s
+  private double[][] sample(DatasetCache.Dataset dataset) {
+    String[] features = MachineLearningModelPicking.FEATURE_COLUMNS;
+    double[][] columns = new double[features.length + 1][];
+    for (int f = 0; f < features.length; f++) {
+      columns[f] = dataset.column(features[f]);
+    }
+    columns[features.length] = dataset.column("time_s");
+    int count = Math.min(sampleRows, dataset.rowCount());
+    double[][] rows = new double[count][features.length + 1];
+    for (int i = 0; i < count; i++) {
+      int row = (int) ((long) i * dataset.rowCount() / count);
+      for (int c = 0; c < columns.length; c++) {
+        rows[i][c] = columns[c][row];
+      }
+    }
+    return rows;
+  }
+}
@@ -0,0 +1,269 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import smile.regression.RandomForest;
+
+/**
+ * Holds the current version of the picking model of every department.
+ * Each department has an AtomicReference to an immutable ModelVersion. The new version is
+ * swapped in with one write once it is trained and saved. Retrainings of the same department run
+ * one at a time, a retraining that is asked for while another one of the department runs waits
+ * for it. Readers never wait for training: a simulation takes the models it needs when it
+ * starts and keeps using them, the next simulation gets the new version.
+ * A model is loaded from its file the first time it is asked for.
+ * The training data comes from the {@link TrainingStore}. A model is either trained again on the
+ * data set and the tasks of the training window, or, in incremental mode, updated with new trees
+ * trained on the tasks that finished since the last training only.
+ * A model is loaded from the binary file of its compiled form when it has one, its Random Forest
+ * is only read when the model is retrained, see {@link PickingModel}.
+ * With warm-up on, every model is loaded in the background when the application has started,
+ * so the first simulation does not wait for it.
+ */
+@Component
+public class ModelRegistry {
+
+  private final MachineLearningModelPicking mlModel;
+
+  private final TrainingStore trainingStore;
+
+  // Whether models are updated with new trees instead of trained again
+  private final boolean incremental;
+
+  private final int incrementalTrees;
+
+  private final boolean warmUp;
+
+  private final Map<String, AtomicReference<ModelVersion>> versions = new ConcurrentHashMap<>();
+
+  // Held while a department is retrained, so its model file and training rows have one writer
+  private final Map<String, Object> retrainLocks = new ConcurrentHashMap<>();
+
+  // Called with every new version after it has been swapped in
+  private final List<Consumer<ModelVersion>> listeners = new CopyOnWriteArrayList<>();
+
+  private final ExecutorService warmUpExecutor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "model-warm-up");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Constructor for ModelRegistry.
+   *
+   * @param mlModel          Loads, trains and saves the models
+   * @param trainingStore    The finished picker tasks to train on
+   * @param incremental      Whether models are updated with new trees instead of trained again
+   * @param incrementalTrees The number of trees trained on the new tasks in incremental mode
+   * @param warmUp           Whether all models are loaded when the application has started
+   */
+  public ModelRegistry(MachineLearningModelPicking mlModel, TrainingStore trainingStore,
+                       @Value("${training.incremental:false}") boolean incremental,
+                       @Value("${training.incremental.trees:10}") int incrementalTrees,
+                       @Value("${models.warm-up:false}") boolean warmUp) {
+    if (incrementalTrees <= 0) {
+      throw new IllegalArgumentException("The number of incremental trees must be positive");
+    }
+    this.mlModel = mlModel;
+    this.trainingStore = trainingStore;
+    this.incremental = incremental;
+    this.incrementalTrees = incrementalTrees;
+    this.warmUp = warmUp;
+  }
+
+  /**
+   * Starts the warm-up when the application has started.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    warmUp();
+  }
+
+  /**
+   * Loads the model of every department in the background, if warm-up is on.
+   *
+   * @return The versions that were loaded, or an empty map if warm-up is off
+   */
+  public CompletableFuture<Map<String, ModelVersion>> warmUp() {
+    if (!warmUp) {
+      return CompletableFuture.completedFuture(Map.of());
+    }
+    return CompletableFuture.supplyAsync(() -> {
+      long start = System.nanoTime();
+      for (String department : MachineLearningModelPicking.DEPARTMENTS) {
+        try {
+          getVersion(department);
+        } catch (IOException e) {
+          System.err.println("Could not warm up the " + department + " model: " + e.getMessage());
+        }
+      }
+      System.out.println("Warmed up the models in " + (System.nanoTime() - start) / 1_000_000
+          + " ms");
+      return getVersions();
+    }, warmUpExecutor);
+  }
+
+  /**
+   * Gets the current version of the model of a department, loading it if it is not loaded yet.
+   *
+   * @param department The department of the model
+   * @return The current version, or null if there is no model for the department
+   * @throws IOException If the model could not be loaded or created
+   */
+  public ModelVersion getVersion(String department) throws IOException {
+    String key = department.toUpperCase();
+    AtomicReference<ModelVersion> reference =
+        versions.computeIfAbsent(key, _ -> new AtomicReference<>());
+    ModelVersion version = reference.get();
+    if (version != null) {
+      return version;
+    }
+    // Only one thread loads the model, the others wait for it
+    synchronized (reference) {
+      if (reference.get() == null) {
+        PickingModel model = mlModel.getPickingModel(key);
+        if (model != null) {
+          reference.compareAndSet(null,
+              new ModelVersion(key, 1, model, LocalDateTime.now(), 0));
+        }
+      }
+      return reference.get();
+    }
+  }
+
+  /**
+   * Gets the current model of a department.
+   *
+   * @param department The department of the model
+   * @return The model, or null if there is no model for the department
+   * @throws IOException If the model could not be loaded or created
+   */
+  public PickingModel getModel(String department) throws IOException {
+    ModelVersion version = getVersion(department);
+    return version != null ? version.model() : null;
+  }
+
+  /**
+   * Gets the current model of every department. The map does not change when a model is
+   * swapped, so a run that uses it sees the same models from start to end.
+   *
+   * @return The models by department
+   * @throws IOException If a model could not be loaded or created
+   */
+  public Map<String, PickingModel> getAllModels() throws IOException {
+    Map<String, PickingModel> models = new HashMap<>();
+    for (String department : MachineLearningModelPicking.DEPARTMENTS) {
+      models.put(department, getModel(department));
+    }
+    return models;
+  }
+
+  /**
+   * Gets the versions of the models that are loaded.
+   *
+   * @return The current version of each loaded model, by department
+   */
+  public Map<String, ModelVersion> getVersions() {
+    Map<String, ModelVersion> current = new TreeMap<>();
+    versions.forEach((department, reference) -> {
+      ModelVersion version = reference.get();
+      if (version != null) {
+        current.put(department, version);
+      }
+    });
+    return current;
+  }
+
+  /**
+   * Retrains the model of a department on the training store in the calling thread and swaps it
+   * in when it is done. Waits for a retraining of the same department that is running.
+   *
+   * @param department The department of the model
+   * @param now        The current time, the end of the training window
+   * @return The new version, or the current version if there were no new rows
+   * @throws IOException If the model or the data set could not be read
+   */
+  public ModelVersion retrainNow(String department, LocalDateTime now) throws IOException {
+    String key = department.toUpperCase();
+    synchronized (retrainLocks.computeIfAbsent(key, _ -> new Object())) {
+      return retrain(key, now);
+    }
+  }
+
+  private ModelVersion retrain(String key, LocalDateTime now) throws IOException {
+    ModelVersion current = getVersion(key);
+    TrainingStore.TrainingRows rows;
+    RandomForest model;
+    if (incremental && current != null && current.model().size() >= incrementalTrees) {
+      rows = trainingStore.getUntrained(key, now);
+      model = mlModel.updateModel(current.model().forest(), rows.rows(), incrementalTrees);
+    } else {
+      rows = trainingStore.getWindow(key, now);
+      model = mlModel.trainModel(key, rows.rows());
+    }
+    if (model == null) {
+      return current;
+    }
+    mlModel.saveModel(model, "pickroute_" + key + ".ser");
+    trainingStore.markTrained(rows);
+    ModelVersion version = swap(key, model, rows.rows().size());
+    System.out.println("Swapped in version " + version.version() + " of the " + key
+        + " model, trained on " + rows.rows().size() + " stored rows");
+    return version;
+  }
+
+  /**
+   * Swaps in a new model for a department.
+   *
+   * @param department   The department of the model
+   * @param model        The new model
+   * @param trainingRows The number of stored rows the model was trained on
+   * @return The new version
+   */
+  public ModelVersion swap(String department, RandomForest model, int trainingRows) {
+    String key = department.toUpperCase();
+    LocalDateTime now = LocalDateTime.now();
+    PickingModel picking = PickingModel.of(model);
+    ModelVersion version = versions.computeIfAbsent(key, _ -> new AtomicReference<>())
+        .updateAndGet(current -> new ModelVersion(key,
+            current != null ? current.version() + 1 : 1, picking, now, trainingRows));
+    mlModel.replaceModel(key, model);
+    listeners.forEach(listener -> listener.accept(version));
+    return version;
+  }
+
+  /**
+   * Adds a listener that is called with every version that is swapped in.
+   *
+   * @param listener The listener
+   */
+  public void addListener(Consumer<ModelVersion> listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Stops the background warm-up.
+   */
+  @PreDestroy
+  public void shutdown() {
+    warmUpExecutor.shutdownNow();
+  }
+}
@@ -0,0 +1,17 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning;
+
+import java.time.LocalDateTime;
+
+/**
+ * A version of the picking model of a department. Never changed once created, a retrained
+ * model is a new version.
+ *
+ * @param department   The department of the model, in upper case
+ * @param version      The number of the version, counted from 1 for the model that was loaded
+ * @param model        The model
+ * @param createdAt    When the model was loaded or trained
+ * @param trainingRows The number of stored rows the model was trained on, 0 if it was loaded
+ */
+public record ModelVersion(String department, long version, PickingModel model,
+                           LocalDateTime createdAt, int trainingRows) {
+}
@@ -0,0 +1,162 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Callable;
+
+import smile.regression.RandomForest;
+
+/**
+ * The picking model of a department as the simulations use it: the compiled forest that
+ * estimates the picker tasks, and the Random Forest it was compiled from.
+ * A model loaded from a file is read from the binary file of its compiled forest only. The
+ * Random Forest is read from the model file the first time it is needed, to train the model
+ * further or to estimate with a model that can not be compiled, so estimating never waits for
+ * Java deserialization.
+ * Safe to use from several threads, the Random Forest is read at most once.
+ * When sent to a worker process only the compiled forest is sent if there is one.
+ */
+public final class PickingModel implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  // Null if the forest can not be compiled, then the Random Forest is always loaded
+  private final CompiledRandomForest compiled;
+
+  private transient volatile RandomForest forest;
+
+  // Reads the Random Forest the first time it is needed, null once it is read
+  private transient Callable<RandomForest> loader;
+
+  private PickingModel(CompiledRandomForest compiled, RandomForest forest,
+                       Callable<RandomForest> loader) {
+    this.compiled = compiled;
+    this.forest = forest;
+    this.loader = loader;
+  }
+
+  /**
+   * Gets the picking model of a Random Forest, compiling it if it has not been compiled yet.
+   *
+   * @param forest The Random Forest
+   * @return The picking model, or null if the forest is null
+   */
+  public static PickingModel of(RandomForest forest) {
+    if (forest == null) {
+      return null;
+    }
+    return new PickingModel(MachineLearningModelPicking.getCompiledModel(forest), forest, null);
+  }
+
+  /**
+   * Gets the picking model of a compiled forest whose Random Forest is read when it is needed.
+   *
+   * @param compiled The compiled forest
+   * @param loader   Reads the Random Forest the compiled forest was compiled from
+   * @return The picking model
+   */
+  public static PickingModel of(CompiledRandomForest compiled, Callable<RandomForest> loader) {
+    if (compiled == null || loader == null) {
+      throw new IllegalArgumentException("A lazy model needs a compiled forest and a loader");
+    }
+    return new PickingModel(compiled, null, loader);
+  }
+
+  /**
+   * Gets the compiled forest.
+   *
+   * @return The compiled forest, or null if the forest can not be compiled
+   */
+  public CompiledRandomForest compiled() {
+    return compiled;
+  }
+
+  /**
+   * Gets the Random Forest, reading it the first time.
+   *
+   * @return The Random Forest
+   * @throws IllegalStateException if the Random Forest could not be read, or was not sent to
+   *                               this process
+   */
+  public RandomForest forest() {
+    RandomForest current = forest;
+    if (current != null) {
+      return current;
+    }
+    synchronized (this) {
+      if (forest == null) {
+        if (loader == null) {
+          throw new IllegalStateException("The Random Forest of the model is not available");
+        }
+        try {
+          RandomForest loaded = loader.call();
+          if (loaded == null) {
+            throw new IllegalStateException("The Random Forest of the model could not be read");
+          }
+          forest = loaded;
+          loader = null;
+        } catch (IOException e) {
+          throw new UncheckedIOException("Could not read the Random Forest of the model", e);
+        } catch (RuntimeException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new IllegalStateException("Could not read the Random Forest of the model", e);
+        }
+      }
+      return forest;
+    }
+  }
+
+  /**
+   * Checks if the Random Forest has been read, or was given when the model was created.
+   *
+   * @return true if the Random Forest is in memory
+   */
+  public boolean isForestLoaded() {
+    return forest != null;
+  }
+
+  /**
+   * Gets the number of trees of the model.
+   *
+   * @return The number of trees
+   */
+  public int size() {
+    return compiled != null ? compiled.getTreeCount() : forest().size();
+  }
+
+  /**
+   * Gets the model of the first trees of this model, see {@link RandomForest#trim(int)}.
+   * A model with a compiled forest is trimmed without reading its Random Forest.
+   *
+   * @param trees The number of trees to keep
+   * @return The trimmed model, or this model if it has no more trees
+   */
+  public PickingModel trim(int trees) {
+    if (trees >= size()) {
+      return this;
+    }
+    if (compiled == null) {
+      return of(forest().trim(trees));
+    }
+    RandomForest current = forest;
+    if (current != null) {
+      return new PickingModel(compiled.trim(trees), current.trim(trees), null);
+    }
+    return new PickingModel(compiled.trim(trees), null, () -> forest().trim(trees));
+  }
+
+  // A model that can not be compiled is sent with its Random Forest, otherwise without
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeObject(compiled == null ? forest() : null);
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    forest = (RandomForest) in.readObject();
+  }
+}
@@ -0,0 +1,33 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning;
+
+import java.time.LocalDateTime;
+
+/**
+ * The result of retraining the model of one department.
+ * Both models are evaluated on the tasks that finished after the previous model was trained, so
+ * the error of the previous model is the error it had on tasks it had not seen.
+ *
+ * @param department      The department of the model
+ * @param version         The version of the model after the retraining
+ * @param trainedAt       When the retraining finished
+ * @param trainingRows    The number of stored rows the model was trained on
+ * @param evaluationRows  The number of rows both models were evaluated on
+ * @param trees           The number of trees of the new model
+ * @param trainingMillis  The time the retraining took in milliseconds
+ * @param previousMae     The mean absolute error in seconds of the previous model, NaN if
+ *                        there was no previous model or no rows to evaluate on
+ * @param mae             The mean absolute error in seconds of the new model, NaN if there were
+ *                        no rows to evaluate on
+ */
+public record TrainingMetrics(String department, long version, LocalDateTime trainedAt,
+                              int trainingRows, int evaluationRows, int trees,
+                              long trainingMillis, double previousMae, double mae) {
+
+  static final String CSV_HEADER = "department,version,trained_at,training_rows,"
+      + "evaluation_rows,trees,training_ms,previous_mae,mae";
+
+  String toCsvLine() {
+    return department + "," + version + "," + trainedAt + "," + trainingRows + ","
+        + evaluationRows + "," + trees + "," + trainingMillis + "," + previousMae + "," + mae;
+  }
+}
@@ -0,0 +1,178 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import smile.regression.RandomForest;
+
+/**
+ * Retrains and evaluates the models of many departments at the same time.
+ * Every department is a task on one bounded ForkJoinPool. The trees of a Random Forest are
+ * trained with a parallel stream, and a parallel stream started inside the pool runs on the pool,
+ * so the departments and their trees share the same threads and a full retraining takes about
+ * as long as the slowest department, without using more threads than the pool has.
+ * One metrics record per department is appended to the metrics file when all are done. The old
+ * and the new model are both measured on the new tasks the store held out, which neither was
+ * trained on.
+ * A retraining asked for while another one is still running joins the running one instead of
+ * training the same rows a second time.
+ */
+@Component
+public class TrainingOrchestrator {
+
+  private final ModelRegistry modelRegistry;
+
+  private final TrainingStore trainingStore;
+
+  private final MachineLearningModelPicking mlModel;
+
+  private final Path metricsFile;
+
+  private final ForkJoinPool pool;
+
+  // The retraining that is running, or the last one
+  private CompletableFuture<List<TrainingMetrics>> running;
+
+  /**
+   * Constructor for TrainingOrchestrator.
+   *
+   * @param modelRegistry The registry the new models are swapped into
+   * @param trainingStore The finished picker tasks to train and evaluate on
+   * @param mlModel       Estimates the times of the evaluation rows
+   * @param parallelism   The number of threads training trees, 0 or less uses the number of
+   *                      processors
+   * @param metricsFile   The file the metrics of every retraining are appended to
+   */
+  public TrainingOrchestrator(ModelRegistry modelRegistry, TrainingStore trainingStore,
+                              MachineLearningModelPicking mlModel,
+                              @Value("${training.parallelism:0}") int parallelism,
+                              @Value("${training.metrics-file:model_training_metrics.csv}")
+                              String metricsFile) {
+    this.modelRegistry = modelRegistry;
+    this.trainingStore = trainingStore;
+    this.mlModel = mlModel;
+    this.metricsFile = Path.of(metricsFile);
+    this.pool = new ForkJoinPool(
+        parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Retrains and evaluates the models of the departments in the background.
+   * A department that fails is logged and left out of the result, the others are still swapped.
+   * If a retraining is still running, no new one is started and the running one is returned,
+   * the rows that came in meanwhile are trained the next time.
+   *
+   * @param departments The departments to retrain
+   * @param now         The current time, the end of the training window
+   * @return The metrics of every department that was retrained, in the order given
+   */
+  public synchronized CompletableFuture<List<TrainingMetrics>> retrainAll(
+      Collection<String> departments, LocalDateTime now) {
+    if (running != null && !running.isDone()) {
+      System.out.println("A retraining is already running, not starting another one");
+      return running;
+    }
+    Set<String> keys = new LinkedHashSet<>();
+    departments.forEach(department -> keys.add(department.toUpperCase()));
+    List<CompletableFuture<TrainingMetrics>> futures = new ArrayList<>();
+    for (String key : keys) {
+      futures.add(CompletableFuture.supplyAsync(() -> retrainAndEvaluate(key, now), pool)
+          .exceptionally(e -> {
+            System.err.println("Could not retrain the " + key + " model: " + e.getMessage());
+            return null;
+          }));
+    }
+    running = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(_ -> {
+      List<TrainingMetrics> metrics =
+          futures.stream().map(CompletableFuture::join).filter(Objects::nonNull).toList();
+      writeMetrics(metrics);
+      return metrics;
+    });
+    return running;
+  }
+
+  private TrainingMetrics retrainAndEvaluate(String department, LocalDateTime now) {
+    try {
+      ModelVersion previous = modelRegistry.getVersion(department);
+      // Taken before the retraining marks them as trained, held out of the training
+      List<double[]> evaluationRows = trainingStore.getUntrained(department, now).holdout();
+      long start = System.nanoTime();
+      ModelVersion version = modelRegistry.retrainNow(department, now);
+      long trainingMillis = (System.nanoTime() - start) / 1_000_000;
+      if (version == null) {
+        throw new IllegalStateException("No model for department " + department);
+      }
+      double previousMae = previous != null && previous != version
+          ? meanAbsoluteError(previous.model(), evaluationRows) : Double.NaN;
+      TrainingMetrics metrics = new TrainingMetrics(department, version.version(),
+          LocalDateTime.now(), version.trainingRows(), evaluationRows.size(),
+          version.model().size(), trainingMillis, previousMae,
+          meanAbsoluteError(version.model(), evaluationRows));
+      System.out.println("Retrained the " + department + " model in " + trainingMillis
+          + " ms, MAE " + previousMae + " -> " + metrics.mae());
+      return metrics;
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not retrain the " + department + " model", e);
+    }
+  }
+
+  // Estimates all rows in one batch, the last column of a row is the real time
+  private double meanAbsoluteError(PickingModel model, List<double[]> rows) {
+    if (rows.isEmpty()) {
+      return Double.NaN;
+    }
+    double[][] features = new double[rows.size()][];
+    for (int i = 0; i < features.length; i++) {
+      double[] row = rows.get(i);
+      features[i] = Arrays.copyOf(row, row.length - 1);
+    }
+    long[] times = mlModel.estimateTimesUsingFeatures(model, features);
+    double error = 0;
+    for (int i = 0; i < times.length; i++) {
+      double[] row = rows.get(i);
+      error += Math.abs(times[i] - row[row.length - 1]);
+    }
+    return error / times.length;
+  }
+
+  private synchronized void writeMetrics(List<TrainingMetrics> metrics) {
+    if (metrics.isEmpty()) {
+      return;
+    }
+    boolean isNew = !Files.exists(metricsFile);
+    try (FileWriter writer = new FileWriter(metricsFile.toFile(), true)) {
+      if (isNew) {
+        writer.write(TrainingMetrics.CSV_HEADER + "\n");
+      }
+      for (TrainingMetrics record : metrics) {
+        writer.write(record.toCsvLine() + "\n");
+      }
+    } catch (IOException e) {
+      System.err.println("Error saving training metrics: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Stops the training threads.
+   */
+  @PreDestroy
+  public void shutdown() {
+    pool.shutdownNow();
+  }
+}
@@ -0,0 +1,267 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Append-only store of the finished picker tasks of every department, used as training data
+ * for the picking models.
+ * A picker task is added once when it finishes and is never changed. The rows of a department
+ * are kept in memory and in the file training_DEPARTMENT.csv, one line per task, so the store
+ * survives a restart without reading the tasks from the database again.
+ * Each department remembers how many of its rows a model has been trained on, so a retraining
+ * only has to look at the rows that came after it, or at the rows of the last days.
+ * Every n-th task, chosen by its id, is held out: it is never trained on, and is used to measure
+ * the models on tasks they have not seen.
+ */
+@Component
+public class TrainingStore {
+
+  private static final String HEADER = "task_id,finished_at,distance_m,dpack_equivalent_amount,"
+      + "lines,weight_g,volume_ml,avg_height,picker,time_s";
+
+  private final Path directory;
+
+  private final int windowDays;
+
+  private final int holdoutEvery;
+
+  private final Map<String, Department> departments = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor for TrainingStore.
+   *
+   * @param directory    The directory of the store files
+   * @param windowDays   The number of days of finished tasks a model is retrained on
+   * @param holdoutEvery Holds out the tasks whose id is a multiple of it, 0 holds out none
+   */
+  public TrainingStore(@Value("${training.store.directory:.}") String directory,
+                       @Value("${training.window-days:7}") int windowDays,
+                       @Value("${training.holdout-every:5}") int holdoutEvery) {
+    if (windowDays <= 0) {
+      throw new IllegalArgumentException("The training window must be at least one day");
+    }
+    if (holdoutEvery < 0 || holdoutEvery == 1) {
+      throw new IllegalArgumentException("Holding out every " + holdoutEvery + " tasks leaves "
+          + "nothing to train on, use 0 or more than 1");
+    }
+    this.directory = Path.of(directory);
+    this.windowDays = windowDays;
+    this.holdoutEvery = holdoutEvery;
+  }
+
+  /**
+   * Adds a finished picker task to the store of a department. Tasks without a worker, end time
+   * or time, and tasks that are already in the store, are skipped.
+   *
+   * @param department The department of the task
+   * @param pickerTask The finished picker task
+   * @return true if the task was added
+   */
+  public boolean append(String department, PickerTask pickerTask) {
+    return appendAll(department, List.of(pickerTask)) == 1;
+  }
+
+  /**
+   * Adds finished picker tasks to the store of a department, see {@link #append}.
+   *
+   * @param department  The department of the tasks
+   * @param pickerTasks The finished picker tasks
+   * @return The number of tasks that were added
+   */
+  public int appendAll(String department, List<PickerTask> pickerTasks) {
+    Department store = getDepartment(department);
+    List<Entry> entries = new ArrayList<>();
+    synchronized (store) {
+      for (PickerTask pickerTask : pickerTasks) {
+        if (pickerTask.getId() == null || pickerTask.getWorker() == null
+            || pickerTask.getEndTime() == null || pickerTask.getTime() <= 0
+            || store.taskIds.contains(pickerTask.getId())) {
+          continue;
+        }
+        double[] row = MachineLearningModelPicking.toTrainingRows(List.of(pickerTask)).getFirst();
+        Entry entry = new Entry(pickerTask.getId(),
+            pickerTask.getEndTime().toEpochSecond(ZoneOffset.UTC), row);
+        store.taskIds.add(entry.taskId());
+        store.entries.add(entry);
+        entries.add(entry);
+      }
+      if (!entries.isEmpty()) {
+        write(store.file, entries);
+      }
+    }
+    return entries.size();
+  }
+
+  /**
+   * Gets the rows of the tasks of a department that finished within the training window.
+   *
+   * @param department The department
+   * @param now        The current time
+   * @return The rows, in the order of {@link MachineLearningModelPicking#toTrainingRows}
+   */
+  public TrainingRows getWindow(String department, LocalDateTime now) {
+    Department store = getDepartment(department);
+    long from = now.minusDays(windowDays).toEpochSecond(ZoneOffset.UTC);
+    synchronized (store) {
+      return split(department, store.entries.stream()
+          .filter(entry -> entry.finishedAt() >= from).toList(), store.entries.size());
+    }
+  }
+
+  /**
+   * Gets the rows of a department that no model has been trained on yet. After a restart
+   * these are the rows of the training window.
+   *
+   * @param department The department
+   * @param now        The current time
+   * @return The rows, in the order of {@link MachineLearningModelPicking#toTrainingRows}
+   */
+  public TrainingRows getUntrained(String department, LocalDateTime now) {
+    Department store = getDepartment(department);
+    synchronized (store) {
+      if (store.trainedCount < 0) {
+        return getWindow(department, now);
+      }
+      return split(department, store.entries.subList(store.trainedCount, store.entries.size()),
+          store.entries.size());
+    }
+  }
+
+  // Separates the held out rows from the rows to train on
+  private TrainingRows split(String department, List<Entry> entries, int end) {
+    List<double[]> rows = new ArrayList<>();
+    List<double[]> holdout = new ArrayList<>();
+    for (Entry entry : entries) {
+      if (holdoutEvery > 0 && entry.taskId() % holdoutEvery == 0) {
+        holdout.add(entry.row());
+      } else {
+        rows.add(entry.row());
+      }
+    }
+    return new TrainingRows(department.toUpperCase(), rows, holdout, end);
+  }
+
+  /**
+   * Marks the rows a model has been trained on, so they are not returned by getUntrained again.
+   *
+   * @param rows The rows the model was trained on
+   */
+  public void markTrained(TrainingRows rows) {
+    Department store = getDepartment(rows.department());
+    synchronized (store) {
+      store.trainedCount = Math.max(store.trainedCount, rows.end());
+    }
+  }
+
+  /**
+   * Gets the number of tasks in the store of a department.
+   *
+   * @param department The department
+   * @return The number of tasks
+   */
+  public int size(String department) {
+    Department store = getDepartment(department);
+    synchronized (store) {
+      return store.entries.size();
+    }
+  }
+
+  private Department getDepartment(String department) {
+    return departments.computeIfAbsent(department.toUpperCase(), key -> {
+      Department store = new Department(directory.resolve("training_" + key + ".csv"));
+      read(store);
+      return store;
+    });
+  }
+
+  private static void read(Department store) {
+    if (!Files.exists(store.file)) {
+      return;
+    }
+    try (BufferedReader reader = new BufferedReader(new FileReader(store.file.toFile()))) {
+      String line = reader.readLine();
+      while ((line = reader.readLine()) != null) {
+        String[] values = line.split(",");
+        // A line cut off by a crash while it was written is skipped
+        if (values.length != 10) {
+          continue;
+        }
+        double[] row = new double[8];
+        for (int i = 0; i < row.length; i++) {
+          row[i] = Double.parseDouble(values[i + 2]);
+        }
+        Entry entry = new Entry(Long.parseLong(values[0]), Long.parseLong(values[1]), row);
+        if (store.taskIds.add(entry.taskId())) {
+          store.entries.add(entry);
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      System.err.println("Error reading training store " + store.file + ": " + e.getMessage());
+    }
+  }
+
+  private static void write(Path file, List<Entry> entries) {
+    boolean isNew = !Files.exists(file);
+    try (FileWriter writer = new FileWriter(file.toFile(), true)) {
+      if (isNew) {
+        writer.write(HEADER + "\n");
+      }
+      for (Entry entry : entries) {
+        StringBuilder line = new StringBuilder();
+        line.append(entry.taskId()).append(',').append(entry.finishedAt());
+        Arrays.stream(entry.row()).forEach(value -> line.append(',').append(value));
+        writer.write(line.append('\n').toString());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not write to training store " + file, e);
+    }
+  }
+
+  /**
+   * Rows of training data taken from the store.
+   *
+   * @param department The department of the rows
+   * @param rows       The rows to train on, in the order of
+   *                   {@link MachineLearningModelPicking#toTrainingRows}
+   * @param holdout    The held out rows of the same tasks, never trained on
+   * @param end        The number of tasks in the store when the rows were taken
+   */
+  public record TrainingRows(String department, List<double[]> rows, List<double[]> holdout,
+                             int end) {
+  }
+
+  private record Entry(long taskId, long finishedAt, double[] row) {
+  }
+
+  private static final class Department {
+    private final Path file;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Set<Long> taskIds = new HashSet<>();
+    // Number of entries a model has been trained on, -1 until the first training
+    private int trainedCount = -1;
+
+    private Department(Path file) {
+      this.file = file;
+    }
+  }
+}
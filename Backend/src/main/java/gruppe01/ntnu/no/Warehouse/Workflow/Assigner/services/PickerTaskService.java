@@ -3,6 +3,7 @@ package gruppe01.ntnu.no.warehouse.workflow.assigner.services;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.TrainingStore;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.repositories.PickerTaskRepository;
 
 import java.time.LocalDate;
@@ -27,18 +28,23 @@ public class PickerTaskService {
 
   private final ZoneRepository zoneRepository;
 
+  private final TrainingStore trainingStore;
+
   /**
    * Constructor for PickerTaskService.
    *
    * @param pickerTaskRepository the repository for PickerTask
    * @param workerRepository     the repository for Worker
    * @param zoneRepository       the repository for Zone
+   * @param trainingStore        the store finished picker tasks are added to
    */
   public PickerTaskService(PickerTaskRepository pickerTaskRepository,
-                           WorkerRepository workerRepository, ZoneRepository zoneRepository) {
+                           WorkerRepository workerRepository, ZoneRepository zoneRepository,
+                           TrainingStore trainingStore) {
     this.pickerTaskRepository = pickerTaskRepository;
     this.workerRepository = workerRepository;
     this.zoneRepository = zoneRepository;
+    this.trainingStore = trainingStore;
   }
 
   /**
@@ -171,6 +177,7 @@ public class PickerTaskService {
    */
   public PickerTask updatePickerTask(Long pickerTaskId, Long zoneId, PickerTask pickerTask) {
     return pickerTaskRepository.findById(pickerTaskId).map(existingTask -> {
+      boolean finishes = existingTask.getEndTime() == null && pickerTask.getEndTime() != null;
 
       // Update fields
       existingTask.setDistance(pickerTask.getDistance());
@@ -198,7 +205,12 @@ public class PickerTaskService {
       }
 
       // Save and return the updated task
-      return pickerTaskRepository.save(existingTask);
+      PickerTask savedTask = pickerTaskRepository.save(existingTask);
+      // A task that finishes now is kept as training data for the model of its zone
+      if (finishes && savedTask != null) {
+        trainingStore.append(savedTask.getZone().getName(), savedTask);
+      }
+      return savedTask;
     }).orElseThrow(
         () -> new IllegalArgumentException("PickerTask not found with id: " + pickerTaskId));
   }
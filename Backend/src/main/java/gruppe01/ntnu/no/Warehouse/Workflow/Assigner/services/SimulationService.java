@@ -3,15 +3,26 @@ package gruppe01.ntnu.no.warehouse.workflow.assigner.services;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
-import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelRegistry;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.AdaptiveStopping;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.MonteCarlo;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.MonteCarloJob;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.RandomStreams;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.SimulationScheduler;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.Utils;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.ZoneResultCache;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.distributed.MonteCarloCoordinator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.scenarios.Scenario;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ScenarioResult;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.SimulationAggregator;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.SimulationResult;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -19,12 +30,15 @@ import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSimResult;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.subsimulations.ZoneSimulator;
 import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import smile.regression.RandomForest;
 
 /**
  * Service class for running simulations in the frontend
@@ -38,6 +52,34 @@ public class SimulationService {
 
   private final AtomicBoolean prediction = new AtomicBoolean(true);
 
+  private final AtomicBoolean adaptive = new AtomicBoolean(false);
+
+  private final AtomicReference<AdaptiveStopping> adaptiveStopping =
+      new AtomicReference<>(AdaptiveStopping.defaults());
+
+  // Seed of the Monte Carlo random streams, null to draw a new seed for every run
+  private final AtomicReference<Long> masterSeed = new AtomicReference<>();
+
+  private final AtomicBoolean commonRandomNumbers = new AtomicBoolean(false);
+
+  // The newest run started by the world simulation, cancelled when a newer one is submitted
+  private final AtomicReference<MonteCarloJob> latestJob = new AtomicReference<>();
+
+  // Held while a run saves its results, every save replaces the saved data of the last one.
+  // A lock rather than synchronized, so a waiting job does not pin its virtual thread
+  private final ReentrantLock persistLock = new ReentrantLock();
+
+  private final AtomicBoolean memoization;
+
+  // Summaries of zones from earlier runs, reused while a zone has not changed
+  private final ZoneResultCache zoneResultCache;
+
+  // Jobs that can be polled by ID, oldest first
+  private final Map<String, MonteCarloJob> jobs = new LinkedHashMap<>();
+
+  // The number of finished jobs kept for polling
+  private static final int FINISHED_JOBS_KEPT = 20;
+
   private final ZoneService zoneService;
 
   private final MonteCarlo monteCarloWithRealData;
@@ -46,7 +88,11 @@ public class SimulationService {
 
   private final TimetableService timetableService;
 
-  private static final MachineLearningModelPicking mlModel = new MachineLearningModelPicking();
+  private final SimulationScheduler simulationScheduler;
+
+  private final MonteCarloCoordinator monteCarloCoordinator;
+
+  private final ModelRegistry modelRegistry;
 
   /**
    * Constructor for SimulationService.
@@ -55,13 +101,31 @@ public class SimulationService {
    * @param monteCarloWithRealData the Monte Carlo simulation service
    * @param utils                  utility class for simulations
    * @param timetableService       the service for Timetable entity
+   * @param simulationScheduler    the shared executor the simulations are run on
+   * @param monteCarloCoordinator  spreads the simulations over worker processes when enabled
+   * @param modelRegistry          the current models of the picker zones
+   * @param memoization            whether unchanged zones reuse their summaries from earlier runs
+   * @param clockBucketMinutes     how close in simulated time a run must start to an earlier
+   *                               run to reuse its summaries
    */
   public SimulationService(ZoneService zoneService, MonteCarlo monteCarloWithRealData, Utils utils,
-                           TimetableService timetableService) {
+                           TimetableService timetableService,
+                           SimulationScheduler simulationScheduler,
+                           MonteCarloCoordinator monteCarloCoordinator,
+                           ModelRegistry modelRegistry,
+                           @Value("${simulation.memoization:false}") boolean memoization,
+                           @Value("${simulation.memoization.clock-bucket-minutes:5}")
+                           long clockBucketMinutes) {
     this.zoneService = zoneService;
     this.monteCarloWithRealData = monteCarloWithRealData;
     this.utils = utils;
     this.timetableService = timetableService;
+    this.simulationScheduler = simulationScheduler;
+    this.monteCarloCoordinator = monteCarloCoordinator;
+    this.modelRegistry = modelRegistry;
+    this.memoization = new AtomicBoolean(memoization);
+    this.zoneResultCache = new ZoneResultCache(256, Duration.ofMinutes(30),
+        Duration.ofMinutes(clockBucketMinutes));
   }
 
   /**
@@ -74,7 +138,7 @@ public class SimulationService {
    * @return A list of strings containing the predicted time of completion and any error messages
    */
   public List<ZoneSimResult> runZoneSimulation(Long zoneId, LocalDateTime day,
-                                               Map<String, RandomForest> models)
+                                               Map<String, PickingModel> models)
       throws IOException {
     Zone zone = zoneService.getZoneById(zoneId);
     // Ensure the zoneID exists
@@ -86,13 +150,13 @@ public class SimulationService {
     List<ZoneSimResult> zoneSimResults = new ArrayList<>();
     List<ActiveTask> activeTasks = new ArrayList<>();
     Set<PickerTask> pickerTasks = new HashSet<>();
-    RandomForest model = null;
+    PickingModel model = null;
 
     if (zone.getIsPickerZone()) {
       if (models != null && models.get(zone.getName()) != null) {
         model = models.get(zone.getName());
       } else {
-        model = mlModel.getModel(zone.getName(), false);
+        model = modelRegistry.getModel(zone.getName());
       }
       pickerTasks = zoneService.getUnfinishedPickerTasksByZoneIdAndDate(zoneId, day.toLocalDate());
     } else {
@@ -106,6 +170,7 @@ public class SimulationService {
       day = LocalDate.now().atStartOfDay();
     }
 
+    ShiftIndex shiftIndex = timetableService.getShiftIndex(day.toLocalDate());
     for (int i = 0; i < getSimCount(); i++) {
       ZoneSimulator zoneSimulator = new ZoneSimulator();
       // Create deep copies of activeTasks and pickerTasks
@@ -118,7 +183,8 @@ public class SimulationService {
           pickerTasksCopy,
           model,
           day,
-          timetableService
+          timetableService,
+          shiftIndex
       );
       zoneSimResults.add(zoneSimResult);
     }
@@ -150,44 +216,195 @@ public class SimulationService {
    * @param currentTime The current time
    * @return A map containing the predicted completion time and any error messages
    */
-  public Map<Long, List<String>> runCompleteSimulation(Map<String, RandomForest> models,
+  public Map<Long, List<String>> runCompleteSimulation(Map<String, PickingModel> models,
                                                        LocalDateTime currentTime)
       throws ExecutionException, InterruptedException, IOException {
+    return runCompleteSimulation(models, currentTime, new MonteCarloJob());
+  }
+
+  /**
+   * Runs the complete MC simulation as part of a job that can be cancelled.
+   * If the job is cancelled while simulating, nothing is saved and null is returned.
+   * Runs save their results one at a time. A job waiting for another to finish saving can still
+   * be cancelled, so a run that is superseded meanwhile saves nothing.
+   * Once the results are being saved, the job runs to the end.
+   *
+   * @param models      The models to use for the simulation
+   * @param currentTime The current time
+   * @param job         The handle the run can be cancelled through
+   * @return A map containing the predicted completion time and any error messages,
+   *     or null if the job was cancelled
+   */
+  public Map<Long, List<String>> runCompleteSimulation(Map<String, PickingModel> models,
+                                                       LocalDateTime currentTime,
+                                                       MonteCarloJob job)
+      throws ExecutionException, InterruptedException, IOException {
       if (!prediction.get()) {
           return null;
       }
-    List<SimulationResult> results;
     System.out.println("Running simulation ");
-    if (models == null) {
-      results =
-          monteCarloWithRealData.monteCarlo(getSimCount(), null, currentTime, timetableService);
-      if (currentTime == null) {
-        currentTime = LocalDateTime.now();
+    // Results are folded into per zone summaries as they complete
+    SimulationAggregator aggregator = monteCarloWithRealData.monteCarloAggregated(getSimCount(),
+        adaptive.get() ? adaptiveStopping.get() : null, models, currentTime, timetableService,
+        getRandomStreams(), job, memoization.get() ? zoneResultCache.forRun(settingsKey()) : null);
+    persistLock.lock();
+    try {
+      if (!job.startPersisting()) {
+        System.out.println("Simulation cancelled, a newer simulation has started");
+        return null;
       }
-    } else {
-      results =
-          monteCarloWithRealData.monteCarlo(getSimCount(), models, currentTime, timetableService);
+      Map<Long, List<String>> result = null;
+      try {
+        result = saveCompleteSimulation(aggregator, currentTime);
+        return result;
+      } finally {
+        job.finish(result);
+      }
+    } finally {
+      persistLock.unlock();
+    }
+  }
+
+  /**
+   * Starts the complete MC simulation in the background, for the world simulation.
+   * The newest state always wins: if an earlier run is still simulating or waiting to save its
+   * results it is cancelled, if it is already saving its results it is left to finish first.
+   *
+   * @param models      The models to use for the simulation
+   * @param currentTime The current time
+   * @return The handle of the new run
+   */
+  public MonteCarloJob submitCompleteSimulation(Map<String, PickingModel> models,
+                                                LocalDateTime currentTime) {
+    MonteCarloJob job = new MonteCarloJob();
+    MonteCarloJob previous = latestJob.getAndSet(job);
+    if (previous != null && previous.cancel()) {
+      simulationScheduler.purge();
+      System.out.println("Cancelled a stale simulation");
+    }
+    startJob(job, models, currentTime, () -> latestJob.compareAndSet(job, null));
+    return job;
+  }
+
+  /**
+   * Starts the complete MC simulation in the background and returns right away.
+   * The job can be polled by its ID for the progress of every zone and early estimates,
+   * and does not replace any other running job.
+   *
+   * @param models      The models to use for the simulation
+   * @param currentTime The current time
+   * @return The handle of the new job
+   */
+  public MonteCarloJob submitJob(Map<String, PickingModel> models, LocalDateTime currentTime) {
+    MonteCarloJob job = new MonteCarloJob();
+    startJob(job, models, currentTime, () -> { });
+    return job;
+  }
+
+  /**
+   * Registers a job and runs it on a virtual thread.
+   * The run only waits on the scheduler, so it gets a virtual thread instead of a pool thread.
+   *
+   * @param job         The job to run
+   * @param models      The models to use for the simulation
+   * @param currentTime The current time
+   * @param onDone      Run when the job has ended, however it ended
+   */
+  private void startJob(MonteCarloJob job, Map<String, PickingModel> models,
+                        LocalDateTime currentTime, Runnable onDone) {
+    synchronized (jobs) {
+      jobs.put(job.getId(), job);
+      // Forget the oldest finished jobs, running jobs are always kept
+      long finished = jobs.values().stream().filter(MonteCarloJob::isFinished).count();
+      Iterator<MonteCarloJob> iterator = jobs.values().iterator();
+      while (finished > FINISHED_JOBS_KEPT && iterator.hasNext()) {
+        if (iterator.next().isFinished()) {
+          iterator.remove();
+          finished--;
+        }
+      }
+    }
+    Thread.ofVirtual().name("monte-carlo-job").start(() -> {
+      try {
+        Map<Long, List<String>> result = runCompleteSimulation(models, currentTime, job);
+        if (result == null && !job.isFinished()) {
+          job.fail("Prediction is turned off");
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+        job.fail(e.getMessage());
+      } finally {
+        onDone.run();
+      }
+    });
+  }
+
+  /**
+   * Gets a job that was started in the background.
+   *
+   * @param jobId The ID of the job
+   * @return The job, or null if there is no job with the ID
+   */
+  public MonteCarloJob getJob(String jobId) {
+    synchronized (jobs) {
+      return jobs.get(jobId);
+    }
+  }
+
+  /**
+   * Cancels a job that was started in the background, if it is still simulating.
+   *
+   * @param jobId The ID of the job
+   * @return The job, or null if there is no job with the ID
+   */
+  public MonteCarloJob cancelJob(String jobId) {
+    MonteCarloJob job = getJob(jobId);
+    if (job != null && job.cancel()) {
+      simulationScheduler.purge();
+    }
+    return job;
+  }
+
+  /**
+   * Cancels the run started by the world simulation, if it is still simulating.
+   */
+  public void cancelCompleteSimulation() {
+    MonteCarloJob job = latestJob.getAndSet(null);
+    if (job != null && job.cancel()) {
+      simulationScheduler.purge();
+    }
+  }
+
+  /**
+   * Formats and saves the summaries of a complete MC simulation.
+   *
+   * @param aggregator  The summaries of the zones
+   * @param currentTime The time the simulation started from
+   * @return A map containing the predicted completion time and any error messages
+   */
+  private Map<Long, List<String>> saveCompleteSimulation(SimulationAggregator aggregator,
+                                                         LocalDateTime currentTime) {
+    if (currentTime == null) {
+      currentTime = LocalDateTime.now();
     }
     HashMap<Long, List<String>> newResult = new HashMap<>();
     System.out.println("Simulation finished");
-    if (!results.isEmpty()) {
-      // Calculate the average zone durations using the current time as the reference
-      Map<Long, LocalDateTime> averageZoneDurations = utils.getSimResultAverages(results);
+    if (!aggregator.isEmpty()) {
       // Format the predicted completion time for each zone
-      List<SimulationResult> finalResults = results;
-      averageZoneDurations.forEach((zoneId, averageZoneDuration) -> {
+      aggregator.getZoneSummaries().forEach((zoneId, summary) -> {
         List<String> combinedResult = new ArrayList<>();
+        LocalDateTime averageZoneDuration = summary.getMeanEndTime();
         if (averageZoneDuration != null) {
           combinedResult.addAll(formatPredictedCompletionTime(averageZoneDuration));
         }
         // Ensure error messages are retrieved correctly
-        List<String> errorMessages = finalResults.getFirst().getErrorMessage(zoneId);
+        List<String> errorMessages = summary.getErrorMessages();
         if (errorMessages != null) {
           combinedResult.addAll(errorMessages);
         }
         newResult.put(zoneId, combinedResult);
       });
-      utils.saveSimulationResults(results, currentTime);
+      utils.saveSimulationSummary(aggregator, currentTime);
     } else {
       newResult.put(-1L, Collections.singletonList("No simulation results available."));
     }
@@ -203,17 +420,52 @@ public class SimulationService {
    * @param currentTime The current time
    * @return A list of simulation results
    */
-  public List<SimulationResult> getSimulationResultsOnly(Map<String, RandomForest> models,
+  public List<SimulationResult> getSimulationResultsOnly(Map<String, PickingModel> models,
                                                          LocalDateTime currentTime)
       throws IOException, ExecutionException, InterruptedException {
     if (models == null) {
-      return monteCarloWithRealData.monteCarlo(getSimCount(), null, null, timetableService);
+      return runMonteCarlo(null, null);
     } else {
-      return monteCarloWithRealData.monteCarlo(getSimCount(), models, currentTime,
-          timetableService);
+      return runMonteCarlo(models, currentTime);
     }
   }
 
+  /**
+   * Runs the Monte Carlo simulation with either a fixed simulation count or adaptive stopping.
+   *
+   * @param models      The models to use for the simulation
+   * @param currentTime The current time
+   * @return A list of simulation results
+   */
+  private List<SimulationResult> runMonteCarlo(Map<String, PickingModel> models,
+                                               LocalDateTime currentTime)
+      throws IOException, ExecutionException, InterruptedException {
+    if (adaptive.get()) {
+      return monteCarloWithRealData.monteCarloAdaptive(adaptiveStopping.get(), models,
+          currentTime, timetableService, getRandomStreams());
+    }
+    return monteCarloWithRealData.monteCarlo(getSimCount(), models, currentTime,
+        timetableService, getRandomStreams());
+  }
+
+
+  /**
+   * Runs what-if scenarios next to the current state of the warehouse.
+   * Every scenario gets the current simulation count, and the scenarios share the random draws
+   * when common random numbers are on.
+   *
+   * @param scenarios   The scenarios to compare
+   * @param models      The models to use for the simulation
+   * @param currentTime The current time
+   * @return The results of the base scenario followed by the given scenarios
+   */
+  public List<ScenarioResult> runScenarios(List<Scenario> scenarios,
+                                           Map<String, PickingModel> models,
+                                           LocalDateTime currentTime)
+      throws IOException, ExecutionException, InterruptedException {
+    return monteCarloWithRealData.monteCarloScenarios(getSimCount(), scenarios, models,
+        currentTime, timetableService, getRandomStreams());
+  }
 
   /**
    * Formats the predicted completion time by adding the given minutes to the current time
@@ -282,4 +534,126 @@ public class SimulationService {
     return this.prediction.get();
   }
 
+  /**
+   * Turns adaptive stopping on or off.
+   * When on, the simulation count is ignored and zones are simulated until they converge.
+   *
+   * @param adaptive The new adaptive value
+   */
+  public void setAdaptive(boolean adaptive) {
+    this.adaptive.set(adaptive);
+  }
+
+  public boolean isAdaptive() {
+    return this.adaptive.get();
+  }
+
+  /**
+   * Sets the settings used for adaptive stopping.
+   *
+   * @param stopping The new adaptive stopping settings
+   */
+  public void setAdaptiveStopping(AdaptiveStopping stopping) {
+    this.adaptiveStopping.set(stopping);
+  }
+
+  public AdaptiveStopping getAdaptiveStopping() {
+    return this.adaptiveStopping.get();
+  }
+
+  /**
+   * Sets the master seed of the Monte Carlo simulations.
+   * With a seed, runs on the same data give the same results.
+   *
+   * @param masterSeed The new master seed, or null to use a new seed for every run
+   */
+  public void setMasterSeed(Long masterSeed) {
+    this.masterSeed.set(masterSeed);
+  }
+
+  public Long getMasterSeed() {
+    return this.masterSeed.get();
+  }
+
+  /**
+   * Turns common random numbers on or off.
+   * When on, scenarios that are compared against each other reuse the same random draws.
+   *
+   * @param commonRandomNumbers The new common random numbers value
+   */
+  public void setCommonRandomNumbers(boolean commonRandomNumbers) {
+    this.commonRandomNumbers.set(commonRandomNumbers);
+  }
+
+  public boolean isCommonRandomNumbers() {
+    return this.commonRandomNumbers.get();
+  }
+
+  /**
+   * Creates the random streams for a Monte Carlo run from the current seed settings.
+   *
+   * @return The random streams of the base scenario
+   */
+  public RandomStreams getRandomStreams() {
+    return RandomStreams.of(masterSeed.get(), commonRandomNumbers.get());
+  }
+
+  /**
+   * Turns reuse of unchanged zones between runs on or off.
+   * Turning it off also forgets the stored zone summaries.
+   *
+   * @param memoization True to reuse the summaries of unchanged zones
+   * @param timeToLive  How long in simulated time a summary can be reused
+   */
+  public void setMemoization(boolean memoization, Duration timeToLive) {
+    if (timeToLive.isNegative()) {
+      throw new IllegalArgumentException("Time to live cannot be negative");
+    }
+    zoneResultCache.setTimeToLive(timeToLive);
+    this.memoization.set(memoization);
+    if (!memoization) {
+      zoneResultCache.clear();
+    }
+  }
+
+  public boolean isMemoization() {
+    return this.memoization.get();
+  }
+
+  /**
+   * Sets the number of worker processes the Monte Carlo simulations are spread over.
+   * Adaptive runs are always run in this process.
+   *
+   * @param workerProcesses The number of worker processes, 0 to run in this process
+   */
+  public void setWorkerProcesses(int workerProcesses) {
+    monteCarloCoordinator.setWorkerProcesses(workerProcesses);
+  }
+
+  public int getWorkerProcesses() {
+    return monteCarloCoordinator.getWorkerProcesses();
+  }
+
+  // The settings that change the results of a zone, a stored summary is only reused by
+  // a run with the same settings
+  private long settingsKey() {
+    return Objects.hash(adaptive.get() ? adaptiveStopping.get() : getSimCount(),
+        masterSeed.get());
+  }
+
+  /**
+   * Gets the state of the shared simulation scheduler.
+   *
+   * @return The pool size, thread mode, queue depth and active count of the scheduler,
+   *     the size and hit rate of the zone summary cache and the number of worker processes
+   */
+  public Map<String, Object> getSchedulerStats() {
+    Map<String, Object> stats = new LinkedHashMap<>(simulationScheduler.getStats());
+    stats.put("zoneCacheSize", zoneResultCache.size());
+    stats.put("zoneCacheHits", zoneResultCache.getHits());
+    stats.put("zoneCacheMisses", zoneResultCache.getMisses());
+    stats.put("workerProcesses", monteCarloCoordinator.getWorkerProcesses());
+    return stats;
+  }
+
 }
\ No newline at end of file
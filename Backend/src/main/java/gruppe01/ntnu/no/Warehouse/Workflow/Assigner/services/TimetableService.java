@@ -3,6 +3,7 @@ package gruppe01.ntnu.no.warehouse.workflow.assigner.services;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.*;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.repositories.TimetableRepository;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -195,6 +196,17 @@ public class TimetableService {
     return workers;
   }
 
+  /**
+   * Builds an in-memory index of the shifts of a day.
+   * Used by the simulations to answer the timetable questions without a query per question.
+   *
+   * @param day the day to build the index for
+   * @return the shift index for the day
+   */
+  public ShiftIndex getShiftIndex(LocalDate day) {
+    return new ShiftIndex(day, timetableRepository.findByStartDate(day));
+  }
+
   /**
    * Checks if a worker is working at a specific time.
    *
@@ -259,6 +271,11 @@ public class TimetableService {
     }
 
     List<Timetable> timetables = timetableRepository.findByStartDateSortedByTime(day.toLocalDate());
+    // The different sets of licenses required by the tasks
+    List<LicenseMask> requiredLicenses = activeTasks.stream()
+        .map(activeTask -> activeTask.getTask().getRequiredLicenseMask())
+        .distinct()
+        .toList();
 
     int totalQualifiedWorkers = 0;
     for (Timetable timetable : timetables) {
@@ -268,9 +285,12 @@ public class TimetableService {
         continue; // Skip invalid timetables
       }
       if (worker.getZone().equals(zoneId) && worker.isAvailability()) {
-        if (activeTasks.stream().anyMatch(activeTask ->
-            worker.getLicenses().containsAll(activeTask.getTask().getRequiredLicense()))) {
-          totalQualifiedWorkers++;
+        LicenseMask workerLicenses = worker.getLicenseMask();
+        for (LicenseMask required : requiredLicenses) {
+          if (workerLicenses.containsAll(required)) {
+            totalQualifiedWorkers++;
+            break;
+          }
         }
         if (totalQualifiedWorkers >= minWorkers) {
           return timetable.getRealStartTime();
@@ -332,8 +352,7 @@ public class TimetableService {
           // Check if the worker's end time has not passed
           if ((timetable.getRealEndTime() == null ||
               timetable.getRealEndTime().isAfter(localDateTime)) &&
-              timetable.getWorker().getLicenses()
-                  .containsAll(activeTask.getTask().getRequiredLicense())) {
+              timetable.getWorker().isQualifiedFor(activeTask.getTask())) {
             qualificationCount++;
           }
         }
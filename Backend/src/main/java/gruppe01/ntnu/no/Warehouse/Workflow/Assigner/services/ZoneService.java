@@ -8,10 +8,12 @@ import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
-import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.TrainingOrchestrator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.TrainingStore;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.repositories.*;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -29,7 +31,9 @@ public class ZoneService {
 
   private final PickerTaskRepository pickerTaskRepository;
 
-  private final MachineLearningModelPicking machineLearningModelPicking;
+  private final TrainingOrchestrator trainingOrchestrator;
+
+  private final TrainingStore trainingStore;
 
   /**
    * Constructor for ZoneService.
@@ -38,17 +42,19 @@ public class ZoneService {
    * @param taskRepository              the repository for Task entity
    * @param activeTaskRepository        the repository for ActiveTask entity
    * @param pickerTaskRepository        the repository for PickerTask entity
-   * @param machineLearningModelPicking the machine learning model for picking tasks
+   * @param trainingOrchestrator        retrains the machine learning models for picking tasks
+   * @param trainingStore               the finished picker tasks the models are trained on
    */
   public ZoneService(ZoneRepository zoneRepository, TaskRepository taskRepository,
                      ActiveTaskRepository activeTaskRepository,
                      PickerTaskRepository pickerTaskRepository,
-                     MachineLearningModelPicking machineLearningModelPicking) {
+                     TrainingOrchestrator trainingOrchestrator, TrainingStore trainingStore) {
     this.zoneRepository = zoneRepository;
     this.taskRepository = taskRepository;
     this.activeTaskRepository = activeTaskRepository;
     this.pickerTaskRepository = pickerTaskRepository;
-    this.machineLearningModelPicking = machineLearningModelPicking;
+    this.trainingOrchestrator = trainingOrchestrator;
+    this.trainingStore = trainingStore;
   }
 
   /**
@@ -305,18 +311,24 @@ public class ZoneService {
 
   /**
    * Updates the machine learning model for picking tasks.
+   * Finished picker tasks of the last week that are not in the training store yet are added to
+   * it. The models of all picker zones are then retrained from the store at the same time in the
+   * background and swapped in when they are done, so running simulations are not paused.
    *
    * @throws IOException if an I/O error occurs
    */
   public void updateMachineLearningModel(LocalDateTime time) throws IOException {
     LocalDate oneWeekAgo = time.minusDays(7).toLocalDate();
 
+    List<String> departments = new ArrayList<>();
     for (Zone zone : zoneRepository.findAll()) {
       if (zone.getIsPickerZone()) {
         List<PickerTask> pickerTasks = pickerTaskRepository.findValidPickerTasksByZoneSince(zone.getId(), oneWeekAgo);
-        machineLearningModelPicking.updateMachineLearningModel(pickerTasks, zone.getName());
+        trainingStore.appendAll(zone.getName(), pickerTasks);
+        departments.add(zone.getName());
       }
     }
+    trainingOrchestrator.retrainAll(departments, time);
   }
 
   /**
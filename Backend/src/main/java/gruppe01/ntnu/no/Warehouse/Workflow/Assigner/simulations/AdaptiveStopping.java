@@ -0,0 +1,41 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations;
+
+import java.time.Duration;
+
+/**
+ * Settings for running Monte Carlo simulations until the results have converged.
+ * Simulations are run in batches, and a zone stops being simulated once the 95% confidence
+ * interval of its end time is narrower than the tolerance.
+ * All zones stop when the maximum number of simulations or the time budget is reached.
+ *
+ * @param batchSize        The number of simulations to run between each convergence check
+ * @param minReplications  The number of simulations every zone gets before it can stop
+ * @param maxReplications  The maximum number of simulations of a zone
+ * @param toleranceMinutes The largest allowed half width of the confidence interval in minutes
+ * @param timeBudget       The maximum time to spend on the simulations
+ */
+public record AdaptiveStopping(int batchSize, int minReplications, int maxReplications,
+                               double toleranceMinutes, Duration timeBudget) {
+
+  /**
+   * Validates the settings.
+   */
+  public AdaptiveStopping {
+    if (batchSize <= 0 || minReplications <= 0 || maxReplications < minReplications) {
+      throw new IllegalArgumentException(
+          "Batch size and replications must be positive, and max must be at least min");
+    }
+    if (toleranceMinutes <= 0 || timeBudget == null || timeBudget.isNegative()) {
+      throw new IllegalArgumentException("Tolerance and time budget must be positive");
+    }
+  }
+
+  /**
+   * The default settings, 5 minute tolerance and at most 200 simulations or 30 seconds.
+   *
+   * @return The default adaptive stopping settings
+   */
+  public static AdaptiveStopping defaults() {
+    return new AdaptiveStopping(5, 5, 200, 5.0, Duration.ofSeconds(30));
+  }
+}
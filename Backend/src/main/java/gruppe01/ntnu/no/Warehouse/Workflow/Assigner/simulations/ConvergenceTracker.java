@@ -0,0 +1,72 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Keeps a running mean and variance of the end times of a zone across simulations.
+ * Used to decide when more simulations of the zone will not change the prediction.
+ * Simulations without an end time are counted, but do not add to the mean.
+ */
+public class ConvergenceTracker {
+
+  // z-value of a two-sided 95% confidence interval
+  private static final double Z_95 = 1.96;
+
+  private int replications = 0;
+  private int samples = 0;
+  private double mean = 0;
+  // Sum of squared differences from the mean, in minutes
+  private double squaredDifferences = 0;
+
+  /**
+   * Adds the end time of one simulation.
+   *
+   * @param endTime the end time of the zone, or null if the zone had no end time
+   */
+  public void add(LocalDateTime endTime) {
+    replications++;
+    if (endTime == null) {
+      return;
+    }
+    double minutes = endTime.toEpochSecond(ZoneOffset.UTC) / 60.0;
+    samples++;
+    double delta = minutes - mean;
+    mean += delta / samples;
+    squaredDifferences += delta * (minutes - mean);
+  }
+
+  public int getReplications() {
+    return replications;
+  }
+
+  /**
+   * Gets the half width of the 95% confidence interval of the mean end time.
+   *
+   * @return the half width in minutes, or infinity if there are less than two end times
+   */
+  public double getHalfWidthMinutes() {
+    if (samples < 2) {
+      return Double.POSITIVE_INFINITY;
+    }
+    double variance = squaredDifferences / (samples - 1);
+    return Z_95 * Math.sqrt(variance / samples);
+  }
+
+  /**
+   * Checks if the zone has been simulated enough times.
+   * A zone that never gets an end time has nothing to converge, and stops after the minimum.
+   *
+   * @param stopping the adaptive stopping settings
+   * @return true if the zone does not need more simulations
+   */
+  public boolean hasConverged(AdaptiveStopping stopping) {
+    if (replications >= stopping.maxReplications()) {
+      return true;
+    }
+    if (replications < stopping.minReplications()) {
+      return false;
+    }
+    return samples == 0 || getHalfWidthMinutes() <= stopping.toleranceMinutes();
+  }
+}
@@ -3,10 +3,24 @@ package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
-import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelPruner;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelRegistry;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelVersion;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.services.*;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.distributed.MonteCarloCoordinator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ScenarioResult;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.SimulationAggregator;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.SimulationResult;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSimResult;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSummary;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.scenarios.Scenario;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.scenarios.ScenarioOverlay;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.PickerDurations;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorld;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorldSimulator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimZoneRun;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.subsimulations.ZoneSimulator;
 import jakarta.transaction.Transactional;
 
@@ -20,17 +34,15 @@ import java.util.stream.Collectors;
 
 import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-
-import smile.regression.RandomForest;
+import java.util.random.RandomGenerator;
 
 /**
  * Monte Carlo Simulation of a warehouse time to complete all tasks within a day.
@@ -48,30 +60,56 @@ public class MonteCarlo {
 
   private final Utils utils;
 
+  private final SimulationScheduler simulationScheduler;
+
+  private final MonteCarloCoordinator monteCarloCoordinator;
+
+  private final ModelRegistry modelRegistry;
+
+  private final ModelPruner modelPruner;
+
+  // Whether the duration of a picker task is drawn from a random tree of its model
+  private final boolean sampleTrees;
+
   /**
    * Constructor for MonteCarlo.
    *
    * @param zoneService       the service for Zone entity
    * @param activeTaskService the service for ActiveTask entity
    * @param pickerTaskService the service for PickerTask entity
-   * @param utils             utility class for simulations
+   * @param utils               utility class for simulations
+   * @param simulationScheduler the shared executor the simulations are run on
+   * @param monteCarloCoordinator spreads the simulations over worker processes when enabled
+   * @param modelRegistry         the current models, used when a run is not given any
+   * @param modelPruner           prunes the current models for the zones set to be pruned
+   * @param sampleTrees           whether picker task durations are drawn from a random tree
    */
   public MonteCarlo(@Autowired ZoneService zoneService,
                     @Autowired ActiveTaskService activeTaskService,
-                    @Autowired PickerTaskService pickerTaskService, @Autowired Utils utils) {
+                    @Autowired PickerTaskService pickerTaskService, @Autowired Utils utils,
+                    @Autowired SimulationScheduler simulationScheduler,
+                    @Autowired MonteCarloCoordinator monteCarloCoordinator,
+                    @Autowired ModelRegistry modelRegistry,
+                    @Autowired ModelPruner modelPruner,
+                    @Value("${simulation.picker-durations.sample-trees:false}")
+                    Boolean sampleTrees) {
     this.zoneService = zoneService;
     this.activeTaskService = activeTaskService;
     this.pickerTaskService = pickerTaskService;
     this.utils = utils;
+    this.simulationScheduler = simulationScheduler;
+    this.monteCarloCoordinator = monteCarloCoordinator;
+    this.modelRegistry = modelRegistry;
+    this.modelPruner = modelPruner;
+    this.sampleTrees = Boolean.TRUE.equals(sampleTrees);
   }
 
-  private static final MachineLearningModelPicking mlModel = new MachineLearningModelPicking();
-
   /**
    * Runs several Monte Carlo simulation on the warehouse.
-   * Each zone is threaded and run in parallel.
-   * Each task is run in parallel.
-   * No database entries are modified during the simulation, only deep copies.
+   * Every zone of every simulation is a separate work item on the shared simulation scheduler.
+   * Zones are simulated as discrete events, so a simulation does not wait for the tasks in real time.
+   * The zones, workers and tasks are read once into a compact simulation world,
+   * no database entries are modified during the simulation.
    *
    * @param simCount         The number of simulations to run
    * @param models           The models to use for calculating the time to complete a picker task
@@ -83,15 +121,339 @@ public class MonteCarlo {
    * @throws IOException
    */
   @Transactional
-  public List<SimulationResult> monteCarlo(int simCount, Map<String, RandomForest> models,
+  public List<SimulationResult> monteCarlo(int simCount, Map<String, PickingModel> models,
                                            LocalDateTime currentTime,
                                            TimetableService timetableService)
       throws InterruptedException, ExecutionException, IOException {
-    // Zone simulator object to run the simulation
-    ExecutorService simulationExecutor =
-        Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
-    // List of futures to hold the results of the simulation
-    List<Future<SimulationResult>> futures = new ArrayList<>();
+    return monteCarlo(simCount, models, currentTime, timetableService,
+        RandomStreams.of(null, false));
+  }
+
+  /**
+   * Runs several Monte Carlo simulation on the warehouse with the given random streams.
+   * Runs with the same master seed give the same results.
+   *
+   * @param simCount         The number of simulations to run
+   * @param models           The models to use for calculating the time to complete a picker task
+   * @param currentTime      The current time to use for the simulation (if null, the current time is used)
+   * @param timetableService The timetable service to use for getting the current time
+   * @param streams          The random streams of the zones
+   * @return A list of simulation results, one for each simulation
+   * @throws InterruptedException
+   * @throws ExecutionException
+   * @throws IOException
+   */
+  @Transactional
+  public List<SimulationResult> monteCarlo(int simCount, Map<String, PickingModel> models,
+                                           LocalDateTime currentTime,
+                                           TimetableService timetableService,
+                                           RandomStreams streams)
+      throws InterruptedException, ExecutionException, IOException {
+    SimulationInput input = prepareInput(models, currentTime, timetableService, null);
+    List<SimulationResult> results = new ArrayList<>();
+    for (Map<Long, ZoneSimResult> zoneSimResults
+        : runBatch(input, input.zones(), 0, simCount, streams)) {
+      results.add(new SimulationResult(utils.getLatestEndTime(zoneSimResults), zoneSimResults));
+    }
+    return results;
+  }
+
+  /**
+   * Runs Monte Carlo simulations on the warehouse until the end time of every zone has converged.
+   * Simulations are run in batches. After each batch, zones where the confidence interval of the
+   * end time is narrower than the tolerance are not simulated again.
+   * Quiet zones stop after a few simulations while busy zones get more.
+   * A simulation result only holds the zones that were simulated in it, so every zone has as many
+   * results as it was simulated. The latest end time of the warehouse is only set on the results
+   * that simulated every zone, the others have none, as a zone that stopped early has no result
+   * to compare with.
+   *
+   * @param stopping         The settings for when to stop
+   * @param models           The models to use for calculating the time to complete a picker task
+   * @param currentTime      The current time to use for the simulation (if null, the current time is used)
+   * @param timetableService The timetable service to use for getting the current time
+   * @param streams          The random streams of the zones
+   * @return A list of simulation results, one for each simulation of the slowest converging zone,
+   *         with the latest end time set on the simulations of every zone
+   * @throws InterruptedException
+   * @throws ExecutionException
+   * @throws IOException
+   */
+  @Transactional
+  public List<SimulationResult> monteCarloAdaptive(AdaptiveStopping stopping,
+                                                   Map<String, PickingModel> models,
+                                                   LocalDateTime currentTime,
+                                                   TimetableService timetableService,
+                                                   RandomStreams streams)
+      throws InterruptedException, ExecutionException, IOException {
+    SimulationInput input = prepareInput(models, currentTime, timetableService, null);
+    long deadline = System.nanoTime() + stopping.timeBudget().toNanos();
+
+    Map<Long, ConvergenceTracker> trackers = new HashMap<>();
+    List<SimulationResult> results = new ArrayList<>();
+    List<Zone> remainingZones = new ArrayList<>(input.zones());
+    while (!remainingZones.isEmpty()) {
+      // All remaining zones have been part of every simulation so far
+      int count = Math.min(stopping.batchSize(), stopping.maxReplications() - results.size());
+      boolean allZones = remainingZones.size() == input.zones().size();
+      for (Map<Long, ZoneSimResult> zoneSimResults
+          : runBatch(input, remainingZones, results.size(), count, streams)) {
+        for (Zone zone : remainingZones) {
+          ZoneSimResult zoneSimResult = zoneSimResults.get(zone.getId());
+          trackers.computeIfAbsent(zone.getId(), _ -> new ConvergenceTracker())
+              .add(zoneSimResult != null ? zoneSimResult.getLastEndTime() : null);
+        }
+        results.add(new SimulationResult(
+            allZones ? utils.getLatestEndTime(zoneSimResults) : null, zoneSimResults));
+      }
+      remainingZones.removeIf(zone -> trackers.get(zone.getId()).hasConverged(stopping));
+      if (System.nanoTime() >= deadline) {
+        System.out.println("Monte Carlo time budget reached, " + remainingZones.size()
+            + " zones have not converged");
+        break;
+      }
+    }
+    System.out.println("Adaptive Monte Carlo ran " + results.size() + " simulations");
+    return results;
+  }
+
+  /**
+   * Runs Monte Carlo simulations on the warehouse and folds every zone result into a summary
+   * as soon as it completes. No simulation result is kept after it has been folded,
+   * so the number of simulations does not affect the memory used.
+   * If adaptive stopping settings are given, the simulations are run in batches and zones stop
+   * once they have converged, otherwise the given number of simulations is run.
+   *
+   * @param simCount         The number of simulations to run, ignored when stopping is given
+   * @param stopping         The adaptive stopping settings, or null to run simCount simulations
+   * @param models           The models to use for calculating the time to complete a picker task
+   * @param currentTime      The current time to use for the simulation (if null, the current time is used)
+   * @param timetableService The timetable service to use for getting the current time
+   * @param streams          The random streams of the zones
+   * @param job              The handle the run can be cancelled through
+   * @return The summaries of every zone, partial if the job was cancelled
+   * @throws InterruptedException
+   * @throws ExecutionException
+   * @throws IOException
+   */
+  @Transactional
+  public SimulationAggregator monteCarloAggregated(int simCount, AdaptiveStopping stopping,
+                                                   Map<String, PickingModel> models,
+                                                   LocalDateTime currentTime,
+                                                   TimetableService timetableService,
+                                                   RandomStreams streams, MonteCarloJob job)
+      throws InterruptedException, ExecutionException, IOException {
+    return monteCarloAggregated(simCount, stopping, models, currentTime, timetableService,
+        streams, job, null);
+  }
+
+  /**
+   * Runs Monte Carlo simulations on the warehouse like
+   * {@link #monteCarloAggregated(int, AdaptiveStopping, Map, LocalDateTime, TimetableService,
+   * RandomStreams, MonteCarloJob)}, but only simulates the zones that have changed since an
+   * earlier run. Zones with the same workers, shifts and tasks reuse their earlier summary.
+   *
+   * @param simCount         The number of simulations to run, ignored when stopping is given
+   * @param stopping         The adaptive stopping settings, or null to run simCount simulations
+   * @param models           The models to use for calculating the time to complete a picker task
+   * @param currentTime      The current time to use for the simulation (if null, the current time is used)
+   * @param timetableService The timetable service to use for getting the current time
+   * @param streams          The random streams of the zones
+   * @param job              The handle the run can be cancelled through
+   * @param memo             The cache of earlier zone summaries, or null to simulate every zone
+   * @return The summaries of every zone, partial if the job was cancelled
+   * @throws InterruptedException
+   * @throws ExecutionException
+   * @throws IOException
+   */
+  @Transactional
+  public SimulationAggregator monteCarloAggregated(int simCount, AdaptiveStopping stopping,
+                                                   Map<String, PickingModel> models,
+                                                   LocalDateTime currentTime,
+                                                   TimetableService timetableService,
+                                                   RandomStreams streams, MonteCarloJob job,
+                                                   ZoneResultCache.Run memo)
+      throws InterruptedException, ExecutionException, IOException {
+    SimulationInput input = prepareInput(models, currentTime, timetableService, job);
+    SimulationAggregator aggregator = new SimulationAggregator(input.currentTime());
+    job.attach(aggregator, stopping == null ? simCount : stopping.maxReplications());
+
+    // Zones that have not changed are filled in from the cache and not simulated
+    Map<Long, Long> zoneKeys = new HashMap<>();
+    List<Zone> changedZones = new ArrayList<>();
+    for (Zone zone : input.zones()) {
+      if (memo == null) {
+        changedZones.add(zone);
+        continue;
+      }
+      Long modelKey = zone.getIsPickerZone() ? modelKey(zone.getName().toUpperCase(),
+          input.models().get(zone.getName().toUpperCase())) : Long.valueOf(0L);
+      if (modelKey == null) {
+        // A model that is not a version of the registry can not be told apart from another one
+        changedZones.add(zone);
+        continue;
+      }
+      long key = memo.keyOf(zone, input.activeTasksByZone().getOrDefault(zone.getId(), List.of()),
+          input.pickerTasksByZone().getOrDefault(zone.getId(), List.of()), input.shiftIndex(),
+          modelKey, input.currentTime());
+      ZoneSummary cached = memo.cache().get(key, input.currentTime());
+      if (cached != null) {
+        aggregator.merge(cached);
+      } else {
+        zoneKeys.put(zone.getId(), key);
+        changedZones.add(zone);
+      }
+    }
+    if (memo != null) {
+      System.out.println("Reusing " + (input.zones().size() - changedZones.size()) + " of "
+          + input.zones().size() + " zones from earlier simulations");
+    }
+
+    if (stopping == null) {
+      if (!runDistributed(input, changedZones, simCount, streams, aggregator, job)) {
+        runFolded(input, changedZones, 0, simCount, streams, aggregator, Map.of(), job);
+      }
+      remember(memo, zoneKeys, aggregator, job);
+      return aggregator;
+    }
+
+    long deadline = System.nanoTime() + stopping.timeBudget().toNanos();
+    Map<Long, ConvergenceTracker> trackers = new HashMap<>();
+    changedZones.forEach(zone -> trackers.put(zone.getId(), new ConvergenceTracker()));
+    List<Zone> remainingZones = new ArrayList<>(changedZones);
+    int replications = 0;
+    while (!remainingZones.isEmpty() && !job.isCancelled()) {
+      int count = Math.min(stopping.batchSize(), stopping.maxReplications() - replications);
+      runFolded(input, remainingZones, replications, count, streams, aggregator, trackers, job);
+      replications += count;
+      remainingZones.removeIf(zone -> trackers.get(zone.getId()).hasConverged(stopping));
+      if (System.nanoTime() >= deadline) {
+        System.out.println("Monte Carlo time budget reached, " + remainingZones.size()
+            + " zones have not converged");
+        break;
+      }
+    }
+    System.out.println("Adaptive Monte Carlo ran " + replications + " simulations");
+    remember(memo, zoneKeys, aggregator, job);
+    return aggregator;
+  }
+
+  /**
+   * Gets the key of the model of a picker zone from its version in the model registry and its
+   * number of trees, 0 without a model, or null if the model is not the current version or its
+   * pruned forest.
+   */
+  private Long modelKey(String department, PickingModel model) throws IOException {
+    if (model == null) {
+      return 0L;
+    }
+    ModelVersion version = modelRegistry.getVersion(department);
+    if (version == null || (version.model() != model
+        && modelPruner.prune(department, version.model()) != model)) {
+      return null;
+    }
+    return ZoneResultCache.modelKey(version.version(), model.size());
+  }
+
+  /**
+   * Stores the summaries of the zones that were simulated, unless the run was cancelled
+   * and the summaries may be incomplete.
+   */
+  private void remember(ZoneResultCache.Run memo, Map<Long, Long> zoneKeys,
+                        SimulationAggregator aggregator, MonteCarloJob job) {
+    if (memo == null || job.isCancelled()) {
+      return;
+    }
+    zoneKeys.forEach((zoneId, key) -> {
+      ZoneSummary summary = aggregator.getZoneSummary(zoneId);
+      if (summary != null) {
+        memo.cache().put(key, aggregator.getStartTime(), summary);
+      }
+    });
+  }
+
+  /**
+   * Runs Monte Carlo simulations of what-if scenarios side by side.
+   * The warehouse is read from the database once, and every scenario applies its changes on top
+   * of that snapshot without writing anything back. The simulations of all scenarios are submitted
+   * to the simulation scheduler together, so the scenarios are run in parallel.
+   * The base scenario, without any changes, is always run first.
+   * When the simulations are spread over worker processes, the scenarios take turns instead.
+   *
+   * @param simCount         The number of simulations to run for each scenario
+   * @param scenarios        The scenarios to compare against the base scenario
+   * @param models           The models to use for calculating the time to complete a picker task
+   * @param currentTime      The current time to use for the simulation (if null, the current time is used)
+   * @param timetableService The timetable service to use for getting the current time
+   * @param streams          The random streams of the base scenario
+   * @return The results of the base scenario followed by the given scenarios
+   * @throws InterruptedException
+   * @throws ExecutionException
+   * @throws IOException
+   */
+  @Transactional
+  public List<ScenarioResult> monteCarloScenarios(int simCount, List<Scenario> scenarios,
+                                                  Map<String, PickingModel> models,
+                                                  LocalDateTime currentTime,
+                                                  TimetableService timetableService,
+                                                  RandomStreams streams)
+      throws InterruptedException, ExecutionException, IOException {
+    MonteCarloJob job = new MonteCarloJob();
+    SimulationInput input = prepareInput(models, currentTime, timetableService, job);
+    ScenarioOverlay overlay = new ScenarioOverlay(input.zones(), input.activeTasksByZone(),
+        input.pickerTasksByZone(), input.shiftIndex());
+    List<Scenario> allScenarios = new ArrayList<>();
+    allScenarios.add(new Scenario("baseline", List.of()));
+    allScenarios.addAll(scenarios);
+
+    // Apply every scenario before anything is submitted, so an invalid scenario fails fast
+    List<SimulationInput> inputs = new ArrayList<>();
+    for (Scenario scenario : allScenarios) {
+      ScenarioOverlay.State state = overlay.apply(scenario);
+      if (scenario.deltas().isEmpty()) {
+        inputs.add(input);
+        continue;
+      }
+      SimWorld world = buildWorld(state.zones(), state.activeTasksByZone(),
+          state.pickerTasksByZone(), input.currentTime(), state.shiftIndex());
+      inputs.add(new SimulationInput(state.zones(), state.activeTasksByZone(),
+          state.pickerTasksByZone(), input.models(), input.currentTime(), timetableService,
+          state.shiftIndex(), world,
+          estimatePickerDurations(world, state.zones(), input.models(), job)));
+    }
+
+    List<ScenarioResult> results = new ArrayList<>();
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < allScenarios.size(); i++) {
+      SimulationAggregator aggregator = new SimulationAggregator(input.currentTime());
+      String name = allScenarios.get(i).name() != null ? allScenarios.get(i).name()
+          : "scenario " + i;
+      results.add(new ScenarioResult(name, aggregator));
+      if (runDistributed(inputs.get(i), inputs.get(i).zones(), simCount, streams.forScenario(i),
+          aggregator, job)) {
+        continue;
+      }
+      futures.addAll(submitFolded(inputs.get(i), inputs.get(i).zones(), 0, simCount,
+          streams.forScenario(i), aggregator, Map.of(), job));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    return results;
+  }
+
+  /**
+   * Reads everything the simulations need from the database.
+   *
+   * @param models           The models to use, if null they are read from the database
+   * @param currentTime      The time to simulate from, if null the current time is used
+   * @param timetableService The timetable service
+   * @param job              The job the picker tasks are estimated for, or null
+   * @return The input shared by all simulations of a run
+   */
+  private SimulationInput prepareInput(Map<String, PickingModel> models, LocalDateTime currentTime,
+                                       TimetableService timetableService, MonteCarloJob job)
+      throws IOException {
     // Get all zones and active tasks for today
     List<Zone> zones = zoneService.getAllZones();
     // if no time is given, use the current time
@@ -102,85 +464,356 @@ public class MonteCarlo {
     List<ActiveTask> activeTasks = activeTaskService.getUnfinishedActiveTasksForToday(currentTime);
     List<PickerTask> pickerTasks =
         pickerTaskService.getUnfinishedPickerTasksForToday(currentTime).stream().toList();
-    // if no models are given, get them from the database
+    // if no models are given, take the current versions, they are kept for the whole run
+    // and pruned to fewer trees for the zones that are set to be pruned
     if (models == null) {
-      models = mlModel.getAllModels();
+      models = modelPruner.pruneAll(modelRegistry.getAllModels());
     }
+    // Read the shifts of the day once, all simulations share the same snapshot
+    ShiftIndex shiftIndex = timetableService.getShiftIndex(currentTime.toLocalDate());
     // Initialize lazy-loaded collections
     activeTasks.forEach(task -> Hibernate.initialize(task.getWorkers()));
     pickerTasks.forEach(task -> Hibernate.initialize(task.getWorker()));
 
-    // for loop iterating over the number of simulations
-    for (int i = 0; i < simCount; i++) {
-      ;
-      // Effectively final variables for the lambda expression
-      Map<String, RandomForest> finalModels = models;
-      LocalDateTime finalCurrentTime = currentTime;
-      // Submit the simulation to the executor service
-      futures.add(simulationExecutor.submit(() -> {
-        ExecutorService warehouseExecutor = Executors.newFixedThreadPool(
-            Math.max(1, zones.size()));
-        // Create a deep copy of the zones and active tasks
-        List<Zone> zonesCopy = zones.stream().map(Zone::new).toList();
-        List<ActiveTask> activeTasksCopy = activeTasks.stream()
-            .map(ActiveTask::new)
-            .toList();
-        Set<PickerTask> pickerTasksCopy = pickerTasks.stream()
-            .map(PickerTask::new)
-            .collect(Collectors.toSet());
-
-        // Create a map to hold the results of the simulation
-        Map<Long, ZoneSimResult> zoneSimResults = new HashMap<>();
-        // Iterate over the zones and run the simulation for each zone
-        for (Zone zone : zonesCopy) {
-          ZoneSimulator zoneSimulator = new ZoneSimulator();
-          warehouseExecutor.submit(() -> {
-            try {
-              ZoneSimResult zoneSimResult = new ZoneSimResult();
-              // run the simulation for a non picker zone
-              if (!zone.getIsPickerZone()) {
-                List<ActiveTask> zoneTasks = activeTasksCopy.stream()
-                    .filter(activeTask -> Objects.equals(activeTask.getTask().getZoneId(),
-                        zone.getId()))
-                    .toList();
-                zoneSimResult = zoneSimulator.runZoneSimulation(zone, zoneTasks, null, null,
-                    finalCurrentTime, timetableService);
-              } // run the simulation for a picker zone
-              else {
-                Set<PickerTask> zoneTasks = pickerTasksCopy.stream()
-                    .filter(pickerTask -> Objects.equals(pickerTask.getZoneId(), zone.getId()))
-                    .collect(Collectors.toSet());
-                zoneSimResult = zoneSimulator.runZoneSimulation(zone, null, zoneTasks,
-                    finalModels.get(zone.getName().toUpperCase()), finalCurrentTime,
-                    timetableService);
-              }
-              synchronized (zoneSimResults) {
-                // Add the result to the map
-                zoneSimResults.put(zone.getId(), zoneSimResult);
-              }
-            } catch (Exception e) {
-              e.printStackTrace();
-            }
-          });
-        }
+    // Split the tasks by zone once, each work item only copies the tasks of its own zone
+    Map<Long, List<ActiveTask>> activeTasksByZone = activeTasks.stream()
+        .filter(activeTask -> activeTask.getTask().getZoneId() != null)
+        .collect(Collectors.groupingBy(activeTask -> activeTask.getTask().getZoneId()));
+    Map<Long, List<PickerTask>> pickerTasksByZone = pickerTasks.stream()
+        .filter(pickerTask -> pickerTask.getZoneId() != null)
+        .collect(Collectors.groupingBy(PickerTask::getZoneId));
+    // Build the compact world once, the simulations only work on scratch arrays
+    SimWorld world =
+        buildWorld(zones, activeTasksByZone, pickerTasksByZone, currentTime, shiftIndex);
+    return new SimulationInput(zones, activeTasksByZone, pickerTasksByZone, models, currentTime,
+        timetableService, shiftIndex, world, estimatePickerDurations(world, zones, models, job));
+  }
 
+  /**
+   * Builds the compact simulation world.
+   *
+   * @param zones             The zones to simulate
+   * @param activeTasksByZone The active tasks by zone ID
+   * @param pickerTasksByZone The picker tasks by zone ID
+   * @param currentTime       The time to simulate from
+   * @param shiftIndex        The shifts of the day
+   * @return The world, or null if it could not be built and the entities must be copied instead
+   */
+  private SimWorld buildWorld(List<Zone> zones, Map<Long, List<ActiveTask>> activeTasksByZone,
+                              Map<Long, List<PickerTask>> pickerTasksByZone,
+                              LocalDateTime currentTime, ShiftIndex shiftIndex) {
+    try {
+      return new SimWorld(zones, activeTasksByZone, pickerTasksByZone, currentTime, shiftIndex);
+    } catch (RuntimeException e) {
+      System.out.println("Could not build the simulation world, copying entities instead: "
+          + e.getMessage());
+      return null;
+    }
+  }
 
-        warehouseExecutor.shutdown();
-        if (!warehouseExecutor.awaitTermination(5, TimeUnit.MINUTES)) {
-          System.err.println("WarehouseExecutor did not terminate in the specified time.");
-          warehouseExecutor.shutdownNow(); // Force shutdown
+  /**
+   * Estimates the durations of the picker tasks of the world once for all its simulations,
+   * on the simulation scheduler.
+   *
+   * @param world  The simulation world, or null
+   * @param zones  The zones of the world
+   * @param models The models by the name of their zone
+   * @param job    The job the estimates are cancelled with, or null
+   * @return The durations by index of the zone, empty if they could not be estimated, are
+   *     drawn from random trees or the job was cancelled
+   */
+  private Map<Integer, PickerDurations> estimatePickerDurations(SimWorld world, List<Zone> zones,
+                                                                Map<String, PickingModel> models,
+                                                                MonteCarloJob job) {
+    // Drawn durations differ in every simulation, so there is nothing to estimate once
+    if (world == null || sampleTrees) {
+      return Map.of();
+    }
+    try {
+      return PickerDurations.estimate(world, modelsByZoneIndex(world, zones, models), task -> {
+        Future<?> future = simulationScheduler.submit(task);
+        if (job != null) {
+          job.track(future);
         }
-        return new SimulationResult(utils.getLatestEndTime(zoneSimResults), zoneSimResults);
-      }));
+        return future;
+      });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Map.of();
+    } catch (CancellationException e) {
+      return Map.of();
+    } catch (ExecutionException | RuntimeException e) {
+      System.out.println("Could not estimate the picker tasks, estimating them in every "
+          + "simulation instead: " + e.getMessage());
+      return Map.of();
     }
+  }
 
-    List<SimulationResult> results = new ArrayList<>();
-    for (Future<SimulationResult> future : futures) {
-      results.add(future.get());
+  /**
+   * Gets the models of the picker zones by the index of their zone in the world.
+   *
+   * @param world  The simulation world
+   * @param zones  The zones to get the models of
+   * @param models The models by the name of their zone
+   * @return The models by index of the zone
+   */
+  private static Map<Integer, PickingModel> modelsByZoneIndex(SimWorld world, List<Zone> zones,
+                                                              Map<String, PickingModel> models) {
+    Map<Integer, PickingModel> modelsByZone = new HashMap<>();
+    for (Zone zone : zones) {
+      PickingModel model = zone.getIsPickerZone()
+          ? models.get(zone.getName().toUpperCase()) : null;
+      if (model != null) {
+        modelsByZone.put(world.indexOfZone(zone.getId()), model);
+      }
+    }
+    return modelsByZone;
+  }
+
+  /**
+   * Runs a number of simulations of the given zones on the simulation scheduler.
+   *
+   * @param input            The input shared by all simulations
+   * @param zones            The zones to simulate
+   * @param firstReplication The number of the first simulation, used to pick the random streams
+   * @param simCount         The number of simulations to run
+   * @param streams          The random streams of the zones
+   * @return The zone results of each simulation, keyed by zone ID
+   */
+  private List<Map<Long, ZoneSimResult>> runBatch(SimulationInput input, List<Zone> zones,
+                                                  int firstReplication, int simCount,
+                                                  RandomStreams streams)
+      throws InterruptedException, ExecutionException {
+    // One future per simulation and zone
+    List<List<Future<ZoneSimResult>>> futures = new ArrayList<>();
+    for (int i = 0; i < simCount; i++) {
+      int replication = firstReplication + i;
+      List<Future<ZoneSimResult>> zoneFutures = new ArrayList<>();
+      for (Zone zone : zones) {
+        zoneFutures.add(simulationScheduler.submit(
+            () -> runZone(zone, input, streams.forZone(replication, zone.getId()))));
+      }
+      futures.add(zoneFutures);
+    }
+
+    List<Map<Long, ZoneSimResult>> results = new ArrayList<>();
+    for (List<Future<ZoneSimResult>> zoneFutures : futures) {
+      // Create a map to hold the results of the simulation
+      Map<Long, ZoneSimResult> zoneSimResults = new HashMap<>();
+      for (int z = 0; z < zones.size(); z++) {
+        ZoneSimResult zoneSimResult = zoneFutures.get(z).get();
+        if (zoneSimResult != null) {
+          zoneSimResults.put(zones.get(z).getId(), zoneSimResult);
+        }
+      }
+      results.add(zoneSimResults);
     }
-    simulationExecutor.shutdown();
     return results;
   }
 
+  /**
+   * Runs a number of simulations of the given zones on the simulation scheduler,
+   * folding each zone result into the aggregator in the work item that produced it.
+   *
+   * @param input            The input shared by all simulations
+   * @param zones            The zones to simulate
+   * @param firstReplication The number of the first simulation, used to pick the random streams
+   * @param simCount         The number of simulations to run
+   * @param streams          The random streams of the zones
+   * @param aggregator       The aggregator to fold the results into
+   * @param trackers         The convergence trackers of the zones, may be empty
+   * @param job              The job the simulations belong to, stops waiting when cancelled
+   */
+  private void runFolded(SimulationInput input, List<Zone> zones, int firstReplication,
+                         int simCount, RandomStreams streams, SimulationAggregator aggregator,
+                         Map<Long, ConvergenceTracker> trackers, MonteCarloJob job)
+      throws InterruptedException, ExecutionException {
+    for (Future<?> future : submitFolded(input, zones, firstReplication, simCount, streams,
+        aggregator, trackers, job)) {
+      if (job.isCancelled()) {
+        return;
+      }
+      try {
+        future.get();
+      } catch (CancellationException e) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Submits a number of simulations of the given zones to the simulation scheduler without
+   * waiting for them. Each work item folds its zone result into the aggregator.
+   *
+   * @param input            The input shared by all simulations
+   * @param zones            The zones to simulate
+   * @param firstReplication The number of the first simulation, used to pick the random streams
+   * @param simCount         The number of simulations to run
+   * @param streams          The random streams of the zones
+   * @param aggregator       The aggregator to fold the results into
+   * @param trackers         The convergence trackers of the zones, may be empty
+   * @param job              The job the work items are tracked by, so they can be cancelled
+   * @return The futures of the work items
+   */
+  private List<Future<?>> submitFolded(SimulationInput input, List<Zone> zones,
+                                       int firstReplication, int simCount,
+                                       RandomStreams streams, SimulationAggregator aggregator,
+                                       Map<Long, ConvergenceTracker> trackers,
+                                       MonteCarloJob job) {
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < simCount && !job.isCancelled(); i++) {
+      int replication = firstReplication + i;
+      for (Zone zone : zones) {
+        Future<?> future = simulationScheduler.submit(() -> {
+          // Work items of a cancelled job that were already taken off the queue do nothing
+          if (job.isCancelled()) {
+            return null;
+          }
+          RandomGenerator random = streams.forZone(replication, zone.getId());
+          LocalDateTime lastEndTime = null;
+          if (input.world() != null) {
+            SimZoneRun simZoneRun = runWorldZone(zone, input, random);
+            if (simZoneRun != null) {
+              aggregator.add(zone.getId(), simZoneRun);
+              lastEndTime = simZoneRun.getLastEndTime();
+            }
+          } else {
+            ZoneSimResult zoneSimResult = runEntityZone(zone, input, random);
+            if (zoneSimResult != null) {
+              aggregator.add(zone.getId(), zoneSimResult);
+              lastEndTime = zoneSimResult.getLastEndTime();
+            }
+          }
+          ConvergenceTracker tracker = trackers.get(zone.getId());
+          if (tracker != null) {
+            synchronized (tracker) {
+              tracker.add(lastEndTime);
+            }
+          }
+          return null;
+        });
+        job.track(future);
+        futures.add(future);
+      }
+    }
+    return futures;
+  }
+
+  /**
+   * Runs a number of simulations of the given zones on the worker processes of the coordinator,
+   * if it is enabled. The summaries are the same as when the simulations are run here.
+   *
+   * @param input      The input shared by all simulations
+   * @param zones      The zones to simulate
+   * @param simCount   The number of simulations to run
+   * @param streams    The random streams of the zones
+   * @param aggregator The aggregator to merge the summaries into
+   * @param job        The job the simulations belong to, stops waiting when cancelled
+   * @return true if the simulations were run, false if they must be run in this process
+   */
+  private boolean runDistributed(SimulationInput input, List<Zone> zones, int simCount,
+                                 RandomStreams streams, SimulationAggregator aggregator,
+                                 MonteCarloJob job) throws InterruptedException {
+    // The workers estimate the mean durations, so drawn durations are only simulated here
+    if (monteCarloCoordinator == null || !monteCarloCoordinator.isEnabled()
+        || input.world() == null || sampleTrees) {
+      return false;
+    }
+    // The models are sent to the workers by the index of their zone in the world
+    Map<Integer, PickingModel> models = modelsByZoneIndex(input.world(), zones, input.models());
+    try {
+      monteCarloCoordinator.run(input.world(), models, zones.stream().map(Zone::getId).toList(),
+          0, simCount, streams, aggregator, job);
+      return true;
+    } catch (IOException e) {
+      System.out.println("Could not run the simulations on worker processes, running them here: "
+          + e.getMessage());
+      return false;
+    }
+  }
 
-}
\ No newline at end of file
+  /**
+   * Runs a single zone of a single simulation.
+   * Uses the simulation world when there is one, otherwise deep copies of the entities.
+   *
+   * @param zone   The zone to simulate
+   * @param input  The input shared by all simulations
+   * @param random The random number generator of the zone in this simulation
+   * @return The result of the zone simulation, or null if the simulation failed
+   */
+  private ZoneSimResult runZone(Zone zone, SimulationInput input, RandomGenerator random) {
+    if (input.world() == null) {
+      return runEntityZone(zone, input, random);
+    }
+    SimZoneRun simZoneRun = runWorldZone(zone, input, random);
+    return simZoneRun != null ? simZoneRun.toZoneSimResult() : null;
+  }
+
+  /**
+   * Runs a single zone of a single simulation on the scratch arrays of the simulation world.
+   *
+   * @param zone   The zone to simulate
+   * @param input  The input shared by all simulations
+   * @param random The random number generator of the zone in this simulation
+   * @return The run of the zone, or null if the simulation failed
+   */
+  private SimZoneRun runWorldZone(Zone zone, SimulationInput input, RandomGenerator random) {
+    try {
+      PickingModel model = zone.getIsPickerZone()
+          ? input.models().get(zone.getName().toUpperCase()) : null;
+      int index = input.world().indexOfZone(zone.getId());
+      return new SimWorldSimulator(input.world(), index, model,
+          input.pickerDurations().get(index), random, sampleTrees).run();
+    } catch (Exception e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Runs a single zone of a single simulation on deep copies of the zone and its tasks.
+   *
+   * @param zone   The zone to simulate
+   * @param input  The input shared by all simulations
+   * @param random The random number generator of the zone in this simulation
+   * @return The result of the zone simulation, or null if the simulation failed
+   */
+  private ZoneSimResult runEntityZone(Zone zone, SimulationInput input, RandomGenerator random) {
+    try {
+      Zone zoneCopy = new Zone(zone);
+      ZoneSimulator zoneSimulator = new ZoneSimulator(random, sampleTrees);
+      // run the simulation for a non picker zone
+      if (!zoneCopy.getIsPickerZone()) {
+        List<ActiveTask> zoneTasks = input.activeTasksByZone()
+            .getOrDefault(zoneCopy.getId(), List.of())
+            .stream()
+            .map(ActiveTask::new)
+            .toList();
+        return zoneSimulator.runZoneSimulation(zoneCopy, zoneTasks, null, null,
+            input.currentTime(), input.timetableService(), input.shiftIndex());
+      }
+      // run the simulation for a picker zone
+      Set<PickerTask> zoneTasks = input.pickerTasksByZone()
+          .getOrDefault(zoneCopy.getId(), List.of())
+          .stream()
+          .map(PickerTask::new)
+          .collect(Collectors.toSet());
+      return zoneSimulator.runZoneSimulation(zoneCopy, null, zoneTasks,
+          input.models().get(zoneCopy.getName().toUpperCase()), input.currentTime(),
+          input.timetableService(), input.shiftIndex());
+    } catch (Exception e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Everything the simulations of one run share, read once from the database.
+   */
+  private record SimulationInput(List<Zone> zones, Map<Long, List<ActiveTask>> activeTasksByZone,
+                                 Map<Long, List<PickerTask>> pickerTasksByZone,
+                                 Map<String, PickingModel> models, LocalDateTime currentTime,
+                                 TimetableService timetableService, ShiftIndex shiftIndex,
+                                 SimWorld world, Map<Integer, PickerDurations> pickerDurations) {
+  }
+}
@@ -0,0 +1,166 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.SimulationAggregator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A handle to a running Monte Carlo simulation that can be cancelled.
+ * Cancelling is cooperative: work items that have not started yet are dropped, and work items
+ * that are running finish their zone and are not followed by new ones.
+ * Once the results are being saved the job can no longer be cancelled, so a run is either
+ * saved completely or not at all.
+ * While the job runs, the summaries of the zones can be read to show early estimates.
+ */
+public class MonteCarloJob {
+
+  /**
+   * The states of a job.
+   */
+  public enum State {
+    RUNNING,
+    PERSISTING,
+    DONE,
+    CANCELLED,
+    FAILED
+  }
+
+  private final String id = UUID.randomUUID().toString();
+
+  private final AtomicReference<State> state = new AtomicReference<>(State.RUNNING);
+
+  // Work items of the job, cancelled together with it
+  private final List<Future<?>> futures = new ArrayList<>();
+
+  private volatile SimulationAggregator aggregator;
+
+  private volatile int plannedReplications;
+
+  private volatile Map<Long, List<String>> result;
+
+  private volatile String errorMessage;
+
+  /**
+   * Cancels the job if it is still simulating.
+   *
+   * @return true if the job was cancelled, false if it is saving its results or has finished
+   */
+  public boolean cancel() {
+    if (!state.compareAndSet(State.RUNNING, State.CANCELLED)) {
+      return state.get() == State.CANCELLED;
+    }
+    synchronized (futures) {
+      futures.forEach(future -> future.cancel(false));
+      futures.clear();
+    }
+    return true;
+  }
+
+  public boolean isCancelled() {
+    return state.get() == State.CANCELLED;
+  }
+
+  /**
+   * Adds a work item to the job. The work item is cancelled right away if the job is.
+   *
+   * @param future The future of the work item
+   */
+  void track(Future<?> future) {
+    synchronized (futures) {
+      if (isCancelled()) {
+        future.cancel(false);
+      } else {
+        futures.add(future);
+      }
+    }
+  }
+
+  /**
+   * Moves the job to saving its results, after which it can not be cancelled.
+   *
+   * @return true if the results should be saved, false if the job was cancelled
+   */
+  public boolean startPersisting() {
+    synchronized (futures) {
+      futures.clear();
+    }
+    return state.compareAndSet(State.RUNNING, State.PERSISTING);
+  }
+
+  /**
+   * Marks the job as finished, unless it was cancelled.
+   */
+  public void finish() {
+    state.updateAndGet(current -> current == State.CANCELLED ? current : State.DONE);
+  }
+
+  /**
+   * Marks the job as finished with the given results, unless it was cancelled.
+   *
+   * @param result The predicted completion time and error messages per zone ID
+   */
+  public void finish(Map<Long, List<String>> result) {
+    this.result = result;
+    finish();
+  }
+
+  /**
+   * Marks the job as failed, unless it was cancelled.
+   *
+   * @param errorMessage The reason the job failed
+   */
+  public void fail(String errorMessage) {
+    this.errorMessage = errorMessage;
+    state.updateAndGet(current -> current == State.CANCELLED ? current : State.FAILED);
+  }
+
+  /**
+   * Sets the summaries the simulations of the job are folded into.
+   *
+   * @param aggregator          The summaries of the zones
+   * @param plannedReplications The most simulations a zone will get
+   */
+  void attach(SimulationAggregator aggregator, int plannedReplications) {
+    this.plannedReplications = plannedReplications;
+    this.aggregator = aggregator;
+  }
+
+  public boolean isFinished() {
+    State current = state.get();
+    return current != State.RUNNING && current != State.PERSISTING;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public State getState() {
+    return state.get();
+  }
+
+  /**
+   * Gets the summaries of the zones, which keep growing while the job is running.
+   *
+   * @return The summaries, or null if the simulations have not started yet
+   */
+  public SimulationAggregator getAggregator() {
+    return aggregator;
+  }
+
+  public int getPlannedReplications() {
+    return plannedReplications;
+  }
+
+  public Map<Long, List<String>> getResult() {
+    return result;
+  }
+
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+}
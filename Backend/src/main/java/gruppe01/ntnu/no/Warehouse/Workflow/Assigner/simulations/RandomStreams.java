@@ -0,0 +1,82 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations;
+
+import java.io.Serializable;
+import java.util.SplittableRandom;
+
+/**
+ * Derives the random numbers of a Monte Carlo run from a single master seed.
+ * Every zone of every simulation gets its own SplittableRandom, seeded from the master seed,
+ * the simulation number and the zone ID. The stream of a zone does not depend on which thread
+ * runs it or on the order the work items complete, so a run with the same seed gives the same
+ * results.
+ * With common random numbers, every scenario of a comparison reuses the streams of the base
+ * scenario, so the difference between two scenarios is not hidden by different draws.
+ * Without them, each scenario gets streams of its own.
+ *
+ * @param masterSeed          The seed all streams are derived from
+ * @param commonRandomNumbers True to give every scenario the same streams
+ * @param scenario            The scenario the streams are for, 0 for the base scenario
+ */
+public record RandomStreams(long masterSeed, boolean commonRandomNumbers, long scenario)
+    implements Serializable {
+
+  // Increment of SplitMix64, keeps a zero seed from mixing to zero
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+  /**
+   * Creates the streams of the base scenario.
+   *
+   * @param masterSeed          The master seed, or null to pick a new seed at random
+   * @param commonRandomNumbers True to give every scenario the same streams
+   * @return The streams of the base scenario
+   */
+  public static RandomStreams of(Long masterSeed, boolean commonRandomNumbers) {
+    long seed = masterSeed != null ? masterSeed : new SplittableRandom().nextLong();
+    return new RandomStreams(seed, commonRandomNumbers, 0);
+  }
+
+  /**
+   * Creates streams for a scenario that is compared against the base scenario.
+   *
+   * @param scenario The number of the scenario
+   * @return The streams of the scenario, the same as these with common random numbers
+   */
+  public RandomStreams forScenario(long scenario) {
+    return new RandomStreams(masterSeed, commonRandomNumbers, scenario);
+  }
+
+  /**
+   * Creates the stream of one zone in one simulation.
+   * Calling this again with the same arguments gives a new stream with the same numbers.
+   *
+   * @param replication The number of the simulation, counting from 0
+   * @param zoneId      The ID of the zone
+   * @return The random number generator of the zone
+   */
+  public SplittableRandom forZone(int replication, long zoneId) {
+    long seed = mix(masterSeed + GOLDEN_GAMMA);
+    if (!commonRandomNumbers) {
+      seed = mix(seed + scenario);
+    }
+    seed = mix(seed + replication);
+    return new SplittableRandom(mix(seed + zoneId));
+  }
+
+  /**
+   * Creates a stream that is not tied to a zone, for simulations that run the whole warehouse.
+   *
+   * @return The random number generator of the run
+   */
+  public SplittableRandom forRun() {
+    return new SplittableRandom(mix(masterSeed + GOLDEN_GAMMA));
+  }
+
+  /**
+   * The finalizer of SplitMix64, spreads nearby inputs over the whole range of a long.
+   */
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+}
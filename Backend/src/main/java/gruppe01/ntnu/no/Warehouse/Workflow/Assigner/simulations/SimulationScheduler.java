@@ -0,0 +1,126 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The shared executor for all simulation work in the application.
+ * Monte Carlo simulations submit one work item per replication and zone,
+ * instead of creating their own thread pools for every call.
+ * The number of threads is bounded, work items that can not run yet wait in the queue.
+ * In virtual thread mode the same bound is used, but the threads are virtual threads.
+ */
+@Component
+public class SimulationScheduler {
+
+  private final ThreadPoolExecutor executor;
+
+  private final boolean virtualThreads;
+
+  /**
+   * Constructor for SimulationScheduler.
+   *
+   * @param threads        the number of threads, 0 or less uses the number of processors
+   * @param virtualThreads true to run the work items on virtual threads
+   */
+  public SimulationScheduler(@Value("${simulation.scheduler.threads:0}") int threads,
+                             @Value("${simulation.scheduler.virtual-threads:false}")
+                             boolean virtualThreads) {
+    int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors());
+    this.virtualThreads = virtualThreads;
+    this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), createThreadFactory(virtualThreads));
+  }
+
+  private static ThreadFactory createThreadFactory(boolean virtualThreads) {
+    if (virtualThreads) {
+      return Thread.ofVirtual().name("simulation-", 0).factory();
+    }
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, "simulation-" + count.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Submits a work item to the scheduler.
+   *
+   * @param task the work item to run
+   * @param <T>  the type of the result
+   * @return a future holding the result of the work item
+   */
+  public <T> Future<T> submit(Callable<T> task) {
+    return executor.submit(task);
+  }
+
+  /**
+   * Removes work items that have been cancelled from the queue,
+   * so they do not count towards the queue depth while they wait to be skipped.
+   */
+  public void purge() {
+    executor.purge();
+  }
+
+  /**
+   * Gets the number of work items waiting to run.
+   *
+   * @return the number of queued work items
+   */
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  /**
+   * Gets the approximate number of work items currently running.
+   *
+   * @return the number of active threads
+   */
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  public int getPoolSize() {
+    return executor.getMaximumPoolSize();
+  }
+
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  /**
+   * Gets the current state of the scheduler.
+   *
+   * @return a map with the pool size, thread mode, queue depth and active count
+   */
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("poolSize", getPoolSize());
+    stats.put("virtualThreads", isVirtualThreads());
+    stats.put("queueDepth", getQueueDepth());
+    stats.put("activeCount", getActiveCount());
+    stats.put("completedTasks", executor.getCompletedTaskCount());
+    return stats;
+  }
+
+  /**
+   * Stops the scheduler when the application shuts down.
+   */
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
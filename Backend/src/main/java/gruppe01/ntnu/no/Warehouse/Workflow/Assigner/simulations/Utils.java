@@ -4,8 +4,10 @@ import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Notification;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.services.*;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.SimulationAggregator;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.SimulationResult;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSimResult;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSummary;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
@@ -152,6 +154,59 @@ public class Utils {
     }
 
 
+    /**
+     * Saves the summaries of a streamed Monte Carlo run.
+     * For every zone, and for the whole warehouse as zone 0, three curves of completed tasks
+     * are saved: the mean as simulation 0, the lowest as simulation 1 and the highest as simulation 2.
+     * The warehouse curves are the sums of the zone curves.
+     * The best case of each zone is saved as notification and as the MC times of its tasks.
+     *
+     * @param aggregator The summaries of the simulations
+     * @param now        The start time of the simulations
+     */
+    public void saveSimulationSummary(SimulationAggregator aggregator, LocalDateTime now) {
+        System.out.println("Saving simulation summary...");
+        monteCarloService.dropAllData();
+
+        LocalDateTime[] bucketTimes = ZoneSummary.getBucketTimes(aggregator.getStartTime());
+        double[] totalMean = new double[bucketTimes.length];
+        int[] totalMin = new int[bucketTimes.length];
+        int[] totalMax = new int[bucketTimes.length];
+        for (ZoneSummary summary : aggregator.getZoneSummaries().values()) {
+            double[] mean = summary.getMeanCompleted();
+            int[] min = summary.getMinCompleted();
+            int[] max = summary.getMaxCompleted();
+            for (int i = 0; i < bucketTimes.length; i++) {
+                monteCarloService.generateSimulationDataPoint(0, bucketTimes[i], (int) Math.round(mean[i]), summary.getZoneId());
+                monteCarloService.generateSimulationDataPoint(1, bucketTimes[i], min[i], summary.getZoneId());
+                monteCarloService.generateSimulationDataPoint(2, bucketTimes[i], max[i], summary.getZoneId());
+                totalMean[i] += mean[i];
+                totalMin[i] += min[i];
+                totalMax[i] += max[i];
+            }
+        }
+        for (int i = 0; i < bucketTimes.length; i++) {
+            monteCarloService.generateSimulationDataPoint(0, bucketTimes[i], (int) Math.round(totalMean[i]), 0L);
+            monteCarloService.generateSimulationDataPoint(1, bucketTimes[i], totalMin[i], 0L);
+            monteCarloService.generateSimulationDataPoint(2, bucketTimes[i], totalMax[i], 0L);
+        }
+        System.out.println("Simulation summary saved.");
+
+        Map<Long, Notification> notifications =
+            notificationService.generateNotificationMapFromZones();
+        Map<Long, ZoneSimResult> bestCases = new HashMap<>();
+        for (ZoneSummary summary : aggregator.getZoneSummaries().values()) {
+            ZoneSimResult bestCase = summary.getBestCase();
+            if (bestCase != null && bestCase.getZone() != null) {
+                processZoneSimResult(bestCase, notifications, bestCases);
+            }
+        }
+        notificationService.deleteAll();
+        notifications.values().forEach(notificationService::saveNotification);
+        this.saveBestCases(bestCases, now);
+        System.out.println("ALL ZONE SIM RESULTS SAVED");
+    }
+
     private void saveZoneSimulation(List<ZoneSimResult> zoneSimResultList, int simulationIndex, LocalDateTime now) {
         if (zoneSimResultList == null || now == null) {
             throw new IllegalArgumentException("zoneSimResultList and now cannot be null");
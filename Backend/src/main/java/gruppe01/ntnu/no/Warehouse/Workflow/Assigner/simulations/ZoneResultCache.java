@@ -0,0 +1,339 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Timetable;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSummary;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Remembers the summary of each zone from earlier Monte Carlo runs, keyed on a hash of
+ * everything the simulation of the zone reads: its workers, their shifts, its unfinished tasks,
+ * the version of its model, the settings of the run and the clock rounded down to the clock
+ * bucket. A zone where none of these have changed since the last run reuses its summary instead
+ * of being simulated again, so a reused summary started at most one clock bucket earlier.
+ * An entry also expires once the simulated time has moved more than the time to live past it,
+ * or past the earliest end time it predicted.
+ * The least recently used entries are dropped when the cache is full.
+ */
+public class ZoneResultCache {
+
+  private final int maxEntries;
+
+  private volatile Duration timeToLive;
+
+  private final long clockBucketSeconds;
+
+  private final Map<Long, Entry> entries;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param maxEntries  The most zone summaries to keep
+   * @param timeToLive  How long in simulated time a summary can be reused
+   * @param clockBucket The clock is rounded down to it in the key of a zone
+   */
+  public ZoneResultCache(int maxEntries, Duration timeToLive, Duration clockBucket) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("Max entries must be positive");
+    }
+    if (clockBucket.toSeconds() <= 0) {
+      throw new IllegalArgumentException("The clock bucket must be at least one second");
+    }
+    this.maxEntries = maxEntries;
+    this.timeToLive = Objects.requireNonNull(timeToLive);
+    this.clockBucketSeconds = clockBucket.toSeconds();
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+        return size() > ZoneResultCache.this.maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Creates a view of the cache for one run.
+   *
+   * @param settingsKey A hash of the settings of the run that change the results,
+   *                    such as the number of simulations and the seed
+   * @return The view of the run
+   */
+  public Run forRun(long settingsKey) {
+    return new Run(this, settingsKey);
+  }
+
+  /**
+   * Gets the summary of a zone if it can still be used at the given time.
+   *
+   * @param key     The hash of the zone
+   * @param simTime The time the new run simulates from
+   * @return The summary rebased to the given time, or null if there is none
+   */
+  public ZoneSummary get(long key, LocalDateTime simTime) {
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(key);
+      if (entry != null && entry.isExpired(simTime, timeToLive)) {
+        entries.remove(key);
+        entry = null;
+      }
+    }
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return entry.simTime().equals(simTime) ? entry.summary() : entry.summary().rebase(simTime);
+  }
+
+  /**
+   * Stores the summary of a zone.
+   *
+   * @param key     The hash of the zone
+   * @param simTime The time the run simulated from
+   * @param summary The summary of the zone
+   */
+  public void put(long key, LocalDateTime simTime, ZoneSummary summary) {
+    Entry entry = new Entry(simTime, summary, summary.getMinEndTime());
+    synchronized (entries) {
+      entries.put(key, entry);
+    }
+  }
+
+  /**
+   * Removes every summary.
+   */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public Duration getTimeToLive() {
+    return timeToLive;
+  }
+
+  public void setTimeToLive(Duration timeToLive) {
+    this.timeToLive = Objects.requireNonNull(timeToLive);
+  }
+
+  /**
+   * Gets the clock bucket a time falls in.
+   *
+   * @param time The simulated time
+   * @return The number of the bucket, counted from the epoch
+   */
+  public long clockBucketOf(LocalDateTime time) {
+    return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), clockBucketSeconds);
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Hashes everything the simulation of a zone reads.
+   * Collections are hashed in ID order, so the hash does not depend on the order the database
+   * returned them in.
+   *
+   * @param settingsKey The hash of the settings of the run
+   * @param zone        The zone
+   * @param activeTasks The unfinished active tasks of the zone
+   * @param pickerTasks The unfinished picker tasks of the zone
+   * @param shiftIndex  The shifts of the day
+   * @param modelKey    The key of the model of a picker zone, see {@link #modelKey}, 0 without
+   * @param clockBucket The clock bucket the run starts in, see {@link #clockBucketOf}
+   * @return The hash of the zone
+   */
+  public static long hashZone(long settingsKey, Zone zone, List<ActiveTask> activeTasks,
+                              List<PickerTask> pickerTasks, ShiftIndex shiftIndex, long modelKey,
+                              long clockBucket) {
+    Hasher hasher = new Hasher(settingsKey)
+        .add(zone.getId())
+        .add(Boolean.TRUE.equals(zone.getIsPickerZone()))
+        .add(shiftIndex.getDay().toEpochDay())
+        .add(modelKey)
+        .add(clockBucket);
+
+    if (zone.getWorkers() != null) {
+      for (Worker worker : sortedById(zone.getWorkers(), Worker::getId)) {
+        hashWorker(hasher, worker);
+      }
+    }
+    List<Timetable> timetables = shiftIndex.getTimetables().stream()
+        .filter(timetable -> timetable.getWorker() != null
+            && Objects.equals(timetable.getWorker().getZone(), zone.getId()))
+        .sorted(Comparator.comparing((Timetable timetable) -> timetable.getWorker().getId(),
+                Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Timetable::getStartTime,
+                Comparator.nullsLast(Comparator.naturalOrder())))
+        .toList();
+    for (Timetable timetable : timetables) {
+      hasher.add(timetable.getWorker().getId())
+          .add(timetable.getRealStartTime())
+          .add(timetable.getRealEndTime());
+      hashWorker(hasher, timetable.getWorker());
+    }
+
+    for (ActiveTask activeTask : sortedById(activeTasks, ActiveTask::getId)) {
+      hasher.add(activeTask.getId())
+          .add(activeTask.getStartTime())
+          .add(activeTask.getEndTime())
+          .add(activeTask.getTask().getId())
+          .add(activeTask.getTask().getMinWorkers())
+          .add(activeTask.getTask().getMaxWorkers())
+          .add(activeTask.getTask().getMinTime())
+          .add(activeTask.getTask().getMaxTime())
+          .add(activeTask.getTask().getRequiredLicenseMask().hashCode());
+      if (activeTask.getWorkers() != null) {
+        for (Worker worker : sortedById(activeTask.getWorkers(), Worker::getId)) {
+          hasher.add(worker.getId());
+        }
+      }
+    }
+    for (PickerTask pickerTask : sortedById(pickerTasks, PickerTask::getId)) {
+      hasher.add(pickerTask.getId())
+          .add(pickerTask.getStartTime())
+          .add(pickerTask.getEndTime())
+          .add(pickerTask.getDistance())
+          .add(pickerTask.getPackAmount())
+          .add(pickerTask.getLinesAmount())
+          .add(pickerTask.getWeight())
+          .add(pickerTask.getVolume())
+          .add(pickerTask.getAvgHeight())
+          .add(pickerTask.getWorker() == null ? null : pickerTask.getWorker().getId());
+    }
+    return hasher.value();
+  }
+
+  /**
+   * Gets the key of a version of a model, for {@link #hashZone}.
+   *
+   * @param version The version of the model in the model registry
+   * @param trees   The number of trees the model is simulated with, after pruning
+   * @return The key of the model
+   */
+  public static long modelKey(long version, int trees) {
+    return new Hasher(version).add(trees).value();
+  }
+
+  private static void hashWorker(Hasher hasher, Worker worker) {
+    hasher.add(worker.getId())
+        .add(worker.getEfficiency())
+        .add(worker.isAvailability())
+        .add(worker.getLicenseMask().hashCode())
+        .add(worker.getCurrentActiveTask() == null ? null : worker.getCurrentActiveTask().getId())
+        .add(worker.getCurrentPickerTask() == null ? null : worker.getCurrentPickerTask().getId());
+  }
+
+  private static <T> List<T> sortedById(Collection<T> items, Function<T, Long> id) {
+    return items.stream()
+        .sorted(Comparator.comparing(id, Comparator.nullsLast(Comparator.naturalOrder())))
+        .toList();
+  }
+
+  /**
+   * A summary with the time it was simulated from.
+   */
+  private record Entry(LocalDateTime simTime, ZoneSummary summary, LocalDateTime minEndTime) {
+
+    // Expired if the clock went back, moved past the time to live,
+    // or moved past the earliest predicted end while the tasks are still unfinished
+    boolean isExpired(LocalDateTime time, Duration timeToLive) {
+      return time.isBefore(simTime)
+          || time.isAfter(simTime.plus(timeToLive))
+          || (minEndTime != null && time.isAfter(minEndTime));
+    }
+  }
+
+  /**
+   * The cache as seen by one run, with the settings of the run mixed into every key.
+   *
+   * @param cache       The cache
+   * @param settingsKey The hash of the settings of the run
+   */
+  public record Run(ZoneResultCache cache, long settingsKey) {
+
+    /**
+     * Hashes a zone with the settings of the run and the clock bucket of the time it starts at.
+     *
+     * @see ZoneResultCache#hashZone
+     */
+    public long keyOf(Zone zone, List<ActiveTask> activeTasks, List<PickerTask> pickerTasks,
+                      ShiftIndex shiftIndex, long modelKey, LocalDateTime simTime) {
+      return hashZone(settingsKey, zone, activeTasks, pickerTasks, shiftIndex, modelKey,
+          cache.clockBucketOf(simTime));
+    }
+  }
+
+  /**
+   * Folds values into a 64-bit hash with the SplitMix64 finalizer, order dependent.
+   */
+  private static final class Hasher {
+
+    private long hash;
+
+    Hasher(long seed) {
+      this.hash = mix(seed + 0x9e3779b97f4a7c15L);
+    }
+
+    Hasher add(long value) {
+      hash = mix(hash ^ mix(value + 0x9e3779b97f4a7c15L));
+      return this;
+    }
+
+    Hasher add(Long value) {
+      return value == null ? add(Long.MIN_VALUE) : add(value.longValue());
+    }
+
+    Hasher add(double value) {
+      return add(Double.doubleToLongBits(value));
+    }
+
+    Hasher add(boolean value) {
+      return add(value ? 1L : 2L);
+    }
+
+    Hasher add(LocalDateTime time) {
+      return time == null ? add(Long.MIN_VALUE + 1) : add(time.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    long value() {
+      return hash;
+    }
+
+    private static long mix(long z) {
+      z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+      z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+      return z ^ (z >>> 31);
+    }
+  }
+}
@@ -0,0 +1,332 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.distributed;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.MonteCarloJob;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.RandomStreams;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.SimulationAggregator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSummary;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorld;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorldSimulator;
+import jakarta.annotation.PreDestroy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Service;
+
+/**
+ * Spreads the simulations of a Monte Carlo run over worker processes on this machine.
+ * The simulation world and the models are serialized once per run and sent to every worker
+ * together with a range of simulation numbers. Each worker sends back the summary of every zone
+ * over its range, and the summaries are merged in the order of the ranges.
+ * The random stream of a simulation only depends on its number and zone, so the merged
+ * summaries have the same statistics as a run in a single process with the same seed.
+ * The best case of each zone is not sent back, it is simulated again here from its number.
+ * Workers connect back on the loopback address only and are kept between runs. Every coordinator
+ * has a random token it starts its workers with, a connection that does not send it is closed.
+ * Runs take turns, each run uses every worker.
+ */
+@Service
+public class MonteCarloCoordinator {
+
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+
+  private final WorkerLauncher launcher;
+
+  // Workers send it when they connect, so other local processes can not join as workers
+  private final String token = WorkerProtocol.newToken();
+
+  private final AtomicInteger workerProcesses = new AtomicInteger(0);
+
+  // Connected workers that are not running a range
+  private final List<WorkerConnection> workers = new ArrayList<>();
+
+  private ServerSocket serverSocket;
+
+  /**
+   * Creates a coordinator that starts its workers as separate JVMs.
+   */
+  public MonteCarloCoordinator() {
+    this(new ProcessWorkerLauncher(List.of()));
+  }
+
+  /**
+   * Creates a coordinator with the given way of starting workers.
+   *
+   * @param launcher Starts the workers
+   */
+  public MonteCarloCoordinator(WorkerLauncher launcher) {
+    this.launcher = launcher;
+  }
+
+  public boolean isEnabled() {
+    return workerProcesses.get() > 0;
+  }
+
+  public int getWorkerProcesses() {
+    return workerProcesses.get();
+  }
+
+  /**
+   * Sets the number of worker processes runs are spread over.
+   * Workers above the new number are stopped before the next run.
+   *
+   * @param workerProcesses The number of workers, 0 to run in a single process
+   */
+  public void setWorkerProcesses(int workerProcesses) {
+    if (workerProcesses < 0) {
+      throw new IllegalArgumentException("Worker processes must not be negative");
+    }
+    this.workerProcesses.set(workerProcesses);
+  }
+
+  /**
+   * Runs a range of simulations of the given zones on the worker processes and merges the
+   * summaries of the zones into the aggregator. Nothing is merged if the run fails or is
+   * cancelled, so the caller can run the simulations itself instead.
+   *
+   * @param world            The simulation world, with its entities
+   * @param models           The models of the picker zones, keyed by the index of the zone
+   * @param zoneIds          The IDs of the zones to simulate
+   * @param firstReplication The number of the first simulation
+   * @param simCount         The number of simulations to run
+   * @param streams          The random streams of the zones
+   * @param aggregator       The aggregator to merge the summaries into
+   * @param job              The job the run belongs to, stops waiting when cancelled
+   * @throws IOException          if a worker could not be reached or failed
+   * @throws InterruptedException if the thread was interrupted while waiting for the workers
+   */
+  public synchronized void run(SimWorld world, Map<Integer, PickingModel> models,
+                               List<Long> zoneIds, int firstReplication, int simCount,
+                               RandomStreams streams, SimulationAggregator aggregator,
+                               MonteCarloJob job) throws IOException, InterruptedException {
+    if (simCount <= 0 || zoneIds.isEmpty()) {
+      return;
+    }
+    int count = Math.min(Math.max(1, workerProcesses.get()), simCount);
+    List<WorkerConnection> connections = connect(count);
+    byte[] snapshot = WorkerProtocol.encode(new WorkerProtocol.Snapshot(world,
+        new HashMap<>(models)));
+    long[] zones = zoneIds.stream().mapToLong(Long::longValue).toArray();
+
+    List<Future<WorkerProtocol.RangeReply>> futures = new ArrayList<>();
+    List<WorkerProtocol.RangeReply> replies = new ArrayList<>();
+    boolean failed = true;
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    try {
+      for (int i = 0; i < count; i++) {
+        WorkerConnection connection = connections.get(i);
+        // Contiguous ranges that differ in size by at most one
+        int from = firstReplication + (int) ((long) simCount * i / count);
+        int to = firstReplication + (int) ((long) simCount * (i + 1) / count);
+        byte[] request = WorkerProtocol.encode(new WorkerProtocol.RangeRequest(streams,
+            aggregator.getStartTime(), zones, from, to));
+        futures.add(executor.submit(() -> connection.call(snapshot, request)));
+      }
+      for (Future<WorkerProtocol.RangeReply> future : futures) {
+        WorkerProtocol.RangeReply reply = await(future, job);
+        if (reply == null) {
+          return;
+        }
+        if (reply.errorMessage() != null) {
+          throw new IOException("Monte Carlo worker failed: " + reply.errorMessage());
+        }
+        replies.add(reply);
+      }
+      failed = false;
+    } finally {
+      if (failed) {
+        // A worker that failed or was left running a range of a cancelled job is not reused
+        connections.forEach(WorkerConnection::close);
+      } else {
+        synchronized (workers) {
+          workers.addAll(connections);
+        }
+      }
+      // Closing the connections first makes the calls that are still waiting fail right away
+      executor.close();
+    }
+    merge(world, models, streams, aggregator, replies);
+  }
+
+  /**
+   * Waits for the reply of a worker while the job is running.
+   *
+   * @return The reply, or null if the job was cancelled
+   */
+  private static WorkerProtocol.RangeReply await(Future<WorkerProtocol.RangeReply> future,
+                                                 MonteCarloJob job)
+      throws IOException, InterruptedException {
+    while (!job.isCancelled()) {
+      try {
+        return future.get(100, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        // Check the job again
+      } catch (ExecutionException e) {
+        throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Merges the summaries of the ranges in order, then simulates the best case of every zone
+   * again from the number of its simulation.
+   */
+  private static void merge(SimWorld world, Map<Integer, PickingModel> models,
+                            RandomStreams streams, SimulationAggregator aggregator,
+                            List<WorkerProtocol.RangeReply> replies) {
+    Map<Long, WorkerProtocol.ZoneRange> best = new LinkedHashMap<>();
+    for (WorkerProtocol.RangeReply reply : replies) {
+      for (WorkerProtocol.ZoneRange zoneRange : reply.zones()) {
+        if (zoneRange.summary().getReplications() == 0) {
+          continue;
+        }
+        aggregator.merge(zoneRange.summary());
+        WorkerProtocol.ZoneRange current = best.get(zoneRange.zoneId());
+        // Ranges are merged in order, so a tie keeps the lowest simulation number
+        if (current == null
+            || MonteCarloWorker.isBetter(zoneRange.bestEndTime(), current.bestEndTime())) {
+          best.put(zoneRange.zoneId(), zoneRange);
+        }
+      }
+    }
+    best.forEach((zoneId, zoneRange) -> {
+      int zone = world.indexOfZone(zoneId);
+      try {
+        ZoneSummary summary = aggregator.getZoneSummary(zoneId);
+        summary.setBestCase(new SimWorldSimulator(world, zone, models.get(zone),
+            streams.forZone(zoneRange.bestReplication(), zoneId)).run().toZoneSimResult());
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    });
+  }
+
+  /**
+   * Gets connected workers, starting new ones if there are not enough.
+   *
+   * @param count The number of workers
+   * @return The workers, taken out of the idle workers
+   */
+  private List<WorkerConnection> connect(int count) throws IOException {
+    List<WorkerConnection> connections;
+    synchronized (workers) {
+      while (workers.size() > count) {
+        workers.removeLast().close();
+      }
+      connections = new ArrayList<>(workers);
+      workers.clear();
+    }
+    if (connections.size() == count) {
+      return connections;
+    }
+    try {
+      if (serverSocket == null || serverSocket.isClosed()) {
+        serverSocket = new ServerSocket(0, count, InetAddress.getLoopbackAddress());
+        serverSocket.setSoTimeout((int) CONNECT_TIMEOUT.toMillis());
+      }
+      int missing = count - connections.size();
+      for (int i = 0; i < missing; i++) {
+        launcher.launch(serverSocket.getLocalPort(), token);
+      }
+      System.out.println("Starting " + missing + " Monte Carlo worker processes");
+      while (connections.size() < count) {
+        WorkerConnection connection = new WorkerConnection(serverSocket.accept());
+        if (connection.greets(token)) {
+          connections.add(connection);
+        } else {
+          System.out.println("Closed a connection that is not a Monte Carlo worker");
+          connection.close();
+        }
+      }
+      return connections;
+    } catch (IOException e) {
+      connections.forEach(WorkerConnection::close);
+      throw e;
+    }
+  }
+
+  /**
+   * Stops the workers and closes the port they connect to.
+   */
+  @PreDestroy
+  public void shutdown() {
+    synchronized (workers) {
+      workers.forEach(WorkerConnection::close);
+      workers.clear();
+    }
+    try {
+      if (serverSocket != null) {
+        serverSocket.close();
+      }
+    } catch (IOException e) {
+      System.out.println("Could not close the Monte Carlo worker port: " + e.getMessage());
+    }
+    launcher.stopAll();
+  }
+
+  /**
+   * The connection to one worker.
+   */
+  private static final class WorkerConnection {
+
+    private final Socket socket;
+
+    private final DataInputStream in;
+
+    private final DataOutputStream out;
+
+    WorkerConnection(Socket socket) throws IOException {
+      this.socket = socket;
+      socket.setTcpNoDelay(true);
+      this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    // Whether the other end sends the hello of a worker with the token, within the timeout
+    boolean greets(String token) {
+      try {
+        socket.setSoTimeout((int) CONNECT_TIMEOUT.toMillis());
+        boolean valid = WorkerProtocol.readHello(in, token);
+        socket.setSoTimeout(0);
+        return valid;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+
+    WorkerProtocol.RangeReply call(byte[] snapshot, byte[] request) throws IOException {
+      WorkerProtocol.writeFrame(out, snapshot);
+      WorkerProtocol.writeFrame(out, request);
+      return WorkerProtocol.decode(WorkerProtocol.readFrame(in), WorkerProtocol.RangeReply.class);
+    }
+
+    void close() {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // Already closed
+      }
+    }
+  }
+}
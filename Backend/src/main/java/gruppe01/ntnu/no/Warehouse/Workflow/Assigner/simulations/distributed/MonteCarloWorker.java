@@ -0,0 +1,151 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.distributed;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSummary;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.PickerDurations;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorld;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorldSimulator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimZoneRun;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A worker process of a distributed Monte Carlo run.
+ * Connects back to the coordinator on the loopback address and runs the ranges of simulations it
+ * is sent until the connection is closed. Zones are simulated in parallel, and the simulations of
+ * each zone in the order of their number, so the summary of a range does not depend on timing.
+ * Only the summaries of the zones and the number of the best simulation are sent back, the
+ * coordinator runs the best simulation again itself to get its tasks.
+ */
+public class MonteCarloWorker {
+
+  private final ExecutorService executor =
+      Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+  /**
+   * Starts a worker process.
+   * The token the coordinator started the worker with is read from the environment.
+   *
+   * @param args The port the coordinator listens on, on the loopback address
+   */
+  public static void main(String[] args) throws IOException {
+    String token = System.getenv(WorkerProtocol.TOKEN_VARIABLE);
+    if (args.length != 1 || token == null) {
+      System.out.println("Usage: " + WorkerProtocol.TOKEN_VARIABLE
+          + "=<token> MonteCarloWorker <port>");
+      System.exit(2);
+    }
+    new MonteCarloWorker().connect(Integer.parseInt(args[0]), token);
+    System.exit(0);
+  }
+
+  /**
+   * Connects to the coordinator and serves it until the connection is closed.
+   *
+   * @param port  The port the coordinator listens on, on the loopback address
+   * @param token The token the coordinator started the worker with
+   * @throws IOException if the connection fails
+   */
+  public void connect(int port, String token) throws IOException {
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      socket.setTcpNoDelay(true);
+      serve(new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+          new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())), token);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void serve(DataInputStream in, DataOutputStream out, String token)
+      throws IOException {
+    WorkerProtocol.writeHello(out, token);
+    while (true) {
+      byte[] snapshotFrame;
+      try {
+        snapshotFrame = WorkerProtocol.readFrame(in);
+      } catch (EOFException e) {
+        return;
+      }
+      WorkerProtocol.RangeRequest request =
+          WorkerProtocol.decode(WorkerProtocol.readFrame(in), WorkerProtocol.RangeRequest.class);
+      WorkerProtocol.RangeReply reply;
+      try {
+        reply = new WorkerProtocol.RangeReply(run(
+            WorkerProtocol.decode(snapshotFrame, WorkerProtocol.Snapshot.class), request), null);
+      } catch (Exception e) {
+        e.printStackTrace();
+        reply = new WorkerProtocol.RangeReply(null, String.valueOf(e.getMessage()));
+      }
+      WorkerProtocol.writeFrame(out, WorkerProtocol.encode(reply));
+    }
+  }
+
+  /**
+   * Runs a range of simulations of every zone of the request.
+   *
+   * @param snapshot The world and models of the run
+   * @param request  The zones and simulations to run
+   * @return The summary of each zone over the range, in the order of the request
+   */
+  List<WorkerProtocol.ZoneRange> run(WorkerProtocol.Snapshot snapshot,
+                                     WorkerProtocol.RangeRequest request)
+      throws InterruptedException, ExecutionException {
+    SimWorld world = snapshot.world();
+    // The picker tasks are estimated once for the whole range, on the threads of the zones
+    Map<Integer, PickerDurations> pickerDurations =
+        PickerDurations.estimate(world, snapshot.models(), executor::submit);
+    List<Future<WorkerProtocol.ZoneRange>> futures = new ArrayList<>();
+    for (long zoneId : request.zoneIds()) {
+      int zone = world.indexOfZone(zoneId);
+      if (zone < 0) {
+        throw new IllegalArgumentException("Zone " + zoneId + " is not in the world");
+      }
+      futures.add(executor.submit(() -> {
+        ZoneSummary summary = new ZoneSummary(zoneId, request.startTime());
+        int bestReplication = -1;
+        LocalDateTime bestEndTime = null;
+        for (int replication = request.from(); replication < request.to(); replication++) {
+          SimZoneRun run;
+          try {
+            run = new SimWorldSimulator(world, zone, snapshot.models().get(zone),
+                pickerDurations.get(zone), request.streams().forZone(replication, zoneId)).run();
+          } catch (Exception e) {
+            // Left out like a failed simulation in a single process
+            e.printStackTrace();
+            continue;
+          }
+          summary.addStatistics(run);
+          if (bestReplication < 0 || isBetter(run.getLastEndTime(), bestEndTime)) {
+            bestReplication = replication;
+            bestEndTime = run.getLastEndTime();
+          }
+        }
+        return new WorkerProtocol.ZoneRange(zoneId, summary, bestReplication, bestEndTime);
+      }));
+    }
+    List<WorkerProtocol.ZoneRange> zones = new ArrayList<>();
+    for (Future<WorkerProtocol.ZoneRange> future : futures) {
+      zones.add(future.get());
+    }
+    return zones;
+  }
+
+  // The same order as the best case of a ZoneSummary, any end time is better than none
+  static boolean isBetter(LocalDateTime candidate, LocalDateTime current) {
+    return candidate != null && (current == null || candidate.isBefore(current));
+  }
+}
@@ -0,0 +1,67 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.distributed;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts every Monte Carlo worker as a separate JVM on this machine, with the class path and
+ * preview setting of the running application.
+ * When the application runs from a Spring Boot jar, the worker is started through the
+ * PropertiesLauncher of the jar, so the classes nested in it can be loaded.
+ * The token is passed in the environment of the worker, which unlike its command line other
+ * users of the machine can not read.
+ */
+public class ProcessWorkerLauncher implements WorkerLauncher {
+
+  private final List<Process> processes = new ArrayList<>();
+
+  private final List<String> jvmOptions;
+
+  /**
+   * Constructor for ProcessWorkerLauncher.
+   *
+   * @param jvmOptions Extra options for the worker JVMs, such as the heap size
+   */
+  public ProcessWorkerLauncher(List<String> jvmOptions) {
+    this.jvmOptions = List.copyOf(jvmOptions);
+  }
+
+  @Override
+  public synchronized void launch(int port, String token) throws IOException {
+    List<String> command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    if (ManagementFactory.getRuntimeMXBean().getInputArguments().contains("--enable-preview")) {
+      command.add("--enable-preview");
+    }
+    command.addAll(jvmOptions);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    if (isInBootJar()) {
+      command.add("-Dloader.main=" + MonteCarloWorker.class.getName());
+      command.add("org.springframework.boot.loader.launch.PropertiesLauncher");
+    } else {
+      command.add(MonteCarloWorker.class.getName());
+    }
+    command.add(String.valueOf(port));
+    ProcessBuilder builder = new ProcessBuilder(command).inheritIO();
+    builder.environment().put(WorkerProtocol.TOKEN_VARIABLE, token);
+    processes.removeIf(process -> !process.isAlive());
+    processes.add(builder.start());
+  }
+
+  @Override
+  public synchronized void stopAll() {
+    processes.forEach(Process::destroy);
+    processes.clear();
+  }
+
+  private static boolean isInBootJar() {
+    CodeSource codeSource = MonteCarloWorker.class.getProtectionDomain().getCodeSource();
+    return codeSource != null && codeSource.getLocation() != null
+        && codeSource.getLocation().toString().contains("BOOT-INF");
+  }
+}
@@ -0,0 +1,25 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.distributed;
+
+import java.io.IOException;
+
+/**
+ * Starts Monte Carlo workers that connect back to the coordinator.
+ */
+public interface WorkerLauncher {
+
+  /**
+   * Starts a worker that connects to the given port on the loopback address.
+   *
+   * @param port  The port the coordinator listens on
+   * @param token The token the worker proves it was started by the coordinator with, it must
+   *              not be visible to other users of the machine
+   * @throws IOException if the worker could not be started
+   */
+  void launch(int port, String token) throws IOException;
+
+  /**
+   * Stops every worker that was started and is still running.
+   */
+  default void stopAll() {
+  }
+}
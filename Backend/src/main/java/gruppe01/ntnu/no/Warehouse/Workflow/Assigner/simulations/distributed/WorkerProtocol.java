@@ -0,0 +1,193 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.distributed;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.RandomStreams;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSummary;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorld;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The messages between the coordinator and the worker processes of a distributed Monte Carlo run.
+ * Every message is a frame: its length as an int followed by the Java serialized object.
+ * A worker opens the connection with a hello and the token the coordinator started it with, so
+ * only processes the coordinator started can join as workers.
+ * A run is a snapshot frame followed by a request frame, answered by a reply frame.
+ * Only classes of the application, the models and the JDK are accepted when reading a frame.
+ */
+final class WorkerProtocol {
+
+  // Sent by a worker when it connects, so a stray connection is not taken for a worker
+  static final int HELLO = 0x4d435731;
+
+  // The environment variable a worker process gets its token in
+  static final String TOKEN_VARIABLE = "MONTE_CARLO_WORKER_TOKEN";
+
+  private static final int TOKEN_BYTES = 32;
+
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  private static final int MAX_FRAME_BYTES = 512 * 1024 * 1024;
+
+  private static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+      "maxdepth=64;gruppe01.ntnu.no.warehouse.workflow.assigner.**;smile.**;java.**;!*");
+
+  private WorkerProtocol() {
+  }
+
+  /**
+   * Creates a random token for the workers of a coordinator.
+   *
+   * @return The token, as hex digits
+   */
+  static String newToken() {
+    byte[] token = new byte[TOKEN_BYTES];
+    RANDOM.nextBytes(token);
+    return HexFormat.of().formatHex(token);
+  }
+
+  /**
+   * Sends the hello of a worker.
+   *
+   * @param out   The stream to the coordinator
+   * @param token The token the worker was started with
+   * @throws IOException              if the hello could not be sent
+   * @throws IllegalArgumentException if the token is not a token of a coordinator
+   */
+  static void writeHello(DataOutputStream out, String token) throws IOException {
+    byte[] bytes = HexFormat.of().parseHex(token);
+    if (bytes.length != TOKEN_BYTES) {
+      throw new IllegalArgumentException("The token must be " + TOKEN_BYTES + " bytes");
+    }
+    out.writeInt(HELLO);
+    out.write(bytes);
+    out.flush();
+  }
+
+  /**
+   * Reads the hello of a worker and checks its token.
+   *
+   * @param in    The stream from the worker
+   * @param token The token of the coordinator
+   * @return true if the hello has the token of the coordinator
+   * @throws IOException if the hello could not be read
+   */
+  static boolean readHello(DataInputStream in, String token) throws IOException {
+    if (in.readInt() != HELLO) {
+      return false;
+    }
+    byte[] received = new byte[TOKEN_BYTES];
+    in.readFully(received);
+    return MessageDigest.isEqual(received, HexFormat.of().parseHex(token));
+  }
+
+  /**
+   * Everything the worker processes of a run share, serialized once by the coordinator.
+   *
+   * @param world  The simulation world, without entities
+   * @param models The models of the picker zones, keyed by the index of the zone in the world
+   */
+  record Snapshot(SimWorld world, Map<Integer, PickingModel> models) implements Serializable {
+  }
+
+  /**
+   * A range of simulations for one worker.
+   *
+   * @param streams   The random streams of the run
+   * @param startTime The start time of the simulations, used for the buckets of the summaries
+   * @param zoneIds   The IDs of the zones to simulate
+   * @param from      The first simulation of the range
+   * @param to        The simulation after the last one of the range
+   */
+  record RangeRequest(RandomStreams streams, LocalDateTime startTime, long[] zoneIds, int from,
+                      int to) implements Serializable {
+  }
+
+  /**
+   * The summary of one zone over a range of simulations.
+   *
+   * @param zoneId          The ID of the zone
+   * @param summary         The summary of the zone, without a best case
+   * @param bestReplication The simulation with the earliest end time, or -1 if there was none
+   * @param bestEndTime     The end time of the best simulation, or null
+   */
+  record ZoneRange(long zoneId, ZoneSummary summary, int bestReplication,
+                   LocalDateTime bestEndTime) implements Serializable {
+  }
+
+  /**
+   * The answer of a worker to a range request.
+   *
+   * @param zones        The summaries of the zones, or null if the range failed
+   * @param errorMessage The reason the range failed, or null
+   */
+  record RangeReply(List<ZoneRange> zones, String errorMessage) implements Serializable {
+  }
+
+  /**
+   * Serializes an object into the body of a frame.
+   *
+   * @param object The object to serialize
+   * @return The serialized object
+   * @throws IOException if the object can not be serialized
+   */
+  static byte[] encode(Serializable object) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(object);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Reads an object from the body of a frame.
+   *
+   * @param body The body of the frame
+   * @param type The expected type of the object
+   * @return The object
+   * @throws IOException if the body is not an object of the expected type
+   */
+  static <T> T decode(byte[] body, Class<T> type) throws IOException {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(body))) {
+      in.setObjectInputFilter(FILTER);
+      Object object = in.readObject();
+      if (!type.isInstance(object)) {
+        throw new InvalidClassException("Expected " + type.getName());
+      }
+      return type.cast(object);
+    } catch (ClassNotFoundException e) {
+      throw new InvalidClassException(e.getMessage());
+    }
+  }
+
+  static void writeFrame(DataOutputStream out, byte[] body) throws IOException {
+    out.writeInt(body.length);
+    out.write(body);
+    out.flush();
+  }
+
+  static byte[] readFrame(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0 || length > MAX_FRAME_BYTES) {
+      throw new IOException("Invalid frame length " + length);
+    }
+    byte[] body = new byte[length];
+    in.readFully(body);
+    return body;
+  }
+}
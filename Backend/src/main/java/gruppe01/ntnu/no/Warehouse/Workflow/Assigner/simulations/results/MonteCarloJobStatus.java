@@ -0,0 +1,49 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.MonteCarloJob;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The progress of a Monte Carlo job, as shown to the dashboard while it polls the job.
+ *
+ * @param id           The ID of the job
+ * @param state        The state of the job
+ * @param zones        The progress of every zone that has completed a simulation, in ID order
+ * @param result       The predicted completion time and error messages per zone ID,
+ *                     null until the job is done
+ * @param errorMessage The reason the job failed, or null
+ */
+public record MonteCarloJobStatus(String id, MonteCarloJob.State state,
+                                  Map<Long, ZoneProgress> zones,
+                                  Map<Long, List<String>> result, String errorMessage) {
+
+  /**
+   * Reads the progress of a job.
+   *
+   * @param job The job
+   * @return The progress of the job
+   */
+  public static MonteCarloJobStatus of(MonteCarloJob job) {
+    Map<Long, ZoneProgress> zones = new TreeMap<>();
+    SimulationAggregator aggregator = job.getAggregator();
+    if (aggregator != null) {
+      aggregator.getZoneSummaries().forEach((zoneId, summary) -> zones.put(zoneId,
+          new ZoneProgress(summary.getReplications(), job.getPlannedReplications())));
+    }
+    return new MonteCarloJobStatus(job.getId(), job.getState(), zones, job.getResult(),
+        job.getErrorMessage());
+  }
+
+  /**
+   * The progress of a zone.
+   *
+   * @param replications        The number of simulations of the zone that have completed
+   * @param plannedReplications The most simulations the zone will get,
+   *                            zones that converge early stop before this
+   */
+  public record ZoneProgress(long replications, int plannedReplications) {
+  }
+}
@@ -0,0 +1,80 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The Monte Carlo results of one what-if scenario, with the completion time distribution of
+ * every zone.
+ */
+public class ScenarioResult {
+
+  private final String name;
+
+  private final SimulationAggregator aggregator;
+
+  /**
+   * Constructor for ScenarioResult.
+   *
+   * @param name       The name of the scenario
+   * @param aggregator The summaries of the zones in the scenario
+   */
+  public ScenarioResult(String name, SimulationAggregator aggregator) {
+    this.name = name;
+    this.aggregator = aggregator;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  @JsonIgnore
+  public SimulationAggregator getAggregator() {
+    return aggregator;
+  }
+
+  /**
+   * Gets the completion time distribution of every zone.
+   *
+   * @return The distribution per zone ID, in ID order
+   */
+  public Map<Long, ZoneDistribution> getZones() {
+    Map<Long, ZoneDistribution> zones = new TreeMap<>();
+    aggregator.getZoneSummaries().forEach(
+        (zoneId, summary) -> zones.put(zoneId, ZoneDistribution.of(summary)));
+    return zones;
+  }
+
+  /**
+   * The completion time distribution of a zone.
+   *
+   * @param replications  The number of simulations of the zone
+   * @param mean          The mean end time
+   * @param min           The earliest end time
+   * @param p10           The 10th percentile of the end time
+   * @param p50           The median end time
+   * @param p90           The 90th percentile of the end time
+   * @param errorMessages The error messages of the zone
+   */
+  public record ZoneDistribution(long replications, LocalDateTime mean, LocalDateTime min,
+                                 LocalDateTime p10, LocalDateTime p50, LocalDateTime p90,
+                                 List<String> errorMessages) {
+
+    /**
+     * Reads the distribution from the summary of a zone.
+     *
+     * @param summary The summary of the zone
+     * @return The distribution of the zone
+     */
+    public static ZoneDistribution of(ZoneSummary summary) {
+      return new ZoneDistribution(summary.getReplications(), summary.getMeanEndTime(),
+          summary.getMinEndTime(), summary.getEndTimeQuantile(0.1),
+          summary.getEndTimeQuantile(0.5), summary.getEndTimeQuantile(0.9),
+          summary.getErrorMessages());
+    }
+  }
+}
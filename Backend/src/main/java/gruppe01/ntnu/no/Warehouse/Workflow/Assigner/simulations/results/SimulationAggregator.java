@@ -0,0 +1,133 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimZoneRun;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Folds the results of Monte Carlo simulations into one summary per zone as they complete.
+ * Replaces keeping a SimulationResult for every simulation, so the memory used does not grow
+ * with the number of simulations. Safe to add results from several threads at once.
+ */
+public class SimulationAggregator {
+
+  private final LocalDateTime startTime;
+
+  private final Map<Long, ZoneSummary> zoneSummaries = new ConcurrentHashMap<>();
+
+  /**
+   * Creates an empty aggregator.
+   *
+   * @param startTime The start time of the simulations
+   */
+  public SimulationAggregator(LocalDateTime startTime) {
+    this.startTime = startTime;
+  }
+
+  /**
+   * Folds the result of one zone in one simulation into the summary of the zone.
+   *
+   * @param zoneId        The ID of the zone
+   * @param zoneSimResult The result of the zone
+   */
+  public void add(Long zoneId, ZoneSimResult zoneSimResult) {
+    getOrCreate(zoneId).add(zoneSimResult);
+  }
+
+  /**
+   * Folds a simulation of a zone on a SimWorld into the summary of the zone.
+   *
+   * @param zoneId     The ID of the zone
+   * @param simZoneRun The run of the zone
+   */
+  public void add(Long zoneId, SimZoneRun simZoneRun) {
+    getOrCreate(zoneId).add(simZoneRun);
+  }
+
+  /**
+   * Folds all zones of one simulation into the summaries.
+   *
+   * @param simulationResult The result of one simulation
+   */
+  public void add(SimulationResult simulationResult) {
+    simulationResult.getZoneSimResults().forEach(this::add);
+  }
+
+  /**
+   * Merges another aggregator with the same start time into this one.
+   *
+   * @param other The aggregator to merge
+   */
+  public void merge(SimulationAggregator other) {
+    if (!startTime.equals(other.startTime)) {
+      throw new IllegalArgumentException("Can only merge aggregators with the same start time");
+    }
+    other.zoneSummaries.forEach((zoneId, summary) -> getOrCreate(zoneId).merge(summary));
+  }
+
+  /**
+   * Merges the summary of one zone with the same start time into this one.
+   *
+   * @param summary The summary to merge
+   */
+  public void merge(ZoneSummary summary) {
+    getOrCreate(summary.getZoneId()).merge(summary);
+  }
+
+  private ZoneSummary getOrCreate(Long zoneId) {
+    return zoneSummaries.computeIfAbsent(zoneId, id -> new ZoneSummary(id, startTime));
+  }
+
+  public LocalDateTime getStartTime() {
+    return startTime;
+  }
+
+  public Map<Long, ZoneSummary> getZoneSummaries() {
+    return Collections.unmodifiableMap(zoneSummaries);
+  }
+
+  public ZoneSummary getZoneSummary(Long zoneId) {
+    return zoneSummaries.get(zoneId);
+  }
+
+  public boolean isEmpty() {
+    return zoneSummaries.isEmpty();
+  }
+
+  /**
+   * Gets the mean end time of each zone.
+   * Zones where no simulation had an end time are left out.
+   *
+   * @return The mean end time per zone ID
+   */
+  public Map<Long, LocalDateTime> getMeanEndTimes() {
+    Map<Long, LocalDateTime> means = new HashMap<>();
+    zoneSummaries.forEach((zoneId, summary) -> {
+      LocalDateTime mean = summary.getMeanEndTime();
+      if (mean != null) {
+        means.put(zoneId, mean);
+      }
+    });
+    return means;
+  }
+
+  /**
+   * Gets the mean number of completed tasks in the whole warehouse per 10-minute bucket.
+   *
+   * @return The sum of the mean completed tasks of every zone per bucket
+   */
+  public double[] getMeanCompletedTotal() {
+    double[] total = new double[ZoneSummary.getBucketTimes(startTime).length];
+    for (ZoneSummary summary : zoneSummaries.values()) {
+      double[] mean = summary.getMeanCompleted();
+      for (int i = 0; i < total.length; i++) {
+        total[i] += mean[i];
+      }
+    }
+    return total;
+  }
+}
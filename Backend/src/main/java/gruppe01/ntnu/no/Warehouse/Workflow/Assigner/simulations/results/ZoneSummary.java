@@ -0,0 +1,387 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimZoneRun;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * A mergeable summary of the results of one zone across many simulations.
+ * Each simulation is folded into the summary when it completes, so the size of the summary
+ * does not grow with the number of simulations.
+ * Keeps the mean and minimum end time, a quantile sketch of the end times,
+ * the number of completed tasks per 10-minute bucket and the simulation with the earliest end time.
+ * The quantile sketch counts end times per minute, so the quantiles are exact to the minute
+ * and the sketch is bounded by the number of distinct minutes.
+ * The best case is not serialized, a summary read back from another process has none until
+ * one is set.
+ */
+public class ZoneSummary implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final int BUCKET_MINUTES = 10;
+
+  private final Long zoneId;
+
+  private final LocalDateTime startTime;
+
+  private long replications = 0;
+
+  private long endTimeCount = 0;
+
+  private double endTimeSum = 0;
+
+  // Number of simulations per end time, in epoch minutes
+  private final TreeMap<Long, Long> endTimeSketch = new TreeMap<>();
+
+  // Completed tasks per 10-minute bucket from the start time to the end of the day
+  private final long[] bucketSeconds;
+  private final long[] completedSum;
+  private final int[] completedMin;
+  private final int[] completedMax;
+
+  private transient ZoneSimResult bestCase;
+
+  private LocalDateTime bestCaseEndTime;
+
+  private List<String> errorMessages;
+
+  /**
+   * Creates an empty summary for a zone.
+   *
+   * @param zoneId    The ID of the zone
+   * @param startTime The start time of the simulations, the first bucket starts here
+   */
+  public ZoneSummary(Long zoneId, LocalDateTime startTime) {
+    this.zoneId = zoneId;
+    this.startTime = startTime;
+    this.bucketSeconds = Arrays.stream(getBucketTimes(startTime))
+        .mapToLong(time -> time.toEpochSecond(ZoneOffset.UTC))
+        .toArray();
+    int buckets = bucketSeconds.length;
+    this.completedSum = new long[buckets];
+    this.completedMin = new int[buckets];
+    this.completedMax = new int[buckets];
+    Arrays.fill(completedMin, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Folds the result of one simulation into the summary.
+   *
+   * @param zoneSimResult The result of the zone in one simulation
+   */
+  public void add(ZoneSimResult zoneSimResult) {
+    fold(zoneSimResult.getErrorMessage(), zoneSimResult.getLastEndTime(),
+        getEndEpochSeconds(zoneSimResult), () -> zoneSimResult);
+  }
+
+  /**
+   * Folds a simulation of the zone on a SimWorld into the summary.
+   * The run is only turned into a ZoneSimResult if it becomes the best case.
+   *
+   * @param simZoneRun The run of the zone in one simulation
+   */
+  public void add(SimZoneRun simZoneRun) {
+    fold(simZoneRun.getErrorMessages(), simZoneRun.getLastEndTime(),
+        simZoneRun.getEndEpochSeconds(), simZoneRun::toZoneSimResult);
+  }
+
+  /**
+   * Folds a simulation of the zone on a SimWorld into the summary without keeping it as the
+   * best case. Used for worlds without entities, where the caller keeps track of which
+   * simulation was the best.
+   *
+   * @param simZoneRun The run of the zone in one simulation
+   */
+  public void addStatistics(SimZoneRun simZoneRun) {
+    fold(simZoneRun.getErrorMessages(), simZoneRun.getLastEndTime(),
+        simZoneRun.getEndEpochSeconds(), null);
+  }
+
+  /**
+   * Sets the best case of the zone, for summaries that were folded without one.
+   *
+   * @param bestCase The result of the simulation with the earliest end time
+   */
+  public synchronized void setBestCase(ZoneSimResult bestCase) {
+    this.bestCase = bestCase;
+    this.bestCaseEndTime = bestCase.getLastEndTime();
+  }
+
+  // The best case is not tracked if there is no result supplier
+  private synchronized void fold(List<String> runErrorMessages, LocalDateTime lastEndTime,
+                                 long[] endTimes, Supplier<ZoneSimResult> result) {
+    replications++;
+    if (errorMessages == null) {
+      errorMessages = List.copyOf(runErrorMessages);
+    }
+    if (lastEndTime != null) {
+      long minutes = toMinutes(lastEndTime);
+      endTimeCount++;
+      endTimeSum += minutes;
+      endTimeSketch.merge(minutes, 1L, Long::sum);
+    }
+    if (result != null && (bestCase == null || isBetter(lastEndTime, bestCaseEndTime))) {
+      bestCase = result.get();
+      bestCaseEndTime = lastEndTime;
+    }
+    addCompletedTasks(endTimes);
+  }
+
+  /**
+   * Merges another summary of the same zone and start time into this one.
+   *
+   * @param other The summary to merge
+   */
+  public void merge(ZoneSummary other) {
+    if (!Objects.equals(zoneId, other.zoneId) || !Objects.equals(startTime, other.startTime)) {
+      throw new IllegalArgumentException("Can only merge summaries of the same zone and start");
+    }
+    // Copy the other summary first, so that the two locks are never held at the same time
+    ZoneSummary copy = new ZoneSummary(other.zoneId, other.startTime);
+    synchronized (other) {
+      copy.replications = other.replications;
+      copy.endTimeCount = other.endTimeCount;
+      copy.endTimeSum = other.endTimeSum;
+      copy.endTimeSketch.putAll(other.endTimeSketch);
+      System.arraycopy(other.completedSum, 0, copy.completedSum, 0, completedSum.length);
+      System.arraycopy(other.completedMin, 0, copy.completedMin, 0, completedMin.length);
+      System.arraycopy(other.completedMax, 0, copy.completedMax, 0, completedMax.length);
+      copy.errorMessages = other.errorMessages;
+      copy.bestCase = other.bestCase;
+      copy.bestCaseEndTime = other.bestCaseEndTime;
+    }
+    synchronized (this) {
+      replications += copy.replications;
+      endTimeCount += copy.endTimeCount;
+      endTimeSum += copy.endTimeSum;
+      copy.endTimeSketch.forEach((minutes, count) ->
+          endTimeSketch.merge(minutes, count, Long::sum));
+      for (int i = 0; i < completedSum.length; i++) {
+        completedSum[i] += copy.completedSum[i];
+        completedMin[i] = Math.min(completedMin[i], copy.completedMin[i]);
+        completedMax[i] = Math.max(completedMax[i], copy.completedMax[i]);
+      }
+      if (errorMessages == null) {
+        errorMessages = copy.errorMessages;
+      }
+      if (copy.bestCase != null && (bestCase == null
+          || isBetter(copy.bestCaseEndTime, bestCaseEndTime))) {
+        bestCase = copy.bestCase;
+        bestCaseEndTime = copy.bestCaseEndTime;
+      }
+    }
+  }
+
+  /**
+   * Copies the summary to a later start time, so it can be reused by a run that starts later.
+   * The end times are kept as they are. Each new bucket gets the completed tasks of the latest
+   * bucket at or before its time, buckets before the old start time count no completed tasks.
+   *
+   * @param newStartTime The start time of the copy
+   * @return A copy of the summary with buckets from the new start time
+   */
+  public ZoneSummary rebase(LocalDateTime newStartTime) {
+    ZoneSummary copy = new ZoneSummary(zoneId, newStartTime);
+    synchronized (this) {
+      copy.replications = replications;
+      copy.endTimeCount = endTimeCount;
+      copy.endTimeSum = endTimeSum;
+      copy.endTimeSketch.putAll(endTimeSketch);
+      copy.errorMessages = errorMessages;
+      copy.bestCase = bestCase;
+      copy.bestCaseEndTime = bestCaseEndTime;
+      int old = -1;
+      for (int i = 0; i < copy.bucketSeconds.length; i++) {
+        while (old + 1 < bucketSeconds.length && bucketSeconds[old + 1] <= copy.bucketSeconds[i]) {
+          old++;
+        }
+        if (old >= 0) {
+          copy.completedSum[i] = completedSum[old];
+          copy.completedMin[i] = completedMin[old];
+          copy.completedMax[i] = completedMax[old];
+        } else if (replications > 0) {
+          copy.completedMin[i] = 0;
+        }
+      }
+    }
+    return copy;
+  }
+
+  private static long[] getEndEpochSeconds(ZoneSimResult zoneSimResult) {
+    if (zoneSimResult.getZone() != null && zoneSimResult.getZone().getIsPickerZone()) {
+      return zoneSimResult.getPickerTasks().stream()
+          .map(PickerTask::getEndTime)
+          .filter(Objects::nonNull)
+          .mapToLong(time -> time.toEpochSecond(ZoneOffset.UTC))
+          .sorted()
+          .toArray();
+    }
+    return zoneSimResult.getActiveTasks().stream()
+        .map(ActiveTask::getEndTime)
+        .filter(Objects::nonNull)
+        .mapToLong(time -> time.toEpochSecond(ZoneOffset.UTC))
+        .sorted()
+        .toArray();
+  }
+
+  // Sweeps the sorted end times through the buckets
+  private void addCompletedTasks(long[] endTimes) {
+    int completed = 0;
+    for (int i = 0; i < bucketSeconds.length; i++) {
+      while (completed < endTimes.length && endTimes[completed] <= bucketSeconds[i]) {
+        completed++;
+      }
+      completedSum[i] += completed;
+      completedMin[i] = Math.min(completedMin[i], completed);
+      completedMax[i] = Math.max(completedMax[i], completed);
+    }
+  }
+
+  // An end time is better if it is earlier, any end time is better than none
+  private static boolean isBetter(LocalDateTime candidate, LocalDateTime current) {
+    return candidate != null && (current == null || candidate.isBefore(current));
+  }
+
+  private static long toMinutes(LocalDateTime time) {
+    return time.toEpochSecond(ZoneOffset.UTC) / 60;
+  }
+
+  private static LocalDateTime fromMinutes(long minutes) {
+    return LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+  }
+
+  /**
+   * Gets the times of the 10-minute buckets, from the start time to the end of the day.
+   *
+   * @param startTime The start time of the simulations
+   * @return The time of each bucket
+   */
+  public static LocalDateTime[] getBucketTimes(LocalDateTime startTime) {
+    LocalDateTime endOfDay = startTime.withHour(23).withMinute(59).withSecond(59);
+    int buckets = 0;
+    for (LocalDateTime time = startTime; !time.isAfter(endOfDay);
+         time = time.plusMinutes(BUCKET_MINUTES)) {
+      buckets++;
+    }
+    LocalDateTime[] times = new LocalDateTime[buckets];
+    for (int i = 0; i < buckets; i++) {
+      times[i] = startTime.plusMinutes((long) i * BUCKET_MINUTES);
+    }
+    return times;
+  }
+
+  public Long getZoneId() {
+    return zoneId;
+  }
+
+  public synchronized long getReplications() {
+    return replications;
+  }
+
+  /**
+   * Gets the mean end time of the simulations that have an end time.
+   *
+   * @return The mean end time, or null if no simulation has an end time
+   */
+  public synchronized LocalDateTime getMeanEndTime() {
+    if (endTimeCount == 0) {
+      return null;
+    }
+    return LocalDateTime.ofEpochSecond(Math.round(endTimeSum / endTimeCount * 60), 0,
+        ZoneOffset.UTC);
+  }
+
+  /**
+   * Gets the earliest end time of all simulations.
+   *
+   * @return The minimum end time, or null if no simulation has an end time
+   */
+  public synchronized LocalDateTime getMinEndTime() {
+    return endTimeSketch.isEmpty() ? null : fromMinutes(endTimeSketch.firstKey());
+  }
+
+  /**
+   * Gets a quantile of the end times, to the minute.
+   *
+   * @param quantile The quantile between 0 and 1, e.g. 0.9 for P90
+   * @return The end time at the quantile, or null if no simulation has an end time
+   */
+  public synchronized LocalDateTime getEndTimeQuantile(double quantile) {
+    if (quantile < 0 || quantile > 1) {
+      throw new IllegalArgumentException("Quantile must be between 0 and 1");
+    }
+    if (endTimeCount == 0) {
+      return null;
+    }
+    // Nearest rank
+    long rank = Math.max(1, (long) Math.ceil(quantile * endTimeCount));
+    long seen = 0;
+    for (Map.Entry<Long, Long> entry : endTimeSketch.entrySet()) {
+      seen += entry.getValue();
+      if (seen >= rank) {
+        return fromMinutes(entry.getKey());
+      }
+    }
+    return fromMinutes(endTimeSketch.lastKey());
+  }
+
+  /**
+   * Gets the mean number of completed tasks at the time of each 10-minute bucket.
+   *
+   * @return The mean number of completed tasks per bucket
+   */
+  public synchronized double[] getMeanCompleted() {
+    double[] mean = new double[completedSum.length];
+    for (int i = 0; i < mean.length && replications > 0; i++) {
+      mean[i] = (double) completedSum[i] / replications;
+    }
+    return mean;
+  }
+
+  /**
+   * Gets the lowest number of completed tasks at each 10-minute bucket across the simulations.
+   *
+   * @return The minimum number of completed tasks per bucket
+   */
+  public synchronized int[] getMinCompleted() {
+    return replications == 0 ? new int[completedMin.length] : completedMin.clone();
+  }
+
+  /**
+   * Gets the highest number of completed tasks at each 10-minute bucket across the simulations.
+   *
+   * @return The maximum number of completed tasks per bucket
+   */
+  public synchronized int[] getMaxCompleted() {
+    return completedMax.clone();
+  }
+
+  /**
+   * Gets the simulation of the zone with the earliest end time.
+   *
+   * @return The best case zone result, or null if the zone has not been simulated
+   */
+  public synchronized ZoneSimResult getBestCase() {
+    return bestCase;
+  }
+
+  /**
+   * Gets the error messages of the first simulation of the zone.
+   *
+   * @return The error messages, or null if the zone has not been simulated
+   */
+  public synchronized List<String> getErrorMessages() {
+    return errorMessages;
+  }
+}
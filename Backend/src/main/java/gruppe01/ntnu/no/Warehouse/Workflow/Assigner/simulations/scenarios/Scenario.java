@@ -0,0 +1,20 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.scenarios;
+
+import java.util.List;
+
+/**
+ * A what-if scenario, a named set of changes applied on top of the current state of the warehouse.
+ * The changes are only applied to the simulation, nothing is written to the database.
+ *
+ * @param name   The name of the scenario, shown next to its results
+ * @param deltas The changes of the scenario, applied in order
+ */
+public record Scenario(String name, List<ScenarioDelta> deltas) {
+
+  /**
+   * Replaces missing changes with an empty list.
+   */
+  public Scenario {
+    deltas = deltas == null ? List.of() : List.copyOf(deltas);
+  }
+}
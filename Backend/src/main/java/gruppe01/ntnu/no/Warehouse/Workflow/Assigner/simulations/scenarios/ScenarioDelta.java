@@ -0,0 +1,103 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.scenarios;
+
+import java.time.LocalDateTime;
+
+/**
+ * A single change to the warehouse in a what-if scenario.
+ * Only the fields used by the type of the change need to be set.
+ *
+ * @param type         The kind of change
+ * @param workerId     The worker to change, for the worker changes
+ * @param zoneId       The zone to move the worker to, for MOVE_WORKER
+ * @param availability The new availability of the worker, for SET_AVAILABILITY
+ * @param efficiency   The new efficiency of the worker, for SET_EFFICIENCY
+ * @param taskId       The task to add active tasks of, for ADD_ACTIVE_TASK
+ * @param activeTaskId The active task to remove, for REMOVE_ACTIVE_TASK
+ * @param pickerTaskId The picker task to remove, or to copy for ADD_PICKER_TASK
+ * @param count        The number of tasks to add, 1 if not set
+ * @param dueDate      The due date of the added active tasks, may be null
+ */
+public record ScenarioDelta(Type type, Long workerId, Long zoneId, Boolean availability,
+                            Double efficiency, Long taskId, Long activeTaskId, Long pickerTaskId,
+                            Integer count, LocalDateTime dueDate) {
+
+  /**
+   * The kinds of changes a scenario can make.
+   */
+  public enum Type {
+    MOVE_WORKER,
+    SET_AVAILABILITY,
+    SET_EFFICIENCY,
+    ADD_ACTIVE_TASK,
+    REMOVE_ACTIVE_TASK,
+    ADD_PICKER_TASK,
+    REMOVE_PICKER_TASK
+  }
+
+  /**
+   * Validates that the fields used by the type are set.
+   */
+  public ScenarioDelta {
+    if (type == null) {
+      throw new IllegalArgumentException("Scenario change must have a type");
+    }
+    boolean valid = switch (type) {
+      case MOVE_WORKER -> workerId != null && zoneId != null;
+      case SET_AVAILABILITY -> workerId != null && availability != null;
+      case SET_EFFICIENCY -> workerId != null && efficiency != null && efficiency > 0;
+      case ADD_ACTIVE_TASK -> taskId != null;
+      case REMOVE_ACTIVE_TASK -> activeTaskId != null;
+      case ADD_PICKER_TASK, REMOVE_PICKER_TASK -> pickerTaskId != null;
+    };
+    if (!valid) {
+      throw new IllegalArgumentException("Missing or invalid fields for " + type);
+    }
+    if (count != null && count < 1) {
+      throw new IllegalArgumentException("Count must be at least 1");
+    }
+  }
+
+  public static ScenarioDelta moveWorker(Long workerId, Long zoneId) {
+    return new ScenarioDelta(Type.MOVE_WORKER, workerId, zoneId, null, null, null, null, null,
+        null, null);
+  }
+
+  public static ScenarioDelta setAvailability(Long workerId, boolean availability) {
+    return new ScenarioDelta(Type.SET_AVAILABILITY, workerId, null, availability, null, null,
+        null, null, null, null);
+  }
+
+  public static ScenarioDelta setEfficiency(Long workerId, double efficiency) {
+    return new ScenarioDelta(Type.SET_EFFICIENCY, workerId, null, null, efficiency, null, null,
+        null, null, null);
+  }
+
+  public static ScenarioDelta addActiveTasks(Long taskId, int count, LocalDateTime dueDate) {
+    return new ScenarioDelta(Type.ADD_ACTIVE_TASK, null, null, null, null, taskId, null, null,
+        count, dueDate);
+  }
+
+  public static ScenarioDelta removeActiveTask(Long activeTaskId) {
+    return new ScenarioDelta(Type.REMOVE_ACTIVE_TASK, null, null, null, null, null, activeTaskId,
+        null, null, null);
+  }
+
+  public static ScenarioDelta addPickerTasks(Long pickerTaskId, int count) {
+    return new ScenarioDelta(Type.ADD_PICKER_TASK, null, null, null, null, null, null,
+        pickerTaskId, count, null);
+  }
+
+  public static ScenarioDelta removePickerTask(Long pickerTaskId) {
+    return new ScenarioDelta(Type.REMOVE_PICKER_TASK, null, null, null, null, null, null,
+        pickerTaskId, null, null);
+  }
+
+  /**
+   * Gets the number of tasks to add.
+   *
+   * @return The count, or 1 if it is not set
+   */
+  public int getCountOrOne() {
+    return count != null ? count : 1;
+  }
+}
@@ -0,0 +1,260 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.scenarios;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Task;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Timetable;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies the changes of a scenario on top of a snapshot of the warehouse.
+ * The snapshot is never modified, only the workers, timetables, zones and tasks that a scenario
+ * changes are copied, everything else is shared between the scenarios.
+ * Added tasks get negative IDs, so they can be told apart from the tasks in the database.
+ */
+public class ScenarioOverlay {
+
+  private final List<Zone> zones;
+
+  private final Map<Long, List<ActiveTask>> activeTasksByZone;
+
+  private final Map<Long, List<PickerTask>> pickerTasksByZone;
+
+  private final ShiftIndex shiftIndex;
+
+  private final Map<Long, Worker> workers = new HashMap<>();
+
+  private final Map<Long, Task> tasks = new HashMap<>();
+
+  private final Map<Long, ActiveTask> activeTasks = new HashMap<>();
+
+  private final Map<Long, PickerTask> pickerTasks = new HashMap<>();
+
+  /**
+   * Creates an overlay on a snapshot of the warehouse.
+   *
+   * @param zones             The zones of the warehouse
+   * @param activeTasksByZone The unfinished active tasks by zone ID
+   * @param pickerTasksByZone The unfinished picker tasks by zone ID
+   * @param shiftIndex        The shifts of the day
+   */
+  public ScenarioOverlay(List<Zone> zones, Map<Long, List<ActiveTask>> activeTasksByZone,
+                         Map<Long, List<PickerTask>> pickerTasksByZone, ShiftIndex shiftIndex) {
+    this.zones = zones;
+    this.activeTasksByZone = activeTasksByZone;
+    this.pickerTasksByZone = pickerTasksByZone;
+    this.shiftIndex = shiftIndex;
+    for (Zone zone : zones) {
+      if (zone.getWorkers() != null) {
+        zone.getWorkers().forEach(worker -> workers.putIfAbsent(worker.getId(), worker));
+      }
+      if (zone.getTasks() != null) {
+        zone.getTasks().forEach(task -> tasks.putIfAbsent(task.getId(), task));
+      }
+    }
+    for (Timetable timetable : shiftIndex.getTimetables()) {
+      if (timetable.getWorker() != null) {
+        workers.putIfAbsent(timetable.getWorker().getId(), timetable.getWorker());
+      }
+    }
+    activeTasksByZone.values().forEach(zoneTasks -> zoneTasks.forEach(activeTask -> {
+      activeTasks.put(activeTask.getId(), activeTask);
+      tasks.putIfAbsent(activeTask.getTask().getId(), activeTask.getTask());
+    }));
+    pickerTasksByZone.values().forEach(zoneTasks -> zoneTasks.forEach(
+        pickerTask -> pickerTasks.put(pickerTask.getId(), pickerTask)));
+  }
+
+  /**
+   * Applies the changes of a scenario.
+   *
+   * @param scenario The scenario to apply
+   * @return The state of the warehouse in the scenario
+   * @throws IllegalArgumentException if a change refers to a worker, zone or task that is not
+   *                                  in the snapshot
+   */
+  public State apply(Scenario scenario) {
+    if (scenario.deltas().isEmpty()) {
+      return new State(zones, activeTasksByZone, pickerTasksByZone, shiftIndex);
+    }
+    Map<Long, Worker> changedWorkers = new HashMap<>();
+    Set<Long> removedActiveTasks = new HashSet<>();
+    Set<Long> removedPickerTasks = new HashSet<>();
+    List<ActiveTask> addedActiveTasks = new ArrayList<>();
+    List<PickerTask> addedPickerTasks = new ArrayList<>();
+    long nextId = -1;
+    for (ScenarioDelta delta : scenario.deltas()) {
+      switch (delta.type()) {
+        case MOVE_WORKER -> {
+          if (zones.stream().noneMatch(zone -> zone.getId().equals(delta.zoneId()))) {
+            throw new IllegalArgumentException("Unknown zone " + delta.zoneId());
+          }
+          changedWorker(changedWorkers, delta.workerId()).setZone(delta.zoneId());
+        }
+        case SET_AVAILABILITY ->
+            changedWorker(changedWorkers, delta.workerId()).setAvailability(delta.availability());
+        case SET_EFFICIENCY ->
+            changedWorker(changedWorkers, delta.workerId()).setEfficiency(delta.efficiency());
+        case ADD_ACTIVE_TASK -> {
+          Task task = tasks.get(delta.taskId());
+          if (task == null) {
+            throw new IllegalArgumentException("Unknown task " + delta.taskId());
+          }
+          for (int i = 0; i < delta.getCountOrOne(); i++) {
+            ActiveTask activeTask = new ActiveTask();
+            activeTask.setId(nextId--);
+            activeTask.setTask(task);
+            activeTask.setDate(shiftIndex.getDay());
+            activeTask.setDueDate(delta.dueDate());
+            addedActiveTasks.add(activeTask);
+          }
+        }
+        case REMOVE_ACTIVE_TASK -> {
+          if (!activeTasks.containsKey(delta.activeTaskId())) {
+            throw new IllegalArgumentException("Unknown active task " + delta.activeTaskId());
+          }
+          removedActiveTasks.add(delta.activeTaskId());
+        }
+        case ADD_PICKER_TASK -> {
+          PickerTask template = pickerTasks.get(delta.pickerTaskId());
+          if (template == null) {
+            throw new IllegalArgumentException("Unknown picker task " + delta.pickerTaskId());
+          }
+          for (int i = 0; i < delta.getCountOrOne(); i++) {
+            PickerTask pickerTask = new PickerTask(template);
+            pickerTask.setId(nextId--);
+            pickerTask.setWorker(null);
+            pickerTask.setStartTime(null);
+            pickerTask.setEndTime(null);
+            addedPickerTasks.add(pickerTask);
+          }
+        }
+        case REMOVE_PICKER_TASK -> {
+          if (!pickerTasks.containsKey(delta.pickerTaskId())) {
+            throw new IllegalArgumentException("Unknown picker task " + delta.pickerTaskId());
+          }
+          removedPickerTasks.add(delta.pickerTaskId());
+        }
+      }
+    }
+
+    // Timetables point to the changed workers, so the shifts move with them
+    List<Timetable> timetables = new ArrayList<>();
+    for (Timetable timetable : shiftIndex.getTimetables()) {
+      Worker worker = timetable.getWorker();
+      if (worker == null || !changedWorkers.containsKey(worker.getId())) {
+        timetables.add(timetable);
+        continue;
+      }
+      Timetable copy = new Timetable(timetable.getStartTime(), timetable.getEndTime(),
+          changedWorkers.get(worker.getId()));
+      copy.setId(timetable.getId());
+      copy.setRealStartTime(timetable.getRealStartTime());
+      copy.setRealEndTime(timetable.getRealEndTime());
+      timetables.add(copy);
+    }
+
+    // Zones get their workers again from the zone of every worker
+    Map<Long, Set<Worker>> workersByZone = new HashMap<>();
+    Set<Long> seen = new HashSet<>();
+    for (Zone zone : zones) {
+      if (zone.getWorkers() == null) {
+        continue;
+      }
+      for (Worker worker : zone.getWorkers()) {
+        if (seen.add(worker.getId())) {
+          Worker current = changedWorkers.getOrDefault(worker.getId(), worker);
+          workersByZone.computeIfAbsent(current.getZone(), _ -> new HashSet<>()).add(current);
+        }
+      }
+    }
+    for (Worker worker : changedWorkers.values()) {
+      if (seen.add(worker.getId())) {
+        workersByZone.computeIfAbsent(worker.getZone(), _ -> new HashSet<>()).add(worker);
+      }
+    }
+    List<Zone> scenarioZones = new ArrayList<>();
+    for (Zone zone : zones) {
+      Zone copy = new Zone(zone);
+      copy.setWorkers(workersByZone.getOrDefault(zone.getId(), new HashSet<>()));
+      scenarioZones.add(copy);
+    }
+
+    Map<Long, List<ActiveTask>> scenarioActiveTasks = new LinkedHashMap<>();
+    activeTasksByZone.forEach((zoneId, zoneTasks) -> {
+      List<ActiveTask> list = new ArrayList<>();
+      for (ActiveTask activeTask : zoneTasks) {
+        if (removedActiveTasks.contains(activeTask.getId())) {
+          continue;
+        }
+        if (activeTask.getWorkers() != null && activeTask.getWorkers().stream()
+            .anyMatch(worker -> changedWorkers.containsKey(worker.getId()))) {
+          activeTask = new ActiveTask(activeTask);
+          activeTask.setWorkers(new ArrayList<>(activeTask.getWorkers().stream()
+              .map(worker -> changedWorkers.getOrDefault(worker.getId(), worker))
+              .toList()));
+        }
+        list.add(activeTask);
+      }
+      scenarioActiveTasks.put(zoneId, list);
+    });
+    for (ActiveTask activeTask : addedActiveTasks) {
+      scenarioActiveTasks.computeIfAbsent(activeTask.getTask().getZoneId(),
+          _ -> new ArrayList<>()).add(activeTask);
+    }
+
+    Map<Long, List<PickerTask>> scenarioPickerTasks = new LinkedHashMap<>();
+    pickerTasksByZone.forEach((zoneId, zoneTasks) -> {
+      List<PickerTask> list = new ArrayList<>();
+      for (PickerTask pickerTask : zoneTasks) {
+        if (removedPickerTasks.contains(pickerTask.getId())) {
+          continue;
+        }
+        Worker worker = pickerTask.getWorker();
+        if (worker != null && changedWorkers.containsKey(worker.getId())) {
+          pickerTask = new PickerTask(pickerTask);
+          pickerTask.setWorker(changedWorkers.get(worker.getId()));
+        }
+        list.add(pickerTask);
+      }
+      scenarioPickerTasks.put(zoneId, list);
+    });
+    for (PickerTask pickerTask : addedPickerTasks) {
+      scenarioPickerTasks.computeIfAbsent(pickerTask.getZoneId(), _ -> new ArrayList<>())
+          .add(pickerTask);
+    }
+
+    return new State(scenarioZones, scenarioActiveTasks, scenarioPickerTasks,
+        new ShiftIndex(shiftIndex.getDay(), timetables));
+  }
+
+  private Worker changedWorker(Map<Long, Worker> changedWorkers, Long workerId) {
+    Worker worker = workers.get(workerId);
+    if (worker == null) {
+      throw new IllegalArgumentException("Unknown worker " + workerId);
+    }
+    return changedWorkers.computeIfAbsent(workerId, _ -> new Worker(worker));
+  }
+
+  /**
+   * The state of the warehouse in a scenario.
+   *
+   * @param zones             The zones, with the workers of the scenario
+   * @param activeTasksByZone The unfinished active tasks by zone ID
+   * @param pickerTasksByZone The unfinished picker tasks by zone ID
+   * @param shiftIndex        The shifts of the day, with the workers of the scenario
+   */
+  public record State(List<Zone> zones, Map<Long, List<ActiveTask>> activeTasksByZone,
+                      Map<Long, List<PickerTask>> pickerTasksByZone, ShiftIndex shiftIndex) {
+  }
+}
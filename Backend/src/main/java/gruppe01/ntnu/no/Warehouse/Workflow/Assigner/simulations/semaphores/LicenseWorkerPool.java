@@ -0,0 +1,256 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.semaphores;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.LicenseMask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.services.TimetableService;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.random.RandomGenerator;
+
+/**
+ * A pool of the idle workers of a zone, split into one queue per license class.
+ * Workers with the same licenses share a queue, so a task only looks at the classes that have
+ * all the licenses it needs instead of checking every worker.
+ * Acquiring takes no global lock: workers are polled from the queues one by one, and if a task
+ * can not get all the workers it needs, the ones it took are put back, so a task gets either
+ * all of its workers or none of them.
+ * Follows the same rules and error codes as the WorkerSemaphore2.
+ */
+public class LicenseWorkerPool implements WorkerPool {
+
+  private final TimetableService timetableService;
+
+  // Idle workers by license class
+  private final Map<LicenseMask, ConcurrentLinkedQueue<Worker>> idle = new ConcurrentHashMap<>();
+
+  // Queues of the classes that qualify for a required mask, fewest licenses first
+  private final Map<LicenseMask, Qualifying> qualifying = new ConcurrentHashMap<>();
+
+  // Snapshot of the shifts of the day, if null the timetable service is queried instead
+  private ShiftIndex shiftIndex;
+
+  /**
+   * Creates an empty pool.
+   *
+   * @param timetableService service for retrieving workers timetables
+   */
+  public LicenseWorkerPool(TimetableService timetableService) {
+    this.timetableService = timetableService;
+  }
+
+  /**
+   * Fills the pool with the workers of the zone that are working on the day and not busy
+   * at the start time.
+   *
+   * @param workersSet the workers of the zone
+   * @param startTime  the current time of the simulation
+   * @param shiftIndex snapshot of the shifts of the day, or null to query the timetable service
+   * @param random     the random number generator of the zone, or null for an unseeded one
+   */
+  public void initialize(Set<Worker> workersSet, LocalDateTime startTime, ShiftIndex shiftIndex,
+                         RandomGenerator random) {
+    this.shiftIndex = shiftIndex;
+    idle.clear();
+    qualifying.clear();
+    Long zoneId = workersSet.iterator().next().getZone();
+    Set<Worker> working = shiftIndex != null
+        ? shiftIndex.getWorkersWorkingByDayAndZone(startTime, zoneId)
+        : timetableService.getWorkersWorkingByDayAndZone(startTime, zoneId);
+
+    // Workers are hashed by identity, sort them so the same seed gives the same order
+    List<Worker> workers = new ArrayList<>(working);
+    workers.sort(Comparator.comparing(Worker::getId,
+        Comparator.nullsLast(Comparator.naturalOrder())));
+    if (random != null) {
+      Collections.shuffle(workers, random);
+    } else {
+      Collections.shuffle(workers);
+    }
+    for (Worker worker : workers) {
+      if (!isBusy(worker, startTime)) {
+        queueOf(worker).offer(worker);
+      }
+    }
+  }
+
+  @Override
+  public String acquireMultiple(ActiveTask activeTask, PickerTask pickerTask,
+                                AtomicReference<LocalDateTime> startTime, Long zoneId) {
+    LocalDateTime time = startTime.get();
+    if (countWorkersNotFinished(zoneId, time) == 0) {
+      // ERROR: WORKERS HAVE GONE HOME, TASK CAN NOT COMPLETE
+      return "104:" + (activeTask != null ? activeTask.getId() : "null")
+          + ":" + (pickerTask != null ? pickerTask.getId() : "null");
+    }
+    if (activeTask == null) {
+      List<Worker> taken = take(LicenseMask.EMPTY, 1, time);
+      if (!taken.isEmpty()) {
+        pickerTask.setWorker(taken.getFirst());
+      }
+      return "";
+    }
+
+    int minWorkers = activeTask.getTask().getMinWorkers();
+    if (countWorkersNotFinished(zoneId, time) < minWorkers) {
+      // ERROR: NOT ENOUGH WORKERS AT ZONE FOR TASK
+      return "103:" + activeTask.getId();
+    }
+    if (countQualifiedWorkersToday(zoneId, time, activeTask) < minWorkers) {
+      // ERROR: NO QUALIFIED WORKERS AT ZONE FOR TASK
+      return "105:" + activeTask.getId();
+    }
+    int assigned = activeTask.getWorkers() == null ? 0 : activeTask.getWorkers().size();
+    int needed = Math.max(1, minWorkers - assigned);
+    List<Worker> taken = take(activeTask.getTask().getRequiredLicenseMask(), needed, time);
+    if (!taken.isEmpty()) {
+      activeTask.addMultilpleWorkers(taken);
+    }
+    return "";
+  }
+
+  @Override
+  public void release(Worker worker) {
+    queueOf(worker).offer(worker);
+  }
+
+  @Override
+  public void releaseAll(List<Worker> workers) {
+    for (Worker worker : workers) {
+      queueOf(worker).offer(worker);
+    }
+  }
+
+  /**
+   * Gets the number of idle workers in the pool.
+   *
+   * @return the number of idle workers
+   */
+  public int getIdleCount() {
+    return idle.values().stream().mapToInt(ConcurrentLinkedQueue::size).sum();
+  }
+
+  public String getWorkers() {
+    StringBuilder sb = new StringBuilder();
+    idle.values().forEach(queue -> queue.forEach(worker -> sb.append(worker.getId()).append(" ")));
+    return sb.toString();
+  }
+
+  /**
+   * Takes the given number of idle workers that are working at the time and have the required
+   * licenses. Workers whose shift has ended are dropped from the pool, workers whose shift has
+   * not started are put back. If there are not enough workers, none are taken.
+   */
+  private List<Worker> take(LicenseMask required, int count, LocalDateTime time) {
+    List<Worker> taken = new ArrayList<>(count);
+    List<Worker> notWorking = new ArrayList<>();
+    for (ConcurrentLinkedQueue<Worker> queue : qualifyingQueues(required)) {
+      // Only look at the workers that were in the queue when we got here
+      for (int i = queue.size(); i > 0 && taken.size() < count; i--) {
+        Worker worker = queue.poll();
+        if (worker == null) {
+          break;
+        }
+        if (workerIsWorking(time, worker.getId())) {
+          taken.add(worker);
+        } else if (!workerHasFinishedShift(worker.getId(), time)) {
+          notWorking.add(worker);
+        }
+      }
+      if (taken.size() == count) {
+        break;
+      }
+    }
+    notWorking.forEach(worker -> queueOf(worker).offer(worker));
+    if (taken.size() < count) {
+      // Put back what we took, so other tasks can use them
+      taken.forEach(worker -> queueOf(worker).offer(worker));
+      return List.of();
+    }
+    return taken;
+  }
+
+  private ConcurrentLinkedQueue<Worker> queueOf(Worker worker) {
+    LicenseMask mask = worker.getLicenseMask();
+    ConcurrentLinkedQueue<Worker> queue = idle.get(mask);
+    if (queue != null) {
+      return queue;
+    }
+    return idle.computeIfAbsent(mask, _ -> new ConcurrentLinkedQueue<>());
+  }
+
+  private List<ConcurrentLinkedQueue<Worker>> qualifyingQueues(LicenseMask required) {
+    // Classes are only ever added, so a lookup made with fewer classes is out of date
+    int classes = idle.size();
+    Qualifying cached = qualifying.get(required);
+    if (cached != null && cached.classes() == classes) {
+      return cached.queues();
+    }
+    List<ConcurrentLinkedQueue<Worker>> queues = idle.entrySet().stream()
+        .filter(entry -> entry.getKey().containsAll(required))
+        .sorted(Comparator.comparingInt((Map.Entry<LicenseMask, ?> entry) ->
+                entry.getKey().getCount())
+            .thenComparingLong(entry -> entry.getKey().getBits()))
+        .map(Map.Entry::getValue)
+        .toList();
+    qualifying.put(required, new Qualifying(classes, queues));
+    return queues;
+  }
+
+  /**
+   * The queues that qualify for a required mask, and the number of classes when they were found.
+   */
+  private record Qualifying(int classes, List<ConcurrentLinkedQueue<Worker>> queues) {
+  }
+
+  // Same rules as the initialization of the WorkerSemaphore2
+  private static boolean isBusy(Worker worker, LocalDateTime startTime) {
+    if (worker.getCurrentPickerTask() != null) {
+      PickerTask pickerTask = worker.getCurrentPickerTask();
+      return (pickerTask.getStartTime() != null
+          && pickerTask.getStartTime().toLocalDate().equals(startTime.toLocalDate())
+          && pickerTask.getEndTime() == null) || !worker.isAvailability();
+    } else if (worker.getCurrentActiveTask() != null) {
+      ActiveTask activeTask = worker.getCurrentActiveTask();
+      return (activeTask.getStartTime() != null
+          && activeTask.getStartTime().toLocalDate().equals(startTime.toLocalDate())
+          && activeTask.getEndTime() == null) || !worker.isAvailability();
+    }
+    return false;
+  }
+
+  private int countWorkersNotFinished(Long zoneId, LocalDateTime time) {
+    return shiftIndex != null
+        ? shiftIndex.countWorkersNotFinished(zoneId, time)
+        : timetableService.countWorkersNotFinished(zoneId, time);
+  }
+
+  private int countQualifiedWorkersToday(Long zoneId, LocalDateTime time, ActiveTask activeTask) {
+    return shiftIndex != null
+        ? shiftIndex.countQualifiedWorkersToday(zoneId, time, activeTask)
+        : timetableService.countQualifiedWorkersToday(zoneId, time, activeTask);
+  }
+
+  private boolean workerIsWorking(LocalDateTime time, Long workerId) {
+    return shiftIndex != null
+        ? shiftIndex.workerIsWorking(time, workerId)
+        : timetableService.workerIsWorking(time, workerId);
+  }
+
+  private boolean workerHasFinishedShift(Long workerId, LocalDateTime time) {
+    return shiftIndex != null
+        ? shiftIndex.workerHasFinishedShift(workerId, time)
+        : timetableService.workerHasFinishedShift(workerId, time);
+  }
+}
@@ -0,0 +1,45 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.semaphores;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The idle workers of a zone that tasks acquire workers from.
+ */
+public interface WorkerPool {
+
+  /**
+   * Tries to acquire the workers for a task.
+   * The workers are added to the active task or set on the picker task.
+   * If no workers could be acquired right now, the task is left as it is.
+   *
+   * @param activeTask the active task to acquire workers for, or null
+   * @param pickerTask the picker task to acquire a worker for, or null
+   * @param startTime  the current time of the simulation
+   * @param zoneId     the ID of the zone
+   * @return an error code if the task can never be completed, otherwise an empty string
+   * @throws InterruptedException if the thread is interrupted while acquiring
+   */
+  String acquireMultiple(ActiveTask activeTask, PickerTask pickerTask,
+                         AtomicReference<LocalDateTime> startTime, Long zoneId)
+      throws InterruptedException;
+
+  /**
+   * Returns a worker to the pool.
+   *
+   * @param worker the worker that is idle again
+   */
+  void release(Worker worker);
+
+  /**
+   * Returns several workers to the pool.
+   *
+   * @param workers the workers that are idle again
+   */
+  void releaseAll(List<Worker> workers);
+}
@@ -4,14 +4,17 @@ import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.services.TimetableService;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.random.RandomGenerator;
 
 import org.springframework.stereotype.Component;
 
@@ -22,13 +25,17 @@ import org.springframework.stereotype.Component;
  */
 
 @Component
-public class WorkerSemaphore2 {
+public class WorkerSemaphore2 implements WorkerPool {
   private final TimetableService timetableService;
 
   // Set of workers that are available
   private Set<Worker> workers;
   private Set<Worker> originalWorkers;
   private final ReentrantLock lock = new ReentrantLock();
+  // Snapshot of the shifts of the day, if null the timetable service is queried instead
+  private ShiftIndex shiftIndex;
+  // Source of the order workers are tried in, if null Collections.shuffle picks its own
+  private RandomGenerator random;
 
   /**
    * WorkerSemaphore constructor keeping accounts of the workers
@@ -46,9 +53,39 @@ public class WorkerSemaphore2 {
    * @param startTime  Current Time of the simulation / real-time-
    */
   public void initialize(Set<Worker> workersSet, LocalDateTime startTime) {
+    initialize(workersSet, startTime, null);
+  }
+
+  /**
+   * Initialize the WorkerSemaphore with a set of workers, a start time and a shift index.
+   * All shift lookups are answered by the index instead of the timetable service.
+   *
+   * @param workersSet set of workers to be initialized (Zone workers)
+   * @param startTime  Current Time of the simulation / real-time-
+   * @param shiftIndex snapshot of the shifts of the day, or null to query the timetable service
+   */
+  public void initialize(Set<Worker> workersSet, LocalDateTime startTime, ShiftIndex shiftIndex) {
+    initialize(workersSet, startTime, shiftIndex, null);
+  }
+
+  /**
+   * Initialize the WorkerSemaphore with a set of workers, a start time, a shift index and the
+   * random number generator used to shuffle the workers.
+   *
+   * @param workersSet set of workers to be initialized (Zone workers)
+   * @param startTime  Current Time of the simulation / real-time-
+   * @param shiftIndex snapshot of the shifts of the day, or null to query the timetable service
+   * @param random     the random number generator of the zone, or null for an unseeded one
+   */
+  public void initialize(Set<Worker> workersSet, LocalDateTime startTime, ShiftIndex shiftIndex,
+                         RandomGenerator random) {
+    this.shiftIndex = shiftIndex;
+    this.random = random;
     // Get workers that are working that day
-    this.workers = this.timetableService.getWorkersWorkingByDayAndZone(startTime,
-        workersSet.iterator().next().getZone());
+    Long zoneId = workersSet.iterator().next().getZone();
+    this.workers = shiftIndex != null
+        ? shiftIndex.getWorkersWorkingByDayAndZone(startTime, zoneId)
+        : this.timetableService.getWorkersWorkingByDayAndZone(startTime, zoneId);
 
     // Remove workers that are busy at the start time
     List<Worker> workersToRemove = new ArrayList<>();
@@ -77,13 +114,14 @@ public class WorkerSemaphore2 {
 
   }
 
+  @Override
   public String acquireMultiple(ActiveTask activeTask, PickerTask pickerTask,
                                 AtomicReference<LocalDateTime> startTime, Long zoneId)
       throws InterruptedException {
     // Acquire the lock to ensure thread safety
     lock.lock();
     try {
-      int workersNotFinished = timetableService.countWorkersNotFinished(zoneId, startTime.get());
+      int workersNotFinished = countWorkersNotFinished(zoneId, startTime.get());
       if (workersNotFinished == 0) {
         // ERROR: WORKERS HAVE GONE HOME, TASK CAN NOT COMPLETE
         return "104:" + (activeTask != null ? activeTask.getId() : "null") +
@@ -94,26 +132,32 @@ public class WorkerSemaphore2 {
         // Check if the workers are available
         List<Worker> workersToRemove = new ArrayList<>();
         List<Worker> workerList = new ArrayList<>(workers);
-        Collections.shuffle(workerList);
+        if (random != null) {
+          // Workers are hashed by identity, sort them so the same seed gives the same order
+          workerList.sort(Comparator.comparing(Worker::getId,
+              Comparator.nullsLast(Comparator.naturalOrder())));
+          Collections.shuffle(workerList, random);
+        } else {
+          Collections.shuffle(workerList);
+        }
 
         if (activeTask != null) {
           if (workersNotFinished < activeTask.getTask().getMinWorkers()) {
             // ERROR: NOT ENOUGH WORKERS AT ZONE FOR TASK
             return "103:" + activeTask.getId();
           }
-          if (timetableService.countQualifiedWorkersToday(zoneId, startTime.get(), activeTask) <
+          if (countQualifiedWorkersToday(zoneId, startTime.get(), activeTask) <
               activeTask.getTask().getMinWorkers()) {
             // ERROR: NO QUALIFIED WORKERS AT ZONE FOR TASK
             return "105:" + activeTask.getId();
           }
-          workerList.removeIf(worker -> !worker.getLicenses()
-              .containsAll(activeTask.getTask().getRequiredLicense()));
+          workerList.removeIf(worker -> !worker.isQualifiedFor(activeTask.getTask()));
           // No qualified workers available currently
           if (workerList.isEmpty() || workerList.size() < activeTask.getTask().getMinWorkers()) {
             return "";
           }
           for (Worker worker : workerList) {
-            if (timetableService.workerIsWorking(startTime.get(), worker.getId())) {
+            if (workerIsWorking(startTime.get(), worker.getId())) {
               workersToRemove.add(worker);
               if (workersToRemove.size() == activeTask.getTask().getMaxWorkers()) {
                 activeTask.addMultilpleWorkers(workersToRemove);
@@ -129,7 +173,7 @@ public class WorkerSemaphore2 {
               workersToRemove.forEach(workers::remove);
               //System.out.println("Acquired minimum workers for ActiveTask: " + activeTask.getId() + "at Zone: " + zoneId);
               return "";
-            } else if (timetableService.workerHasFinishedShift(worker.getId(), startTime.get())) {
+            } else if (workerHasFinishedShift(worker.getId(), startTime.get())) {
               workers.remove(worker);
             }
 
@@ -138,7 +182,7 @@ public class WorkerSemaphore2 {
           }
         } else {
           for (Worker worker : workerList) {
-            if (timetableService.workerIsWorking(startTime.get(), worker.getId())) {
+            if (workerIsWorking(startTime.get(), worker.getId())) {
               workersToRemove.add(worker);
               assert pickerTask != null;
               if (pickerTask.getWorker() == null) {
@@ -148,7 +192,7 @@ public class WorkerSemaphore2 {
                 return "";
               }
             } else {
-              if (timetableService.workerHasFinishedShift(worker.getId(), startTime.get())) {
+              if (workerHasFinishedShift(worker.getId(), startTime.get())) {
                 workers.remove(worker);
               }
             }
@@ -161,12 +205,38 @@ public class WorkerSemaphore2 {
     }
   }
 
+  private int countWorkersNotFinished(Long zoneId, LocalDateTime time) {
+    return shiftIndex != null
+        ? shiftIndex.countWorkersNotFinished(zoneId, time)
+        : timetableService.countWorkersNotFinished(zoneId, time);
+  }
+
+  private int countQualifiedWorkersToday(Long zoneId, LocalDateTime time, ActiveTask activeTask) {
+    return shiftIndex != null
+        ? shiftIndex.countQualifiedWorkersToday(zoneId, time, activeTask)
+        : timetableService.countQualifiedWorkersToday(zoneId, time, activeTask);
+  }
+
+  private boolean workerIsWorking(LocalDateTime time, Long workerId) {
+    return shiftIndex != null
+        ? shiftIndex.workerIsWorking(time, workerId)
+        : timetableService.workerIsWorking(time, workerId);
+  }
+
+  private boolean workerHasFinishedShift(Long workerId, LocalDateTime time) {
+    return shiftIndex != null
+        ? shiftIndex.workerHasFinishedShift(workerId, time)
+        : timetableService.workerHasFinishedShift(workerId, time);
+  }
+
+  @Override
   public void release(Worker worker) {
     synchronized (workers) {
       workers.add(worker);
     }
   }
 
+  @Override
   public void releaseAll(List<Worker> allWorkers) {
     synchronized (workers) {
       workers.addAll(allWorkers);
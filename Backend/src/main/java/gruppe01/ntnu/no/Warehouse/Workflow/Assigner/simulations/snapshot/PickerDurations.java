@@ -0,0 +1,175 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * The estimated durations of the picker tasks of a zone of a SimWorld, for every worker that can
+ * do them. The model and the features of a task do not change between the simulations of a run,
+ * so every task and worker pair is estimated once, when the run starts, instead of in every
+ * simulation.
+ * The durations are kept in a dense matrix with a row per position of a task in the zone and a
+ * column per worker of the zone. A task that already has a worker is only estimated for that
+ * worker, since no other worker can take it.
+ * Immutable once built and shared by all simulations of the zone.
+ */
+public final class PickerDurations {
+
+  // Duration of a task and worker pair that was not estimated
+  public static final long NOT_ESTIMATED = Long.MIN_VALUE;
+
+  // Rows estimated in one prediction
+  private static final int CHUNK_ROWS = 1024;
+
+  private static final MachineLearningModelPicking mlModel = new MachineLearningModelPicking();
+
+  // Column of each worker of the world, or -1 if the worker is not in the zone
+  private final int[] columnOfWorker;
+
+  private final int columns;
+
+  // Estimated time in seconds, by position of the task times columns plus column of the worker
+  private final long[] durations;
+
+  private PickerDurations(int[] columnOfWorker, int columns, long[] durations) {
+    this.columnOfWorker = columnOfWorker;
+    this.columns = columns;
+    this.durations = durations;
+  }
+
+  /**
+   * Estimates the durations of the picker tasks of every picker zone that has a model.
+   * The rows of all zones are split into chunks that are estimated in parallel with the batch
+   * predictor. The chunks are submitted like the simulations, so they share their thread limit
+   * and are cancelled with their run. Must not be called from a work item of the same executor,
+   * since it waits for the chunks.
+   *
+   * @param world  The world to estimate the tasks of
+   * @param models The models of the picker zones, keyed by the index of the zone
+   * @param submit Submits a chunk to the executor the simulations run on
+   * @return The durations of each zone that has picker tasks and a model, by index of the zone
+   * @throws InterruptedException if the thread was interrupted while waiting for the estimates
+   * @throws ExecutionException   if a chunk could not be estimated
+   */
+  public static Map<Integer, PickerDurations> estimate(SimWorld world,
+                                                       Map<Integer, PickingModel> models,
+                                                       Function<Callable<?>, Future<?>> submit)
+      throws InterruptedException, ExecutionException {
+    Map<Integer, PickerDurations> result = new HashMap<>();
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      for (Map.Entry<Integer, PickingModel> entry : models.entrySet()) {
+        int zone = entry.getKey();
+        if (zone < 0 || zone >= world.getZoneCount() || !world.zoneIsPicker[zone]
+            || world.zoneErrors[zone] != null || entry.getValue() == null) {
+          continue;
+        }
+        Builder builder = new Builder(world, zone);
+        if (builder.rows.isEmpty()) {
+          continue;
+        }
+        for (int from = 0; from < builder.rows.size(); from += CHUNK_ROWS) {
+          int start = from;
+          int end = Math.min(builder.rows.size(), from + CHUNK_ROWS);
+          futures.add(submit.apply(() -> {
+            builder.estimate(entry.getValue(), start, end);
+            return null;
+          }));
+        }
+        result.put(zone, builder.durations);
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException | ExecutionException | RuntimeException e) {
+      // The other chunks are not needed any more
+      futures.forEach(future -> future.cancel(false));
+      throw e;
+    }
+    return result;
+  }
+
+  /**
+   * Gets the estimated duration of a picker task done by a worker.
+   *
+   * @param position The position of the task in the zone
+   * @param worker   The index of the worker in the world
+   * @return The estimated time in seconds, or NOT_ESTIMATED if the pair was not estimated
+   */
+  public long get(int position, int worker) {
+    int column = columnOfWorker[worker];
+    return column < 0 ? NOT_ESTIMATED : durations[position * columns + column];
+  }
+
+  /**
+   * Collects the task and worker pairs of a zone and fills in their estimates.
+   */
+  private static final class Builder {
+    private final SimWorld world;
+    private final int[] tasks;
+    private final PickerDurations durations;
+    // The position of the task and the worker of each pair to estimate
+    private final List<int[]> rows = new ArrayList<>();
+
+    private Builder(SimWorld world, int zone) {
+      this.world = world;
+      this.tasks = world.zoneTasks[zone];
+      // The workers a picker task can get are the free workers and the assigned workers
+      int[] columnOfWorker = new int[world.getWorkerCount()];
+      Arrays.fill(columnOfWorker, -1);
+      int columns = 0;
+      for (int worker : world.zoneFreeWorkers[zone]) {
+        if (columnOfWorker[worker] < 0) {
+          columnOfWorker[worker] = columns++;
+        }
+      }
+      for (int task : tasks) {
+        int worker = world.pickerWorker[task];
+        if (worker != SimWorld.NO_WORKER && columnOfWorker[worker] < 0) {
+          columnOfWorker[worker] = columns++;
+        }
+      }
+      long[] matrix = new long[tasks.length * columns];
+      Arrays.fill(matrix, NOT_ESTIMATED);
+      this.durations = new PickerDurations(columnOfWorker, columns, matrix);
+
+      for (int position = 0; position < tasks.length; position++) {
+        int assigned = world.pickerWorker[tasks[position]];
+        if (assigned != SimWorld.NO_WORKER) {
+          rows.add(new int[] {position, assigned});
+          continue;
+        }
+        for (int worker : world.zoneFreeWorkers[zone]) {
+          rows.add(new int[] {position, worker});
+        }
+      }
+    }
+
+    // Estimates the pairs from start to end in one prediction, each chunk writes its own cells
+    private void estimate(PickingModel model, int start, int end) {
+      double[][] features = new double[end - start][];
+      for (int i = start; i < end; i++) {
+        int[] row = rows.get(i);
+        double[] taskFeatures = world.pickerFeatures[tasks[row[0]]];
+        features[i - start] = Arrays.copyOf(taskFeatures, taskFeatures.length + 1);
+        features[i - start][taskFeatures.length] = world.workerIds[row[1]];
+      }
+      long[] times = mlModel.estimateTimesUsingFeatures(model, features);
+      for (int i = start; i < end; i++) {
+        int[] row = rows.get(i);
+        durations.durations[row[0] * durations.columns + durations.columnOfWorker[row[1]]] =
+            times[i - start];
+      }
+    }
+  }
+}
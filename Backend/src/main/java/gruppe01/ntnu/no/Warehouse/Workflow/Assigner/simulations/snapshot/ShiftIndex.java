@@ -0,0 +1,303 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.LicenseMask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Timetable;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable snapshot of the shifts of a single day.
+ * Built once from the timetables of the day, and answers the same questions as the
+ * timetable queries in TimetableService without going to the database.
+ * Shift times are kept as sorted arrays per zone and per worker,
+ * so every question is answered with a binary search.
+ * Follows the same rules as the database queries: only timetables scheduled to start on the
+ * day are included, and only available workers are counted in a zone.
+ */
+public final class ShiftIndex {
+
+  // Used for shifts without a real end time, they are never finished
+  private static final long OPEN = Long.MAX_VALUE;
+
+  private final LocalDate day;
+
+  private final List<Timetable> timetables;
+
+  private final Map<Long, ZoneShifts> zones;
+
+  private final Map<Long, WorkerShifts> workers;
+
+  /**
+   * Builds the index from the timetables of a day.
+   *
+   * @param day        The day of the index
+   * @param timetables The timetables scheduled to start on the day
+   */
+  public ShiftIndex(LocalDate day, List<Timetable> timetables) {
+    this.day = day;
+    this.timetables = List.copyOf(timetables);
+    Map<Long, List<Timetable>> byZone = new HashMap<>();
+    Map<Long, List<Timetable>> byWorker = new HashMap<>();
+    for (Timetable timetable : timetables) {
+      Worker worker = timetable.getWorker();
+      if (worker == null) {
+        continue;
+      }
+      byWorker.computeIfAbsent(worker.getId(), _ -> new ArrayList<>()).add(timetable);
+      if (worker.getZone() != null && worker.isAvailability()) {
+        byZone.computeIfAbsent(worker.getZone(), _ -> new ArrayList<>()).add(timetable);
+      }
+    }
+    Map<Long, ZoneShifts> zoneShifts = new HashMap<>();
+    byZone.forEach((zoneId, zoneTimetables) ->
+        zoneShifts.put(zoneId, new ZoneShifts(zoneTimetables)));
+    Map<Long, WorkerShifts> workerShifts = new HashMap<>();
+    byWorker.forEach((workerId, workerTimetables) ->
+        workerShifts.put(workerId, new WorkerShifts(workerTimetables)));
+    this.zones = Collections.unmodifiableMap(zoneShifts);
+    this.workers = Collections.unmodifiableMap(workerShifts);
+  }
+
+  public LocalDate getDay() {
+    return day;
+  }
+
+  public List<Timetable> getTimetables() {
+    return timetables;
+  }
+
+  /**
+   * Counts how many workers have not finished working in a zone at a specific time.
+   *
+   * @param zoneId the ID of the zone
+   * @param time   the time to check
+   * @return the number of workers who have not finished working, or 0 if none
+   */
+  public int countWorkersNotFinished(Long zoneId, LocalDateTime time) {
+    ZoneShifts zone = zones.get(zoneId);
+    if (zone == null || !isSameDay(time)) {
+      return 0;
+    }
+    return countAfter(zone.ends, toSeconds(time));
+  }
+
+  /**
+   * Counts the number of workers in a zone that have not finished working at a specific time
+   * and have all the licenses required by the task.
+   *
+   * @param zoneId     the ID of the zone
+   * @param time       the time to check
+   * @param activeTask the active task to check against
+   * @return the number of qualified workers
+   */
+  public int countQualifiedWorkersToday(Long zoneId, LocalDateTime time, ActiveTask activeTask) {
+    ZoneShifts zone = zones.get(zoneId);
+    if (activeTask == null || zone == null || !isSameDay(time)) {
+      return 0;
+    }
+    long[] ends = zone.qualifiedEnds(activeTask.getTask().getRequiredLicenseMask());
+    return countAfter(ends, toSeconds(time));
+  }
+
+  /**
+   * Checks if a worker is working at a specific time.
+   *
+   * @param time     the time to check
+   * @param workerId the ID of the worker
+   * @return true if the worker is working, false otherwise
+   */
+  public boolean workerIsWorking(LocalDateTime time, Long workerId) {
+    WorkerShifts worker = workers.get(workerId);
+    if (worker == null || !isSameDay(time)) {
+      return false;
+    }
+    long seconds = toSeconds(time);
+    // The last shift that has started at the given time
+    int index = countAtOrBefore(worker.starts, seconds) - 1;
+    return index >= 0 && worker.maxEndSoFar[index] >= seconds;
+  }
+
+  /**
+   * Checks if a worker has finished a shift at a specific time.
+   *
+   * @param workerId the ID of the worker
+   * @param time     the time to check
+   * @return true if the worker has finished their shift, false otherwise
+   */
+  public boolean workerHasFinishedShift(Long workerId, LocalDateTime time) {
+    WorkerShifts worker = workers.get(workerId);
+    if (worker == null || !isSameDay(time)) {
+      return false;
+    }
+    return worker.firstEnd <= toSeconds(time);
+  }
+
+  /**
+   * Gets the first start time of an available worker in a zone.
+   *
+   * @param zoneId the ID of the zone
+   * @param time   the day to check
+   * @return the first start time, or the start of the day if no workers are working
+   */
+  public LocalDateTime getFirstStartTimeByZoneAndDay(Long zoneId, LocalDateTime time) {
+    ZoneShifts zone = zones.get(zoneId);
+    if (zone == null || zone.firstStart == null || !isSameDay(time)) {
+      return time.toLocalDate().atStartOfDay();
+    }
+    return zone.firstStart;
+  }
+
+  /**
+   * Gets the available workers working in a zone.
+   * The returned set is a new set and can be modified by the caller.
+   *
+   * @param time   the day to check
+   * @param zoneId the ID of the zone
+   * @return A set of workers working on the day in the zone
+   */
+  public Set<Worker> getWorkersWorkingByDayAndZone(LocalDateTime time, Long zoneId) {
+    ZoneShifts zone = zones.get(zoneId);
+    if (zone == null || !isSameDay(time)) {
+      return new HashSet<>();
+    }
+    return new HashSet<>(zone.workers);
+  }
+
+  /**
+   * Gets the real start times of the shifts of the available workers in a zone.
+   *
+   * @param zoneId the ID of the zone
+   * @return the start times in ascending order
+   */
+  public List<LocalDateTime> getShiftStarts(Long zoneId) {
+    ZoneShifts zone = zones.get(zoneId);
+    return zone == null ? List.of() : zone.startTimes;
+  }
+
+  /**
+   * Gets the real end times of the shifts of the available workers in a zone.
+   *
+   * @param zoneId the ID of the zone
+   * @return the end times in ascending order
+   */
+  public List<LocalDateTime> getShiftEnds(Long zoneId) {
+    ZoneShifts zone = zones.get(zoneId);
+    return zone == null ? List.of() : zone.endTimes;
+  }
+
+  private boolean isSameDay(LocalDateTime time) {
+    return time.toLocalDate().equals(day);
+  }
+
+  private static long toSeconds(LocalDateTime time) {
+    return time == null ? OPEN : time.toEpochSecond(ZoneOffset.UTC);
+  }
+
+  // Number of values in the sorted array that are greater than the key
+  private static int countAfter(long[] sorted, long key) {
+    return sorted.length - countAtOrBefore(sorted, key);
+  }
+
+  // Number of values in the sorted array that are less than or equal to the key
+  private static int countAtOrBefore(long[] sorted, long key) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sorted[mid] <= key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * The shifts of the available workers in a zone.
+   */
+  private static final class ZoneShifts {
+    private final List<Timetable> timetables;
+    private final long[] ends;
+    private final LocalDateTime firstStart;
+    private final Set<Worker> workers;
+    private final List<LocalDateTime> startTimes;
+    private final List<LocalDateTime> endTimes;
+    // Sorted end times of the qualified workers, per mask of required licenses
+    private final Map<LicenseMask, long[]> qualifiedEnds = new ConcurrentHashMap<>();
+
+    private ZoneShifts(List<Timetable> timetables) {
+      this.timetables = List.copyOf(timetables);
+      this.ends = timetables.stream()
+          .mapToLong(timetable -> toSeconds(timetable.getRealEndTime()))
+          .sorted()
+          .toArray();
+      this.startTimes = timetables.stream()
+          .map(Timetable::getRealStartTime)
+          .filter(time -> time != null)
+          .sorted()
+          .toList();
+      this.endTimes = timetables.stream()
+          .map(Timetable::getRealEndTime)
+          .filter(time -> time != null)
+          .sorted()
+          .toList();
+      this.firstStart = startTimes.isEmpty() ? null : startTimes.getFirst();
+      Set<Worker> zoneWorkers = new HashSet<>();
+      timetables.forEach(timetable -> zoneWorkers.add(timetable.getWorker()));
+      this.workers = Collections.unmodifiableSet(zoneWorkers);
+    }
+
+    private long[] qualifiedEnds(LicenseMask requiredLicenses) {
+      return qualifiedEnds.computeIfAbsent(requiredLicenses, required ->
+          timetables.stream()
+              .filter(timetable -> timetable.getWorker().getLicenseMask().containsAll(required))
+              .mapToLong(timetable -> toSeconds(timetable.getRealEndTime()))
+              .sorted()
+              .toArray());
+    }
+  }
+
+  /**
+   * The shifts of a single worker, sorted by start time.
+   */
+  private static final class WorkerShifts {
+    private final long[] starts;
+    // The latest end time of the shifts that start at or before the shift at the same index
+    private final long[] maxEndSoFar;
+    private final long firstEnd;
+
+    private WorkerShifts(List<Timetable> timetables) {
+      List<Timetable> started = timetables.stream()
+          .filter(timetable -> timetable.getRealStartTime() != null)
+          .sorted((a, b) -> a.getRealStartTime().compareTo(b.getRealStartTime()))
+          .toList();
+      this.starts = new long[started.size()];
+      this.maxEndSoFar = new long[started.size()];
+      long maxEnd = Long.MIN_VALUE;
+      for (int i = 0; i < started.size(); i++) {
+        starts[i] = toSeconds(started.get(i).getRealStartTime());
+        maxEnd = Math.max(maxEnd, toSeconds(started.get(i).getRealEndTime()));
+        maxEndSoFar[i] = maxEnd;
+      }
+      this.firstEnd = timetables.stream()
+          .map(Timetable::getRealEndTime)
+          .filter(time -> time != null)
+          .mapToLong(ShiftIndex::toSeconds)
+          .min()
+          .orElse(OPEN);
+    }
+  }
+}
@@ -0,0 +1,485 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.LicenseMask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Timetable;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.subsimulations.ZoneSimulator;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An immutable, compact model of everything a Monte Carlo run simulates.
+ * Built once per run from the zones, tasks and shifts of the day, so that the simulations do
+ * not copy JPA entities. Zones, workers and tasks are numbered densely and kept in primitive
+ * arrays, the licenses of workers and tasks are kept as masks from the LicenseRegistry.
+ * Times are seconds since the start of the simulated day, so a time on the day is between
+ * 0 and 86400. The checks that do not depend on chance (no tasks, no workers, no shifts) and
+ * the order the tasks are dispatched in are worked out once, here.
+ * The entities are only kept to turn the result of a simulation back into a ZoneSimResult.
+ * They are not serialized, so a world sent to another process can be simulated and summarized
+ * there, but its runs can not be turned into ZoneSimResults.
+ */
+public final class SimWorld implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  // Used for shifts without a real end time, they are never finished
+  static final int OPEN = Integer.MAX_VALUE;
+
+  static final int DAY_SECONDS = 24 * 60 * 60;
+
+  // Used for tasks that have not been started
+  static final int NOT_SET = Integer.MIN_VALUE;
+
+  static final int NO_WORKER = -1;
+
+  private static final int[] NONE = new int[0];
+
+  private final LocalDateTime origin;
+
+  private final long originEpochSecond;
+
+  private final Map<Long, Integer> zoneIndex = new HashMap<>();
+
+  // Zones
+  final transient Zone[] zones;
+  final boolean[] zoneIsPicker;
+  // Error code of zones that can not be simulated, or null
+  final String[] zoneErrors;
+  final int[] zoneClockStart;
+  // Shift starts after the clock start, in minutes
+  final int[][] zoneShiftStartMinutes;
+  // Sorted shift ends, in minutes
+  final int[][] zoneShiftEndMinutes;
+  // Sorted shift ends of the available workers, OPEN if the shift has no end
+  final int[][] zoneShiftEnds;
+  // Workers that are free at the start of the simulation
+  final int[][] zoneFreeWorkers;
+  // Active or picker tasks of the zone, in the order they are dispatched
+  final int[][] zoneTasks;
+
+  // Workers
+  final transient Worker[] workers;
+  final long[] workerIds;
+  final double[] workerEfficiency;
+  final LicenseMask[] workerLicenses;
+  // Sorted shift starts of each worker and the latest end of the shifts started so far
+  final int[][] workerShiftStarts;
+  final int[][] workerMaxEndSoFar;
+  final int[] workerFirstEnd;
+
+  // Active tasks
+  final transient ActiveTask[] activeTasks;
+  final String[] activeTaskIds;
+  final int[] minWorkers;
+  final int[] maxWorkers;
+  final int[] minTime;
+  final int[] maxTime;
+  final LicenseMask[] requiredLicenses;
+  // Sorted shift ends of the workers in the zone that have the required licenses
+  final int[][] qualifiedShiftEnds;
+  final int[][] assignedWorkers;
+
+  // Picker tasks
+  final transient PickerTask[] pickerTasks;
+  final String[] pickerTaskIds;
+  // Distance, pack amount, lines, weight, volume and average height
+  final double[][] pickerFeatures;
+  final int[] pickerWorker;
+
+  /**
+   * Builds the world from the zones and unfinished tasks of the day.
+   * Must be called while the lazy collections of the entities can still be loaded.
+   *
+   * @param zones             The zones to simulate
+   * @param activeTasksByZone The unfinished active tasks per zone ID
+   * @param pickerTasksByZone The unfinished picker tasks per zone ID
+   * @param startTime         The time the simulations start from
+   * @param shiftIndex        The shifts of the day of the start time
+   */
+  public SimWorld(List<Zone> zones, Map<Long, List<ActiveTask>> activeTasksByZone,
+                  Map<Long, List<PickerTask>> pickerTasksByZone, LocalDateTime startTime,
+                  ShiftIndex shiftIndex) {
+    this.origin = startTime.toLocalDate().atStartOfDay();
+    this.originEpochSecond = origin.toEpochSecond(ZoneOffset.UTC);
+    LocalDate day = startTime.toLocalDate();
+    int start = toSeconds(startTime);
+
+    // The shift index only answers questions about its own day
+    List<Timetable> timetables = shiftIndex != null && day.equals(shiftIndex.getDay())
+        ? shiftIndex.getTimetables() : List.of();
+    Map<Long, List<Timetable>> timetablesByZone = new HashMap<>();
+    Map<Long, List<Timetable>> timetablesByWorker = new HashMap<>();
+    for (Timetable timetable : timetables) {
+      Worker worker = timetable.getWorker();
+      if (worker == null) {
+        continue;
+      }
+      timetablesByWorker.computeIfAbsent(worker.getId(), _ -> new ArrayList<>()).add(timetable);
+      if (worker.getZone() != null && worker.isAvailability()) {
+        timetablesByZone.computeIfAbsent(worker.getZone(), _ -> new ArrayList<>()).add(timetable);
+      }
+    }
+
+    Indexer indexer = new Indexer();
+    int zoneCount = zones.size();
+    this.zones = zones.toArray(new Zone[0]);
+    this.zoneIsPicker = new boolean[zoneCount];
+    this.zoneErrors = new String[zoneCount];
+    this.zoneClockStart = new int[zoneCount];
+    this.zoneShiftStartMinutes = new int[zoneCount][];
+    this.zoneShiftEndMinutes = new int[zoneCount][];
+    this.zoneShiftEnds = new int[zoneCount][];
+    this.zoneFreeWorkers = new int[zoneCount][];
+    this.zoneTasks = new int[zoneCount][];
+    List<ActiveTask> activeTaskList = new ArrayList<>();
+    List<PickerTask> pickerTaskList = new ArrayList<>();
+    List<List<Timetable>> activeTaskShifts = new ArrayList<>();
+
+    for (int z = 0; z < zoneCount; z++) {
+      Zone zone = zones.get(z);
+      zoneIndex.putIfAbsent(zone.getId(), z);
+      zoneIsPicker[z] = zone.getIsPickerZone();
+      List<Timetable> zoneTimetables = timetablesByZone.getOrDefault(zone.getId(), List.of());
+      zoneShiftStartMinutes[z] = NONE;
+      zoneShiftEndMinutes[z] = NONE;
+      zoneShiftEnds[z] = NONE;
+      zoneFreeWorkers[z] = NONE;
+      zoneTasks[z] = NONE;
+
+      List<ActiveTask> zoneActiveTasks = zoneIsPicker[z] ? List.of()
+          : activeTasksByZone.getOrDefault(zone.getId(), List.of());
+      List<PickerTask> zonePickerTasks = zoneIsPicker[z]
+          ? pickerTasksByZone.getOrDefault(zone.getId(), List.of()) : List.of();
+      LocalDateTime firstStart = zoneTimetables.stream()
+          .map(Timetable::getRealStartTime)
+          .filter(Objects::nonNull)
+          .min(LocalDateTime::compareTo)
+          .orElse(null);
+      // Same checks and error codes as the ZoneSimulator
+      if (zoneActiveTasks.isEmpty() && zonePickerTasks.isEmpty()) {
+        // ERROR: NO TASKS
+        zoneErrors[z] = "101";
+        continue;
+      }
+      if (zone.getWorkers() == null || zone.getWorkers().stream()
+          .noneMatch(Worker::isAvailability)) {
+        // ERROR: NO WORKERS
+        zoneErrors[z] = "102";
+        continue;
+      }
+      if (firstStart == null || firstStart.equals(origin)) {
+        // ERROR: NO WORKERS COMING TO WORK TODAY
+        zoneErrors[z] = "103";
+        continue;
+      }
+
+      // The scheduler counts whole minutes, so the clock starts at the start of the minute
+      int clockMinute = Math.floorDiv(Math.max(toSeconds(firstStart), start), 60);
+      zoneClockStart[z] = clockMinute * 60;
+      zoneShiftStartMinutes[z] = zoneTimetables.stream()
+          .map(Timetable::getRealStartTime)
+          .filter(Objects::nonNull)
+          .mapToInt(time -> Math.floorDiv(toSeconds(time), 60))
+          .filter(minute -> minute > clockMinute)
+          .sorted()
+          .toArray();
+      zoneShiftEndMinutes[z] = zoneTimetables.stream()
+          .map(Timetable::getRealEndTime)
+          .filter(Objects::nonNull)
+          .mapToInt(time -> Math.floorDiv(toSeconds(time), 60))
+          .sorted()
+          .toArray();
+      zoneShiftEnds[z] = zoneTimetables.stream()
+          .mapToInt(timetable -> toEndSeconds(timetable.getRealEndTime()))
+          .sorted()
+          .toArray();
+      // In ID order, so that a seeded shuffle does not depend on the order of the timetables
+      zoneFreeWorkers[z] = zoneTimetables.stream()
+          .map(Timetable::getWorker)
+          .filter(worker -> !isBusy(worker, day))
+          .sorted(Comparator.comparing(Worker::getId,
+              Comparator.nullsLast(Comparator.naturalOrder())))
+          .mapToInt(indexer::indexOf)
+          .distinct()
+          .toArray();
+      // Workers that are busy are still counted in the zone
+      zoneTimetables.forEach(timetable -> indexer.indexOf(timetable.getWorker()));
+
+      if (zoneIsPicker[z]) {
+        zoneTasks[z] = ZoneSimulator.filterAndSortPickerTasks(new LinkedHashSet<>(zonePickerTasks))
+            .stream()
+            .mapToInt(pickerTask -> {
+              if (pickerTask.getWorker() != null) {
+                indexer.indexOf(pickerTask.getWorker());
+              }
+              pickerTaskList.add(pickerTask);
+              return pickerTaskList.size() - 1;
+            })
+            .toArray();
+      } else {
+        zoneTasks[z] = ZoneSimulator.filterAndSortActiveTasks(zoneActiveTasks).stream()
+            .mapToInt(activeTask -> {
+              if (activeTask.getWorkers() != null) {
+                activeTask.getWorkers().forEach(indexer::indexOf);
+              }
+              activeTaskList.add(activeTask);
+              activeTaskShifts.add(zoneTimetables);
+              return activeTaskList.size() - 1;
+            })
+            .toArray();
+      }
+    }
+
+    // Workers
+    int workerCount = indexer.workers.size();
+    this.workers = indexer.workers.toArray(new Worker[0]);
+    this.workerIds = new long[workerCount];
+    this.workerEfficiency = new double[workerCount];
+    this.workerLicenses = new LicenseMask[workerCount];
+    this.workerShiftStarts = new int[workerCount][];
+    this.workerMaxEndSoFar = new int[workerCount][];
+    this.workerFirstEnd = new int[workerCount];
+    for (int w = 0; w < workerCount; w++) {
+      Worker worker = workers[w];
+      workerIds[w] = worker.getId() != null ? worker.getId() : 0;
+      workerEfficiency[w] = worker.getEfficiency();
+      workerLicenses[w] = worker.getLicenseMask();
+      List<Timetable> shifts = timetablesByWorker.getOrDefault(worker.getId(), List.of());
+      List<Timetable> started = shifts.stream()
+          .filter(timetable -> timetable.getRealStartTime() != null)
+          .sorted((a, b) -> a.getRealStartTime().compareTo(b.getRealStartTime()))
+          .toList();
+      workerShiftStarts[w] = new int[started.size()];
+      workerMaxEndSoFar[w] = new int[started.size()];
+      int maxEnd = Integer.MIN_VALUE;
+      for (int i = 0; i < started.size(); i++) {
+        workerShiftStarts[w][i] = toSeconds(started.get(i).getRealStartTime());
+        maxEnd = Math.max(maxEnd, toEndSeconds(started.get(i).getRealEndTime()));
+        workerMaxEndSoFar[w][i] = maxEnd;
+      }
+      workerFirstEnd[w] = shifts.stream()
+          .map(Timetable::getRealEndTime)
+          .filter(Objects::nonNull)
+          .mapToInt(this::toSeconds)
+          .min()
+          .orElse(OPEN);
+    }
+
+    // Active tasks
+    int activeCount = activeTaskList.size();
+    this.activeTasks = activeTaskList.toArray(new ActiveTask[0]);
+    this.activeTaskIds = new String[activeCount];
+    this.minWorkers = new int[activeCount];
+    this.maxWorkers = new int[activeCount];
+    this.minTime = new int[activeCount];
+    this.maxTime = new int[activeCount];
+    this.requiredLicenses = new LicenseMask[activeCount];
+    this.qualifiedShiftEnds = new int[activeCount][];
+    this.assignedWorkers = new int[activeCount][];
+    for (int t = 0; t < activeCount; t++) {
+      ActiveTask activeTask = activeTasks[t];
+      activeTaskIds[t] = String.valueOf(activeTask.getId());
+      minWorkers[t] = activeTask.getTask().getMinWorkers();
+      maxWorkers[t] = activeTask.getTask().getMaxWorkers();
+      minTime[t] = activeTask.getTask().getMinTime();
+      maxTime[t] = activeTask.getTask().getMaxTime();
+      LicenseMask required = activeTask.getTask().getRequiredLicenseMask();
+      requiredLicenses[t] = required;
+      qualifiedShiftEnds[t] = activeTaskShifts.get(t).stream()
+          .filter(timetable ->
+              workerLicenses[indexer.indexOf(timetable.getWorker())].containsAll(required))
+          .mapToInt(timetable -> toEndSeconds(timetable.getRealEndTime()))
+          .sorted()
+          .toArray();
+      assignedWorkers[t] = activeTask.getWorkers() == null ? NONE
+          : activeTask.getWorkers().stream().mapToInt(indexer::indexOf).distinct().toArray();
+    }
+
+    // Picker tasks
+    int pickerCount = pickerTaskList.size();
+    this.pickerTasks = pickerTaskList.toArray(new PickerTask[0]);
+    this.pickerTaskIds = new String[pickerCount];
+    this.pickerFeatures = new double[pickerCount][];
+    this.pickerWorker = new int[pickerCount];
+    for (int t = 0; t < pickerCount; t++) {
+      PickerTask pickerTask = pickerTasks[t];
+      pickerTaskIds[t] = String.valueOf(pickerTask.getId());
+      pickerFeatures[t] = new double[] {
+          pickerTask.getDistance(),
+          pickerTask.getPackAmount(),
+          pickerTask.getLinesAmount(),
+          pickerTask.getWeight(),
+          pickerTask.getVolume(),
+          pickerTask.getAvgHeight()
+      };
+      pickerWorker[t] = pickerTask.getWorker() != null
+          ? indexer.indexOf(pickerTask.getWorker()) : NO_WORKER;
+    }
+  }
+
+  /**
+   * Gets the index of a zone in the world.
+   *
+   * @param zoneId The ID of the zone
+   * @return The index of the zone, or -1 if the zone is not in the world
+   */
+  public int indexOfZone(Long zoneId) {
+    return zoneIndex.getOrDefault(zoneId, -1);
+  }
+
+  public int getZoneCount() {
+    return zoneIsPicker.length;
+  }
+
+  public int getWorkerCount() {
+    return workerIds.length;
+  }
+
+  public LocalDateTime getOrigin() {
+    return origin;
+  }
+
+  /**
+   * Converts a time in the world back to a date and time.
+   *
+   * @param seconds The seconds since the start of the day
+   * @return The date and time
+   */
+  public LocalDateTime toDateTime(int seconds) {
+    return origin.plusSeconds(seconds);
+  }
+
+  long toEpochSecond(int seconds) {
+    return originEpochSecond + seconds;
+  }
+
+  /**
+   * Counts the shifts of the available workers in a zone that have not ended at a time.
+   *
+   * @param zone The index of the zone
+   * @param time The time in seconds since the start of the day
+   * @return The number of workers who have not finished working
+   */
+  int countWorkersNotFinished(int zone, int time) {
+    return isOnDay(time) ? countAfter(zoneShiftEnds[zone], time) : 0;
+  }
+
+  /**
+   * Counts the shifts of the workers in the zone of a task that have the licenses required
+   * by the task and have not ended at a time.
+   *
+   * @param task The index of the active task
+   * @param time The time in seconds since the start of the day
+   * @return The number of qualified workers
+   */
+  int countQualifiedWorkers(int task, int time) {
+    return isOnDay(time) ? countAfter(qualifiedShiftEnds[task], time) : 0;
+  }
+
+  /**
+   * Checks if a worker is working at a time.
+   *
+   * @param worker The index of the worker
+   * @param time   The time in seconds since the start of the day
+   * @return true if the worker is working
+   */
+  boolean workerIsWorking(int worker, int time) {
+    if (!isOnDay(time)) {
+      return false;
+    }
+    // The last shift that has started at the given time
+    int index = countAtOrBefore(workerShiftStarts[worker], time) - 1;
+    return index >= 0 && workerMaxEndSoFar[worker][index] >= time;
+  }
+
+  /**
+   * Checks if a worker has finished a shift at a time.
+   *
+   * @param worker The index of the worker
+   * @param time   The time in seconds since the start of the day
+   * @return true if the worker has finished their shift
+   */
+  boolean workerHasFinishedShift(int worker, int time) {
+    return isOnDay(time) && workerFirstEnd[worker] <= time;
+  }
+
+  private static boolean isOnDay(int time) {
+    return time >= 0 && time < DAY_SECONDS;
+  }
+
+  private int toSeconds(LocalDateTime time) {
+    long seconds = time.toEpochSecond(ZoneOffset.UTC) - originEpochSecond;
+    return (int) Math.max(Integer.MIN_VALUE + 1, Math.min(OPEN - 1, seconds));
+  }
+
+  private int toEndSeconds(LocalDateTime time) {
+    return time == null ? OPEN : toSeconds(time);
+  }
+
+  // Same rules as the initialization of the WorkerSemaphore2
+  private static boolean isBusy(Worker worker, LocalDate day) {
+    if (worker.getCurrentPickerTask() != null) {
+      PickerTask pickerTask = worker.getCurrentPickerTask();
+      return (pickerTask.getStartTime() != null
+          && pickerTask.getStartTime().toLocalDate().equals(day)
+          && pickerTask.getEndTime() == null) || !worker.isAvailability();
+    } else if (worker.getCurrentActiveTask() != null) {
+      ActiveTask activeTask = worker.getCurrentActiveTask();
+      return (activeTask.getStartTime() != null
+          && activeTask.getStartTime().toLocalDate().equals(day)
+          && activeTask.getEndTime() == null) || !worker.isAvailability();
+    }
+    return false;
+  }
+
+  // Number of values in the sorted array that are greater than the key
+  private static int countAfter(int[] sorted, int key) {
+    return sorted.length - countAtOrBefore(sorted, key);
+  }
+
+  // Number of values in the sorted array that are less than or equal to the key
+  private static int countAtOrBefore(int[] sorted, int key) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sorted[mid] <= key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Gives workers dense indexes while the world is built.
+   * Workers are matched by ID, so copies of the same worker get the same index.
+   */
+  private static final class Indexer {
+    private final Map<Long, Integer> workerIndex = new HashMap<>();
+    private final List<Worker> workers = new ArrayList<>();
+
+    private int indexOf(Worker worker) {
+      return workerIndex.computeIfAbsent(worker.getId(), _ -> {
+        workers.add(worker);
+        return workers.size() - 1;
+      });
+    }
+  }
+
+}
@@ -0,0 +1,467 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.LicenseMask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.CompiledRandomForest;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.subsimulations.EventScheduler;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.subsimulations.SimEvent;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Simulates one zone of a SimWorld once, as a discrete-event simulation on scratch arrays.
+ * Follows the same rules as the ZoneSimulator and the WorkerSemaphore2, but works on worker
+ * and task indexes instead of copies of the entities.
+ * The free workers of the zone are kept in an array, with the position of each worker in it,
+ * so workers are taken and released without hashing.
+ * Not thread safe, a simulator belongs to a single simulation of a single zone.
+ */
+public class SimWorldSimulator {
+
+  private static final MachineLearningModelPicking mlModel = new MachineLearningModelPicking();
+
+  private final SimWorld world;
+
+  private final int zone;
+
+  private final PickingModel randomForest;
+
+  // The model compiled into flat arrays, null if it could not be compiled
+  private final CompiledRandomForest compiledForest;
+
+  // The durations of the picker tasks estimated when the run started, or null
+  private final PickerDurations pickerDurations;
+
+  private final RandomGenerator random;
+
+  // Whether the duration of a picker task is drawn from a random tree instead of the mean
+  private final boolean sampleTrees;
+
+  private final SimZoneRun run;
+
+  private final int[] tasks;
+
+  private EventScheduler scheduler;
+
+  // The current time in seconds since the start of the day
+  private int now;
+
+  // The free workers, and the position of each worker among them or -1
+  private final int[] pool;
+  private final int[] poolPosition;
+  private int poolSize = 0;
+
+  // Scratch space for the shuffled workers a task can pick from
+  private final int[] candidates;
+
+  // Positions of the tasks that have not been started yet
+  private final int[] pending;
+  private int pendingCount;
+
+  // Features of the picker task being estimated, the last one is the worker ID
+  private final double[] features = new double[7];
+
+  /**
+   * Constructor for SimWorldSimulator.
+   *
+   * @param world        The world to simulate
+   * @param zone         The index of the zone to simulate
+   * @param randomForest The model used to estimate the duration of picker tasks
+   * @param random       The random generator used to pick workers
+   */
+  public SimWorldSimulator(SimWorld world, int zone, PickingModel randomForest,
+                           RandomGenerator random) {
+    this(world, zone, randomForest, null, random);
+  }
+
+  /**
+   * Constructor for SimWorldSimulator, with the durations of the picker tasks estimated once
+   * for all simulations of the zone. Pairs of a task and worker that were not estimated are
+   * estimated with the model when the task starts.
+   *
+   * @param world           The world to simulate
+   * @param zone            The index of the zone to simulate
+   * @param randomForest    The model used to estimate the duration of picker tasks
+   * @param pickerDurations The estimated durations of the picker tasks of the zone, or null
+   * @param random          The random generator used to pick workers
+   */
+  public SimWorldSimulator(SimWorld world, int zone, PickingModel randomForest,
+                           PickerDurations pickerDurations, RandomGenerator random) {
+    this(world, zone, randomForest, pickerDurations, random, false);
+  }
+
+  /**
+   * Constructor for SimWorldSimulator that can draw the duration of every picker task from the
+   * output of a random tree of the model, so the durations vary between simulations as much as
+   * the trees disagree. The estimated durations are not used when the durations are drawn.
+   *
+   * @param world           The world to simulate
+   * @param zone            The index of the zone to simulate
+   * @param randomForest    The model used to estimate the duration of picker tasks
+   * @param pickerDurations The estimated durations of the picker tasks of the zone, or null
+   * @param random          The random generator used to pick workers and trees
+   * @param sampleTrees     Whether the durations are drawn from a random tree
+   */
+  public SimWorldSimulator(SimWorld world, int zone, PickingModel randomForest,
+                           PickerDurations pickerDurations, RandomGenerator random,
+                           boolean sampleTrees) {
+    this.world = world;
+    this.zone = zone;
+    this.randomForest = randomForest;
+    this.compiledForest = randomForest != null ? randomForest.compiled() : null;
+    this.pickerDurations = pickerDurations;
+    this.random = random;
+    this.sampleTrees = sampleTrees;
+    this.run = new SimZoneRun(world, zone);
+    this.tasks = world.zoneTasks[zone];
+    int workerCount = world.getWorkerCount();
+    this.pool = new int[workerCount];
+    this.poolPosition = new int[workerCount];
+    this.candidates = new int[workerCount];
+    this.pending = new int[tasks.length];
+  }
+
+  /**
+   * Runs the simulation of the zone.
+   *
+   * @return The result of the simulation
+   * @throws IllegalStateException if the zone has picker tasks and no model
+   */
+  public SimZoneRun run() {
+    String zoneError = world.zoneErrors[zone];
+    if (zoneError != null) {
+      run.addErrorMessage(zoneError);
+      return run;
+    }
+    now = world.zoneClockStart[zone];
+    scheduler = new EventScheduler(Math.floorDiv(now, 60));
+    for (int shiftStart : world.zoneShiftStartMinutes[zone]) {
+      scheduler.schedule(shiftStart, SimEvent.Type.WORKER_FREE, -1);
+    }
+    Arrays.fill(poolPosition, -1);
+    for (int worker : world.zoneFreeWorkers[zone]) {
+      release(worker);
+    }
+    for (int i = 0; i < tasks.length; i++) {
+      pending[i] = i;
+    }
+    pendingCount = tasks.length;
+
+    boolean isPickerZone = world.zoneIsPicker[zone];
+    while (pendingCount > 0 || scheduler.hasPending()) {
+      int waiting = 0;
+      for (int i = 0; i < pendingCount; i++) {
+        int position = pending[i];
+        boolean done = isPickerZone ? dispatchPickerTask(position) : dispatchActiveTask(position);
+        if (!done) {
+          pending[waiting++] = position;
+        }
+      }
+      pendingCount = waiting;
+      if (!advanceClock()) {
+        failRemainingTasks();
+      }
+    }
+    return run;
+  }
+
+  /**
+   * Tries to start an active task at the current time.
+   *
+   * @param position The position of the task in the zone
+   * @return true if the task was started or can not be completed, false if it waits for workers
+   */
+  private boolean dispatchActiveTask(int position) {
+    int task = tasks[position];
+    if (run.workers[position].length < world.minWorkers[task]) {
+      String acquireWorkerError = acquireWorkers(position);
+      // if this, then task will not complete
+      if (acquireWorkerError != null) {
+        run.addErrorMessage(acquireWorkerError);
+        return true;
+      }
+      if (run.workers[position].length < world.minWorkers[task]) {
+        // Wait for the next event
+        return false;
+      }
+    }
+    start(position, calculateDuration(position));
+    return true;
+  }
+
+  /**
+   * Tries to start a picker task at the current time.
+   *
+   * @param position The position of the task in the zone
+   * @return true if the task was started or can not be completed, false if it waits for a worker
+   */
+  private boolean dispatchPickerTask(int position) {
+    if (run.pickerWorkers[position] == SimWorld.NO_WORKER) {
+      String acquireWorkerError = acquireWorker(position);
+      if (acquireWorkerError != null) {
+        run.addErrorMessage(acquireWorkerError);
+        return true;
+      }
+      if (run.pickerWorkers[position] == SimWorld.NO_WORKER) {
+        return false;
+      }
+    }
+    // Look up or estimate the duration using the model (divided by 60 to get minutes)
+    long time = pickerDurations != null && !sampleTrees
+        ? pickerDurations.get(position, run.pickerWorkers[position])
+        : PickerDurations.NOT_ESTIMATED;
+    if (time == PickerDurations.NOT_ESTIMATED) {
+      time = estimatePickerTask(position);
+    }
+    start(position, (int) time / 60);
+    return true;
+  }
+
+  private long estimatePickerTask(int position) {
+    double[] taskFeatures = world.pickerFeatures[tasks[position]];
+    System.arraycopy(taskFeatures, 0, features, 0, taskFeatures.length);
+    features[taskFeatures.length] = world.workerIds[run.pickerWorkers[position]];
+    if (sampleTrees) {
+      return compiledForest != null
+          ? (long) compiledForest.sample(features, random)
+          : mlModel.sampleTimeUsingFeatures(randomForest, features, random);
+    }
+    return compiledForest != null
+        ? (long) compiledForest.predict(features)
+        : mlModel.estimateTimeUsingFeatures(randomForest, features);
+  }
+
+  private void start(int position, int duration) {
+    run.startTimes[position] = now;
+    run.endTimes[position] = (int) Math.min(SimWorld.OPEN, now + duration * 60L);
+    scheduler.schedule(scheduler.now() + Math.max(0, duration), SimEvent.Type.TASK_COMPLETE,
+        position);
+  }
+
+  /**
+   * Takes the workers for an active task from the free workers, in a random order.
+   * Takes at least the minimum and at most the maximum number of workers of the task.
+   *
+   * @param position The position of the task in the zone
+   * @return An error message if the task can never be completed, otherwise null
+   */
+  private String acquireWorkers(int position) {
+    int task = tasks[position];
+    int workersNotFinished = world.countWorkersNotFinished(zone, now);
+    if (workersNotFinished == 0) {
+      // ERROR: WORKERS HAVE GONE HOME, TASK CAN NOT COMPLETE
+      return "104:" + world.activeTaskIds[task] + ":null";
+    }
+    int minWorkers = world.minWorkers[task];
+    if (workersNotFinished < minWorkers) {
+      // ERROR: NOT ENOUGH WORKERS AT ZONE FOR TASK
+      return "103:" + world.activeTaskIds[task];
+    }
+    if (world.countQualifiedWorkers(task, now) < minWorkers) {
+      // ERROR: NO QUALIFIED WORKERS AT ZONE FOR TASK
+      return "105:" + world.activeTaskIds[task];
+    }
+    int count = shuffleCandidates(world.requiredLicenses[task]);
+    // No qualified workers available currently
+    if (count == 0 || count < minWorkers) {
+      return null;
+    }
+    int maxWorkers = world.maxWorkers[task];
+    int[] acquired = new int[count];
+    int acquiredCount = 0;
+    for (int i = 0; i < count; i++) {
+      int worker = candidates[i];
+      if (world.workerIsWorking(worker, now)) {
+        acquired[acquiredCount++] = worker;
+        if (acquiredCount == maxWorkers) {
+          assign(position, acquired, acquiredCount);
+          return null;
+        }
+      }
+      if (acquiredCount >= minWorkers) {
+        assign(position, acquired, acquiredCount);
+        return null;
+      } else if (world.workerHasFinishedShift(worker, now)) {
+        take(worker);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Takes a worker for a picker task from the free workers, in a random order.
+   *
+   * @param position The position of the task in the zone
+   * @return An error message if the task can never be completed, otherwise null
+   */
+  private String acquireWorker(int position) {
+    if (world.countWorkersNotFinished(zone, now) == 0) {
+      // ERROR: WORKERS HAVE GONE HOME, TASK CAN NOT COMPLETE
+      return "104:null:" + world.pickerTaskIds[tasks[position]];
+    }
+    int count = shuffleCandidates(LicenseMask.EMPTY);
+    for (int i = 0; i < count; i++) {
+      int worker = candidates[i];
+      if (world.workerIsWorking(worker, now)) {
+        run.pickerWorkers[position] = worker;
+        take(worker);
+        return null;
+      } else if (world.workerHasFinishedShift(worker, now)) {
+        take(worker);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Copies the free workers with the required licenses to the candidates and shuffles them.
+   *
+   * @param required The licenses the workers must have
+   * @return The number of candidates
+   */
+  private int shuffleCandidates(LicenseMask required) {
+    int count = 0;
+    for (int i = 0; i < poolSize; i++) {
+      int worker = pool[i];
+      if (world.workerLicenses[worker].containsAll(required)) {
+        candidates[count++] = worker;
+      }
+    }
+    for (int i = count; i > 1; i--) {
+      int j = random.nextInt(i);
+      int swap = candidates[i - 1];
+      candidates[i - 1] = candidates[j];
+      candidates[j] = swap;
+    }
+    return count;
+  }
+
+  private void assign(int position, int[] acquired, int acquiredCount) {
+    int[] assigned = run.workers[position];
+    int[] taskWorkers = Arrays.copyOf(assigned, assigned.length + acquiredCount);
+    int size = assigned.length;
+    for (int i = 0; i < acquiredCount; i++) {
+      int worker = acquired[i];
+      take(worker);
+      // A worker that is already on the task is not added twice
+      boolean onTask = false;
+      for (int j = 0; j < assigned.length; j++) {
+        onTask |= assigned[j] == worker;
+      }
+      if (!onTask) {
+        taskWorkers[size++] = worker;
+      }
+    }
+    run.workers[position] = size == taskWorkers.length ? taskWorkers
+        : Arrays.copyOf(taskWorkers, size);
+  }
+
+  private void take(int worker) {
+    int position = poolPosition[worker];
+    if (position < 0) {
+      return;
+    }
+    int last = pool[--poolSize];
+    pool[position] = last;
+    poolPosition[last] = position;
+    poolPosition[worker] = -1;
+  }
+
+  private void release(int worker) {
+    if (poolPosition[worker] >= 0) {
+      return;
+    }
+    pool[poolSize] = worker;
+    poolPosition[worker] = poolSize++;
+  }
+
+  /**
+   * Calculates the duration of an active task in minutes, the same way as the ZoneSimulator.
+   *
+   * @param position The position of the task in the zone
+   * @return The duration of the task
+   */
+  private int calculateDuration(int position) {
+    int task = tasks[position];
+    int maxDuration = world.maxTime[task];
+    int minDuration = world.minTime[task];
+    int maxWorkers = world.maxWorkers[task];
+    int minWorkers = world.minWorkers[task];
+    if (maxWorkers <= minWorkers) {
+      maxWorkers = minWorkers + 1;
+    }
+    int[] taskWorkers = run.workers[position];
+    double totalEfficiency = 0;
+    for (int worker : taskWorkers) {
+      totalEfficiency += world.workerEfficiency[worker];
+    }
+    double efficiency = totalEfficiency / taskWorkers.length;
+    double adjustedDuration = maxDuration -
+        ((double) (taskWorkers.length - minWorkers) / (maxWorkers - minWorkers)) *
+            (maxDuration - minDuration);
+    return (int) (adjustedDuration / efficiency);
+  }
+
+  /**
+   * Moves the clock to the next point in time where the state of the zone can change.
+   * If there are no events left but tasks are still waiting, the clock jumps to the next
+   * shift end.
+   *
+   * @return false if the clock can not move and the pending tasks will never start
+   */
+  private boolean advanceClock() {
+    if (scheduler.hasPending()) {
+      processEvent(scheduler.next());
+      while (scheduler.peekTime() == scheduler.now()) {
+        processEvent(scheduler.next());
+      }
+    } else if (pendingCount > 0) {
+      long nextShiftEnd = nextShiftEnd(scheduler.now());
+      if (nextShiftEnd == Long.MAX_VALUE) {
+        return false;
+      }
+      scheduler.advanceTo(nextShiftEnd);
+    }
+    now = (int) Math.min(SimWorld.OPEN, scheduler.now() * 60);
+    return true;
+  }
+
+  private void processEvent(SimEvent event) {
+    if (event.type() != SimEvent.Type.TASK_COMPLETE) {
+      // New workers have arrived, the tasks are dispatched again after the event
+      return;
+    }
+    int position = event.subject();
+    run.completed[run.completedCount++] = position;
+    // Release the workers back to the free workers
+    if (run.pickerWorkers != null) {
+      release(run.pickerWorkers[position]);
+    } else {
+      for (int worker : run.workers[position]) {
+        release(worker);
+      }
+    }
+  }
+
+  private long nextShiftEnd(long time) {
+    for (int shiftEnd : world.zoneShiftEndMinutes[zone]) {
+      if (shiftEnd > time) {
+        return shiftEnd;
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  private void failRemainingTasks() {
+    for (int i = 0; i < pendingCount; i++) {
+      int task = tasks[pending[i]];
+      // ERROR: WORKERS HAVE GONE HOME, TASK CAN NOT COMPLETE
+      run.addErrorMessage(world.zoneIsPicker[zone]
+          ? "104:null:" + world.pickerTaskIds[task]
+          : "104:" + world.activeTaskIds[task] + ":null");
+    }
+    pendingCount = 0;
+  }
+}
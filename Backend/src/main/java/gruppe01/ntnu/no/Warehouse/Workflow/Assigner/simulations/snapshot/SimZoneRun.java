@@ -0,0 +1,151 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSimResult;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The result of simulating one zone of a SimWorld once.
+ * Holds the start and end time and the workers of every task of the zone in primitive arrays,
+ * indexed by the position of the task in the zone.
+ * Only turned into a ZoneSimResult with entities when the tasks themselves are needed.
+ */
+public final class SimZoneRun {
+
+  private final SimWorld world;
+
+  private final int zone;
+
+  final int[] startTimes;
+
+  final int[] endTimes;
+
+  // Workers on each active task, the assigned workers first
+  final int[][] workers;
+
+  // Worker on each picker task
+  final int[] pickerWorkers;
+
+  // Positions of the completed tasks in the order they completed
+  final int[] completed;
+
+  int completedCount = 0;
+
+  private final List<String> errorMessages = new ArrayList<>();
+
+  /**
+   * Creates an empty run of a zone, where no task has been started.
+   *
+   * @param world The world the zone belongs to
+   * @param zone  The index of the zone
+   */
+  SimZoneRun(SimWorld world, int zone) {
+    this.world = world;
+    this.zone = zone;
+    int[] tasks = world.zoneTasks[zone];
+    this.startTimes = new int[tasks.length];
+    this.endTimes = new int[tasks.length];
+    this.completed = new int[tasks.length];
+    Arrays.fill(startTimes, SimWorld.NOT_SET);
+    Arrays.fill(endTimes, SimWorld.NOT_SET);
+    if (world.zoneIsPicker[zone]) {
+      this.workers = null;
+      this.pickerWorkers = new int[tasks.length];
+      for (int i = 0; i < tasks.length; i++) {
+        pickerWorkers[i] = world.pickerWorker[tasks[i]];
+      }
+    } else {
+      this.pickerWorkers = null;
+      this.workers = new int[tasks.length][];
+      for (int i = 0; i < tasks.length; i++) {
+        workers[i] = world.assignedWorkers[tasks[i]];
+      }
+    }
+  }
+
+  void addErrorMessage(String errorMessage) {
+    errorMessages.add(errorMessage);
+  }
+
+  public Long getZoneId() {
+    return world.zones[zone].getId();
+  }
+
+  public List<String> getErrorMessages() {
+    return errorMessages;
+  }
+
+  /**
+   * Gets the latest end time of the completed tasks.
+   *
+   * @return The last end time, or null if no task was completed
+   */
+  public LocalDateTime getLastEndTime() {
+    if (completedCount == 0) {
+      return null;
+    }
+    int last = Integer.MIN_VALUE;
+    for (int i = 0; i < completedCount; i++) {
+      last = Math.max(last, endTimes[completed[i]]);
+    }
+    return world.toDateTime(last);
+  }
+
+  /**
+   * Gets the end times of the completed tasks.
+   *
+   * @return The end times in epoch seconds, in ascending order
+   */
+  public long[] getEndEpochSeconds() {
+    long[] endSeconds = new long[completedCount];
+    for (int i = 0; i < completedCount; i++) {
+      endSeconds[i] = world.toEpochSecond(endTimes[completed[i]]);
+    }
+    Arrays.sort(endSeconds);
+    return endSeconds;
+  }
+
+  /**
+   * Turns the run into a ZoneSimResult, with copies of the completed tasks in the order they
+   * completed. The copies get the simulated start and end times and workers.
+   *
+   * @return The result of the zone
+   */
+  public ZoneSimResult toZoneSimResult() {
+    ZoneSimResult zoneSimResult = new ZoneSimResult();
+    zoneSimResult.setZone(new Zone(world.zones[zone]));
+    int[] tasks = world.zoneTasks[zone];
+    for (int i = 0; i < completedCount; i++) {
+      int position = completed[i];
+      int task = tasks[position];
+      LocalDateTime startTime = world.toDateTime(startTimes[position]);
+      LocalDateTime endTime = world.toDateTime(endTimes[position]);
+      if (pickerWorkers != null) {
+        PickerTask pickerTask = new PickerTask(world.pickerTasks[task]);
+        pickerTask.setWorker(world.workers[pickerWorkers[position]]);
+        pickerTask.setStartTime(startTime);
+        pickerTask.setEndTime(endTime);
+        zoneSimResult.addTask(null, pickerTask);
+      } else {
+        ActiveTask activeTask = new ActiveTask(world.activeTasks[task]);
+        List<Worker> acquired = new ArrayList<>();
+        for (int w = world.assignedWorkers[task].length; w < workers[position].length; w++) {
+          acquired.add(world.workers[workers[position][w]]);
+        }
+        activeTask.addMultilpleWorkers(acquired);
+        activeTask.setStartTime(startTime);
+        activeTask.setEndTime(endTime);
+        zoneSimResult.addTask(activeTask, null);
+      }
+    }
+    errorMessages.forEach(zoneSimResult::setErrorMessage);
+    return zoneSimResult;
+  }
+}
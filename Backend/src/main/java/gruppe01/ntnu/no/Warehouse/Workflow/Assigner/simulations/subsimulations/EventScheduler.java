@@ -0,0 +1,106 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.subsimulations;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.PriorityQueue;
+
+/**
+ * The kernel of the discrete-event simulation.
+ * Holds a virtual clock and a priority queue of pending events.
+ * The clock only moves when an event is taken from the queue or when it is explicitly advanced,
+ * so a simulated day takes as long as it takes to process its events, not wall-clock time.
+ * Not thread safe, a scheduler belongs to a single zone simulation.
+ */
+public class EventScheduler {
+
+  private final PriorityQueue<SimEvent> queue = new PriorityQueue<>();
+
+  private long now;
+
+  private long sequence = 0;
+
+  /**
+   * Creates a scheduler with the clock set to the given time.
+   *
+   * @param startTime The start time of the simulation in epoch minutes
+   */
+  public EventScheduler(long startTime) {
+    this.now = startTime;
+  }
+
+  /**
+   * Schedules a new event. Events can not be scheduled in the past.
+   *
+   * @param time    The time of the event in epoch minutes
+   * @param type    The type of event
+   * @param subject The index of the task or worker the event belongs to
+   */
+  public void schedule(long time, SimEvent.Type type, int subject) {
+    if (time < now) {
+      throw new IllegalArgumentException("Cannot schedule an event before the current time.");
+    }
+    queue.add(new SimEvent(time, sequence++, type, subject));
+  }
+
+  /**
+   * Takes the next event from the queue and moves the clock to its time.
+   *
+   * @return The next event, or null if there are no pending events
+   */
+  public SimEvent next() {
+    SimEvent event = queue.poll();
+    if (event != null) {
+      now = event.time();
+    }
+    return event;
+  }
+
+  /**
+   * Gets the time of the next pending event without removing it.
+   *
+   * @return The time of the next event, or Long.MAX_VALUE if there are no pending events
+   */
+  public long peekTime() {
+    SimEvent event = queue.peek();
+    return event != null ? event.time() : Long.MAX_VALUE;
+  }
+
+  /**
+   * Moves the clock forward without processing an event.
+   *
+   * @param time The new time in epoch minutes
+   */
+  public void advanceTo(long time) {
+    if (time > now) {
+      now = time;
+    }
+  }
+
+  public boolean hasPending() {
+    return !queue.isEmpty();
+  }
+
+  public long now() {
+    return now;
+  }
+
+  /**
+   * Converts a date time to the minute resolution used by the scheduler.
+   *
+   * @param time The date time to convert
+   * @return The time in epoch minutes
+   */
+  public static long toMinutes(LocalDateTime time) {
+    return time.toEpochSecond(ZoneOffset.UTC) / 60;
+  }
+
+  /**
+   * Converts a scheduler time back to a date time.
+   *
+   * @param minutes The time in epoch minutes
+   * @return The corresponding date time
+   */
+  public static LocalDateTime toDateTime(long minutes) {
+    return LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+  }
+}
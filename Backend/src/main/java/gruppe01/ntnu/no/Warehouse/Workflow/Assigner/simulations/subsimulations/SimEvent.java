@@ -0,0 +1,34 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.subsimulations;
+
+/**
+ * A single event in a discrete-event zone simulation.
+ * Events are ordered by their simulated time, and by the order they were scheduled in
+ * when two events happen at the same minute.
+ *
+ * @param time     The simulated time of the event in epoch minutes
+ * @param sequence The order in which the event was scheduled, used as a tie-breaker
+ * @param type     The type of event
+ * @param subject  The index of the task or worker the event belongs to
+ */
+public record SimEvent(long time, long sequence, Type type, int subject)
+    implements Comparable<SimEvent> {
+
+  /**
+   * The types of events the zone simulation reacts to.
+   */
+  public enum Type {
+    // A task has completed and its workers are released
+    TASK_COMPLETE,
+    // A worker has started their shift and can be assigned tasks
+    WORKER_FREE
+  }
+
+  @Override
+  public int compareTo(SimEvent other) {
+    int timeComparison = Long.compare(this.time, other.time);
+    if (timeComparison != 0) {
+      return timeComparison;
+    }
+    return Long.compare(this.sequence, other.sequence);
+  }
+}
@@ -2,25 +2,26 @@ package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.subsimulations;
 
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Timetable;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.services.TimetableService;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSimResult;
-import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.semaphores.WorkerSemaphore2;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.semaphores.LicenseWorkerPool;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.semaphores.WorkerPool;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.random.RandomGenerator;
 import java.util.stream.Collectors;
 
-import smile.regression.RandomForest;
-
 /**
  * Simulates a zone in a warehouse
  * Takes into account the following:
@@ -28,6 +29,10 @@ import smile.regression.RandomForest;
  * - Number of workers possible in a zone
  * - Number of tasks
  * - Number of workers required to complete a task
+ * <p>
+ * The zone is simulated as a discrete-event simulation on a single thread.
+ * A virtual clock jumps between task completions and shift starts instead of sleeping,
+ * so a zone replication finishes in the time it takes to process its events.
  */
 
 public class ZoneSimulator {
@@ -37,270 +42,444 @@ public class ZoneSimulator {
 
   private static final MachineLearningModelPicking mlModel = new MachineLearningModelPicking();
 
-  private TimetableService timetableService;
+  private EventScheduler scheduler;
+
+  // Tasks that have been started, indexed by the subject of their completion event
+  private final List<ActiveTask> startedActiveTasks = new ArrayList<>();
+  private final List<PickerTask> startedPickerTasks = new ArrayList<>();
+
+  // Shift ends of the workers in the zone, used when no events are left to move the clock
+  private long[] shiftEnds = new long[0];
 
-  private List<ActiveTask> activeTasks = new ArrayList<>();
+  // Draws the order workers are tried in, or null to use the default source of Collections.shuffle
+  private final RandomGenerator random;
 
+  // Whether the duration of a picker task is drawn from a random tree instead of the mean
+  private final boolean sampleTrees;
+
+  /**
+   * Constructor for ZoneSimulator, the workers are shuffled with an unseeded random.
+   */
+  public ZoneSimulator() {
+    this(null);
+  }
+
+  /**
+   * Constructor for ZoneSimulator, the workers are shuffled with the given random,
+   * so that a simulation can be repeated with the same seed.
+   *
+   * @param random The random number generator of the zone, or null for an unseeded one
+   */
+  public ZoneSimulator(RandomGenerator random) {
+    this(random, false);
+  }
+
+  /**
+   * Constructor for ZoneSimulator that can draw the duration of every picker task from the
+   * output of a random tree of the model instead of estimating the mean of all trees.
+   *
+   * @param random      The random number generator of the zone, or null for an unseeded one
+   * @param sampleTrees Whether the durations of picker tasks are drawn from a random tree
+   */
+  public ZoneSimulator(RandomGenerator random, boolean sampleTrees) {
+    this.random = random;
+    this.sampleTrees = sampleTrees;
+  }
 
   public ZoneSimResult runZoneSimulation(Zone zone, List<ActiveTask> activeTasksList,
                                          Set<PickerTask> pickerTasks,
-                                         RandomForest randomForest,
+                                         PickingModel randomForest,
                                          LocalDateTime startTime,
                                          TimetableService timetableService) {
+    return runZoneSimulation(zone, activeTasksList, pickerTasks, randomForest, startTime,
+        timetableService, null);
+  }
+
+  /**
+   * Runs the simulation of a zone using a snapshot of the shifts of the day.
+   * The shift index is shared between simulations, so that the timetables are only read once.
+   *
+   * @param zone             The zone to simulate
+   * @param activeTasksList  The active tasks of the zone, null for a picker zone
+   * @param pickerTasks      The picker tasks of the zone, null for a non picker zone
+   * @param randomForest     The model used to estimate the duration of picker tasks
+   * @param startTime        The time to start the simulation from
+   * @param timetableService The timetable service, used when no shift index is given
+   * @param shiftIndex       The shifts of the day, or null to query the timetable service
+   * @return The result of the simulation
+   */
+  public ZoneSimResult runZoneSimulation(Zone zone, List<ActiveTask> activeTasksList,
+                                         Set<PickerTask> pickerTasks,
+                                         PickingModel randomForest,
+                                         LocalDateTime startTime,
+                                         TimetableService timetableService,
+                                         ShiftIndex shiftIndex) {
 
     // Initialize ZoneSimResult
     ZoneSimResult zoneSimResult = new ZoneSimResult();
-    this.timetableService = timetableService;
     zoneSimResult.setZone(zone);
-    this.activeTasks = activeTasksList;
-    try {
-      // Check if the zone has any tasks
-      if ((activeTasks == null || activeTasks.isEmpty()) &&
-          (pickerTasks == null || pickerTasks.isEmpty())) {
-        // ERROR: NO TASKS
-        zoneSimResult.setErrorMessage("101");
-        return zoneSimResult;
-      }
-      // Get the workers in the zone as a set
-      Set<Worker> originalZoneWorkers = zone.getWorkers();
-
-      // Create a deep copy of the workers for this simulation
-      Set<Worker> zoneWorkers = new HashSet<>();
-      for (Worker worker : originalZoneWorkers) {
-        // remove unavailable workers from the set
-        if (worker.isAvailability()) {
-          zoneWorkers.add(new Worker(worker));
-        }
-      }
-      // Check if the zone has any workers
-      if (zoneWorkers.isEmpty()) {
-        // ERROR: NO WORKERS
-        zoneSimResult.setErrorMessage(
-            "102");
-        return zoneSimResult;
-      }
+    List<ActiveTask> activeTasks = activeTasksList;
+    // Check if the zone has any tasks
+    if ((activeTasks == null || activeTasks.isEmpty()) &&
+        (pickerTasks == null || pickerTasks.isEmpty())) {
+      // ERROR: NO TASKS
+      zoneSimResult.setErrorMessage("101");
+      return zoneSimResult;
+    }
+    // Get the workers in the zone as a set
+    Set<Worker> originalZoneWorkers = zone.getWorkers();
 
-      // Get the first start time for the zone for a worker that is available
-      LocalDateTime newTime = timetableService.getFirstStartTimeByZoneAndDay(
-          zone.getId(), startTime);
-      this.lastTime.set(newTime);
-      if (activeTasks != null && !activeTasks.isEmpty()) {
-        // Get the earliest opportunity for the active tasks
-        LocalDateTime earliestOpportunity = getEarliestOpportunity(activeTasks);
-        if (earliestOpportunity != null) {
-          newTime = earliestOpportunity;
-        }
-      }
-      // If the new time is start of day, it means no workers are scheduled to work that day
-      if (Objects.equals(newTime, startTime.toLocalDate().atStartOfDay())) {
-        // ERROR: NO WORKERS COMING TO WORK TODAY
-        zoneSimResult.setErrorMessage(
-            "103");
-        return zoneSimResult;
+    // Create a deep copy of the workers for this simulation
+    Set<Worker> zoneWorkers = new HashSet<>();
+    for (Worker worker : originalZoneWorkers) {
+      // remove unavailable workers from the set
+      if (worker.isAvailability()) {
+        zoneWorkers.add(new Worker(worker));
       }
-      // If the new time is before the last time, set the last time to the new time
-      LocalDateTime finalNewTime = newTime;
-      this.lastTime.updateAndGet(_ -> finalNewTime.isAfter(startTime) ? finalNewTime : startTime);
-      ExecutorService zoneExecutor = Executors.newFixedThreadPool(
-          Math.max(1, Math.min(activeTasksList != null ? activeTasksList.size() : pickerTasks.size(), 100))
-      );
-      // Latch for the tasks in the zone ensuring that all tasks are completed before the simulation ends
-      WorkerSemaphore2 availableZoneWorkersSemaphore = new WorkerSemaphore2(timetableService);
-      availableZoneWorkersSemaphore.initialize(zoneWorkers, this.lastTime.get());
-      //Countdown latch based on zone tasks
-      CountDownLatch zoneLatch;
-      // Iterate over the tasks in the zone
+    }
+    // Check if the zone has any workers
+    if (zoneWorkers.isEmpty()) {
+      // ERROR: NO WORKERS
+      zoneSimResult.setErrorMessage(
+          "102");
+      return zoneSimResult;
+    }
+
+    // Get the first start time for the zone for a worker that is available
+    LocalDateTime newTime = shiftIndex != null
+        ? shiftIndex.getFirstStartTimeByZoneAndDay(zone.getId(), startTime)
+        : timetableService.getFirstStartTimeByZoneAndDay(zone.getId(), startTime);
+    // If the new time is start of day, it means no workers are scheduled to work that day
+    if (Objects.equals(newTime, startTime.toLocalDate().atStartOfDay())) {
+      // ERROR: NO WORKERS COMING TO WORK TODAY
+      zoneSimResult.setErrorMessage(
+          "103");
+      return zoneSimResult;
+    }
+    // The clock starts at the first shift start, or at the start time if that is later.
+    // The scheduler counts whole minutes, so the clock starts at the start of the minute
+    LocalDateTime clockStart =
+        (newTime != null && newTime.isAfter(startTime) ? newTime : startTime)
+            .truncatedTo(ChronoUnit.MINUTES);
+    this.lastTime.set(clockStart);
+    this.scheduler = new EventScheduler(EventScheduler.toMinutes(clockStart));
+    this.startedActiveTasks.clear();
+    this.startedPickerTasks.clear();
+    if (shiftIndex != null) {
+      scheduleShifts(shiftIndex.getShiftStarts(zone.getId()),
+          shiftIndex.getShiftEnds(zone.getId()));
+    } else {
+      List<Timetable> timetables =
+          timetableService.getTimetablesByDayAndZone(startTime, zone.getId());
+      scheduleShifts(
+          timetables.stream().map(Timetable::getRealStartTime).filter(Objects::nonNull).toList(),
+          timetables.stream().map(Timetable::getRealEndTime).filter(Objects::nonNull).toList());
+    }
+
+    // The common resource for the workers
+    LicenseWorkerPool availableZoneWorkersSemaphore = new LicenseWorkerPool(timetableService);
+    availableZoneWorkersSemaphore.initialize(zoneWorkers, this.lastTime.get(), shiftIndex,
+        random);
+    try {
       if (activeTasks != null && !activeTasks.isEmpty()) {
-        zoneLatch = new CountDownLatch(activeTasks.size());
         // Filter and sort the active tasks based on the number of workers and due date
-        activeTasks = filterAndSortActiveTasks(activeTasks);
-        for (ActiveTask activeTask : activeTasks) {
-          // Simulate the task
-          String result = simulateTask(activeTask,
-              availableZoneWorkersSemaphore, zoneExecutor, zoneLatch,
+        List<ActiveTask> pendingTasks = new ArrayList<>(filterAndSortActiveTasks(activeTasks));
+        while (!pendingTasks.isEmpty() || scheduler.hasPending()) {
+          dispatchActiveTasks(pendingTasks, availableZoneWorkersSemaphore, zone.getId(),
               zoneSimResult);
-          if (!result.isEmpty()) {
-            zoneSimResult.setErrorMessage(result);
-            return zoneSimResult;
+          if (!advanceClock(pendingTasks, availableZoneWorkersSemaphore, zoneSimResult)) {
+            failRemainingTasks(pendingTasks, zoneSimResult);
           }
         }
       } else {
-        zoneLatch = new CountDownLatch(pickerTasks.size());
-        pickerTasks = filterAndSortPickerTasks(pickerTasks);
-        for (PickerTask pickerTask : pickerTasks) {
-          // Simulate the picker task
-          String result = simulatePickerTask(pickerTask,
-              availableZoneWorkersSemaphore, zoneExecutor, zoneLatch,
-              randomForest, zoneSimResult);
-          if (!result.isEmpty()) {
-            zoneSimResult.setErrorMessage(result);
-            return zoneSimResult;
+        List<PickerTask> pendingTasks = new ArrayList<>(filterAndSortPickerTasks(pickerTasks));
+        // With tree sampling every duration is drawn when its task starts
+        Map<PickerTask, Map<Long, Long>> durations = sampleTrees ? Map.of()
+            : estimatePickerTasks(pendingTasks, zoneWorkers, randomForest);
+        while (!pendingTasks.isEmpty() || scheduler.hasPending()) {
+          dispatchPickerTasks(pendingTasks, availableZoneWorkersSemaphore, zone.getId(),
+              randomForest, durations, zoneSimResult);
+          if (!advanceClock(pendingTasks, availableZoneWorkersSemaphore, zoneSimResult)) {
+            failRemainingTasks(pendingTasks, zoneSimResult);
           }
-
         }
       }
-      // Wait for all tasks to complete
-      zoneLatch.await();
-      //System.out.println("Zone " + zone.getId() + " simulation completed at " + this.lastTime.get());
-      zoneExecutor.shutdownNow();
-      if (!zoneExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
-        zoneSimResult.setErrorMessage("100");
-        zoneExecutor.shutdownNow();
-        return zoneSimResult;
-      }
-      return zoneSimResult;
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
     }
     return zoneSimResult;
   }
 
-  private Set<PickerTask> filterAndSortPickerTasks(Set<PickerTask> pickerTasks) {
-    return pickerTasks.stream()
-        // Filter out tasks that have an endTime
-        .filter(task -> task.getEndTime() == null)
-        // Sort tasks by whether they have workers
-        .sorted((task1, task2) -> Boolean.compare(
-            task2.getWorker() != null,
-            task1.getWorker() != null
-        ))
-        .collect(Collectors.toCollection(LinkedHashSet::new));
+  /**
+   * Schedules an event for every shift in the zone that starts after the clock,
+   * so that the simulation wakes up when new workers arrive.
+   *
+   * @param shiftStarts The real start times of the shifts in the zone
+   * @param shiftEnds   The real end times of the shifts in the zone
+   */
+  private void scheduleShifts(List<LocalDateTime> shiftStarts, List<LocalDateTime> shiftEnds) {
+    for (LocalDateTime shiftStart : shiftStarts) {
+      long time = EventScheduler.toMinutes(shiftStart);
+      if (time > scheduler.now()) {
+        scheduler.schedule(time, SimEvent.Type.WORKER_FREE, -1);
+      }
+    }
+    this.shiftEnds = shiftEnds.stream().mapToLong(EventScheduler::toMinutes).sorted().toArray();
   }
 
   /**
-   * Simulates a picker task in the zone on its own thread
+   * Tries to start every pending active task at the current time of the clock.
+   * Tasks that can not be completed are removed with an error message,
+   * tasks that are waiting for workers stay in the list.
    *
-   * @param pickerTask                    The picker task to simulate
+   * @param pendingTasks                  The tasks that have not been started yet
    * @param availableZoneWorkersSemaphore The common resource for the workers
-   * @param zoneExecutor                  The executor service for the zone
-   * @param zoneLatch                     The countdown latch for the zone (ensures all tasks are completed)
-   * @param randomForest                  The random forest model to use for task duration calculation
+   * @param zoneId                        The ID of the zone
    * @param zoneSimResult                 The zone simulation result object
-   * @return Any error messages that may occur
    */
-  private String simulatePickerTask(PickerTask pickerTask,
-                                    WorkerSemaphore2 availableZoneWorkersSemaphore,
-                                    ExecutorService zoneExecutor, CountDownLatch zoneLatch,
-                                    RandomForest randomForest, ZoneSimResult zoneSimResult) {
-    zoneExecutor.submit(() -> {
-      try {
-        // Acquire the workers for the task from the semaphore
-        while (pickerTask.getWorker() == null) {
-          String result = availableZoneWorkersSemaphore.acquireMultiple(null, pickerTask, lastTime,
-              pickerTask.getZone().getId());
-          // if this, then task will not complete
-          if (!result.isEmpty()) {
-            zoneSimResult.setErrorMessage(result);
-            return;
-          }
+  private void dispatchActiveTasks(List<ActiveTask> pendingTasks,
+                                   WorkerPool availableZoneWorkersSemaphore, Long zoneId,
+                                   ZoneSimResult zoneSimResult) throws InterruptedException {
+    Iterator<ActiveTask> iterator = pendingTasks.iterator();
+    while (iterator.hasNext()) {
+      ActiveTask activeTask = iterator.next();
+      if (activeTask.getWorkers().size() < activeTask.getTask().getMinWorkers()) {
+        String acquireWorkerError =
+            availableZoneWorkersSemaphore.acquireMultiple(activeTask, null, this.lastTime,
+                zoneId);
+        // if this, then task will not complete
+        if (!acquireWorkerError.isEmpty()) {
+          zoneSimResult.setErrorMessage(acquireWorkerError);
+          iterator.remove();
+          continue;
         }
-        // Set start time of task to the last time
-        LocalDateTime startTime = this.lastTime.get();
-        // Simulate the task duration using the model (divided by 60 to get minutes)
-        int taskDuration = (int) (mlModel.estimateTimeUsingModel(randomForest, pickerTask,
-            pickerTask.getWorker().getId())) / 60;
-        // Sleep for the task duration
-        TimeUnit.MILLISECONDS.sleep(300);
-        // Set picker task attributes
-        pickerTask.setStartTime(startTime);
-        pickerTask.setEndTime(startTime.plusMinutes(taskDuration));
-        // Set the last time to the end time of the task
-        // Set the last time to the end time of the task
-        synchronized (this.lastTime) {
-          this.lastTime.updateAndGet(current ->
-              startTime.plusMinutes(taskDuration).isAfter(current) ?
-                  startTime.plusMinutes(taskDuration) : current
-          );
+        if (activeTask.getWorkers().size() < activeTask.getTask().getMinWorkers()) {
+          // Wait for the next event
+          continue;
         }
-        // Add the task to the simulation result
-        zoneSimResult.addTask(null, pickerTask);
-        // Release the workers back to the semaphore
-        availableZoneWorkersSemaphore.release(pickerTask.getWorker());
-      } catch (InterruptedException | IOException e) {
-        Thread.currentThread().interrupt();
-      } finally {
-        // Decrement the countdown latch for the zone
-        zoneLatch.countDown();
       }
-    });
-    return "";
+      // Set the task attributes
+      LocalDateTime startTime = this.lastTime.get();
+      int taskDuration = calculateSleepTime(activeTask);
+      activeTask.setStartTime(startTime);
+      activeTask.setEndTime(startTime.plusMinutes(taskDuration));
+      startedActiveTasks.add(activeTask);
+      scheduler.schedule(scheduler.now() + Math.max(0, taskDuration),
+          SimEvent.Type.TASK_COMPLETE, startedActiveTasks.size() - 1);
+      iterator.remove();
+    }
   }
 
   /**
-   * Simulates an active task in the zone on its own thread.
+   * Estimates the duration of the whole backlog of a picker zone in one prediction, for the
+   * assigned worker of each task or every worker of the zone if it has none.
    *
-   * @param activeTask                    The active task to simulate
+   * @param pickerTasks  The picker tasks of the zone
+   * @param zoneWorkers  The available workers of the zone
+   * @param randomForest The random forest model to use for task duration calculation
+   * @return The estimated time in seconds of each task per worker ID
+   */
+  private Map<PickerTask, Map<Long, Long>> estimatePickerTasks(List<PickerTask> pickerTasks,
+                                                               Set<Worker> zoneWorkers,
+                                                               PickingModel randomForest) {
+    List<PickerTask> tasks = new ArrayList<>();
+    List<Long> workerIds = new ArrayList<>();
+    for (PickerTask pickerTask : pickerTasks) {
+      if (pickerTask.getWorker() != null && pickerTask.getWorker().getId() != null) {
+        tasks.add(pickerTask);
+        workerIds.add(pickerTask.getWorker().getId());
+        continue;
+      }
+      for (Worker worker : zoneWorkers) {
+        // Workers without an ID are estimated when they start the task
+        if (worker.getId() != null) {
+          tasks.add(pickerTask);
+          workerIds.add(worker.getId());
+        }
+      }
+    }
+    long[] times = mlModel.estimateTimesUsingModel(randomForest, tasks,
+        workerIds.stream().mapToLong(Long::longValue).toArray());
+    // Tasks are matched by identity, the copies of a simulation have the same IDs
+    Map<PickerTask, Map<Long, Long>> durations = new IdentityHashMap<>();
+    for (int i = 0; i < times.length; i++) {
+      durations.computeIfAbsent(tasks.get(i), _ -> new HashMap<>()).put(workerIds.get(i), times[i]);
+    }
+    return durations;
+  }
+
+  /**
+   * Tries to start every pending picker task at the current time of the clock.
+   *
+   * @param pendingTasks                  The tasks that have not been started yet
    * @param availableZoneWorkersSemaphore The common resource for the workers
-   * @param zoneExecutor                  The executor service for the zone
-   * @param zoneLatch                     The countdown latch for the zone (ensures all tasks are completed)
+   * @param zoneId                        The ID of the zone
+   * @param randomForest                  The random forest model to use for task duration calculation
+   * @param durations                     The estimated time in seconds of each task per worker ID
    * @param zoneSimResult                 The zone simulation result object
-   * @return Any error messages that may occur
    */
-  private String simulateTask(ActiveTask activeTask,
-                              WorkerSemaphore2 availableZoneWorkersSemaphore,
-                              ExecutorService zoneExecutor,
-                              CountDownLatch zoneLatch,
-                              ZoneSimResult zoneSimResult
-  ) {
-    zoneExecutor.submit(() -> {
-      try {
-        // Acquire the workers for the task
-        while (activeTask.getWorkers().size() < activeTask.getTask().getMinWorkers()) {
-          //System.out.println(activeTask.getId() + " waiting for workers at " + this.lastTime);
-
-          String acquireWorkerError =
-              availableZoneWorkersSemaphore.acquireMultiple(activeTask, null, this.lastTime,
-                  activeTask.getTask().getZoneId());
-          // if this, then task will not complete
-          if (!acquireWorkerError.isEmpty()) {
-            zoneSimResult.setErrorMessage(acquireWorkerError);
-            return;
-          }
-          this.getEarliestOpportunity(activeTasks);
-          //System.out.println("trying to acquire " + activeTask.getTask().getMinWorkers() + " workers for task " + activeTask.getId() + "semaphore " + availableZoneWorkersSemaphore.getWorkers() + "at time " + this.lastTime.get());
+  private void dispatchPickerTasks(List<PickerTask> pendingTasks,
+                                   WorkerPool availableZoneWorkersSemaphore, Long zoneId,
+                                   PickingModel randomForest,
+                                   Map<PickerTask, Map<Long, Long>> durations,
+                                   ZoneSimResult zoneSimResult)
+      throws InterruptedException {
+    Iterator<PickerTask> iterator = pendingTasks.iterator();
+    while (iterator.hasNext()) {
+      PickerTask pickerTask = iterator.next();
+      if (pickerTask.getWorker() == null) {
+        String result = availableZoneWorkersSemaphore.acquireMultiple(null, pickerTask,
+            this.lastTime, zoneId);
+        // if this, then task will not complete
+        if (!result.isEmpty()) {
+          zoneSimResult.setErrorMessage(result);
+          iterator.remove();
+          continue;
         }
-        // Set start time of task to the last time
-        LocalDateTime startTime = this.lastTime.get();
-        int sleepTime = calculateSleepTime(activeTask);
-        // Simulate the task duration
-        TimeUnit.MILLISECONDS.sleep(300);
-        // Set the task attributes
-        activeTask.setStartTime(startTime);
-        activeTask.setEndTime(activeTask.getStartTime().plusMinutes(sleepTime));
-        // Set the last time to the end time of the task
-        synchronized (this.lastTime) {
-          LocalDateTime finalStartTime = startTime;
-          this.lastTime.updateAndGet(current ->
-              finalStartTime.plusMinutes(sleepTime).isAfter(current) ?
-                  finalStartTime.plusMinutes(sleepTime) :
-                  current
-          );
+        if (pickerTask.getWorker() == null) {
+          // Wait for the next event
+          continue;
         }
-        // Add the task to the simulation result
-        zoneSimResult.addTask(activeTask, null);
-        // Release the workers back to the semaphore
-        //System.out.println("Releasing workers for task " + activeTask.getId() + " at " + this.lastTime.get());
-        availableZoneWorkersSemaphore.releaseAll(activeTask.getWorkers());
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-      } finally {
-        // Decrement the countdown latch for the zone
-        zoneLatch.countDown();
       }
-    });
-    return "";
+      // Simulate the task duration using the model (divided by 60 to get minutes)
+      int taskDuration;
+      try {
+        Long estimate = sampleTrees
+            ? mlModel.sampleTimeUsingModel(randomForest, pickerTask,
+                pickerTask.getWorker().getId(),
+                random != null ? random : ThreadLocalRandom.current())
+            : durations.getOrDefault(pickerTask, Map.of()).get(pickerTask.getWorker().getId());
+        taskDuration = (int) (estimate != null ? estimate
+            : mlModel.estimateTimeUsingModel(randomForest, pickerTask,
+                pickerTask.getWorker().getId())) / 60;
+      } catch (IOException e) {
+        // ERROR: THE DURATION OF THE TASK COULD NOT BE ESTIMATED
+        System.out.println("Could not estimate picker task " + pickerTask.getId() + ": "
+            + e.getMessage());
+        zoneSimResult.setErrorMessage("106:null:" + pickerTask.getId());
+        availableZoneWorkersSemaphore.release(pickerTask.getWorker());
+        iterator.remove();
+        continue;
+      }
+      // Set picker task attributes
+      LocalDateTime startTime = this.lastTime.get();
+      pickerTask.setStartTime(startTime);
+      pickerTask.setEndTime(startTime.plusMinutes(taskDuration));
+      startedPickerTasks.add(pickerTask);
+      scheduler.schedule(scheduler.now() + Math.max(0, taskDuration),
+          SimEvent.Type.TASK_COMPLETE, startedPickerTasks.size() - 1);
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Moves the clock to the next point in time where the state of the zone can change.
+   * All events at that time are processed before the tasks are dispatched again.
+   * If there are no events left but tasks are still waiting, the clock jumps to the next
+   * shift end so that the tasks fail the same way they would in real time.
+   *
+   * @param pendingTasks                  The tasks that have not been started yet
+   * @param availableZoneWorkersSemaphore The common resource for the workers
+   * @param zoneSimResult                 The zone simulation result object
+   * @return false if the clock can not move and the pending tasks will never start
+   */
+  private boolean advanceClock(List<?> pendingTasks,
+                               WorkerPool availableZoneWorkersSemaphore,
+                               ZoneSimResult zoneSimResult) {
+    if (scheduler.hasPending()) {
+      processEvent(scheduler.next(), availableZoneWorkersSemaphore, zoneSimResult);
+      while (scheduler.peekTime() == scheduler.now()) {
+        processEvent(scheduler.next(), availableZoneWorkersSemaphore, zoneSimResult);
+      }
+    } else if (!pendingTasks.isEmpty()) {
+      long nextShiftEnd = nextShiftEnd(scheduler.now());
+      if (nextShiftEnd == Long.MAX_VALUE) {
+        return false;
+      }
+      scheduler.advanceTo(nextShiftEnd);
+    }
+    this.lastTime.set(EventScheduler.toDateTime(scheduler.now()));
+    return true;
+  }
+
+  /**
+   * Handles a single event from the scheduler.
+   *
+   * @param event                         The event to handle
+   * @param availableZoneWorkersSemaphore The common resource for the workers
+   * @param zoneSimResult                 The zone simulation result object
+   */
+  private void processEvent(SimEvent event, WorkerPool availableZoneWorkersSemaphore,
+                            ZoneSimResult zoneSimResult) {
+    if (event.type() != SimEvent.Type.TASK_COMPLETE) {
+      // New workers have arrived, the tasks are dispatched again after the event
+      return;
+    }
+    if (!startedActiveTasks.isEmpty()) {
+      ActiveTask activeTask = startedActiveTasks.get(event.subject());
+      // Add the task to the simulation result
+      zoneSimResult.addTask(activeTask, null);
+      // Release the workers back to the semaphore
+      availableZoneWorkersSemaphore.releaseAll(activeTask.getWorkers());
+    } else {
+      PickerTask pickerTask = startedPickerTasks.get(event.subject());
+      // Add the task to the simulation result
+      zoneSimResult.addTask(null, pickerTask);
+      // Release the worker back to the semaphore
+      availableZoneWorkersSemaphore.release(pickerTask.getWorker());
+    }
+  }
+
+  private long nextShiftEnd(long time) {
+    for (long shiftEnd : shiftEnds) {
+      if (shiftEnd > time) {
+        return shiftEnd;
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Marks the tasks that can never be started as failed.
+   * This happens when the workers that could do them are tied up for the rest of the day.
+   *
+   * @param pendingTasks  The tasks that have not been started yet
+   * @param zoneSimResult The zone simulation result object
+   */
+  private void failRemainingTasks(List<?> pendingTasks, ZoneSimResult zoneSimResult) {
+    for (Object task : pendingTasks) {
+      if (task instanceof ActiveTask activeTask) {
+        // ERROR: WORKERS HAVE GONE HOME, TASK CAN NOT COMPLETE
+        zoneSimResult.setErrorMessage("104:" + activeTask.getId() + ":null");
+      } else if (task instanceof PickerTask pickerTask) {
+        zoneSimResult.setErrorMessage("104:null:" + pickerTask.getId());
+      }
+    }
+    pendingTasks.clear();
+  }
+
+  public static Set<PickerTask> filterAndSortPickerTasks(Set<PickerTask> pickerTasks) {
+    return pickerTasks.stream()
+        // Filter out tasks that have an endTime
+        .filter(task -> task.getEndTime() == null)
+        // Sort tasks by whether they have workers
+        .sorted((task1, task2) -> Boolean.compare(
+            task2.getWorker() != null,
+            task1.getWorker() != null
+        ))
+        .collect(Collectors.toCollection(LinkedHashSet::new));
   }
 
   /**
    * Filters and sorts the active tasks based on the number of workers and due date.
    * Ensures that tasks with workers already on it are prioritized so that the workers are released sooner.
-   * This is done due to thread amount restrictions.
+   * This is done so that the workers on tasks in progress are released sooner.
    * Also sorts the tasks by due date ensuring tasks that are prioritized are completed first.
    *
    * @param activeTasks The list of active tasks to filter and sort
    * @return The filtered and sorted list of active tasks
    */
-  private static List<ActiveTask> filterAndSortActiveTasks(List<ActiveTask> activeTasks) {
+  public static List<ActiveTask> filterAndSortActiveTasks(List<ActiveTask> activeTasks) {
     return activeTasks.stream()
         // Filter out tasks that have an endTime
         .filter(task -> task.getEndTime() == null)
@@ -339,7 +518,7 @@ public class ZoneSimulator {
    * @param activeTask The task to calculate sleep time for
    * @return The sleep time for the task
    */
-  private static int calculateSleepTime(ActiveTask activeTask) {
+  static int calculateSleepTime(ActiveTask activeTask) {
     int maxDuration = activeTask.getTask().getMaxTime();
     int minDuration = activeTask.getTask().getMinTime();
     int maxWorkers = activeTask.getTask().getMaxWorkers();
@@ -362,33 +541,4 @@ public class ZoneSimulator {
   }
 
 
-  private LocalDateTime getEarliestOpportunity(List<ActiveTask> activeTasks) {
-    int fewest = activeTasks.stream()
-        .filter(task -> task.getEndTime() == null) // Exclude finished tasks
-        .min(Comparator.comparingInt(
-            task -> task.getTask().getMinWorkers())) // Find the task with the fewest minWorkers
-        .map(task -> task.getTask().getMinWorkers()) // Extract the minWorkers value
-        .orElse(0);
-
-    if (fewest == 0) {
-      return null;
-    }
-    // Filter tasks to include only those with exactly `fewest` minWorkers
-    List<ActiveTask> filteredTasks = activeTasks.stream()
-        .filter(task -> task.getTask().getMinWorkers() == fewest)
-        .toList();
-
-    LocalDateTime earliestTime = this.timetableService.getEarliestTimeWithMinWorkers(
-        fewest, activeTasks.getFirst().getTask().getZoneId(), this.lastTime.get(), filteredTasks);
-
-    if (earliestTime != null && !this.lastTime.get().isAfter(earliestTime)) {
-      this.lastTime.updateAndGet(current ->
-          current.isBefore(earliestTime) ? earliestTime : current
-      );
-      return earliestTime;
-    }
-
-    return null;
-  }
 }
-
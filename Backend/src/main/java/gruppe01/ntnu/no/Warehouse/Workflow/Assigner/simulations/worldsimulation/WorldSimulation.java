@@ -7,19 +7,22 @@ import gruppe01.ntnu.no.warehouse.workflow.assigner.dummydata.PickerTaskGenerato
 import gruppe01.ntnu.no.warehouse.workflow.assigner.dummydata.TimeTableGenerator;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.*;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelRegistry;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.services.*;
-import java.util.concurrent.CompletableFuture;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.RandomStreams;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import smile.regression.RandomForest;
 
 import java.io.IOException;
 import java.time.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.random.RandomGenerator;
 import java.util.stream.Stream;
 
 /**
@@ -76,9 +79,8 @@ public class WorldSimulation {
 
   private boolean resetData;
 
-  private volatile boolean isSimulationRunning = false;
-
-  private HashMap<String, RandomForest> randomForests = new HashMap<>();
+  // The models of the picker zones by zone name, replaced when a new version is swapped in
+  private final Map<String, PickingModel> randomForests = new ConcurrentHashMap<>();
 
   private Optional<LocalDateTime> firstWorkerTime;
 
@@ -104,8 +106,17 @@ public class WorldSimulation {
 
   private final WorldSimDataService worldSimDataService;
 
+  private final ModelRegistry modelRegistry;
+
+  // Whether the duration of a picker task is drawn from a random tree instead of the mean
+  // estimate with a random offset
+  private final boolean sampleTrees;
+
   private int speedFactory = 0;
 
+  // Draws the shift offsets, generated tasks and task durations of the day
+  private RandomGenerator random = new SplittableRandom();
+
   /**
    * Constructor for WorldSimulation.
    *
@@ -119,6 +130,9 @@ public class WorldSimulation {
    * @param pickerTaskService     the service for PickerTask entity
    * @param zoneService           the service for Zone entity
    * @param worldSimDataService   the service for WorldSimData entity
+   * @param notificationService   the service for Notification entity
+   * @param modelRegistry         the current models of the picker zones
+   * @param sampleTrees           whether picker task durations are drawn from a random tree
    */
   public WorldSimulation(
       TimetableService timetableService,
@@ -131,7 +145,9 @@ public class WorldSimulation {
       PickerTaskGenerator pickerTaskGenerator,
       PickerTaskService pickerTaskService,
       ZoneService zoneService,
-      WorldSimDataService worldSimDataService, NotificationService notificationService) {
+      WorldSimDataService worldSimDataService, NotificationService notificationService,
+      ModelRegistry modelRegistry,
+      @Value("${simulation.picker-durations.sample-trees:false}") boolean sampleTrees) {
     this.timetableService = timetableService;
     this.activeTaskService = activeTaskService;
     this.activeTaskGenerator = activeTaskGenerator;
@@ -144,6 +160,11 @@ public class WorldSimulation {
     this.zoneService = zoneService;
     this.worldSimDataService = worldSimDataService;
     this.notificationService = notificationService;
+    this.modelRegistry = modelRegistry;
+    this.sampleTrees = sampleTrees;
+    // Tasks started after a retraining use the new model
+    modelRegistry.addListener(version ->
+        randomForests.replace(version.department(), version.model()));
   }
 
   /**
@@ -162,6 +183,8 @@ public class WorldSimulation {
     boolean activeTasksExistForWorkday = false;
     machineLearningModelPicking = new MachineLearningModelPicking();
     this.speedFactory = 0;
+    // With a master seed the same day is generated and simulated every time
+    random = RandomStreams.of(simulationService.getMasterSeed(), false).forRun();
 
     flushAllWorkerTasks();
     monteCarloDataService.flushMonteCarloData();
@@ -170,7 +193,10 @@ public class WorldSimulation {
     //Initialize the random forests for each zone
     for (Zone zone : zoneService.getAllPickerZones()) {
       String zoneName = zone.getName().toUpperCase();
-      randomForests.put(zoneName, machineLearningModelPicking.getModel(zone.getName(), false));
+      PickingModel model = modelRegistry.getModel(zoneName);
+      if (model != null) {
+        randomForests.put(zoneName, model);
+      }
     }
 
     System.out.println(randomForests.size());
@@ -178,11 +204,12 @@ public class WorldSimulation {
     //Finds the first workday without any active tasks to run the simulation on. Starts on the given date.
     while (!activeTasksExistForWorkday) {
       if (activeTaskService.getActiveTaskByDate(workday).isEmpty()) {
-        activeTaskGenerator.generateActiveTasks(workday, 1);
+        activeTaskGenerator.generateActiveTasks(workday, 1, random);
         if (timetableService.getTimetablesByDate(workday).isEmpty()) {
           timeTableGenerator.generateTimeTable(workday);
         }
-        pickerTaskGenerator.generatePickerTasks(workday, 1, 30, machineLearningModelPicking, false);
+        pickerTaskGenerator.generatePickerTasks(workday, 1, 30, machineLearningModelPicking, false,
+            random);
         activeTasksExistForWorkday = true;
       } else {
         workday = workday.plusDays(1);
@@ -203,7 +230,6 @@ public class WorldSimulation {
     }
 
     //Initialize variables used in the simulation
-    Random random = new Random();
     availableWorkers = new ArrayList<>();
     busyWorkers = new ArrayList<>();
     activeTasksInProgress = new ArrayList<>();
@@ -266,7 +292,7 @@ public class WorldSimulation {
                   availableWorkers.stream(),
                   workersWaitingForTask.stream())
               .filter(worker -> worker.getZone().equals(task.getTask().getZoneId()) &&
-                  worker.getLicenses().containsAll(task.getTask().getRequiredLicense()) &&
+                  worker.isQualifiedFor(task.getTask()) &&
                   worker.isAvailability())
               .collect(Collectors.toList());
           int workersSlots;
@@ -317,7 +343,7 @@ public class WorldSimulation {
 
         List<Worker> workers = new ArrayList<>(availableWorkers.stream()
             .filter(worker -> worker.getZone().equals(task.getTask().getZoneId()) &&
-                worker.getLicenses().containsAll(task.getTask().getRequiredLicense()) &&
+                worker.isQualifiedFor(task.getTask()) &&
                 worker.isAvailability())
             .collect(Collectors.toList()));
         int workersSlots = 0;
@@ -356,6 +382,7 @@ public class WorldSimulation {
 
       // Assign picker tasks to available workers
       Iterator<PickerTask> pickerTaskIterator = pickerTasksToday.iterator();
+      List<PickerTask> startedPickerTasks = new ArrayList<>();
       if (!availableWorkers.isEmpty()) {
         while (pickerTaskIterator.hasNext()) {
           PickerTask task = pickerTaskIterator.next();
@@ -373,8 +400,8 @@ public class WorldSimulation {
           Worker worker = workerIterator.next();
           task.setStartTime(LocalDateTime.of(workday, currentTime));
           pickerTaskService.assignWorkerToPickerTask(task.getId(), worker.getId());
-          pickerTaskEndTimes.put(task, getPickerEndTime(task, worker.getId()));
           task.setWorker(worker);
+          startedPickerTasks.add(task);
           worker.setCurrentPickerTask(task);
           workerService.updateWorker(worker.getId(), worker);
           busyWorkers.add(worker);
@@ -386,6 +413,8 @@ public class WorldSimulation {
           pickerTaskService.updatePickerTask(task.getId(), task.getZone().getId(), task);
         }
       }
+      // The end times of the picker tasks started this minute are estimated together
+      pickerTaskEndTimes.putAll(getPickerEndTimes(startedPickerTasks));
 
       //Checks if picker tasks are completed
       Iterator<PickerTask> pickerTaskInProgressIterator = pickerTasksInProgress.iterator();
@@ -448,22 +477,10 @@ public class WorldSimulation {
         // Hinder the simulation from running if there are no workers present
         if (firstWorkerTime.isPresent() && currentTime.isAfter(
             LocalTime.from(firstWorkerTime.get().minus(Duration.ofMinutes(60))))) {
-          if (isSimulationRunning) {
-            System.out.println("A simulation is already running. Skipping this iteration.");
-          } else {
-            LocalDateTime daytime = LocalDateTime.of(workday, currentTime);
-            isSimulationRunning = true; // Mark simulation as running
-
-            CompletableFuture.runAsync(() -> {
-              try {
-                simulationService.runCompleteSimulation(randomForests, daytime);
-              } catch (ExecutionException | InterruptedException | IOException e) {
-                throw new RuntimeException(e);
-              } finally {
-                isSimulationRunning = false; // Reset the flag when simulation completes
-              }
-            });
-          }
+          // A run that is still simulating an older state is cancelled by the new one
+          LocalDateTime daytime = LocalDateTime.of(workday, currentTime);
+          // A copy, so the run keeps its models if a new version is swapped in
+          simulationService.submitCompleteSimulation(new HashMap<>(randomForests), daytime);
         }
       }
 
@@ -555,20 +572,67 @@ public class WorldSimulation {
     double actualDuration = taskDuration / averageEfficiency;
 
     // Add random offset between -5 and +5 minutes
-    int randomOffset = ThreadLocalRandom.current().nextInt(-5, 6);
+    int randomOffset = random.nextInt(-5, 6);
 
     return task.getStartTime().plusMinutes((int) actualDuration + randomOffset);
   }
 
   public LocalDateTime getPickerEndTime(PickerTask task, long workerId) throws IOException {
-    long estimatedTime = machineLearningModelPicking.estimateTimeUsingModel(
-        randomForests.get(task.getZone().getName().toUpperCase()), task, workerId);
+    PickingModel model = randomForests.get(task.getZone().getName().toUpperCase());
+    if (sampleTrees) {
+      // The spread of the trees replaces the random offset
+      return task.getStartTime().plusSeconds(
+          machineLearningModelPicking.sampleTimeUsingModel(model, task, workerId, random));
+    }
+    long estimatedTime = machineLearningModelPicking.estimateTimeUsingModel(model, task, workerId);
 
-    int randomOffset = ThreadLocalRandom.current().nextInt(-5, 6) * 60;
+    int randomOffset = random.nextInt(-5, 6) * 60;
 
     return task.getStartTime().plusSeconds((int) estimatedTime + randomOffset);
   }
 
+  /**
+   * Estimates the end times of picker tasks that were started together,
+   * with one prediction per zone model, or one random tree per task when tree sampling is on.
+   *
+   * @param tasks The started picker tasks, with their workers set, in the order they started
+   * @return The end time of each picker task
+   */
+  public Map<PickerTask, LocalDateTime> getPickerEndTimes(List<PickerTask> tasks) {
+    if (sampleTrees) {
+      // One tree per task, drawn in the order the tasks started
+      Map<PickerTask, LocalDateTime> endTimes = new HashMap<>();
+      for (PickerTask task : tasks) {
+        endTimes.put(task, task.getStartTime().plusSeconds(
+            machineLearningModelPicking.sampleTimeUsingModel(
+                randomForests.get(task.getZone().getName().toUpperCase()), task,
+                task.getWorker().getId(), random)));
+      }
+      return endTimes;
+    }
+    Map<String, List<PickerTask>> tasksByModel = tasks.stream()
+        .collect(Collectors.groupingBy(task -> task.getZone().getName().toUpperCase(),
+            LinkedHashMap::new, Collectors.toList()));
+    Map<PickerTask, Long> estimatedTimes = new HashMap<>();
+    tasksByModel.forEach((model, zoneTasks) -> {
+      long[] times = machineLearningModelPicking.estimateTimesUsingModel(
+          randomForests.get(model), zoneTasks,
+          zoneTasks.stream().mapToLong(task -> task.getWorker().getId()).toArray());
+      for (int i = 0; i < times.length; i++) {
+        estimatedTimes.put(zoneTasks.get(i), times[i]);
+      }
+    });
+
+    // The random offsets are drawn in the order the tasks started
+    Map<PickerTask, LocalDateTime> endTimes = new HashMap<>();
+    for (PickerTask task : tasks) {
+      int randomOffset = random.nextInt(-5, 6) * 60;
+      endTimes.put(task,
+          task.getStartTime().plusSeconds(estimatedTimes.get(task).intValue() + randomOffset));
+    }
+    return endTimes;
+  }
+
     public void pauseSimulation() throws InterruptedException, IOException, ExecutionException {
         isPaused = !isPaused;
         if (!isPaused) {
@@ -581,6 +645,7 @@ public class WorldSimulation {
   public void stopSimulation() throws InterruptedException, IOException, ExecutionException {
     isPlaying = false;
     isPaused = false;
+    simulationService.cancelCompleteSimulation();
     currentTime = LocalTime.MIDNIGHT;
     endTime = LocalTime.MIDNIGHT;
     flushGraphs();
@@ -821,7 +886,7 @@ public class WorldSimulation {
     return speedFactory;
   }
 
-  public Map<String, RandomForest> getModels() {
+  public Map<String, PickingModel> getModels() {
     return randomForests;
   }
 }
\ No newline at end of file
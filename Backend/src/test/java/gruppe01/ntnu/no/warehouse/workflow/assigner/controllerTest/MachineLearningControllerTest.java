@@ -6,6 +6,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import gruppe01.ntnu.no.warehouse.workflow.assigner.controllers.MachineLearningController;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelEvaluator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelPruner;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -13,6 +15,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -26,6 +29,12 @@ class MachineLearningControllerTest {
   @MockitoBean
   private MachineLearningModelPicking machineLearningModelPicking;
 
+  @MockitoBean
+  private ModelEvaluator modelEvaluator;
+
+  @MockitoBean
+  private ModelPruner modelPruner;
+
   @Test
   void testGetStartingParameters() throws Exception {
     // Arrange
@@ -77,4 +86,54 @@ class MachineLearningControllerTest {
         .andExpect(status().isOk());
     verify(machineLearningModelPicking, times(1)).getMcWorkerEfficiency(department);
   }
-}
\ No newline at end of file
+
+  @Test
+  void testEvaluate() throws Exception {
+    // Arrange
+    String department = "DRY";
+    ModelEvaluator.Evaluation evaluation = new ModelEvaluator.Evaluation("1", "DRY",
+        ModelEvaluator.Evaluation.State.RUNNING, null, null);
+    when(modelEvaluator.submit(department)).thenReturn(evaluation);
+
+    // Act & Assert
+    mockMvc.perform(post("/api/ml/evaluate/{department}", department))
+        .andExpect(status().isAccepted())
+        .andExpect(jsonPath("$.id").value("1"))
+        .andExpect(jsonPath("$.state").value("RUNNING"));
+    verify(modelEvaluator, times(1)).submit(department);
+  }
+
+  @Test
+  void testGetEvaluation() throws Exception {
+    // Arrange
+    ModelEvaluator.EvaluationReport report = new ModelEvaluator.EvaluationReport("DRY",
+        LocalDateTime.of(2025, 5, 5, 12, 0), 5, 100,
+        List.of(new ModelEvaluator.CandidateMetrics("compiled", 100, 30.0, 40.0, 500, 800, 900)),
+        "compiled");
+    when(modelEvaluator.getEvaluation("1")).thenReturn(new ModelEvaluator.Evaluation("1", "DRY",
+        ModelEvaluator.Evaluation.State.DONE, report, null));
+
+    // Act & Assert
+    mockMvc.perform(get("/api/ml/evaluate/jobs/{evaluationId}", "1"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.report.chosen").value("compiled"));
+    mockMvc.perform(get("/api/ml/evaluate/jobs/{evaluationId}", "2"))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void testSetPruning() throws Exception {
+    // Arrange
+    when(modelPruner.getPrunings()).thenReturn(Map.of("DRY", "50"));
+    doThrow(new IllegalArgumentException("A pruned forest needs at least one tree"))
+        .when(modelPruner).setPruning("DRY", "0");
+
+    // Act & Assert
+    mockMvc.perform(put("/api/ml/pruning/{department}", "DRY").param("trees", "50"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.DRY").value("50"));
+    mockMvc.perform(put("/api/ml/pruning/{department}", "DRY").param("trees", "0"))
+        .andExpect(status().isBadRequest());
+    verify(modelPruner, times(1)).setPruning("DRY", "50");
+  }
+}
@@ -6,7 +6,9 @@ import gruppe01.ntnu.no.warehouse.workflow.assigner.dummydata.ActiveTaskGenerato
 import gruppe01.ntnu.no.warehouse.workflow.assigner.dummydata.PickerTaskGenerator;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.dummydata.TimeTableGenerator;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.services.SimulationService;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.MonteCarloJob;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSimResult;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.worldsimulation.WorldSimulation;
 import org.junit.jupiter.api.Test;
@@ -73,7 +75,7 @@ public class SimulationControllerTest {
   @Test
   void testMonteCarlo() throws Exception {
       when(worldSimulationController.getCurrentDateTime()).thenReturn(ResponseEntity.ok(LocalDateTime.now()));
-      when(worldSimulationController.getModels()).thenReturn(Map.of("model1", mock(RandomForest.class)));
+      when(worldSimulationController.getModels()).thenReturn(Map.of("model1", PickingModel.of(mock(RandomForest.class))));
       when(simulationService.runCompleteSimulation(any(), any())).thenReturn(Map.of(1L, List.of("Result1")));
 
       mockMvc.perform(get("/api/monte-carlo"))
@@ -93,10 +95,29 @@ public class SimulationControllerTest {
       verify(simulationService, times(1)).runCompleteSimulation(isNull(), any());
   }
 
+  @Test
+  void testStartMonteCarloJob() throws Exception {
+      MonteCarloJob job = new MonteCarloJob();
+      when(simulationService.submitJob(isNull(), any())).thenReturn(job);
+
+      mockMvc.perform(post("/api/monte-carlo/jobs").param("startOfDay", "true"))
+          .andExpect(status().isAccepted())
+          .andExpect(jsonPath("$.id").value(job.getId()))
+          .andExpect(jsonPath("$.state").value("RUNNING"));
+  }
+
+  @Test
+  void testGetMonteCarloJob_NotFound() throws Exception {
+      when(simulationService.getJob("missing")).thenReturn(null);
+
+      mockMvc.perform(get("/api/monte-carlo/jobs/{jobId}", "missing"))
+          .andExpect(status().isNotFound());
+  }
+
   @Test
   void testMonteCarloZone() throws Exception {
       when(worldSimulationController.getCurrentDateTime()).thenReturn(ResponseEntity.ok(LocalDateTime.now()));
-      when(worldSimulationController.getModels()).thenReturn(Map.of("model1", mock(RandomForest.class)));
+      when(worldSimulationController.getModels()).thenReturn(Map.of("model1", PickingModel.of(mock(RandomForest.class))));
       when(simulationService.runZoneSimulation(anyLong(), any(), any())).thenReturn(List.of(new ZoneSimResult()));
 
       mockMvc.perform(get("/api/monte-carlo/zones/{id}", 1L))
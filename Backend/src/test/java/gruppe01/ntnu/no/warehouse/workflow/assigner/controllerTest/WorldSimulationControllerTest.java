@@ -1,6 +1,7 @@
 package gruppe01.ntnu.no.warehouse.workflow.assigner.controllerTest;
 
 import gruppe01.ntnu.no.warehouse.workflow.assigner.controllers.WorldSimulationController;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.services.SimulationService;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.worldsimulation.WorldSimulation;
 import org.junit.jupiter.api.BeforeEach;
@@ -153,7 +154,7 @@ class WorldSimulationControllerTest {
 
   @Test
   void testGetModels() throws Exception {
-    when(worldSimulation.getModels()).thenReturn(Map.of("zone1", mock(RandomForest.class)));
+    when(worldSimulation.getModels()).thenReturn(Map.of("zone1", PickingModel.of(mock(RandomForest.class))));
 
     mockMvc.perform(get("/api/simulation/getModels"))
         .andExpect(status().isOk());
@@ -164,7 +165,7 @@ class WorldSimulationControllerTest {
   @Test
   void testGetModel() throws Exception {
     RandomForest mockModel = mock(RandomForest.class);
-    when(worldSimulation.getModels()).thenReturn(Map.of("1", mockModel));
+    when(worldSimulation.getModels()).thenReturn(Map.of("1", PickingModel.of(mockModel)));
 
     mockMvc.perform(get("/api/simulation/getModel/1"))
         .andExpect(status().isOk());
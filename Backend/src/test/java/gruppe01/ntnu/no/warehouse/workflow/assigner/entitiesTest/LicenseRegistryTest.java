@@ -0,0 +1,78 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.entitiesTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.License;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.LicenseMask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.LicenseRegistry;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Task;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LicenseRegistryTest {
+
+  @Test
+  void testSameLicenseGetsSameIndex() {
+    License forklift = createLicense(1001L);
+    License copy = createLicense(1001L);
+
+    assertEquals(LicenseRegistry.indexOf(forklift), LicenseRegistry.indexOf(copy));
+    assertNotEquals(LicenseRegistry.indexOf(forklift),
+        LicenseRegistry.indexOf(createLicense(1002L)));
+    assertEquals(LicenseRegistry.maskOf(Set.of(forklift)), LicenseRegistry.maskOf(Set.of(copy)));
+  }
+
+  @Test
+  void testContainsAll() {
+    License forklift = createLicense(1011L);
+    License truck = createLicense(1012L);
+    LicenseMask both = LicenseRegistry.maskOf(Set.of(forklift, truck));
+    LicenseMask one = LicenseRegistry.maskOf(Set.of(forklift));
+
+    assertTrue(both.containsAll(one));
+    assertFalse(one.containsAll(both));
+    assertTrue(one.containsAll(LicenseMask.EMPTY));
+    assertTrue(LicenseRegistry.maskOf(null).isEmpty());
+  }
+
+  @Test
+  void testMoreLicensesThanFitInLong() {
+    List<License> licenses = new ArrayList<>();
+    for (long id = 2000; id < 2000 + Long.SIZE + 10; id++) {
+      licenses.add(createLicense(id));
+    }
+    LicenseMask all = LicenseRegistry.maskOf(licenses);
+    LicenseMask last = LicenseRegistry.maskOf(Set.of(licenses.getLast()));
+
+    assertEquals(licenses.size(), all.getCount());
+    assertTrue(all.containsAll(last));
+    assertFalse(LicenseRegistry.maskOf(licenses.subList(0, 5)).containsAll(last));
+  }
+
+  @Test
+  void testWorkerMaskFollowsLicenses() {
+    License forklift = createLicense(1021L);
+    Task task = new Task();
+    task.setRequiredLicense(Set.of(forklift));
+    Worker worker = new Worker();
+    worker.setLicenses(new HashSet<>());
+
+    assertFalse(worker.isQualifiedFor(task));
+    // Licenses added to the set are picked up without calling the setter
+    worker.getLicenses().add(forklift);
+    assertTrue(worker.isQualifiedFor(task));
+    worker.setLicenses(new HashSet<>());
+    assertFalse(worker.isQualifiedFor(task));
+  }
+
+  private static License createLicense(Long id) {
+    License license = new License("License " + id);
+    license.setId(id);
+    return license;
+  }
+}
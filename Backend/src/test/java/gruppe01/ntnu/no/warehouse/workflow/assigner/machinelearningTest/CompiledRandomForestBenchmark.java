@@ -0,0 +1,58 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearningTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.CompiledRandomForest;
+import smile.data.DataFrame;
+import smile.regression.RandomForest;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Compares the time of one prediction of a picker task with the model and with the compiled
+ * model. Not a test, run the main method with the test class path:
+ * the optional arguments are the number of trees and the number of predictions per round.
+ */
+public class CompiledRandomForestBenchmark {
+
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) {
+    int trees = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+    int predictions = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+    RandomForest model = CompiledRandomForestTest.fit(new SplittableRandom(42L), 2000, trees);
+    CompiledRandomForest compiled = CompiledRandomForest.compile(model,
+        List.of(CompiledRandomForestTest.FEATURES));
+    double[][] rows = CompiledRandomForestTest.createRows(new SplittableRandom(7L), predictions);
+    // One DataFrame per prediction, as the simulations did before
+    DataFrame[] frames = new DataFrame[rows.length];
+    for (int i = 0; i < rows.length; i++) {
+      frames[i] = CompiledRandomForestTest.toDataFrame(new double[][] {rows[i]});
+    }
+    System.out.println(trees + " trees, " + compiled.getNodeCount() + " nodes, "
+        + predictions + " predictions per round");
+
+    double sink = 0;
+    double modelNanos = Double.MAX_VALUE;
+    double compiledNanos = Double.MAX_VALUE;
+    // The first round warms up the JIT, the best of the other rounds is kept
+    for (int round = 0; round <= ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (DataFrame frame : frames) {
+        sink += model.predict(frame)[0];
+      }
+      long middle = System.nanoTime();
+      for (double[] row : rows) {
+        sink += compiled.predict(row);
+      }
+      long end = System.nanoTime();
+      if (round > 0) {
+        modelNanos = Math.min(modelNanos, (double) (middle - start) / predictions);
+        compiledNanos = Math.min(compiledNanos, (double) (end - middle) / predictions);
+      }
+    }
+    System.out.printf("Model:    %10.1f ns per prediction%n", modelNanos);
+    System.out.printf("Compiled: %10.1f ns per prediction%n", compiledNanos);
+    System.out.printf("Speedup:  %10.1fx (checksum %.1f)%n", modelNanos / compiledNanos, sink);
+  }
+}
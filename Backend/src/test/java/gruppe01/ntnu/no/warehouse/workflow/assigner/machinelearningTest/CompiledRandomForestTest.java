@@ -0,0 +1,234 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearningTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.CompiledRandomForest;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import smile.data.DataFrame;
+import smile.data.formula.Formula;
+import smile.regression.RandomForest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledRandomForestTest {
+
+  static final String[] FEATURES = {"distance_m", "dpack_equivalent_amount", "lines",
+      "weight_g", "volume_ml", "avg_height", "picker"};
+
+  private static RandomForest model;
+
+  @BeforeAll
+  static void setUp() {
+    model = fit(new SplittableRandom(42L), 400, 30);
+  }
+
+  @Test
+  void testPredict_SameAsModel() {
+    double[][] rows = createRows(new SplittableRandom(7L), 500);
+    double[] expected = model.predict(toDataFrame(rows));
+    CompiledRandomForest compiled = CompiledRandomForest.compile(model, List.of(FEATURES));
+
+    assertEquals(30, compiled.getTreeCount());
+    assertTrue(compiled.getNodeCount() >= 3 * compiled.getTreeCount());
+    for (int i = 0; i < rows.length; i++) {
+      assertEquals(expected[i], compiled.predict(rows[i]));
+    }
+  }
+
+  @Test
+  void testPredict_FeaturesInOtherOrder() {
+    double[][] rows = createRows(new SplittableRandom(8L), 50);
+    double[] expected = model.predict(toDataFrame(rows));
+    List<String> reversed = List.of(FEATURES).reversed();
+    CompiledRandomForest compiled = CompiledRandomForest.compile(model, reversed);
+
+    for (int i = 0; i < rows.length; i++) {
+      double[] row = new double[FEATURES.length];
+      for (int j = 0; j < row.length; j++) {
+        row[j] = rows[i][FEATURES.length - 1 - j];
+      }
+      assertEquals(expected[i], compiled.predict(row));
+    }
+  }
+
+  @Test
+  void testCompile_MissingFeature() {
+    List<String> features = List.of(FEATURES).subList(0, FEATURES.length - 1);
+
+    assertThrows(IllegalArgumentException.class,
+        () -> CompiledRandomForest.compile(model, features));
+  }
+
+  @Test
+  void testPredict_TooFewFeatures() {
+    CompiledRandomForest compiled = CompiledRandomForest.compile(model, List.of(FEATURES));
+
+    assertThrows(IllegalArgumentException.class, () -> compiled.predict(new double[3]));
+  }
+
+  @Test
+  void testPredictTree_MeanIsPrediction() {
+    double[][] rows = createRows(new SplittableRandom(9L), 20);
+    CompiledRandomForest compiled = CompiledRandomForest.compile(model, List.of(FEATURES));
+
+    for (double[] row : rows) {
+      double sum = 0;
+      for (int t = 0; t < compiled.getTreeCount(); t++) {
+        sum += compiled.predictTree(t, row);
+      }
+      assertEquals(compiled.predict(row), sum / compiled.getTreeCount(), 1e-9);
+    }
+  }
+
+  @Test
+  void testSample_DrawsTreeOutputs() {
+    double[] row = createRows(new SplittableRandom(10L), 1)[0];
+    CompiledRandomForest compiled = CompiledRandomForest.compile(model, List.of(FEATURES));
+    double[] outputs = new double[compiled.getTreeCount()];
+    for (int t = 0; t < outputs.length; t++) {
+      outputs[t] = compiled.predictTree(t, row);
+    }
+
+    SplittableRandom random = new SplittableRandom(4L);
+    double sum = 0;
+    int draws = 20_000;
+    for (int i = 0; i < draws; i++) {
+      double drawn = compiled.sample(row, random);
+      assertTrue(Arrays.stream(outputs).anyMatch(output -> output == drawn));
+      sum += drawn;
+    }
+    // Every tree is equally likely, so the draws average to the prediction
+    double spread = Arrays.stream(outputs).max().orElseThrow()
+        - Arrays.stream(outputs).min().orElseThrow();
+    assertEquals(compiled.predict(row), sum / draws, 0.05 * spread + 1e-9);
+  }
+
+  @Test
+  void testTrim_SameAsTrimmedModel() {
+    CompiledRandomForest compiled = CompiledRandomForest.compile(model, List.of(FEATURES));
+    CompiledRandomForest trimmed = compiled.trim(7);
+    CompiledRandomForest expected =
+        CompiledRandomForest.compile(model.trim(7), List.of(FEATURES));
+
+    assertEquals(7, trimmed.getTreeCount());
+    for (double[] row : createRows(new SplittableRandom(11L), 50)) {
+      assertEquals(expected.predict(row), trimmed.predict(row), 1e-9);
+    }
+    assertSame(compiled, compiled.trim(compiled.getTreeCount()));
+    assertThrows(IllegalArgumentException.class, () -> compiled.trim(0));
+  }
+
+  @Test
+  void testWriteRead_SamePredictions(@TempDir Path directory) throws Exception {
+    CompiledRandomForest compiled = CompiledRandomForest.compile(model, List.of(FEATURES));
+    Path file = directory.resolve("pickroute_DRY.rfm");
+
+    compiled.write(file);
+    CompiledRandomForest read = CompiledRandomForest.read(file, List.of(FEATURES));
+
+    assertEquals(List.of(FEATURES), read.getFeatureNames());
+    assertEquals(compiled.getTreeCount(), read.getTreeCount());
+    assertEquals(compiled.getNodeCount(), read.getNodeCount());
+    for (double[] row : createRows(new SplittableRandom(10L), 200)) {
+      assertEquals(compiled.predict(row), read.predict(row));
+    }
+    assertFalse(Files.exists(directory.resolve("pickroute_DRY.rfm.tmp")));
+  }
+
+  @Test
+  void testRead_RejectsOtherFiles(@TempDir Path directory) throws Exception {
+    CompiledRandomForest compiled = CompiledRandomForest.compile(model, List.of(FEATURES));
+    Path file = directory.resolve("model.rfm");
+    compiled.write(file);
+    byte[] bytes = Files.readAllBytes(file);
+
+    // Other features, or the same features in another order
+    List<String> reordered = new ArrayList<>(List.of(FEATURES));
+    Collections.swap(reordered, 0, 1);
+    assertThrows(IllegalArgumentException.class, () -> CompiledRandomForest.read(file, reordered));
+    assertThrows(IllegalArgumentException.class,
+        () -> CompiledRandomForest.read(file, List.of(FEATURES).subList(0, 3)));
+    // Another version of the format
+    bytes[7] = 9;
+    Files.write(file, bytes);
+    assertThrows(IllegalArgumentException.class,
+        () -> CompiledRandomForest.read(file, List.of(FEATURES)));
+    // Cut off
+    bytes[7] = CompiledRandomForest.FORMAT_VERSION;
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 8));
+    assertThrows(IllegalArgumentException.class,
+        () -> CompiledRandomForest.read(file, List.of(FEATURES)));
+    // Not a model file
+    Files.writeString(file, "distance_m,time_s\n1,2\n");
+    assertThrows(IllegalArgumentException.class,
+        () -> CompiledRandomForest.read(file, List.of(FEATURES)));
+  }
+
+  @Test
+  void testGetCompiledModel_Cached() {
+    MachineLearningModelPicking mlModel = new MachineLearningModelPicking();
+    CompiledRandomForest compiled = MachineLearningModelPicking.getCompiledModel(model);
+    double[][] rows = createRows(new SplittableRandom(9L), 20);
+    double[] expected = model.predict(toDataFrame(rows));
+
+    assertSame(compiled, MachineLearningModelPicking.getCompiledModel(model));
+    assertNull(MachineLearningModelPicking.getCompiledModel(null));
+    PickingModel picking = PickingModel.of(model);
+    assertSame(compiled, picking.compiled());
+    long[] times = mlModel.estimateTimesUsingFeatures(picking, rows);
+    for (int i = 0; i < rows.length; i++) {
+      assertEquals((long) expected[i], times[i]);
+      assertEquals((long) expected[i], mlModel.estimateTimeUsingFeatures(picking, rows[i]));
+    }
+  }
+
+  /**
+   * Fits a model on picker tasks whose time grows with the distance, lines and weight.
+   */
+  static RandomForest fit(SplittableRandom random, int rowCount, int trees) {
+    double[][] rows = createRows(random, rowCount);
+    double[][] data = new double[rowCount][FEATURES.length + 1];
+    for (int i = 0; i < rowCount; i++) {
+      System.arraycopy(rows[i], 0, data[i], 0, FEATURES.length);
+      data[i][FEATURES.length] = 2 * rows[i][0] + 30 * rows[i][2] + rows[i][3] / 100
+          + random.nextDouble(60);
+    }
+    String[] names = new String[FEATURES.length + 1];
+    System.arraycopy(FEATURES, 0, names, 0, FEATURES.length);
+    names[FEATURES.length] = "time_s";
+    Properties params = new Properties();
+    params.setProperty("smile.random_forest.trees", String.valueOf(trees));
+    return RandomForest.fit(Formula.of("time_s", FEATURES), DataFrame.of(data, names), params);
+  }
+
+  static double[][] createRows(SplittableRandom random, int count) {
+    double[][] rows = new double[count][];
+    for (int i = 0; i < count; i++) {
+      rows[i] = new double[] {
+          random.nextDouble(10, 400),
+          random.nextInt(1, 40),
+          random.nextInt(1, 20),
+          random.nextDouble(100, 30000),
+          random.nextDouble(100, 50000),
+          random.nextDouble(0.2, 2.0),
+          random.nextInt(1, 30)
+      };
+    }
+    return rows;
+  }
+
+  static DataFrame toDataFrame(double[][] rows) {
+    return DataFrame.of(rows, FEATURES);
+  }
+}
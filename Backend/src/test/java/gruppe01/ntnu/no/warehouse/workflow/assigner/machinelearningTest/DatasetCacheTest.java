@@ -0,0 +1,94 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearningTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.DatasetCache;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatasetCacheTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void testLoad_ParsesColumns() throws Exception {
+    Path csv = writeCsv("distance_m,time_s\n10.5,60\n20,90\n30,120\n");
+    Path cacheDirectory = directory.resolve("cache");
+
+    DatasetCache.Dataset dataset = DatasetCache.load(csv, cacheDirectory);
+
+    assertArrayEquals(new String[] {"distance_m", "time_s"}, dataset.names());
+    assertEquals(3, dataset.rowCount());
+    assertArrayEquals(new double[] {10.5, 20, 30}, dataset.column("distance_m"));
+    assertArrayEquals(new double[] {60, 90, 120}, dataset.column("time_s"));
+    assertThrows(IllegalArgumentException.class, () -> dataset.column("lines"));
+    assertTrue(Files.exists(DatasetCache.getCachePath(csv, cacheDirectory)));
+    assertSame(dataset, DatasetCache.load(csv, cacheDirectory));
+  }
+
+  @Test
+  void testLoad_ReadsCachedFile() throws Exception {
+    Path csv = writeCsv("distance_m,time_s\n10,60\n20,90\n");
+    FileTime modified = Files.getLastModifiedTime(csv);
+    Path first = directory.resolve("first");
+    Path second = directory.resolve("second");
+    DatasetCache.load(csv, first);
+    Files.createDirectories(second);
+    Files.copy(DatasetCache.getCachePath(csv, first), DatasetCache.getCachePath(csv, second));
+
+    // Same size and time, so the cached file is taken as it is
+    Files.writeString(csv, "distance_m,time_s\n11,61\n21,91\n");
+    Files.setLastModifiedTime(csv, modified);
+    DatasetCache.Dataset dataset = DatasetCache.load(csv, second);
+
+    assertArrayEquals(new double[] {10, 20}, dataset.column("distance_m"));
+    assertArrayEquals(new double[] {60, 90}, dataset.column("time_s"));
+  }
+
+  @Test
+  void testLoad_ParsesAgainWhenFileChanges() throws Exception {
+    Path csv = writeCsv("distance_m,time_s\n10,60\n");
+    Path cacheDirectory = directory.resolve("cache");
+    DatasetCache.load(csv, cacheDirectory);
+
+    Files.writeString(csv, "distance_m,time_s\n10,60\n20,90\n");
+    Files.setLastModifiedTime(csv, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+    DatasetCache.Dataset dataset = DatasetCache.load(csv, cacheDirectory);
+
+    assertEquals(2, dataset.rowCount());
+    assertArrayEquals(new double[] {60, 90}, dataset.column("time_s"));
+  }
+
+  @Test
+  void testLoad_RejectsNonNumericData() throws Exception {
+    Path csv = writeCsv("distance_m,time_s\n10,sixty\n");
+
+    assertThrows(IOException.class, () -> DatasetCache.load(csv, directory.resolve("cache")));
+  }
+
+  @Test
+  void testGetMinMaxValues_SameAsDataFrame() throws Exception {
+    Path csv = writeCsv("distance_m,time_s\n10,60\n-5,90\n30,15\n");
+    DatasetCache.Dataset dataset = DatasetCache.load(csv, directory.resolve("cache"));
+    MachineLearningModelPicking mlModel = new MachineLearningModelPicking();
+
+    List<List<Double>> minMax = mlModel.getMinMaxValues(dataset);
+
+    assertEquals(List.of(List.of(-5.0, 30.0), List.of(15.0, 90.0)), minMax);
+    assertEquals(mlModel.getMinMaxValues(dataset.toDataFrame()), minMax);
+  }
+
+  private Path writeCsv(String content) throws IOException {
+    Path csv = directory.resolve("synthetic_pickroutes_TEST_time.csv");
+    Files.writeString(csv, content);
+    return csv;
+  }
+}
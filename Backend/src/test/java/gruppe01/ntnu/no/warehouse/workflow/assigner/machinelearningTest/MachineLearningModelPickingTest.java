@@ -0,0 +1,128 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearningTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.CompiledRandomForest;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import smile.regression.RegressionTree;
+import smile.regression.RandomForest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MachineLearningModelPickingTest {
+
+  private final MachineLearningModelPicking mlModel = new MachineLearningModelPicking();
+
+  @Test
+  void testUpdateModel_RetiresOldestTrees() {
+    RandomForest model = CompiledRandomForestTest.fit(new SplittableRandom(1L), 200, 20);
+    RegressionTree[] oldTrees = model.trees();
+
+    RandomForest updated = mlModel.updateModel(model, createRows(50), 5);
+
+    assertEquals(model.size(), updated.size());
+    RegressionTree[] trees = updated.trees();
+    // The new trees come first, the last five trees of the model are retired
+    for (int i = 5; i < trees.length; i++) {
+      assertSame(oldTrees[i - 5], trees[i]);
+    }
+  }
+
+  @Test
+  void testUpdateModel_NoRowsOrInvalidTrees() {
+    RandomForest model = CompiledRandomForestTest.fit(new SplittableRandom(1L), 200, 20);
+
+    assertNull(mlModel.updateModel(model, List.of(), 5));
+    assertThrows(IllegalArgumentException.class,
+        () -> mlModel.updateModel(model, createRows(10), 0));
+    assertThrows(IllegalArgumentException.class,
+        () -> mlModel.updateModel(model, createRows(10), 21));
+  }
+
+  @Test
+  void testSaveLoad_UsesBinaryModel(@TempDir Path directory) throws Exception {
+    RandomForest model = CompiledRandomForestTest.fit(new SplittableRandom(1L), 200, 20);
+    RandomForest other = CompiledRandomForestTest.fit(new SplittableRandom(3L), 200, 7);
+    String filePath = directory.resolve("pickroute_TEST.ser").toString();
+    Path binaryPath = MachineLearningModelPicking.getBinaryPath(filePath);
+
+    mlModel.saveModel(model, filePath);
+    assertTrue(Files.exists(binaryPath));
+    // A newer binary file is used as it is instead of compiling the loaded model
+    MachineLearningModelPicking.getCompiledModel(other).write(binaryPath);
+    Files.setLastModifiedTime(binaryPath, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+    RandomForest loaded = new MachineLearningModelPicking().loadModel("TEST", filePath);
+
+    assertEquals(7, MachineLearningModelPicking.getCompiledModel(loaded).getTreeCount());
+  }
+
+  @Test
+  void testLoad_WritesMissingBinaryModel(@TempDir Path directory) throws Exception {
+    RandomForest model = CompiledRandomForestTest.fit(new SplittableRandom(1L), 200, 20);
+    String filePath = directory.resolve("pickroute_TEST.ser").toString();
+    Path binaryPath = MachineLearningModelPicking.getBinaryPath(filePath);
+    mlModel.saveModel(model, filePath);
+    Files.delete(binaryPath);
+
+    RandomForest loaded = new MachineLearningModelPicking().loadModel("TEST", filePath);
+
+    assertTrue(Files.exists(binaryPath));
+    CompiledRandomForest compiled = MachineLearningModelPicking.getCompiledModel(loaded);
+    CompiledRandomForest read = CompiledRandomForest.read(binaryPath,
+        List.of(CompiledRandomForestTest.FEATURES));
+    for (double[] row : CompiledRandomForestTest.createRows(new SplittableRandom(4L), 50)) {
+      assertEquals(compiled.predict(row), read.predict(row));
+    }
+  }
+
+  @Test
+  void testLoadPickingModel_ReadsForestOnlyWhenNeeded(@TempDir Path directory) throws Exception {
+    RandomForest model = CompiledRandomForestTest.fit(new SplittableRandom(1L), 200, 20);
+    String filePath = directory.resolve("pickroute_TEST.ser").toString();
+    mlModel.saveModel(model, filePath);
+    MachineLearningModelPicking loader = new MachineLearningModelPicking();
+
+    PickingModel loaded = loader.loadPickingModel("TEST", filePath);
+
+    assertFalse(loaded.isForestLoaded());
+    double[] row = CompiledRandomForestTest.createRows(new SplittableRandom(4L), 1)[0];
+    assertEquals(mlModel.estimateTimeUsingFeatures(PickingModel.of(model), row),
+        loader.estimateTimeUsingFeatures(loaded, row));
+    assertFalse(loaded.isForestLoaded());
+    // Training reads the forest once and keeps it
+    RandomForest forest = loaded.forest();
+    assertEquals(20, forest.size());
+    assertSame(forest, loader.loadModel("TEST", filePath));
+    assertSame(forest, loader.loadPickingModel("TEST", filePath).forest());
+  }
+
+  @Test
+  void testLoadPickingModel_OlderBinaryModelNotUsed(@TempDir Path directory) throws Exception {
+    RandomForest model = CompiledRandomForestTest.fit(new SplittableRandom(1L), 200, 20);
+    String filePath = directory.resolve("pickroute_TEST.ser").toString();
+    mlModel.saveModel(model, filePath);
+    Files.setLastModifiedTime(MachineLearningModelPicking.getBinaryPath(filePath),
+        FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+
+    assertNull(new MachineLearningModelPicking().loadPickingModel("TEST", filePath));
+  }
+
+  private static List<double[]> createRows(int count) {
+    List<double[]> rows = new ArrayList<>();
+    for (double[] features : CompiledRandomForestTest.createRows(new SplittableRandom(9L), count)) {
+      double[] row = Arrays.copyOf(features, features.length + 1);
+      row[features.length] = 5 * features[0] + 30 * features[2];
+      rows.add(row);
+    }
+    return rows;
+  }
+}
@@ -0,0 +1,136 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearningTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.DatasetCache;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelEvaluator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelEvaluatorTest {
+
+  @TempDir
+  Path directory;
+
+  private ModelEvaluator evaluator;
+
+  @BeforeEach
+  void setUp() {
+    evaluator = new ModelEvaluator(4, 5, 1_000_000, 2,
+        directory.resolve("metrics.csv").toString());
+  }
+
+  @AfterEach
+  void tearDown() {
+    evaluator.shutdown();
+  }
+
+  @Test
+  void testEvaluate_ReportsEveryCandidate() {
+    DatasetCache.Dataset dataset = createDataset(200);
+
+    ModelEvaluator.EvaluationReport report = evaluator.evaluate("DRY", dataset, 1L);
+
+    assertEquals(4, report.folds());
+    assertEquals(200, report.rows());
+    assertEquals(List.of("full", "pruned", "compiled", "compiled-pruned"),
+        report.candidates().stream().map(ModelEvaluator.CandidateMetrics::name).toList());
+    ModelEvaluator.CandidateMetrics full = report.candidates().get(0);
+    ModelEvaluator.CandidateMetrics compiled = report.candidates().get(2);
+    // The compiled model gives the same predictions as the forest
+    assertEquals(full.mae(), compiled.mae(), 1e-9);
+    assertEquals(full.rmse(), compiled.rmse(), 1e-9);
+    assertEquals(5, report.candidates().get(1).trees());
+    for (ModelEvaluator.CandidateMetrics candidate : report.candidates()) {
+      assertTrue(candidate.mae() > 0);
+      assertTrue(candidate.rmse() >= candidate.mae());
+      assertTrue(candidate.p50Nanos() <= candidate.p90Nanos());
+      assertTrue(candidate.p90Nanos() <= candidate.p99Nanos());
+    }
+  }
+
+  @Test
+  void testEvaluate_SameFoldsForSameSeed() {
+    DatasetCache.Dataset dataset = createDataset(120);
+
+    ModelEvaluator.EvaluationReport first = evaluator.evaluate("DRY", dataset, 3L);
+    ModelEvaluator.EvaluationReport second = evaluator.evaluate("DRY", dataset, 3L);
+
+    for (int i = 0; i < first.candidates().size(); i++) {
+      assertEquals(first.candidates().get(i).mae(), second.candidates().get(i).mae());
+    }
+  }
+
+  @Test
+  void testEvaluate_TooFewRows() {
+    assertThrows(IllegalArgumentException.class,
+        () -> evaluator.evaluate("DRY", createDataset(3), 1L));
+  }
+
+  @Test
+  void testChoose_MostAccurateWithinBudget() {
+    ModelEvaluator.CandidateMetrics full =
+        new ModelEvaluator.CandidateMetrics("full", 100, 10, 12, 1_500_000, 2_000_000, 3_000_000);
+    ModelEvaluator.CandidateMetrics pruned =
+        new ModelEvaluator.CandidateMetrics("pruned", 5, 14, 16, 800_000, 900_000, 950_000);
+    ModelEvaluator.CandidateMetrics compiled =
+        new ModelEvaluator.CandidateMetrics("compiled", 100, 10, 12, 2_000, 3_000, 4_000);
+
+    assertEquals("compiled", evaluator.choose(List.of(full, pruned, compiled)).name());
+    assertEquals("pruned", evaluator.choose(List.of(full, pruned)).name());
+    // Nothing within the budget, the fastest is chosen
+    assertEquals("full", evaluator.choose(List.of(full)).name());
+  }
+
+  @Test
+  void testConstructor_InvalidSettings() {
+    String file = directory.resolve("metrics.csv").toString();
+
+    assertThrows(IllegalArgumentException.class, () -> new ModelEvaluator(1, 5, 1000, 1, file));
+    assertThrows(IllegalArgumentException.class, () -> new ModelEvaluator(5, 0, 1000, 1, file));
+  }
+
+  @Test
+  void testSubmit_PolledByIdUntilFinished() throws InterruptedException {
+    // There is no data set of the department, so the evaluation fails in the background
+    ModelEvaluator.Evaluation evaluation = evaluator.submit("missing");
+
+    assertEquals("MISSING", evaluation.department());
+    assertEquals(ModelEvaluator.Evaluation.State.RUNNING, evaluation.state());
+    long deadline = System.nanoTime() + 10_000_000_000L;
+    while (!evaluator.getEvaluation(evaluation.id()).isFinished()) {
+      assertTrue(System.nanoTime() < deadline, "Timed out waiting for the evaluation");
+      Thread.sleep(10);
+    }
+    ModelEvaluator.Evaluation failed = evaluator.getEvaluation(evaluation.id());
+    assertEquals(ModelEvaluator.Evaluation.State.FAILED, failed.state());
+    assertNull(failed.report());
+    assertNotNull(failed.errorMessage());
+    assertNull(evaluator.getEvaluation("unknown"));
+  }
+
+  private static DatasetCache.Dataset createDataset(int rows) {
+    double[][] features = CompiledRandomForestTest.createRows(new SplittableRandom(11L), rows);
+    String[] names = new String[CompiledRandomForestTest.FEATURES.length + 1];
+    double[][] columns = new double[names.length][rows];
+    for (int c = 0; c < CompiledRandomForestTest.FEATURES.length; c++) {
+      names[c] = CompiledRandomForestTest.FEATURES[c];
+      for (int r = 0; r < rows; r++) {
+        columns[c][r] = features[r][c];
+      }
+    }
+    names[names.length - 1] = "time_s";
+    SplittableRandom noise = new SplittableRandom(12L);
+    for (int r = 0; r < rows; r++) {
+      columns[names.length - 1][r] = 5 * features[r][0] + 30 * features[r][2]
+          + noise.nextDouble(60);
+    }
+    return new DatasetCache.Dataset(names, columns, 0, 0);
+  }
+}
@@ -0,0 +1,169 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearningTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.DatasetCache;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelPruner;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.TrainingStore;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import smile.data.formula.Formula;
+import smile.regression.RandomForest;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelPrunerTest {
+
+  private static DatasetCache.Dataset dataset;
+  private static PickingModel full;
+
+  @TempDir
+  Path directory;
+
+  private TrainingStore store;
+
+  @BeforeAll
+  static void setUp() {
+    int rows = 300;
+    double[][] features = CompiledRandomForestTest.createRows(new SplittableRandom(21L), rows);
+    String[] names = new String[CompiledRandomForestTest.FEATURES.length + 1];
+    double[][] columns = new double[names.length][rows];
+    for (int c = 0; c < CompiledRandomForestTest.FEATURES.length; c++) {
+      names[c] = CompiledRandomForestTest.FEATURES[c];
+      for (int r = 0; r < rows; r++) {
+        columns[c][r] = features[r][c];
+      }
+    }
+    names[names.length - 1] = "time_s";
+    for (int r = 0; r < rows; r++) {
+      columns[names.length - 1][r] = 5 * features[r][0] + 30 * features[r][2];
+    }
+    dataset = new DatasetCache.Dataset(names, columns, 0, 0);
+    Properties params = new Properties();
+    params.setProperty("smile.random_forest.trees", "40");
+    full = PickingModel.of(RandomForest.fit(Formula.of("time_s",
+        CompiledRandomForestTest.FEATURES), dataset.toDataFrame(), params));
+  }
+
+  @BeforeEach
+  void createStore() {
+    store = new TrainingStore(directory.toString(), 7, 5);
+  }
+
+  @Test
+  void testPrune_FixedTrees() {
+    ModelPruner pruner = new ModelPruner(store, "", 5, 1000);
+
+    ModelPruner.PruningReport report = pruner.prune("dry", full, "10", dataset);
+
+    assertEquals("DRY", report.department());
+    assertEquals(10, report.trees());
+    assertEquals(40, report.fullTrees());
+    assertEquals(300, report.rows());
+    // Nothing has been held out yet, so the errors are measured on the training data
+    assertFalse(report.heldOut());
+    assertEquals(report.prunedMae() - report.fullMae(), report.maeLoss(), 1e-9);
+    assertTrue(report.fidelityMae() >= 0);
+    // The pruned forest is kept until the full forest changes
+    PickingModel pruned = pruner.prune("DRY", full);
+    assertEquals(10, pruned.size());
+    assertSame(pruned, pruner.prune("DRY", full));
+    assertEquals(Map.of("DRY", report), pruner.getReports());
+  }
+
+  @Test
+  void testPrune_AutoWithinAllowedLoss() {
+    ModelPruner loose = new ModelPruner(store, "", 1e9, 1000);
+    ModelPruner strict = new ModelPruner(store, "", 0, 1000);
+
+    ModelPruner.PruningReport fewest = loose.prune("DRY", full, "auto", dataset);
+    ModelPruner.PruningReport exact = strict.prune("DRY", full, "auto", dataset);
+
+    assertEquals(1, fewest.trees());
+    assertTrue(exact.trees() <= exact.fullTrees());
+    assertTrue(exact.maeLoss() <= 1e-9);
+  }
+
+  @Test
+  void testPrune_MeasuredOnHeldOutTasks() {
+    List<PickerTask> pickerTasks = new ArrayList<>();
+    for (long id = 1; id <= 50; id++) {
+      pickerTasks.add(createTask(id, 10 * id, 50L * id + 90));
+    }
+    store.appendAll("DRY", pickerTasks);
+    ModelPruner pruner = new ModelPruner(store, "", 5, 1000);
+
+    ModelPruner.PruningReport report = pruner.prune("DRY", full, "10", dataset);
+
+    // Every fifth task is held out of training
+    assertTrue(report.heldOut());
+    assertEquals(10, report.rows());
+    assertEquals(report.prunedMae() - report.fullMae(), report.maeLoss(), 1e-9);
+  }
+
+  @Test
+  void testPrune_LazyModelNotRead() {
+    ModelPruner pruner = new ModelPruner(store, "", 5, 1000);
+    PickingModel lazy = PickingModel.of(full.compiled(), full::forest);
+
+    ModelPruner.PruningReport report = pruner.prune("DRY", lazy, "auto", dataset);
+    PickingModel pruned = pruner.prune("DRY", lazy);
+
+    assertEquals(report.trees(), pruned.size());
+    assertFalse(lazy.isForestLoaded());
+    assertFalse(pruned.isForestLoaded());
+    assertEquals(report.trees(), pruned.forest().size());
+    assertTrue(lazy.isForestLoaded());
+  }
+
+  @Test
+  void testPruneAll_OnlyPrunedZones() {
+    ModelPruner pruner = new ModelPruner(store, "FRUIT:1000", 5, 1000);
+
+    Map<String, PickingModel> models = pruner.pruneAll(Map.of("DRY", full, "FRUIT", full));
+
+    assertSame(full, models.get("DRY"));
+    // More trees than the forest has keeps the full forest
+    assertSame(full, models.get("FRUIT"));
+    assertEquals(Map.of("FRUIT", "1000"), pruner.getPrunings());
+  }
+
+  @Test
+  void testSetPruning_Invalid() {
+    ModelPruner pruner = new ModelPruner(store, "DRY:auto", 5, 1000);
+
+    assertThrows(IllegalArgumentException.class, () -> pruner.setPruning("DRY", "0"));
+    assertThrows(IllegalArgumentException.class, () -> pruner.setPruning("DRY", "many"));
+    assertThrows(IllegalArgumentException.class, () -> new ModelPruner(store, "DRY", 5, 1000));
+    pruner.setPruning("DRY", "");
+    assertTrue(pruner.getPrunings().isEmpty());
+  }
+
+  private static PickerTask createTask(long id, double distance, double time) {
+    Worker worker = new Worker();
+    worker.setId(7L);
+    PickerTask pickerTask = new PickerTask();
+    pickerTask.setId(id);
+    pickerTask.setDistance(distance);
+    pickerTask.setPackAmount(4);
+    pickerTask.setLinesAmount(3);
+    pickerTask.setWeight(2000);
+    pickerTask.setVolume(3000);
+    pickerTask.setAvgHeight(1.2);
+    pickerTask.setWorker(worker);
+    pickerTask.setEndTime(LocalDateTime.now().minusHours(1));
+    pickerTask.setTime(time);
+    return pickerTask;
+  }
+}
@@ -0,0 +1,171 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearningTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelRegistry;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelVersion;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.TrainingStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import smile.regression.RandomForest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ModelRegistryTest {
+
+  private static final LocalDateTime NOW = LocalDateTime.of(2025, 5, 5, 12, 0);
+
+  private MachineLearningModelPicking mlModel;
+  private RandomForest loaded;
+  private PickingModel loadedModel;
+  private RandomForest trained;
+  private TrainingStore trainingStore;
+  private ModelRegistry registry;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    mlModel = mock(MachineLearningModelPicking.class);
+    loaded = mock(RandomForest.class);
+    trained = mock(RandomForest.class);
+    loadedModel = PickingModel.of(loaded);
+    when(mlModel.getPickingModel(anyString())).thenReturn(loadedModel);
+    trainingStore = mock(TrainingStore.class);
+    registry = new ModelRegistry(mlModel, trainingStore, false, 2, false);
+  }
+
+  @AfterEach
+  void tearDown() {
+    registry.shutdown();
+  }
+
+  @Test
+  void testGetVersion_LoadsOnce() throws Exception {
+    ModelVersion first = registry.getVersion("dry");
+    ModelVersion second = registry.getVersion("DRY");
+
+    assertSame(first, second);
+    assertEquals("DRY", first.department());
+    assertEquals(1, first.version());
+    assertSame(loadedModel, registry.getModel("Dry"));
+    verify(mlModel, times(1)).getPickingModel("DRY");
+  }
+
+  @Test
+  void testRetrain_SwapsNewVersion() throws Exception {
+    List<double[]> rows = List.of(new double[8], new double[8]);
+    TrainingStore.TrainingRows window = new TrainingStore.TrainingRows("DRY", rows, List.of(), 2);
+    when(trainingStore.getWindow("DRY", NOW)).thenReturn(window);
+    when(mlModel.trainModel("DRY", rows)).thenReturn(trained);
+    List<ModelVersion> swapped = new ArrayList<>();
+    registry.addListener(swapped::add);
+    Map<String, PickingModel> pinned = registry.getAllModels();
+
+    ModelVersion version = registry.retrainNow("dry", NOW);
+
+    assertEquals(2, version.version());
+    assertEquals(2, version.trainingRows());
+    assertSame(trained, registry.getModel("DRY").forest());
+    assertSame(version, registry.getVersions().get("DRY"));
+    assertEquals(List.of(version), swapped);
+    // A run that took the models before the swap keeps them
+    assertSame(loadedModel, pinned.get("DRY"));
+    verify(mlModel).saveModel(trained, "pickroute_DRY.ser");
+    verify(mlModel).replaceModel("DRY", trained);
+    verify(trainingStore).markTrained(window);
+  }
+
+  @Test
+  void testRetrain_NoNewRowsKeepsVersion() throws Exception {
+    when(trainingStore.getWindow("FRUIT", NOW))
+        .thenReturn(new TrainingStore.TrainingRows("FRUIT", List.of(), List.of(), 0));
+    when(mlModel.trainModel("FRUIT", List.of())).thenReturn(null);
+
+    ModelVersion version = registry.retrainNow("FRUIT", NOW);
+
+    assertEquals(1, version.version());
+    assertSame(loadedModel, version.model());
+    verify(mlModel, never()).saveModel(any(), anyString());
+    verify(trainingStore, never()).markTrained(any());
+  }
+
+  @Test
+  void testRetrain_IncrementalUsesUntrainedRows() throws Exception {
+    registry = new ModelRegistry(mlModel, trainingStore, true, 2, false);
+    when(loaded.size()).thenReturn(20);
+    List<double[]> rows = List.<double[]>of(new double[8]);
+    TrainingStore.TrainingRows untrained =
+        new TrainingStore.TrainingRows("DRY", rows, List.of(), 7);
+    when(trainingStore.getUntrained("DRY", NOW)).thenReturn(untrained);
+    when(mlModel.updateModel(loaded, rows, 2)).thenReturn(trained);
+
+    ModelVersion version = registry.retrainNow("DRY", NOW);
+
+    assertEquals(2, version.version());
+    assertSame(trained, version.model().forest());
+    verify(mlModel, never()).trainModel(anyString(), any());
+    verify(trainingStore, never()).getWindow(anyString(), any());
+    verify(trainingStore).markTrained(untrained);
+  }
+
+  @Test
+  void testRetrainNow_SameDepartmentRunsOneAtATime() throws Exception {
+    List<double[]> rows = List.<double[]>of(new double[8]);
+    when(trainingStore.getWindow("DRY", NOW))
+        .thenReturn(new TrainingStore.TrainingRows("DRY", rows, List.of(), 1));
+    AtomicInteger training = new AtomicInteger();
+    AtomicInteger overlaps = new AtomicInteger();
+    when(mlModel.trainModel("DRY", rows)).thenAnswer(_ -> {
+      if (training.incrementAndGet() > 1) {
+        overlaps.incrementAndGet();
+      }
+      Thread.sleep(50);
+      training.decrementAndGet();
+      return trained;
+    });
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    List<Future<ModelVersion>> futures = executor.invokeAll(List.of(
+        () -> registry.retrainNow("DRY", NOW), () -> registry.retrainNow("dry", NOW)));
+    executor.shutdown();
+
+    assertEquals(0, overlaps.get());
+    assertEquals(Set.of(2L, 3L), Set.of(futures.get(0).get(10, TimeUnit.SECONDS).version(),
+        futures.get(1).get(10, TimeUnit.SECONDS).version()));
+  }
+
+  @Test
+  void testWarmUp_LoadsAllDepartments() throws Exception {
+    assertTrue(registry.warmUp().get(10, TimeUnit.SECONDS).isEmpty());
+    verify(mlModel, never()).getPickingModel(anyString());
+
+    ModelRegistry warmRegistry = new ModelRegistry(mlModel, trainingStore, false, 2, true);
+    Map<String, ModelVersion> versions = warmRegistry.warmUp().get(10, TimeUnit.SECONDS);
+    warmRegistry.shutdown();
+
+    assertEquals(MachineLearningModelPicking.DEPARTMENTS, List.copyOf(versions.keySet()));
+    verify(mlModel).getPickingModel("FREEZE");
+  }
+
+  @Test
+  void testSwap_BeforeLoad() throws Exception {
+    ModelVersion version = registry.swap("freeze", trained, 5);
+
+    assertEquals(1, version.version());
+    assertSame(trained, registry.getModel("FREEZE").forest());
+    verify(mlModel, never()).getPickingModel(anyString());
+  }
+}
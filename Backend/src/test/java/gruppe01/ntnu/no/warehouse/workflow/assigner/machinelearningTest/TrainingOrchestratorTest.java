@@ -0,0 +1,159 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearningTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelRegistry;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelVersion;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.TrainingMetrics;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.TrainingOrchestrator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.TrainingStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import smile.regression.RandomForest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TrainingOrchestratorTest {
+
+  private static final LocalDateTime NOW = LocalDateTime.of(2025, 5, 5, 12, 0);
+
+  @TempDir
+  Path directory;
+
+  private ModelRegistry modelRegistry;
+  private TrainingStore trainingStore;
+  private TrainingOrchestrator orchestrator;
+  private RandomForest previous;
+  private RandomForest trained;
+
+  @BeforeEach
+  void setUp() {
+    modelRegistry = mock(ModelRegistry.class);
+    trainingStore = mock(TrainingStore.class);
+    previous = CompiledRandomForestTest.fit(new SplittableRandom(1L), 200, 5);
+    trained = CompiledRandomForestTest.fit(new SplittableRandom(2L), 200, 8);
+    orchestrator = new TrainingOrchestrator(modelRegistry, trainingStore,
+        new MachineLearningModelPicking(), 2, directory.resolve("metrics.csv").toString());
+  }
+
+  @AfterEach
+  void tearDown() {
+    orchestrator.shutdown();
+  }
+
+  @Test
+  void testRetrainAll_TrainsDepartmentsConcurrently() throws Exception {
+    List<double[]> rows = createRows(30);
+    List<double[]> holdout = createRows(38).subList(30, 38);
+    CountDownLatch started = new CountDownLatch(2);
+    for (String department : List.of("DRY", "FRUIT")) {
+      when(modelRegistry.getVersion(department)).thenReturn(version(department, 1, previous, 0));
+      when(trainingStore.getUntrained(department, NOW))
+          .thenReturn(new TrainingStore.TrainingRows(department, rows, holdout, 38));
+      when(modelRegistry.retrainNow(department, NOW)).thenAnswer(_ -> {
+        // Only returns if the other department is training at the same time
+        started.countDown();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        return version(department, 2, trained, rows.size());
+      });
+    }
+
+    List<TrainingMetrics> metrics =
+        orchestrator.retrainAll(List.of("dry", "Fruit", "DRY"), NOW).get(20, TimeUnit.SECONDS);
+
+    assertEquals(List.of("DRY", "FRUIT"), metrics.stream().map(TrainingMetrics::department).toList());
+    TrainingMetrics dry = metrics.getFirst();
+    assertEquals(2, dry.version());
+    assertEquals(30, dry.trainingRows());
+    // Both models are measured on the held out rows only
+    assertEquals(8, dry.evaluationRows());
+    assertEquals(8, dry.trees());
+    assertEquals(meanAbsoluteError(previous, holdout), dry.previousMae(), 1e-9);
+    assertEquals(meanAbsoluteError(trained, holdout), dry.mae(), 1e-9);
+    verify(modelRegistry, times(1)).retrainNow("DRY", NOW);
+
+    List<String> lines = Files.readAllLines(directory.resolve("metrics.csv"));
+    assertEquals(3, lines.size());
+    assertTrue(lines.get(0).startsWith("department,version"));
+    assertTrue(lines.get(1).startsWith("DRY,2,"));
+    assertTrue(lines.get(2).startsWith("FRUIT,2,"));
+  }
+
+  @Test
+  void testRetrainAll_LeavesOutFailedDepartment() throws Exception {
+    when(trainingStore.getUntrained(anyString(), eq(NOW)))
+        .thenAnswer(invocation -> new TrainingStore.TrainingRows(invocation.getArgument(0),
+            List.of(), List.of(), 0));
+    when(modelRegistry.retrainNow("DRY", NOW)).thenThrow(new IOException("Broken data set"));
+    when(modelRegistry.retrainNow("FREEZE", NOW)).thenReturn(version("FREEZE", 1, trained, 0));
+
+    List<TrainingMetrics> metrics =
+        orchestrator.retrainAll(List.of("DRY", "FREEZE"), NOW).get(20, TimeUnit.SECONDS);
+
+    assertEquals(1, metrics.size());
+    assertEquals("FREEZE", metrics.getFirst().department());
+    assertTrue(Double.isNaN(metrics.getFirst().previousMae()));
+    assertTrue(Double.isNaN(metrics.getFirst().mae()));
+  }
+
+  @Test
+  void testRetrainAll_JoinsRunningRetraining() throws Exception {
+    when(trainingStore.getUntrained(anyString(), eq(NOW)))
+        .thenAnswer(invocation -> new TrainingStore.TrainingRows(invocation.getArgument(0),
+            List.of(), List.of(), 0));
+    CountDownLatch release = new CountDownLatch(1);
+    when(modelRegistry.retrainNow("DRY", NOW)).thenAnswer(_ -> {
+      assertTrue(release.await(10, TimeUnit.SECONDS));
+      return version("DRY", 2, trained, 0);
+    });
+
+    CompletableFuture<List<TrainingMetrics>> first = orchestrator.retrainAll(List.of("DRY"), NOW);
+    CompletableFuture<List<TrainingMetrics>> second =
+        orchestrator.retrainAll(List.of("DRY", "FRUIT"), NOW);
+    release.countDown();
+
+    assertSame(first, second);
+    assertEquals(1, first.get(20, TimeUnit.SECONDS).size());
+    verify(modelRegistry, times(1)).retrainNow("DRY", NOW);
+    verify(modelRegistry, never()).retrainNow("FRUIT", NOW);
+  }
+
+  private static ModelVersion version(String department, long version, RandomForest model,
+                                      int rows) {
+    return new ModelVersion(department, version, PickingModel.of(model), NOW, rows);
+  }
+
+  private static List<double[]> createRows(int count) {
+    return Arrays.stream(CompiledRandomForestTest.createRows(new SplittableRandom(5L), count))
+        .map(features -> {
+          double[] row = Arrays.copyOf(features, features.length + 1);
+          row[features.length] = 5 * features[0] + 30 * features[2];
+          return row;
+        }).toList();
+  }
+
+  private static double meanAbsoluteError(RandomForest model, List<double[]> rows) {
+    MachineLearningModelPicking mlModel = new MachineLearningModelPicking();
+    double error = 0;
+    for (double[] row : rows) {
+      error += Math.abs(mlModel.estimateTimeUsingFeatures(PickingModel.of(model),
+          Arrays.copyOf(row, row.length - 1)) - row[row.length - 1]);
+    }
+    return error / rows.size();
+  }
+}
@@ -0,0 +1,126 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearningTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.TrainingStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrainingStoreTest {
+
+  private static final LocalDateTime NOW = LocalDateTime.of(2025, 5, 12, 12, 0);
+
+  @TempDir
+  Path directory;
+
+  private TrainingStore store;
+
+  @BeforeEach
+  void setUp() {
+    store = new TrainingStore(directory.toString(), 7, 0);
+  }
+
+  @Test
+  void testAppend_SkipsUnfinishedAndDuplicateTasks() {
+    PickerTask unfinished = createTask(2L, NOW.minusHours(1), 90);
+    unfinished.setEndTime(null);
+
+    assertTrue(store.append("dry", createTask(1L, NOW.minusHours(1), 90)));
+    assertFalse(store.append("DRY", createTask(1L, NOW.minusHours(1), 90)));
+    assertFalse(store.append("DRY", unfinished));
+    assertFalse(store.append("DRY", createTask(3L, NOW.minusHours(1), 0)));
+    assertEquals(1, store.size("DRY"));
+    assertEquals(0, store.size("FRUIT"));
+  }
+
+  @Test
+  void testAppend_KeptAfterRestart() {
+    store.appendAll("DRY", List.of(createTask(1L, NOW.minusHours(2), 90),
+        createTask(2L, NOW.minusHours(1), 120)));
+
+    TrainingStore restarted = new TrainingStore(directory.toString(), 7, 0);
+    List<double[]> rows = restarted.getWindow("DRY", NOW).rows();
+
+    assertEquals(2, rows.size());
+    assertArrayEquals(new double[] {100, 4, 3, 2000, 3000, 1.2, 7, 90}, rows.get(0));
+    assertEquals(120, rows.get(1)[7]);
+    assertFalse(restarted.append("DRY", createTask(2L, NOW.minusHours(1), 120)));
+  }
+
+  @Test
+  void testGetWindow_OnlyRecentTasks() {
+    store.appendAll("DRY", List.of(createTask(1L, NOW.minusDays(8), 60),
+        createTask(2L, NOW.minusDays(6), 70), createTask(3L, NOW.minusHours(1), 80)));
+
+    TrainingStore.TrainingRows window = store.getWindow("DRY", NOW);
+
+    assertEquals(List.of(70.0, 80.0), window.rows().stream().map(row -> row[7]).toList());
+    assertEquals(3, window.end());
+  }
+
+  @Test
+  void testGetUntrained_OnlyRowsAfterLastTraining() {
+    store.appendAll("DRY", List.of(createTask(1L, NOW.minusDays(8), 60),
+        createTask(2L, NOW.minusDays(1), 70)));
+
+    // Before the first training the rows of the window are untrained
+    TrainingStore.TrainingRows first = store.getUntrained("DRY", NOW);
+    assertEquals(1, first.rows().size());
+    store.markTrained(first);
+    assertTrue(store.getUntrained("DRY", NOW).rows().isEmpty());
+
+    store.append("DRY", createTask(3L, NOW.minusHours(1), 80));
+    TrainingStore.TrainingRows second = store.getUntrained("DRY", NOW);
+
+    assertEquals(List.of(80.0), second.rows().stream().map(row -> row[7]).toList());
+    assertEquals(3, second.end());
+  }
+
+  @Test
+  void testGetUntrained_HoldsOutEveryNthTask() {
+    TrainingStore holdoutStore = new TrainingStore(directory.toString(), 7, 3);
+    holdoutStore.appendAll("DRY", List.of(createTask(1L, NOW.minusHours(4), 60),
+        createTask(2L, NOW.minusHours(3), 70), createTask(3L, NOW.minusHours(2), 80),
+        createTask(6L, NOW.minusHours(1), 90)));
+
+    TrainingStore.TrainingRows untrained = holdoutStore.getUntrained("DRY", NOW);
+
+    assertEquals(List.of(60.0, 70.0), untrained.rows().stream().map(row -> row[7]).toList());
+    assertEquals(List.of(80.0, 90.0), untrained.holdout().stream().map(row -> row[7]).toList());
+    assertEquals(4, untrained.end());
+    holdoutStore.markTrained(untrained);
+    assertTrue(holdoutStore.getUntrained("DRY", NOW).holdout().isEmpty());
+  }
+
+  @Test
+  void testConstructor_InvalidWindowOrHoldout() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new TrainingStore(directory.toString(), 0, 0));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TrainingStore(directory.toString(), 7, 1));
+  }
+
+  private static PickerTask createTask(long id, LocalDateTime endTime, double time) {
+    Worker worker = new Worker();
+    worker.setId(7L);
+    PickerTask pickerTask = new PickerTask();
+    pickerTask.setId(id);
+    pickerTask.setDistance(100);
+    pickerTask.setPackAmount(4);
+    pickerTask.setLinesAmount(3);
+    pickerTask.setWeight(2000);
+    pickerTask.setVolume(3000);
+    pickerTask.setAvgHeight(1.2);
+    pickerTask.setWorker(worker);
+    pickerTask.setEndTime(endTime);
+    pickerTask.setTime(time);
+    return pickerTask;
+  }
+}
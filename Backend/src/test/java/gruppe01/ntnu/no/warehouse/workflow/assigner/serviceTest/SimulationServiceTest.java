@@ -0,0 +1,123 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.serviceTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelRegistry;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.services.SimulationService;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.services.TimetableService;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.services.ZoneService;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.MonteCarlo;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.MonteCarloJob;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.SimulationScheduler;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.Utils;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.distributed.MonteCarloCoordinator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.SimulationAggregator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSimResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+class SimulationServiceTest {
+
+  private static final LocalDateTime START = LocalDateTime.of(2025, 5, 5, 8, 0);
+
+  @Mock
+  private ZoneService zoneService;
+
+  @Mock
+  private MonteCarlo monteCarlo;
+
+  @Mock
+  private Utils utils;
+
+  @Mock
+  private TimetableService timetableService;
+
+  @Mock
+  private SimulationScheduler simulationScheduler;
+
+  @Mock
+  private MonteCarloCoordinator monteCarloCoordinator;
+
+  @Mock
+  private ModelRegistry modelRegistry;
+
+  private SimulationService simulationService;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    MockitoAnnotations.openMocks(this);
+    simulationService = new SimulationService(zoneService, monteCarlo, utils, timetableService,
+        simulationScheduler, monteCarloCoordinator, modelRegistry, false, 5);
+    when(monteCarlo.monteCarloAggregated(anyInt(), any(), any(), any(), any(), any(), any(),
+        any())).thenAnswer(_ -> createAggregator());
+  }
+
+  @Test
+  void testRunCompleteSimulation_SavesOneAtATime() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger saving = new AtomicInteger();
+    AtomicInteger mostSaving = new AtomicInteger();
+    AtomicInteger saves = new AtomicInteger();
+    doAnswer(_ -> {
+      mostSaving.accumulateAndGet(saving.incrementAndGet(), Math::max);
+      saves.incrementAndGet();
+      release.await();
+      saving.decrementAndGet();
+      return null;
+    }).when(utils).saveSimulationSummary(any(), any());
+
+    MonteCarloJob first = simulationService.submitCompleteSimulation(null, START);
+    awaitUntil(() -> first.getState() == MonteCarloJob.State.PERSISTING);
+    MonteCarloJob polled = simulationService.submitJob(null, START);
+    MonteCarloJob stale = simulationService.submitCompleteSimulation(null, START);
+    MonteCarloJob newest = simulationService.submitCompleteSimulation(null, START);
+    // Gives the other jobs time to reach the save while the first one is saving
+    Thread.sleep(200);
+    release.countDown();
+    awaitUntil(() -> first.isFinished() && polled.isFinished() && stale.isFinished()
+        && newest.isFinished());
+
+    // The superseded run saves nothing, the others save one after the other
+    assertEquals(MonteCarloJob.State.DONE, first.getState());
+    assertEquals(MonteCarloJob.State.DONE, polled.getState());
+    assertEquals(MonteCarloJob.State.CANCELLED, stale.getState());
+    assertEquals(MonteCarloJob.State.DONE, newest.getState());
+    assertEquals(3, saves.get());
+    assertEquals(1, mostSaving.get());
+  }
+
+  private static SimulationAggregator createAggregator() {
+    Zone zone = new Zone();
+    zone.setId(1L);
+    ZoneSimResult result = new ZoneSimResult();
+    result.setZone(zone);
+    ActiveTask activeTask = new ActiveTask();
+    activeTask.setId(1L);
+    activeTask.setEndTime(START.plusHours(1));
+    result.addTask(activeTask, null);
+    SimulationAggregator aggregator = new SimulationAggregator(START);
+    aggregator.add(1L, result);
+    return aggregator;
+  }
+
+  private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + 10_000_000_000L;
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.nanoTime() < deadline, "Timed out waiting for the jobs");
+      Thread.sleep(10);
+    }
+  }
+}
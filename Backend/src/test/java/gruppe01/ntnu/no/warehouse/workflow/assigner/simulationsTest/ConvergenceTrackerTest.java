@@ -0,0 +1,68 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulationsTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.AdaptiveStopping;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.ConvergenceTracker;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConvergenceTrackerTest {
+
+  private static final LocalDateTime START = LocalDateTime.of(2025, 5, 5, 14, 0);
+
+  private final AdaptiveStopping stopping =
+      new AdaptiveStopping(5, 5, 50, 5.0, Duration.ofSeconds(30));
+
+  @Test
+  void testIdenticalEndTimesConvergeAfterMinimum() {
+    ConvergenceTracker tracker = new ConvergenceTracker();
+    for (int i = 0; i < 4; i++) {
+      tracker.add(START);
+      assertFalse(tracker.hasConverged(stopping));
+    }
+    tracker.add(START);
+    assertEquals(0.0, tracker.getHalfWidthMinutes(), 1e-9);
+    assertTrue(tracker.hasConverged(stopping));
+  }
+
+  @Test
+  void testSpreadEndTimesNeedMoreSimulations() {
+    ConvergenceTracker tracker = new ConvergenceTracker();
+    for (int i = 0; i < 5; i++) {
+      tracker.add(START.plusMinutes(i % 2 == 0 ? 0 : 60));
+    }
+    assertTrue(tracker.getHalfWidthMinutes() > 5.0);
+    assertFalse(tracker.hasConverged(stopping));
+  }
+
+  @Test
+  void testMaxReplicationsStopsZone() {
+    ConvergenceTracker tracker = new ConvergenceTracker();
+    for (int i = 0; i < 50; i++) {
+      tracker.add(START.plusMinutes(i % 2 == 0 ? 0 : 600));
+    }
+    assertEquals(50, tracker.getReplications());
+    assertTrue(tracker.hasConverged(stopping));
+  }
+
+  @Test
+  void testZoneWithoutEndTimesStopsAfterMinimum() {
+    ConvergenceTracker tracker = new ConvergenceTracker();
+    for (int i = 0; i < 5; i++) {
+      tracker.add(null);
+    }
+    assertEquals(Double.POSITIVE_INFINITY, tracker.getHalfWidthMinutes());
+    assertTrue(tracker.hasConverged(stopping));
+  }
+
+  @Test
+  void testInvalidSettingsAreRejected() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new AdaptiveStopping(5, 10, 5, 5.0, Duration.ofSeconds(30)));
+    assertThrows(IllegalArgumentException.class,
+        () -> new AdaptiveStopping(5, 5, 10, 0, Duration.ofSeconds(30)));
+  }
+}
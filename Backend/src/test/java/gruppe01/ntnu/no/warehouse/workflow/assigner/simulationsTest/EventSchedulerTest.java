@@ -0,0 +1,54 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulationsTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.subsimulations.EventScheduler;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.subsimulations.SimEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventSchedulerTest {
+
+  @Test
+  void testEventsAreTakenInTimeOrder() {
+    EventScheduler scheduler = new EventScheduler(0);
+    scheduler.schedule(30, SimEvent.Type.TASK_COMPLETE, 1);
+    scheduler.schedule(10, SimEvent.Type.WORKER_FREE, 2);
+    scheduler.schedule(10, SimEvent.Type.TASK_COMPLETE, 3);
+
+    assertEquals(10, scheduler.peekTime());
+    SimEvent first = scheduler.next();
+    assertEquals(2, first.subject());
+    assertEquals(10, scheduler.now());
+    // Events at the same time keep the order they were scheduled in
+    assertEquals(3, scheduler.next().subject());
+    assertEquals(1, scheduler.next().subject());
+    assertEquals(30, scheduler.now());
+    assertFalse(scheduler.hasPending());
+    assertNull(scheduler.next());
+    assertEquals(Long.MAX_VALUE, scheduler.peekTime());
+  }
+
+  @Test
+  void testCannotScheduleInThePast() {
+    EventScheduler scheduler = new EventScheduler(100);
+    assertThrows(IllegalArgumentException.class,
+        () -> scheduler.schedule(99, SimEvent.Type.TASK_COMPLETE, 0));
+  }
+
+  @Test
+  void testAdvanceToOnlyMovesForward() {
+    EventScheduler scheduler = new EventScheduler(100);
+    scheduler.advanceTo(50);
+    assertEquals(100, scheduler.now());
+    scheduler.advanceTo(150);
+    assertEquals(150, scheduler.now());
+  }
+
+  @Test
+  void testMinuteConversion() {
+    LocalDateTime time = LocalDateTime.of(2025, 5, 5, 8, 30);
+    assertEquals(time, EventScheduler.toDateTime(EventScheduler.toMinutes(time)));
+  }
+}
@@ -0,0 +1,115 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulationsTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.License;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Task;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Timetable;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.semaphores.LicenseWorkerPool;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LicenseWorkerPoolTest {
+
+  private static final LocalDate DAY = LocalDate.of(2025, 5, 5);
+  private static final LocalDateTime START = DAY.atTime(8, 0);
+
+  private License forklift;
+  private Worker plain;
+  private Worker licensed;
+  private LicenseWorkerPool pool;
+
+  @BeforeEach
+  void setUp() {
+    forklift = new License();
+    forklift.setId(900L);
+    forklift.setName("Forklift");
+    plain = createWorker(1L, Set.of());
+    licensed = createWorker(2L, Set.of(forklift));
+    List<Timetable> timetables = new ArrayList<>();
+    for (Worker worker : List.of(plain, licensed)) {
+      Timetable timetable = new Timetable(START, DAY.atTime(16, 0), worker);
+      timetable.setRealStartTime(START);
+      timetable.setRealEndTime(DAY.atTime(16, 0));
+      timetables.add(timetable);
+    }
+    pool = new LicenseWorkerPool(null);
+    pool.initialize(new HashSet<>(List.of(plain, licensed)), START,
+        new ShiftIndex(DAY, timetables), new Random(1));
+  }
+
+  @Test
+  void testAcquireMultiple_AllOrNothing() throws InterruptedException {
+    // Only one worker has the license, so a task needing two gets none
+    ActiveTask task = createTask(2, Set.of(forklift));
+    assertEquals("105:1", pool.acquireMultiple(task, null, new AtomicReference<>(START), 1L));
+    ActiveTask pair = createTask(2, Set.of());
+    ActiveTask single = createTask(1, Set.of());
+    assertEquals("", pool.acquireMultiple(single, null, new AtomicReference<>(START), 1L));
+    assertEquals("", pool.acquireMultiple(pair, null, new AtomicReference<>(START), 1L));
+
+    assertEquals(1, single.getWorkers().size());
+    assertTrue(pair.getWorkers().isEmpty());
+    // The worker is put back when the pair could not be completed
+    assertEquals(1, pool.getIdleCount());
+  }
+
+  @Test
+  void testAcquireMultiple_PrefersFewestLicenses() throws InterruptedException {
+    ActiveTask task = createTask(1, Set.of());
+    pool.acquireMultiple(task, null, new AtomicReference<>(START), 1L);
+    assertSame(plain, task.getWorkers().getFirst());
+
+    ActiveTask licensedTask = createTask(1, Set.of(forklift));
+    pool.acquireMultiple(licensedTask, null, new AtomicReference<>(START), 1L);
+    assertSame(licensed, licensedTask.getWorkers().getFirst());
+  }
+
+  @Test
+  void testReleaseAll_WorkersCanBeTakenAgain() {
+    ActiveTask first = createTask(1, Set.of(forklift));
+    pool.acquireMultiple(first, null, new AtomicReference<>(START), 1L);
+    ActiveTask second = createTask(1, Set.of(forklift));
+    pool.acquireMultiple(second, null, new AtomicReference<>(START), 1L);
+    assertTrue(second.getWorkers().isEmpty());
+
+    pool.releaseAll(first.getWorkers());
+    pool.acquireMultiple(second, null, new AtomicReference<>(START), 1L);
+
+    assertSame(licensed, second.getWorkers().getFirst());
+  }
+
+  private ActiveTask createTask(int minWorkers, Set<License> licenses) {
+    Task task = new Task();
+    task.setId(10L);
+    task.setMinWorkers(minWorkers);
+    task.setMaxWorkers(minWorkers);
+    task.setRequiredLicense(new HashSet<>(licenses));
+    ActiveTask activeTask = new ActiveTask();
+    activeTask.setId(1L);
+    activeTask.setTask(task);
+    return activeTask;
+  }
+
+  private static Worker createWorker(Long id, Set<License> licenses) {
+    Worker worker = new Worker();
+    worker.setId(id);
+    worker.setZone(1L);
+    worker.setEfficiency(1.0);
+    worker.setAvailability(true);
+    worker.setLicenses(new HashSet<>(licenses));
+    return worker;
+  }
+}
@@ -0,0 +1,209 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulationsTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Task;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Timetable;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.MonteCarloJob;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.RandomStreams;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.distributed.MonteCarloCoordinator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.distributed.MonteCarloWorker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.SimulationAggregator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSummary;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorld;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorldSimulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MonteCarloCoordinatorTest {
+
+  private static final LocalDate DAY = LocalDate.of(2025, 5, 5);
+  private static final LocalDateTime START = DAY.atTime(8, 0);
+
+  private final AtomicInteger launched = new AtomicInteger();
+
+  private SimWorld world;
+  private MonteCarloCoordinator coordinator;
+
+  @BeforeEach
+  void setUp() {
+    List<Zone> zones = List.of(createZone(1L), createZone(2L));
+    List<Timetable> timetables = new ArrayList<>();
+    Map<Long, List<ActiveTask>> activeTasksByZone = Map.of(
+        1L, createTasks(zones.get(0), 1L, 6), 2L, createTasks(zones.get(1), 2L, 9));
+    for (long id = 1; id <= 5; id++) {
+      Zone zone = zones.get(id <= 2 ? 0 : 1);
+      Worker worker = createWorker(id, zone.getId());
+      zone.getWorkers().add(worker);
+      Timetable timetable = new Timetable(START, DAY.atTime(16, 0), worker);
+      timetable.setRealStartTime(START);
+      timetable.setRealEndTime(DAY.atTime(16, 0));
+      timetables.add(timetable);
+    }
+    world = new SimWorld(zones, activeTasksByZone, Map.of(), START,
+        new ShiftIndex(DAY, timetables));
+    // Workers are threads of this JVM that connect over the loopback address
+    coordinator = new MonteCarloCoordinator((port, token) -> {
+      launched.incrementAndGet();
+      Thread.ofVirtual().start(() -> {
+        try {
+          new MonteCarloWorker().connect(port, token);
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      });
+    });
+  }
+
+  @AfterEach
+  void tearDown() {
+    coordinator.shutdown();
+  }
+
+  @Test
+  void testRun_MatchesSingleProcess() throws Exception {
+    RandomStreams streams = RandomStreams.of(42L, false);
+    SimulationAggregator expected = new SimulationAggregator(START);
+    for (int replication = 0; replication < 25; replication++) {
+      for (long zoneId = 1; zoneId <= 2; zoneId++) {
+        expected.add(zoneId, new SimWorldSimulator(world, world.indexOfZone(zoneId), null,
+            streams.forZone(replication, zoneId)).run());
+      }
+    }
+
+    coordinator.setWorkerProcesses(3);
+    SimulationAggregator actual = new SimulationAggregator(START);
+    coordinator.run(world, Map.of(), List.of(1L, 2L), 0, 25, streams, actual, new MonteCarloJob());
+
+    for (long zoneId = 1; zoneId <= 2; zoneId++) {
+      ZoneSummary want = expected.getZoneSummary(zoneId);
+      ZoneSummary got = actual.getZoneSummary(zoneId);
+      assertEquals(25, got.getReplications());
+      assertEquals(want.getMeanEndTime(), got.getMeanEndTime());
+      assertEquals(want.getMinEndTime(), got.getMinEndTime());
+      assertEquals(want.getEndTimeQuantile(0.5), got.getEndTimeQuantile(0.5));
+      assertEquals(want.getEndTimeQuantile(0.9), got.getEndTimeQuantile(0.9));
+      assertArrayEquals(want.getMeanCompleted(), got.getMeanCompleted());
+      assertArrayEquals(want.getMinCompleted(), got.getMinCompleted());
+      assertArrayEquals(want.getMaxCompleted(), got.getMaxCompleted());
+      assertEquals(want.getErrorMessages(), got.getErrorMessages());
+      // The best case is simulated again from its number, with its tasks
+      assertEquals(want.getBestCase().getLastEndTime(), got.getBestCase().getLastEndTime());
+      assertFalse(got.getBestCase().getActiveTasks().isEmpty());
+    }
+  }
+
+  @Test
+  void testRun_ReusesWorkers() throws Exception {
+    coordinator.setWorkerProcesses(4);
+    RandomStreams streams = RandomStreams.of(7L, false);
+    SimulationAggregator first = new SimulationAggregator(START);
+    coordinator.run(world, Map.of(), List.of(1L), 0, 2, streams, first, new MonteCarloJob());
+    SimulationAggregator second = new SimulationAggregator(START);
+    coordinator.run(world, Map.of(), List.of(1L), 0, 8, streams, second, new MonteCarloJob());
+
+    // No more workers than simulations are used, and connected workers are kept
+    assertEquals(4, launched.get());
+    assertEquals(2, first.getZoneSummary(1L).getReplications());
+    assertEquals(8, second.getZoneSummary(1L).getReplications());
+  }
+
+  @Test
+  void testRun_CancelledJobMergesNothing() throws Exception {
+    coordinator.setWorkerProcesses(2);
+    MonteCarloJob job = new MonteCarloJob();
+    job.cancel();
+    SimulationAggregator aggregator = new SimulationAggregator(START);
+    coordinator.run(world, Map.of(), List.of(1L, 2L), 0, 10, RandomStreams.of(1L, false),
+        aggregator, job);
+
+    assertTrue(aggregator.isEmpty());
+  }
+
+  @Test
+  void testRun_ClosesConnectionWithWrongToken() throws Exception {
+    List<Socket> strangers = new ArrayList<>();
+    coordinator.shutdown();
+    coordinator = new MonteCarloCoordinator((port, token) -> {
+      // Connects before the worker, with the hello of a worker but not the token
+      Socket stranger = new Socket(InetAddress.getLoopbackAddress(), port);
+      stranger.setSoTimeout(30_000);
+      DataOutputStream out = new DataOutputStream(stranger.getOutputStream());
+      out.writeInt(0x4d435731);
+      out.write(new byte[32]);
+      out.flush();
+      strangers.add(stranger);
+      Thread.ofVirtual().start(() -> {
+        try {
+          new MonteCarloWorker().connect(port, token);
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      });
+    });
+    coordinator.setWorkerProcesses(1);
+    SimulationAggregator aggregator = new SimulationAggregator(START);
+    coordinator.run(world, Map.of(), List.of(1L), 0, 3, RandomStreams.of(3L, false),
+        aggregator, new MonteCarloJob());
+
+    assertEquals(3, aggregator.getZoneSummary(1L).getReplications());
+    assertEquals(1, strangers.size());
+    try (Socket stranger = strangers.get(0)) {
+      assertEquals(-1, stranger.getInputStream().read());
+    }
+  }
+
+  private static List<ActiveTask> createTasks(Zone zone, long firstId, int count) {
+    Task task = new Task();
+    task.setId(zone.getId());
+    task.setZone(zone);
+    task.setMinWorkers(1);
+    task.setMaxWorkers(2);
+    task.setMinTime(20);
+    task.setMaxTime(90);
+    task.setRequiredLicense(new HashSet<>());
+    List<ActiveTask> activeTasks = new ArrayList<>();
+    for (long id = 0; id < count; id++) {
+      ActiveTask activeTask = new ActiveTask();
+      activeTask.setId(firstId * 100 + id);
+      activeTask.setTask(task);
+      activeTasks.add(activeTask);
+    }
+    return activeTasks;
+  }
+
+  private static Zone createZone(Long id) {
+    Zone zone = new Zone();
+    zone.setId(id);
+    zone.setIsPickerZone(false);
+    zone.setWorkers(new HashSet<>());
+    return zone;
+  }
+
+  private static Worker createWorker(Long id, Long zoneId) {
+    Worker worker = new Worker();
+    worker.setId(id);
+    worker.setZone(zoneId);
+    worker.setEfficiency(0.8 + 0.1 * id);
+    worker.setAvailability(true);
+    worker.setLicenses(new HashSet<>());
+    return worker;
+  }
+}
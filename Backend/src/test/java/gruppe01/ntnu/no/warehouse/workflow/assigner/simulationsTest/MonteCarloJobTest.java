@@ -0,0 +1,54 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulationsTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.MonteCarloJob;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MonteCarloJobTest {
+
+  @Test
+  void testCancel_WhileRunning() {
+    MonteCarloJob job = new MonteCarloJob();
+
+    assertTrue(job.cancel());
+    assertTrue(job.isCancelled());
+    // A cancelled job does not save its results
+    assertFalse(job.startPersisting());
+    job.finish();
+    assertEquals(MonteCarloJob.State.CANCELLED, job.getState());
+  }
+
+  @Test
+  void testCancel_WhilePersisting() {
+    MonteCarloJob job = new MonteCarloJob();
+
+    assertTrue(job.startPersisting());
+    // Saving the results is never interrupted
+    assertFalse(job.cancel());
+    assertEquals(MonteCarloJob.State.PERSISTING, job.getState());
+    job.finish();
+    assertEquals(MonteCarloJob.State.DONE, job.getState());
+    assertFalse(job.cancel());
+  }
+
+  @Test
+  void testFinish_KeepsResult() {
+    MonteCarloJob job = new MonteCarloJob();
+
+    assertFalse(job.isFinished());
+    assertTrue(job.startPersisting());
+    job.finish(Map.of(1L, List.of("12:00")));
+    assertTrue(job.isFinished());
+    assertEquals(List.of("12:00"), job.getResult().get(1L));
+
+    MonteCarloJob failed = new MonteCarloJob();
+    failed.fail("No zones");
+    assertEquals(MonteCarloJob.State.FAILED, failed.getState());
+    assertEquals("No zones", failed.getErrorMessage());
+    assertNotEquals(job.getId(), failed.getId());
+  }
+}
@@ -3,6 +3,7 @@ package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.services.*;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.SimulationResult;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,7 +11,6 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import smile.regression.RandomForest;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -52,7 +52,7 @@ class MonteCarloTest {
   void testMonteCarlo() throws InterruptedException, ExecutionException, IOException {
     // Arrange
     int simCount = 1;
-    Map<String, RandomForest> models = Collections.emptyMap();
+    Map<String, PickingModel> models = Collections.emptyMap();
     LocalDateTime currentTime = LocalDateTime.now();
 
     when(zoneService.getAllZones()).thenReturn(Collections.emptyList());
@@ -0,0 +1,186 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulationsTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Timetable;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.SimulationScheduler;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSimResult;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.PickerDurations;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorld;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorldSimulator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimZoneRun;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import smile.data.DataFrame;
+import smile.data.formula.Formula;
+import smile.regression.RandomForest;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PickerDurationsTest {
+
+  private static final LocalDate DAY = LocalDate.of(2025, 5, 5);
+  private static final LocalDateTime START = DAY.atTime(8, 0);
+  private static final String[] FEATURES = {"distance_m", "dpack_equivalent_amount", "lines",
+      "weight_g", "volume_ml", "avg_height", "picker"};
+
+  private final SimulationScheduler scheduler = new SimulationScheduler(2, false);
+
+  private PickingModel model;
+  private SimWorld world;
+
+  @BeforeEach
+  void setUp() {
+    model = PickingModel.of(fitModel());
+    Zone zone = new Zone();
+    zone.setId(1L);
+    zone.setIsPickerZone(true);
+    zone.setWorkers(new HashSet<>());
+    List<Timetable> timetables = new ArrayList<>();
+    for (long id = 1; id <= 3; id++) {
+      Worker worker = new Worker();
+      worker.setId(id);
+      worker.setZone(1L);
+      worker.setEfficiency(1.0);
+      worker.setAvailability(true);
+      worker.setLicenses(new HashSet<>());
+      zone.getWorkers().add(worker);
+      Timetable timetable = new Timetable(START, DAY.atTime(16, 0), worker);
+      timetable.setRealStartTime(START);
+      timetable.setRealEndTime(DAY.atTime(16, 0));
+      timetables.add(timetable);
+    }
+    SplittableRandom random = new SplittableRandom(3L);
+    List<PickerTask> pickerTasks = new ArrayList<>();
+    for (long id = 1; id <= 40; id++) {
+      PickerTask pickerTask = new PickerTask();
+      pickerTask.setId(id);
+      pickerTask.setZone(zone);
+      pickerTask.setDistance(random.nextDouble(10, 400));
+      pickerTask.setPackAmount(random.nextInt(1, 40));
+      pickerTask.setLinesAmount(random.nextInt(1, 20));
+      pickerTask.setWeight(random.nextInt(100, 30000));
+      pickerTask.setVolume(random.nextInt(100, 50000));
+      pickerTask.setAvgHeight(random.nextDouble(0.2, 2.0));
+      pickerTasks.add(pickerTask);
+    }
+    // The first task already has the first worker
+    pickerTasks.getFirst().setWorker(zone.getWorkers().stream()
+        .filter(worker -> worker.getId() == 1L).findFirst().orElseThrow());
+    world = new SimWorld(List.of(zone), Map.of(), Map.of(1L, pickerTasks), START,
+        new ShiftIndex(DAY, timetables));
+  }
+
+  @AfterEach
+  void tearDown() {
+    scheduler.shutdown();
+  }
+
+  @Test
+  void testRun_SameAsEstimatingEveryTask() throws Exception {
+    PickerDurations durations = estimate(Map.of(0, model)).get(0);
+
+    assertNotNull(durations);
+    for (long seed = 0; seed < 5; seed++) {
+      SimZoneRun expected = new SimWorldSimulator(world, 0, model,
+          new SplittableRandom(seed)).run();
+      SimZoneRun actual = new SimWorldSimulator(world, 0, model, durations,
+          new SplittableRandom(seed)).run();
+
+      assertArrayEquals(expected.getEndEpochSeconds(), actual.getEndEpochSeconds());
+      assertEquals(expected.getErrorMessages(), actual.getErrorMessages());
+      ZoneSimResult expectedResult = expected.toZoneSimResult();
+      ZoneSimResult actualResult = actual.toZoneSimResult();
+      for (int i = 0; i < expectedResult.getPickerTasks().size(); i++) {
+        assertEquals(expectedResult.getPickerTasks().get(i).getWorker().getId(),
+            actualResult.getPickerTasks().get(i).getWorker().getId());
+      }
+    }
+  }
+
+  @Test
+  void testRun_SampledTreesRepeatWithSeed() throws Exception {
+    PickerDurations durations = estimate(Map.of(0, model)).get(0);
+
+    SimZoneRun first = new SimWorldSimulator(world, 0, model, durations,
+        new SplittableRandom(7L), true).run();
+    SimZoneRun second = new SimWorldSimulator(world, 0, model, null,
+        new SplittableRandom(7L), true).run();
+    SimZoneRun mean = new SimWorldSimulator(world, 0, model, durations,
+        new SplittableRandom(7L)).run();
+
+    // The estimated durations are not used when the durations are drawn
+    assertArrayEquals(first.getEndEpochSeconds(), second.getEndEpochSeconds());
+    assertFalse(Arrays.equals(first.getEndEpochSeconds(), mean.getEndEpochSeconds()));
+  }
+
+  @Test
+  void testEstimate_AssignedTaskOnlyForItsWorker() throws Exception {
+    PickerDurations durations = estimate(Map.of(0, model)).get(0);
+
+    // Tasks that have a worker come first, workers are numbered by ID
+    assertNotEquals(PickerDurations.NOT_ESTIMATED, durations.get(0, 0));
+    assertEquals(PickerDurations.NOT_ESTIMATED, durations.get(0, 1));
+    assertEquals(PickerDurations.NOT_ESTIMATED, durations.get(0, 2));
+    assertNotEquals(PickerDurations.NOT_ESTIMATED, durations.get(1, 2));
+  }
+
+  @Test
+  void testEstimate_SkipsZonesWithoutModel() throws Exception {
+    assertTrue(estimate(Map.of()).isEmpty());
+    assertTrue(estimate(Map.of(5, model)).isEmpty());
+  }
+
+  @Test
+  void testEstimate_ChunksRunOnGivenExecutor() throws Exception {
+    AtomicInteger submitted = new AtomicInteger();
+
+    Map<Integer, PickerDurations> durations = PickerDurations.estimate(world, Map.of(0, model),
+        task -> {
+          submitted.incrementAndGet();
+          return scheduler.submit(task);
+        });
+
+    // 118 task and worker pairs fit in one chunk
+    assertEquals(1, submitted.get());
+    assertNotEquals(PickerDurations.NOT_ESTIMATED, durations.get(0).get(0, 0));
+  }
+
+  private Map<Integer, PickerDurations> estimate(Map<Integer, PickingModel> models)
+      throws Exception {
+    return PickerDurations.estimate(world, models, scheduler::submit);
+  }
+
+  private static RandomForest fitModel() {
+    SplittableRandom random = new SplittableRandom(42L);
+    double[][] data = new double[300][FEATURES.length + 1];
+    for (double[] row : data) {
+      row[0] = random.nextDouble(10, 400);
+      row[1] = random.nextInt(1, 40);
+      row[2] = random.nextInt(1, 20);
+      row[3] = random.nextInt(100, 30000);
+      row[4] = random.nextInt(100, 50000);
+      row[5] = random.nextDouble(0.2, 2.0);
+      row[6] = random.nextInt(1, 4);
+      row[7] = 6 * row[0] + 40 * row[2] + random.nextDouble(120);
+    }
+    String[] names = new String[FEATURES.length + 1];
+    System.arraycopy(FEATURES, 0, names, 0, FEATURES.length);
+    names[FEATURES.length] = "time_s";
+    return RandomForest.fit(Formula.of("time_s", FEATURES), DataFrame.of(data, names));
+  }
+}
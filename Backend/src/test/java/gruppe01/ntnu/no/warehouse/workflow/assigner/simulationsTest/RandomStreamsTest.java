@@ -0,0 +1,110 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulationsTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Task;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Timetable;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.RandomStreams;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorld;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorldSimulator;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RandomStreamsTest {
+
+  private static final LocalDate DAY = LocalDate.of(2025, 5, 5);
+
+  @Test
+  void testForZone_SameSeedSameNumbers() {
+    RandomStreams first = RandomStreams.of(42L, false);
+    RandomStreams second = RandomStreams.of(42L, false);
+
+    assertArrayEquals(draw(first.forZone(3, 7L)), draw(second.forZone(3, 7L)));
+    assertFalse(Arrays.equals(draw(first.forZone(3, 7L)), draw(first.forZone(4, 7L))));
+    assertFalse(Arrays.equals(draw(first.forZone(3, 7L)), draw(first.forZone(3, 8L))));
+    assertFalse(Arrays.equals(draw(first.forZone(3, 7L)),
+        draw(RandomStreams.of(43L, false).forZone(3, 7L))));
+  }
+
+  @Test
+  void testForScenario_CommonRandomNumbers() {
+    RandomStreams common = RandomStreams.of(42L, true);
+    RandomStreams independent = RandomStreams.of(42L, false);
+
+    assertArrayEquals(draw(common.forZone(0, 1L)), draw(common.forScenario(2).forZone(0, 1L)));
+    assertFalse(Arrays.equals(draw(independent.forZone(0, 1L)),
+        draw(independent.forScenario(2).forZone(0, 1L))));
+  }
+
+  @Test
+  void testOf_WithoutSeed() {
+    assertNotEquals(RandomStreams.of(null, false).masterSeed(),
+        RandomStreams.of(null, false).masterSeed());
+  }
+
+  @Test
+  void testSimWorldSimulator_SameSeedSameRun() {
+    Zone zone = new Zone();
+    zone.setId(1L);
+    zone.setWorkers(new HashSet<>());
+    List<Timetable> timetables = new ArrayList<>();
+    for (long id = 1; id <= 4; id++) {
+      Worker worker = new Worker();
+      worker.setId(id);
+      worker.setZone(1L);
+      worker.setEfficiency(0.5 + id * 0.25);
+      worker.setAvailability(true);
+      worker.setLicenses(new HashSet<>());
+      zone.getWorkers().add(worker);
+      Timetable timetable = new Timetable(DAY.atTime(8, 0), DAY.atTime(16, 0), worker);
+      timetable.setRealStartTime(DAY.atTime(8, 0));
+      timetable.setRealEndTime(DAY.atTime(16, 0));
+      timetables.add(timetable);
+    }
+    List<ActiveTask> activeTasks = new ArrayList<>();
+    for (long id = 1; id <= 6; id++) {
+      Task task = new Task();
+      task.setMinWorkers(1);
+      task.setMaxWorkers(1);
+      task.setMinTime(60);
+      task.setMaxTime(60);
+      task.setRequiredLicense(new HashSet<>());
+      ActiveTask activeTask = new ActiveTask();
+      activeTask.setId(id);
+      activeTask.setTask(task);
+      activeTasks.add(activeTask);
+    }
+    LocalDateTime start = DAY.atTime(8, 0);
+    SimWorld world = new SimWorld(List.of(zone), Map.of(1L, activeTasks), Map.of(), start,
+        new ShiftIndex(DAY, timetables));
+    RandomStreams streams = RandomStreams.of(7L, false);
+
+    long[] first = new SimWorldSimulator(world, 0, null, streams.forZone(0, 1L)).run()
+        .getEndEpochSeconds();
+    long[] second = new SimWorldSimulator(world, 0, null, streams.forZone(0, 1L)).run()
+        .getEndEpochSeconds();
+
+    assertEquals(6, first.length);
+    assertArrayEquals(first, second);
+  }
+
+  private static long[] draw(SplittableRandom random) {
+    long[] values = new long[8];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = random.nextLong();
+    }
+    return values;
+  }
+}
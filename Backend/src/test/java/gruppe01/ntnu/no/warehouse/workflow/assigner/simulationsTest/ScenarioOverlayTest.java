@@ -0,0 +1,151 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulationsTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Task;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Timetable;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.scenarios.Scenario;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.scenarios.ScenarioDelta;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.scenarios.ScenarioOverlay;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorld;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorldSimulator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScenarioOverlayTest {
+
+  private static final LocalDate DAY = LocalDate.of(2025, 5, 5);
+  private static final LocalDateTime START = DAY.atTime(8, 0);
+
+  private Zone dry;
+  private Zone fruit;
+  private Task task;
+  private Map<Long, List<ActiveTask>> activeTasksByZone;
+  private ShiftIndex shiftIndex;
+  private ScenarioOverlay overlay;
+
+  @BeforeEach
+  void setUp() {
+    dry = createZone(1L);
+    fruit = createZone(2L);
+    List<Timetable> timetables = new ArrayList<>();
+    for (long id = 1; id <= 3; id++) {
+      Worker worker = createWorker(id, id == 3 ? 2L : 1L);
+      (id == 3 ? fruit : dry).getWorkers().add(worker);
+      Timetable timetable = new Timetable(START, DAY.atTime(16, 0), worker);
+      timetable.setRealStartTime(START);
+      timetable.setRealEndTime(DAY.atTime(16, 0));
+      timetables.add(timetable);
+    }
+    task = new Task();
+    task.setId(10L);
+    task.setZone(fruit);
+    task.setMinWorkers(1);
+    task.setMaxWorkers(1);
+    task.setMinTime(60);
+    task.setMaxTime(60);
+    task.setRequiredLicense(new HashSet<>());
+    List<ActiveTask> fruitTasks = new ArrayList<>();
+    for (long id = 1; id <= 4; id++) {
+      ActiveTask activeTask = new ActiveTask();
+      activeTask.setId(id);
+      activeTask.setTask(task);
+      fruitTasks.add(activeTask);
+    }
+    activeTasksByZone = Map.of(2L, fruitTasks);
+    shiftIndex = new ShiftIndex(DAY, timetables);
+    overlay = new ScenarioOverlay(List.of(dry, fruit), activeTasksByZone, Map.of(), shiftIndex);
+  }
+
+  @Test
+  void testApply_MoveWorker() {
+    ScenarioOverlay.State state = overlay.apply(
+        new Scenario("move", List.of(ScenarioDelta.moveWorker(1L, 2L))));
+
+    assertEquals(1, state.zones().get(0).getWorkers().size());
+    assertEquals(2, state.zones().get(1).getWorkers().size());
+    assertEquals(2, state.shiftIndex().countWorkersNotFinished(2L, START));
+    // The snapshot is not changed
+    assertEquals(2, dry.getWorkers().size());
+    assertEquals(1L, dry.getWorkers().stream().filter(w -> w.getId() == 1L).findFirst()
+        .orElseThrow().getZone());
+    assertEquals(1, shiftIndex.countWorkersNotFinished(2L, START));
+
+    // Two workers finish the four tasks of the fruit zone in half the time
+    assertEquals(START.plusHours(4), runFruit(overlay.apply(new Scenario("base", List.of()))));
+    assertEquals(START.plusHours(2), runFruit(state));
+  }
+
+  @Test
+  void testApply_Tasks() {
+    ScenarioOverlay.State state = overlay.apply(new Scenario("tasks", List.of(
+        ScenarioDelta.removeActiveTask(1L),
+        ScenarioDelta.addActiveTasks(10L, 3, null))));
+
+    List<ActiveTask> fruitTasks = state.activeTasksByZone().get(2L);
+    assertEquals(6, fruitTasks.size());
+    // Added tasks get distinct negative IDs
+    assertEquals(3, fruitTasks.stream().map(ActiveTask::getId).filter(id -> id < 0)
+        .distinct().count());
+    assertTrue(fruitTasks.stream().noneMatch(activeTask -> activeTask.getId() == 1L));
+    assertEquals(4, activeTasksByZone.get(2L).size());
+  }
+
+  @Test
+  void testApply_Availability() {
+    ScenarioOverlay.State state = overlay.apply(
+        new Scenario("off", List.of(ScenarioDelta.setAvailability(3L, false))));
+
+    assertEquals(0, state.shiftIndex().countWorkersNotFinished(2L, START));
+    assertTrue(fruit.getWorkers().iterator().next().isAvailability());
+  }
+
+  @Test
+  void testApply_UnknownReferences() {
+    assertThrows(IllegalArgumentException.class, () -> overlay.apply(
+        new Scenario("x", List.of(ScenarioDelta.moveWorker(99L, 2L)))));
+    assertThrows(IllegalArgumentException.class, () -> overlay.apply(
+        new Scenario("x", List.of(ScenarioDelta.moveWorker(1L, 99L)))));
+    assertThrows(IllegalArgumentException.class, () -> overlay.apply(
+        new Scenario("x", List.of(ScenarioDelta.addActiveTasks(99L, 1, null)))));
+    assertThrows(IllegalArgumentException.class,
+        () -> new ScenarioDelta(ScenarioDelta.Type.SET_EFFICIENCY, 1L, null, null, null, null,
+            null, null, null, null));
+  }
+
+  private LocalDateTime runFruit(ScenarioOverlay.State state) {
+    SimWorld world = new SimWorld(state.zones(), state.activeTasksByZone(),
+        state.pickerTasksByZone(), START, state.shiftIndex());
+    return new SimWorldSimulator(world, world.indexOfZone(2L), null, new Random(1)).run()
+        .getLastEndTime();
+  }
+
+  private static Zone createZone(Long id) {
+    Zone zone = new Zone();
+    zone.setId(id);
+    zone.setWorkers(new HashSet<>());
+    return zone;
+  }
+
+  private static Worker createWorker(Long id, Long zoneId) {
+    Worker worker = new Worker();
+    worker.setId(id);
+    worker.setZone(zoneId);
+    worker.setEfficiency(1.0);
+    worker.setAvailability(true);
+    worker.setLicenses(new HashSet<>());
+    return worker;
+  }
+}
@@ -0,0 +1,112 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulationsTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.License;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Task;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Timetable;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShiftIndexTest {
+
+  private static final LocalDate DAY = LocalDate.of(2025, 5, 5);
+
+  private ShiftIndex shiftIndex;
+  private License forklift;
+
+  @BeforeEach
+  void setUp() {
+    forklift = new License("Forklift");
+    forklift.setId(1L);
+
+    Worker early = createWorker(1L, 1L, true, Set.of(forklift));
+    Worker late = createWorker(2L, 1L, true, Set.of());
+    Worker unavailable = createWorker(3L, 1L, false, Set.of(forklift));
+    Worker otherZone = createWorker(4L, 2L, true, Set.of());
+
+    shiftIndex = new ShiftIndex(DAY, List.of(
+        createTimetable(early, 6, 14),
+        createTimetable(late, 10, 18),
+        createTimetable(unavailable, 6, 14),
+        createTimetable(otherZone, 8, 16)
+    ));
+  }
+
+  @Test
+  void testCountWorkersNotFinished() {
+    assertEquals(2, shiftIndex.countWorkersNotFinished(1L, DAY.atTime(7, 0)));
+    // A shift ending at the given time is finished
+    assertEquals(1, shiftIndex.countWorkersNotFinished(1L, DAY.atTime(14, 0)));
+    assertEquals(0, shiftIndex.countWorkersNotFinished(1L, DAY.atTime(18, 0)));
+    assertEquals(0, shiftIndex.countWorkersNotFinished(1L, DAY.plusDays(1).atTime(7, 0)));
+    assertEquals(0, shiftIndex.countWorkersNotFinished(99L, DAY.atTime(7, 0)));
+  }
+
+  @Test
+  void testCountQualifiedWorkersToday() {
+    ActiveTask activeTask = new ActiveTask();
+    Task task = new Task();
+    task.setRequiredLicense(Set.of(forklift));
+    activeTask.setTask(task);
+
+    assertEquals(1, shiftIndex.countQualifiedWorkersToday(1L, DAY.atTime(7, 0), activeTask));
+    assertEquals(0, shiftIndex.countQualifiedWorkersToday(1L, DAY.atTime(15, 0), activeTask));
+    assertEquals(0, shiftIndex.countQualifiedWorkersToday(1L, DAY.atTime(7, 0), null));
+  }
+
+  @Test
+  void testWorkerIsWorking() {
+    assertFalse(shiftIndex.workerIsWorking(DAY.atTime(5, 59), 1L));
+    assertTrue(shiftIndex.workerIsWorking(DAY.atTime(6, 0), 1L));
+    assertTrue(shiftIndex.workerIsWorking(DAY.atTime(14, 0), 1L));
+    assertFalse(shiftIndex.workerIsWorking(DAY.atTime(14, 1), 1L));
+    assertFalse(shiftIndex.workerIsWorking(DAY.atTime(9, 0), 2L));
+    assertFalse(shiftIndex.workerIsWorking(DAY.atTime(9, 0), 99L));
+  }
+
+  @Test
+  void testWorkerHasFinishedShift() {
+    assertFalse(shiftIndex.workerHasFinishedShift(1L, DAY.atTime(13, 59)));
+    assertTrue(shiftIndex.workerHasFinishedShift(1L, DAY.atTime(14, 0)));
+    assertFalse(shiftIndex.workerHasFinishedShift(99L, DAY.atTime(14, 0)));
+  }
+
+  @Test
+  void testFirstStartTimeAndWorkers() {
+    assertEquals(DAY.atTime(6, 0), shiftIndex.getFirstStartTimeByZoneAndDay(1L, DAY.atTime(0, 0)));
+    assertEquals(DAY.atStartOfDay(), shiftIndex.getFirstStartTimeByZoneAndDay(99L,
+        DAY.atTime(12, 0)));
+    // Unavailable workers are not part of the zone
+    assertEquals(2, shiftIndex.getWorkersWorkingByDayAndZone(DAY.atTime(0, 0), 1L).size());
+    assertEquals(List.of(DAY.atTime(6, 0), DAY.atTime(10, 0)), shiftIndex.getShiftStarts(1L));
+    assertEquals(List.of(DAY.atTime(14, 0), DAY.atTime(18, 0)), shiftIndex.getShiftEnds(1L));
+  }
+
+  private static Worker createWorker(Long id, Long zone, boolean available,
+                                     Set<License> licenses) {
+    Worker worker = new Worker();
+    worker.setId(id);
+    worker.setZone(zone);
+    worker.setAvailability(available);
+    worker.setLicenses(licenses);
+    return worker;
+  }
+
+  private static Timetable createTimetable(Worker worker, int startHour, int endHour) {
+    LocalDateTime start = DAY.atTime(startHour, 0);
+    LocalDateTime end = DAY.atTime(endHour, 0);
+    Timetable timetable = new Timetable(start, end, worker);
+    timetable.setRealStartTime(start);
+    timetable.setRealEndTime(end);
+    return timetable;
+  }
+}
@@ -0,0 +1,187 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulationsTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.License;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Task;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Timetable;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSimResult;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorld;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimWorldSimulator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.SimZoneRun;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.subsimulations.ZoneSimulator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimWorldSimulatorTest {
+
+  private static final LocalDate DAY = LocalDate.of(2025, 5, 5);
+  private static final LocalDateTime START = DAY.atTime(8, 0);
+
+  private Zone zone;
+  private Worker worker;
+  private License forklift;
+  private List<Timetable> timetables;
+
+  @BeforeEach
+  void setUp() {
+    forklift = new License("Forklift");
+    forklift.setId(1L);
+
+    zone = new Zone();
+    zone.setId(1L);
+    zone.setWorkers(new HashSet<>());
+
+    worker = createWorker(1L);
+    zone.getWorkers().add(worker);
+    timetables = new ArrayList<>(List.of(createTimetable(worker, 8, 16)));
+  }
+
+  @Test
+  void testRun_TasksShareWorker() {
+    List<ActiveTask> activeTasks = List.of(createActiveTask(1L, 60, Set.of()),
+        createActiveTask(2L, 60, Set.of()));
+
+    SimZoneRun run = runZone(activeTasks);
+
+    assertTrue(run.getErrorMessages().isEmpty());
+    assertEquals(START.plusHours(2), run.getLastEndTime());
+    ZoneSimResult zoneSimResult = run.toZoneSimResult();
+    assertEquals(2, zoneSimResult.getActiveTasks().size());
+    assertEquals(START.plusHours(2), zoneSimResult.getLastEndTime());
+    assertEquals(worker, zoneSimResult.getActiveTasks().getFirst().getWorkers().getFirst());
+    // The tasks of the input are not changed
+    assertNull(activeTasks.getFirst().getEndTime());
+    assertTrue(activeTasks.getFirst().getWorkers().isEmpty());
+  }
+
+  @Test
+  void testRun_StartWithSecondsKeepsTasksApart() {
+    List<ActiveTask> activeTasks = List.of(createActiveTask(1L, 60, Set.of()),
+        createActiveTask(2L, 60, Set.of()));
+
+    SimZoneRun run = runZone(activeTasks, DAY.atTime(8, 0, 30));
+
+    // The clock runs in whole minutes from the start of the minute
+    List<ActiveTask> tasks = run.toZoneSimResult().getActiveTasks().stream()
+        .sorted(Comparator.comparing(ActiveTask::getStartTime)).toList();
+    assertEquals(2, tasks.size());
+    assertFalse(tasks.get(1).getStartTime().isBefore(tasks.get(0).getEndTime()));
+    assertEquals(DAY.atTime(10, 0), run.getLastEndTime());
+  }
+
+  @Test
+  void testRun_MatchesZoneSimulator() {
+    Worker late = createWorker(2L);
+    late.setEfficiency(2.0);
+    zone.getWorkers().add(late);
+    timetables.add(createTimetable(late, 10, 18));
+    List<ActiveTask> activeTasks = new ArrayList<>();
+    for (long id = 1; id <= 4; id++) {
+      activeTasks.add(createActiveTask(id, 90, Set.of()));
+    }
+    ShiftIndex shiftIndex = new ShiftIndex(DAY, timetables);
+
+    SimZoneRun run = runZone(activeTasks);
+    ZoneSimResult expected = new ZoneSimulator().runZoneSimulation(new Zone(zone),
+        activeTasks.stream().map(ActiveTask::new).toList(), null, null, START, null, shiftIndex);
+
+    assertEquals(expected.getErrorMessage(), run.getErrorMessages());
+    assertEquals(expected.getLastEndTime(), run.getLastEndTime());
+    assertEquals(expected.getActiveTasks().size(), run.toZoneSimResult().getActiveTasks().size());
+  }
+
+  @Test
+  void testRun_ZoneErrors() {
+    assertEquals(List.of("101"), runZone(List.of()).getErrorMessages());
+
+    timetables.clear();
+    assertEquals(List.of("103"),
+        runZone(List.of(createActiveTask(1L, 60, Set.of()))).getErrorMessages());
+  }
+
+  @Test
+  void testRun_NoQualifiedWorkers() {
+    SimZoneRun run = runZone(List.of(createActiveTask(7L, 60, Set.of(forklift))));
+
+    assertEquals(List.of("105:7"), run.getErrorMessages());
+    assertNull(run.getLastEndTime());
+  }
+
+  @Test
+  void testRun_WorkersGoHome() {
+    // The task starts after the only shift of the zone has ended
+    SimZoneRun run = runZone(List.of(createActiveTask(3L, 60, Set.of())), DAY.atTime(17, 0));
+
+    assertEquals(List.of("104:3:null"), run.getErrorMessages());
+  }
+
+  @Test
+  void testRun_PickerZoneWithoutModel() {
+    zone.setIsPickerZone(true);
+    PickerTask pickerTask = new PickerTask();
+    pickerTask.setId(1L);
+    SimWorld world = new SimWorld(List.of(zone), Map.of(), Map.of(1L, List.of(pickerTask)),
+        START, new ShiftIndex(DAY, timetables));
+
+    assertThrows(IllegalStateException.class,
+        () -> new SimWorldSimulator(world, 0, null, new Random(1)).run());
+  }
+
+  private SimZoneRun runZone(List<ActiveTask> activeTasks) {
+    return runZone(activeTasks, START);
+  }
+
+  private SimZoneRun runZone(List<ActiveTask> activeTasks, LocalDateTime startTime) {
+    SimWorld world = new SimWorld(List.of(zone), Map.of(1L, activeTasks), Map.of(), startTime,
+        new ShiftIndex(DAY, timetables));
+    return new SimWorldSimulator(world, world.indexOfZone(1L), null, new Random(1)).run();
+  }
+
+  private ActiveTask createActiveTask(Long id, int minutes, Set<License> licenses) {
+    Task task = new Task();
+    task.setMinWorkers(1);
+    task.setMaxWorkers(1);
+    task.setMinTime(minutes);
+    task.setMaxTime(minutes);
+    task.setRequiredLicense(licenses);
+    ActiveTask activeTask = new ActiveTask();
+    activeTask.setId(id);
+    activeTask.setTask(task);
+    return activeTask;
+  }
+
+  private static Worker createWorker(Long id) {
+    Worker worker = new Worker();
+    worker.setId(id);
+    worker.setZone(1L);
+    worker.setEfficiency(1.0);
+    worker.setAvailability(true);
+    worker.setLicenses(new HashSet<>());
+    return worker;
+  }
+
+  private static Timetable createTimetable(Worker worker, int startHour, int endHour) {
+    LocalDateTime start = DAY.atTime(startHour, 0);
+    LocalDateTime end = DAY.atTime(endHour, 0);
+    Timetable timetable = new Timetable(start, end, worker);
+    timetable.setRealStartTime(start);
+    timetable.setRealEndTime(end);
+    return timetable;
+  }
+}
@@ -0,0 +1,103 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulationsTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.SimulationAggregator;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSimResult;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationAggregatorTest {
+
+  private static final LocalDateTime START = LocalDateTime.of(2025, 5, 5, 8, 0);
+
+  private Zone zone;
+
+  @BeforeEach
+  void setUp() {
+    zone = new Zone();
+    zone.setId(1L);
+    zone.setIsPickerZone(false);
+  }
+
+  @Test
+  void testZoneSummaryStatistics() {
+    SimulationAggregator aggregator = new SimulationAggregator(START);
+    // End times at 08:10, 08:20, ..., 09:40
+    for (int i = 1; i <= 10; i++) {
+      aggregator.add(1L, createResult(START.plusMinutes(5), START.plusMinutes(10L * i)));
+    }
+
+    ZoneSummary summary = aggregator.getZoneSummary(1L);
+    assertEquals(10, summary.getReplications());
+    assertEquals(START.plusMinutes(55), summary.getMeanEndTime());
+    assertEquals(START.plusMinutes(10), summary.getMinEndTime());
+    assertEquals(START.plusMinutes(50), summary.getEndTimeQuantile(0.5));
+    assertEquals(START.plusMinutes(90), summary.getEndTimeQuantile(0.9));
+    assertEquals(START.plusMinutes(100), summary.getEndTimeQuantile(0.99));
+    assertEquals(START.plusMinutes(10), summary.getBestCase().getLastEndTime());
+
+    // At 08:00 nothing is done, at 08:10 every simulation has one task done
+    // and the fastest simulation has both done
+    assertEquals(0.0, summary.getMeanCompleted()[0]);
+    assertEquals(1.1, summary.getMeanCompleted()[1], 1e-9);
+    assertEquals(1, summary.getMinCompleted()[1]);
+    assertEquals(2, summary.getMaxCompleted()[1]);
+    assertEquals(START.plusMinutes(55), aggregator.getMeanEndTimes().get(1L));
+  }
+
+  @Test
+  void testMergeGivesSameSummaryAsSingleAggregator() {
+    SimulationAggregator single = new SimulationAggregator(START);
+    SimulationAggregator first = new SimulationAggregator(START);
+    SimulationAggregator second = new SimulationAggregator(START);
+    for (int i = 1; i <= 6; i++) {
+      ZoneSimResult result = createResult(START.plusMinutes(i), START.plusMinutes(20L * i));
+      single.add(1L, result);
+      (i % 2 == 0 ? first : second).add(1L, result);
+    }
+    first.merge(second);
+
+    ZoneSummary expected = single.getZoneSummary(1L);
+    ZoneSummary merged = first.getZoneSummary(1L);
+    assertEquals(expected.getReplications(), merged.getReplications());
+    assertEquals(expected.getMeanEndTime(), merged.getMeanEndTime());
+    assertEquals(expected.getEndTimeQuantile(0.9), merged.getEndTimeQuantile(0.9));
+    assertArrayEquals(expected.getMeanCompleted(), merged.getMeanCompleted());
+    assertArrayEquals(expected.getMinCompleted(), merged.getMinCompleted());
+    assertEquals(expected.getBestCase(), merged.getBestCase());
+  }
+
+  @Test
+  void testZoneWithoutEndTime() {
+    SimulationAggregator aggregator = new SimulationAggregator(START);
+    ZoneSimResult result = new ZoneSimResult();
+    result.setZone(zone);
+    result.setErrorMessage("102");
+    aggregator.add(1L, result);
+
+    ZoneSummary summary = aggregator.getZoneSummary(1L);
+    assertNull(summary.getMeanEndTime());
+    assertNull(summary.getEndTimeQuantile(0.5));
+    assertEquals("102", summary.getErrorMessages().getFirst());
+    assertTrue(aggregator.getMeanEndTimes().isEmpty());
+  }
+
+  private ZoneSimResult createResult(LocalDateTime... endTimes) {
+    ZoneSimResult result = new ZoneSimResult();
+    result.setZone(zone);
+    long id = 0;
+    for (LocalDateTime endTime : endTimes) {
+      ActiveTask activeTask = new ActiveTask();
+      activeTask.setId(id++);
+      activeTask.setEndTime(endTime);
+      result.addTask(activeTask, null);
+    }
+    return result;
+  }
+}
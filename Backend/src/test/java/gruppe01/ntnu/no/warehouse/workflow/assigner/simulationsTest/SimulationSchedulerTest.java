@@ -0,0 +1,56 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulationsTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.SimulationScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationSchedulerTest {
+
+  @Test
+  void testWorkBeyondPoolSizeIsQueued() throws Exception {
+    SimulationScheduler scheduler = new SimulationScheduler(2, false);
+    CountDownLatch started = new CountDownLatch(2);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        int value = i;
+        futures.add(scheduler.submit(() -> {
+          started.countDown();
+          release.await();
+          return value;
+        }));
+      }
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      assertEquals(2, scheduler.getActiveCount());
+      assertEquals(3, scheduler.getQueueDepth());
+
+      release.countDown();
+      for (int i = 0; i < futures.size(); i++) {
+        assertEquals(i, futures.get(i).get(5, TimeUnit.SECONDS));
+      }
+      assertEquals(0, scheduler.getQueueDepth());
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test
+  void testVirtualThreadMode() throws Exception {
+    SimulationScheduler scheduler = new SimulationScheduler(1, true);
+    try {
+      assertTrue(scheduler.isVirtualThreads());
+      assertTrue(scheduler.submit(() -> Thread.currentThread().isVirtual()).get());
+      assertEquals(1, scheduler.getStats().get("poolSize"));
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+}
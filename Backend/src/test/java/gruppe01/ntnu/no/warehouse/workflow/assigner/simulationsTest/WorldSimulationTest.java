@@ -5,6 +5,8 @@ import gruppe01.ntnu.no.warehouse.workflow.assigner.dummydata.PickerTaskGenerato
 import gruppe01.ntnu.no.warehouse.workflow.assigner.dummydata.TimeTableGenerator;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.*;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.MachineLearningModelPicking;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.ModelRegistry;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.services.*;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.worldsimulation.WorldSimulation;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,6 +14,7 @@ import org.junit.jupiter.api.Test;
 import smile.regression.RandomForest;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -63,7 +66,9 @@ class WorldSimulationTest {
         pickerTaskService,
         zoneService,
         worldSimDataService,
-        notificationService
+        notificationService,
+        mock(ModelRegistry.class),
+        false
     );
   }
 
@@ -111,7 +116,7 @@ class WorldSimulationTest {
     when(task.getZone()).thenReturn(zone);
     when(task.getStartTime()).thenReturn(LocalDateTime.now());
     // Set up model
-    worldSimulation.getModels().put("A", mock(RandomForest.class));
+    worldSimulation.getModels().put("A", PickingModel.of(mock(RandomForest.class)));
     // Set up ML model
     var mlModel = mock(MachineLearningModelPicking.class);
     // Use reflection to set private field
@@ -127,6 +132,45 @@ class WorldSimulationTest {
     assertNotNull(endTime);
   }
 
+  @Test
+  void testGetPickerEndTimes() {
+    Zone zone = mock(Zone.class);
+    when(zone.getName()).thenReturn("A");
+    Worker worker = mock(Worker.class);
+    when(worker.getId()).thenReturn(1L);
+    LocalDateTime start = LocalDateTime.now();
+    List<PickerTask> tasks = new ArrayList<>();
+    for (long id = 1; id <= 3; id++) {
+      PickerTask task = new PickerTask();
+      task.setId(id);
+      task.setZone(zone);
+      task.setWorker(worker);
+      task.setStartTime(start);
+      tasks.add(task);
+    }
+    worldSimulation.getModels().put("A", PickingModel.of(mock(RandomForest.class)));
+    var mlModel = mock(MachineLearningModelPicking.class);
+    try {
+      var field = WorldSimulation.class.getDeclaredField("machineLearningModelPicking");
+      field.setAccessible(true);
+      field.set(worldSimulation, mlModel);
+    } catch (Exception e) {
+      fail(e);
+    }
+    when(mlModel.estimateTimesUsingModel(any(), anyList(), any()))
+        .thenReturn(new long[] {600, 1200, 1800});
+
+    Map<PickerTask, LocalDateTime> endTimes = worldSimulation.getPickerEndTimes(tasks);
+
+    // One prediction for the three tasks of the zone
+    verify(mlModel, times(1)).estimateTimesUsingModel(any(), anyList(), any());
+    assertEquals(3, endTimes.size());
+    for (int i = 0; i < tasks.size(); i++) {
+      long minutes = Duration.between(start, endTimes.get(tasks.get(i))).toMinutes();
+      assertTrue(Math.abs(minutes - 10L * (i + 1)) <= 5);
+    }
+  }
+
   @Test
   void testPauseSimulation() throws Exception {
     // Should not throw
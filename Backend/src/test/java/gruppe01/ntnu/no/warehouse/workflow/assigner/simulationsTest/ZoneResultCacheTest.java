@@ -0,0 +1,161 @@
+package gruppe01.ntnu.no.warehouse.workflow.assigner.simulationsTest;
+
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Task;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Timetable;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.ZoneResultCache;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSimResult;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSummary;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.snapshot.ShiftIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZoneResultCacheTest {
+
+  private static final LocalDate DAY = LocalDate.of(2025, 5, 5);
+  private static final LocalDateTime START = DAY.atTime(8, 0);
+
+  private Zone zone;
+  private List<ActiveTask> activeTasks;
+  private ShiftIndex shiftIndex;
+
+  @BeforeEach
+  void setUp() {
+    zone = new Zone();
+    zone.setId(1L);
+    zone.setIsPickerZone(false);
+    zone.setWorkers(new HashSet<>());
+    List<Timetable> timetables = new ArrayList<>();
+    for (long id = 1; id <= 2; id++) {
+      Worker worker = new Worker();
+      worker.setId(id);
+      worker.setZone(1L);
+      worker.setEfficiency(1.0);
+      worker.setAvailability(true);
+      worker.setLicenses(new HashSet<>());
+      zone.getWorkers().add(worker);
+      Timetable timetable = new Timetable(START, DAY.atTime(16, 0), worker);
+      timetable.setRealStartTime(START);
+      timetables.add(timetable);
+    }
+    shiftIndex = new ShiftIndex(DAY, timetables);
+    Task task = new Task();
+    task.setId(10L);
+    task.setMinWorkers(1);
+    task.setMaxWorkers(1);
+    task.setMinTime(30);
+    task.setMaxTime(60);
+    task.setRequiredLicense(new HashSet<>());
+    activeTasks = new ArrayList<>();
+    for (long id = 1; id <= 3; id++) {
+      ActiveTask activeTask = new ActiveTask();
+      activeTask.setId(id);
+      activeTask.setTask(task);
+      activeTasks.add(activeTask);
+    }
+  }
+
+  @Test
+  void testHashZone_StableAndSensitive() {
+    long hash = ZoneResultCache.hashZone(1L, zone, activeTasks, List.of(), shiftIndex, 0L, 10L);
+
+    // The order of the tasks does not matter
+    assertEquals(hash, ZoneResultCache.hashZone(1L, zone, activeTasks.reversed(), List.of(),
+        shiftIndex, 0L, 10L));
+    // The settings of the run, the model, the clock, the tasks and the workers do
+    assertNotEquals(hash, ZoneResultCache.hashZone(2L, zone, activeTasks, List.of(), shiftIndex,
+        0L, 10L));
+    assertNotEquals(hash, ZoneResultCache.hashZone(1L, zone, activeTasks, List.of(), shiftIndex,
+        ZoneResultCache.modelKey(1L, 20), 10L));
+    assertNotEquals(ZoneResultCache.modelKey(1L, 20), ZoneResultCache.modelKey(1L, 10));
+    assertNotEquals(ZoneResultCache.modelKey(1L, 20), ZoneResultCache.modelKey(2L, 20));
+    assertNotEquals(hash, ZoneResultCache.hashZone(1L, zone, activeTasks, List.of(), shiftIndex,
+        0L, 11L));
+    assertNotEquals(hash, ZoneResultCache.hashZone(1L, zone, activeTasks.subList(0, 2),
+        List.of(), shiftIndex, 0L, 10L));
+    zone.getWorkers().iterator().next().setEfficiency(1.5);
+    assertNotEquals(hash, ZoneResultCache.hashZone(1L, zone, activeTasks, List.of(), shiftIndex,
+        0L, 10L));
+  }
+
+  @Test
+  void testClockBucketOf_RoundsDown() {
+    ZoneResultCache cache =
+        new ZoneResultCache(10, Duration.ofMinutes(30), Duration.ofMinutes(5));
+
+    assertEquals(cache.clockBucketOf(START), cache.clockBucketOf(START.plusMinutes(4)));
+    assertEquals(cache.clockBucketOf(START) + 1, cache.clockBucketOf(START.plusMinutes(5)));
+    assertThrows(IllegalArgumentException.class,
+        () -> new ZoneResultCache(10, Duration.ofMinutes(30), Duration.ZERO));
+  }
+
+  @Test
+  void testGet_ExpiresBySimTime() {
+    ZoneResultCache cache = new ZoneResultCache(10, Duration.ofMinutes(30), Duration.ofMinutes(5));
+    cache.put(42L, START, summaryEndingAt(START.plusHours(2)));
+
+    ZoneSummary reused = cache.get(42L, START.plusMinutes(20));
+    assertNotNull(reused);
+    assertEquals(START.plusHours(2), reused.getMeanEndTime());
+    assertEquals(1, reused.getReplications());
+    // Past the time to live
+    assertNull(cache.get(42L, START.plusMinutes(31)));
+    assertEquals(0, cache.size());
+
+    // Past the earliest predicted end time
+    cache.setTimeToLive(Duration.ofHours(8));
+    cache.put(42L, START, summaryEndingAt(START.plusHours(2)));
+    assertNull(cache.get(42L, START.plusHours(3)));
+    // The clock went back
+    cache.put(42L, START, summaryEndingAt(START.plusHours(2)));
+    assertNull(cache.get(42L, START.minusMinutes(1)));
+    assertEquals(1, cache.getHits());
+  }
+
+  @Test
+  void testPut_EvictsLeastRecentlyUsed() {
+    ZoneResultCache cache = new ZoneResultCache(2, Duration.ofMinutes(30), Duration.ofMinutes(5));
+    cache.put(1L, START, summaryEndingAt(START.plusHours(1)));
+    cache.put(2L, START, summaryEndingAt(START.plusHours(1)));
+    assertNotNull(cache.get(1L, START));
+    cache.put(3L, START, summaryEndingAt(START.plusHours(1)));
+
+    assertNotNull(cache.get(1L, START));
+    assertNull(cache.get(2L, START));
+    assertNotNull(cache.get(3L, START));
+  }
+
+  @Test
+  void testRebase_KeepsCompletedTasks() {
+    ZoneSummary summary = summaryEndingAt(START.plusMinutes(25));
+    ZoneSummary rebased = summary.rebase(START.plusMinutes(5));
+
+    assertEquals(summary.getMeanEndTime(), rebased.getMeanEndTime());
+    // The task finished at 08:25 is counted from the 08:30 bucket of the old start,
+    // which is the latest old bucket at or before 08:35
+    assertEquals(0, rebased.getMaxCompleted()[1]);
+    assertEquals(1, rebased.getMaxCompleted()[3]);
+  }
+
+  private ZoneSummary summaryEndingAt(LocalDateTime endTime) {
+    ActiveTask done = new ActiveTask(activeTasks.getFirst());
+    done.setEndTime(endTime);
+    ZoneSimResult result = new ZoneSimResult();
+    result.setZone(zone);
+    result.addTask(done, null);
+    ZoneSummary summary = new ZoneSummary(zone.getId(), START);
+    summary.add(result);
+    return summary;
+  }
+}
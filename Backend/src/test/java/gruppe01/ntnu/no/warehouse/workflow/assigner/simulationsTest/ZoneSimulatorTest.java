@@ -2,15 +2,16 @@ package gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.subsimulations;
 
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.ActiveTask;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.PickerTask;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Task;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Worker;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.entities.Zone;
+import gruppe01.ntnu.no.warehouse.workflow.assigner.machinelearning.PickingModel;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.services.TimetableService;
 import gruppe01.ntnu.no.warehouse.workflow.assigner.simulations.results.ZoneSimResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import smile.regression.RandomForest;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -26,7 +27,7 @@ class ZoneSimulatorTest {
   private TimetableService timetableService;
 
   @Mock
-  private RandomForest randomForest;
+  private PickingModel randomForest;
 
   private Zone testZone;
   private List<ActiveTask> activeTasks;
@@ -107,4 +108,65 @@ class ZoneSimulatorTest {
     assertNotNull(result);
     assertEquals("104:null:null", result.getErrorMessage().getFirst());
   }
-}
\ No newline at end of file
+
+  @Test
+  void testRunZoneSimulation_TasksShareWorkerInSimulatedTime() {
+    LocalDateTime start = LocalDateTime.of(2025, 5, 5, 8, 0);
+
+    ZoneSimResult result = runTwoTasksWithOneWorker(start);
+
+    // The second task has to wait for the worker to finish the first one
+    assertTrue(result.getErrorMessage().isEmpty());
+    assertEquals(2, result.getActiveTasks().size());
+    assertEquals(start.plusHours(2), result.getLastEndTime());
+  }
+
+  @Test
+  void testRunZoneSimulation_StartWithSecondsKeepsTasksApart() {
+    LocalDateTime start = LocalDateTime.of(2025, 5, 5, 8, 0, 30);
+
+    ZoneSimResult result = runTwoTasksWithOneWorker(start);
+
+    // The clock runs in whole minutes from the start of the minute
+    List<ActiveTask> tasks = result.getActiveTasks().stream()
+        .sorted(Comparator.comparing(ActiveTask::getStartTime)).toList();
+    assertEquals(2, tasks.size());
+    assertFalse(tasks.get(1).getStartTime().isBefore(tasks.get(0).getEndTime()));
+    assertEquals(LocalDateTime.of(2025, 5, 5, 10, 0), result.getLastEndTime());
+  }
+
+  private ZoneSimResult runTwoTasksWithOneWorker(LocalDateTime start) {
+    Worker worker = new Worker();
+    worker.setId(1L);
+    worker.setZone(1L);
+    worker.setEfficiency(1.0);
+    worker.setAvailability(true);
+    testZone.getWorkers().add(worker);
+
+    Task task = new Task();
+    task.setMinWorkers(1);
+    task.setMaxWorkers(1);
+    task.setMinTime(60);
+    task.setMaxTime(60);
+    task.setRequiredLicense(new HashSet<>());
+    for (long id = 1; id <= 2; id++) {
+      ActiveTask activeTask = new ActiveTask();
+      activeTask.setId(id);
+      activeTask.setTask(task);
+      activeTasks.add(activeTask);
+    }
+
+    when(timetableService.getFirstStartTimeByZoneAndDay(anyLong(), any(LocalDateTime.class)))
+        .thenReturn(start);
+    when(timetableService.getWorkersWorkingByDayAndZone(any(LocalDateTime.class), anyLong()))
+        .thenReturn(new HashSet<>(Set.of(worker)));
+    when(timetableService.countWorkersNotFinished(anyLong(), any(LocalDateTime.class)))
+        .thenReturn(1);
+    when(timetableService.countQualifiedWorkersToday(anyLong(), any(LocalDateTime.class),
+        any(ActiveTask.class))).thenReturn(1);
+    when(timetableService.workerIsWorking(any(LocalDateTime.class), anyLong())).thenReturn(true);
+
+    return zoneSimulator.runZoneSimulation(
+        testZone, activeTasks, null, null, start, timetableService);
+  }
+}
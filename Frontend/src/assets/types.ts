@@ -142,4 +142,5 @@ export const ErrorCodes = new Map<number, string>([
     [103, "No Workers in Zone coming to work today"],
     [104, "Task could not complete due to workers going home"],
     [105, "No qualified workers for activetask in zone"],
+    [106, "Duration of picker task could not be estimated"],
 ]);